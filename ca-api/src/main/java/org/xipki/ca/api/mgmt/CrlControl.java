@@ -49,6 +49,11 @@ import org.xipki.util.TripleState;
  * # 0 indicates that no deltaCRL will be generated
  * deltacrl.intervals=&lt;integer&gt;
  *
+ * # Elapsed minutes before a deltaCRL is generated since the last CRL or deltaCRL.
+ * # If positive, it is used instead of deltacrl.intervals and must be less than
+ * # fullcrl.intervals * 1440. Default is 0.
+ * deltacrl.interval.minutes=&lt;integer&gt;
+ *
  * # Overlap days. At least 1 day
  * overlap.days=&lt;days of overlap&gt;
  *
@@ -133,6 +138,8 @@ public class CrlControl {
 
   public static final String KEY_DELTACRL_INTERVALS = "deltacrl.intervals";
 
+  public static final String KEY_DELTACRL_INTERVAL_MINUTES = "deltacrl.interval.minutes";
+
   /**
    * Overlap in minutes.
    * @deprecated use {@link #KEY_OVERLAP_DAYS} instead.
@@ -157,6 +164,8 @@ public class CrlControl {
 
   private int deltaCrlIntervals;
 
+  private int deltaCrlIntervalMinutes;
+
   private int overlapDays = 3;
 
   private boolean extendedNextUpdate;
@@ -209,6 +218,7 @@ public class CrlControl {
     // Maximal interval allowed by CA/Browser Forum's Baseline Requirements
     this.fullCrlIntervals = getInteger(props, KEY_FULLCRL_INTERVALS, 7);
     this.deltaCrlIntervals = getInteger(props, KEY_DELTACRL_INTERVALS, 0);
+    this.deltaCrlIntervalMinutes = getInteger(props, KEY_DELTACRL_INTERVAL_MINUTES, 0);
     this.extendedNextUpdate = getBoolean(props, KEY_FULLCRL_EXTENDED_NEXTUPDATE, false);
 
     if (props.value(KEY_OVERLAP_DAYS) != null) {
@@ -249,6 +259,9 @@ public class CrlControl {
   public String getConf() {
     ConfPairs pairs = new ConfPairs();
     pairs.putPair(KEY_DELTACRL_INTERVALS, Integer.toString(deltaCrlIntervals));
+    if (deltaCrlIntervalMinutes > 0) {
+      pairs.putPair(KEY_DELTACRL_INTERVAL_MINUTES, Integer.toString(deltaCrlIntervalMinutes));
+    }
     pairs.putPair(KEY_EXCLUDE_REASON, Boolean.toString(excludeReason));
     pairs.putPair(KEY_FULLCRL_EXTENDED_NEXTUPDATE, Boolean.toString(extendedNextUpdate));
     pairs.putPair(KEY_FULLCRL_INTERVALS, Integer.toString(fullCrlIntervals));
@@ -282,6 +295,7 @@ public class CrlControl {
     return StringUtil.concatObjects(
         "  full CRL intervals: ", fullCrlIntervals,
         "\n  delta CRL intervals: ", deltaCrlIntervals,
+        "\n  delta CRL interval: ", deltaCrlIntervalMinutes, " minutes",
         "\n  overlap: ", overlapDays, " days",
         "\n  use extended nextUpdate: ", extendedNextUpdate,
         "\n  only user certificates: ", onlyContainsUserCerts,
@@ -300,6 +314,19 @@ public class CrlControl {
     return deltaCrlIntervals;
   }
 
+  public int getDeltaCrlIntervalMinutes() {
+    return deltaCrlIntervalMinutes;
+  }
+
+  /**
+   * Returns whether deltaCRLs will be generated.
+   * @return whether deltaCRLs will be generated.
+   */
+  public boolean isDeltaCrlEnabled() {
+    return deltaCrlIntervalMinutes > 0
+        || (deltaCrlIntervals > 0 && deltaCrlIntervals < fullCrlIntervals);
+  }
+
   public int getOverlapDays() {
     return overlapDays;
   }
@@ -353,6 +380,17 @@ public class CrlControl {
       throw new InvalidConfException(
           "deltaCRLIntervals may not be less than 0: " + deltaCrlIntervals);
     }
+
+    if (deltaCrlIntervalMinutes < 0) {
+      throw new InvalidConfException(
+          "deltaCRLIntervalMinutes may not be less than 0: " + deltaCrlIntervalMinutes);
+    }
+
+    if (deltaCrlIntervalMinutes >= fullCrlIntervals * 24 * 60) {
+      throw new InvalidConfException(
+          "deltaCRLIntervalMinutes must be less than fullCRLIntervals * 1440: "
+          + deltaCrlIntervalMinutes);
+    }
   } // method validate
 
   @Override
@@ -370,6 +408,7 @@ public class CrlControl {
 
     CrlControl obj2 = (CrlControl) obj;
     if (deltaCrlIntervals != obj2.deltaCrlIntervals
+        || deltaCrlIntervalMinutes != obj2.deltaCrlIntervalMinutes
         || extendedNextUpdate != obj2.extendedNextUpdate
         || fullCrlIntervals != obj2.fullCrlIntervals
         || onlyContainsCaCerts != obj2.onlyContainsCaCerts
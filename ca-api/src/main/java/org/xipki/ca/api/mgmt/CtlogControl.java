@@ -48,12 +48,30 @@ public class CtlogControl {
    */
   public static final String KEY_SSLCONTEXT_NAME = "sslcontext.name";
 
+  /**
+   * Minimal number of SCTs required to issue the certificate. The default is the number of
+   * CT Log servers.
+   */
+  public static final String KEY_QUORUM = "quorum";
+
+  /**
+   * Timeout in milliseconds to connect to and read from a CT Log server, also the maximal time
+   * to wait for the SCTs. The default is 10000.
+   */
+  public static final String KEY_TIMEOUT = "timeout";
+
+  public static final int DFLT_TIMEOUT = 10000;
+
   private boolean enabled;
 
   private String sslContextName;
 
   private List<String> servers;
 
+  private int quorum;
+
+  private int timeout;
+
   private String conf;
 
   public CtlogControl(String conf) throws InvalidConfException {
@@ -70,11 +88,20 @@ public class CtlogControl {
       throw new InvalidConfException(KEY_SERVERS + " is not specified");
     }
 
+    quorum = getInt(pairs, KEY_QUORUM, servers.size());
+    timeout = getInt(pairs, KEY_TIMEOUT, DFLT_TIMEOUT);
+    validate();
+
     this.conf = pairs.getEncoded();
   } // constructor
 
   public CtlogControl(Boolean enabled, List<String> servers, String sslContextName)
       throws InvalidConfException {
+    this(enabled, servers, sslContextName, null, null);
+  }
+
+  public CtlogControl(Boolean enabled, List<String> servers, String sslContextName,
+      Integer quorum, Integer timeout) throws InvalidConfException {
     Args.notEmpty(servers, "servers");
 
     ConfPairs pairs = new ConfPairs();
@@ -89,6 +116,17 @@ public class CtlogControl {
       pairs.putPair(KEY_SSLCONTEXT_NAME, sslContextName);
     }
 
+    this.quorum = (quorum == null) ? servers.size() : quorum;
+    if (quorum != null) {
+      pairs.putPair(KEY_QUORUM, Integer.toString(quorum));
+    }
+
+    this.timeout = (timeout == null) ? DFLT_TIMEOUT : timeout;
+    if (timeout != null) {
+      pairs.putPair(KEY_TIMEOUT, Integer.toString(timeout));
+    }
+    validate();
+
     this.conf = pairs.getEncoded();
   } // constructor
 
@@ -116,6 +154,14 @@ public class CtlogControl {
     this.servers = servers;
   }
 
+  public int getQuorum() {
+    return quorum;
+  }
+
+  public int getTimeout() {
+    return timeout;
+  }
+
   public void setEnabled(boolean enabled) {
     this.enabled = enabled;
   }
@@ -134,7 +180,9 @@ public class CtlogControl {
     return StringUtil.concatObjects(
         "  enabled: ", enabled,
         "\n  SSL context name: ", sslContextName,
-        "\n  Servers: ", servers);
+        "\n  Servers: ", servers,
+        "\n  quorum: ", quorum,
+        "\n  timeout: ", timeout, " ms");
   }
 
   @Override
@@ -148,6 +196,30 @@ public class CtlogControl {
     return conf.equals(((CtlogControl) obj).conf);
   }
 
+  private void validate() throws InvalidConfException {
+    if (quorum < 1 || quorum > servers.size()) {
+      throw new InvalidConfException(KEY_QUORUM + " is not in [1, " + servers.size() + "]");
+    }
+
+    if (timeout < 1) {
+      throw new InvalidConfException(KEY_TIMEOUT + " must be positive");
+    }
+  } // method validate
+
+  private static int getInt(ConfPairs pairs, String key, int defaultValue)
+      throws InvalidConfException {
+    String str = pairs.value(key);
+    if (StringUtil.isBlank(str)) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(str.trim());
+    } catch (NumberFormatException ex) {
+      throw new InvalidConfException("invalid " + key + ": " + str);
+    }
+  } // method getInt
+
   private static boolean getBoolean(ConfPairs pairs, String key, boolean defaultValue) {
     String str = pairs.value(key);
     boolean ret = StringUtil.isBlank(str) ? defaultValue : Boolean.parseBoolean(str);
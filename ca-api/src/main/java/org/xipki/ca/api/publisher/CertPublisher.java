@@ -18,6 +18,7 @@
 package org.xipki.ca.api.publisher;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.cert.X509CRLHolder;
@@ -81,6 +82,25 @@ public abstract class CertPublisher implements Closeable {
    */
   public abstract boolean certificateAdded(CertificateInfo certInfo);
 
+  /**
+   * Publishes certificates. The default implementation publishes the certificates one by one
+   * via {@link #certificateAdded(CertificateInfo)}, implementations may overwrite it to
+   * publish the certificates in bulk.
+   *
+   * @param certInfos
+   *          Certificates to be published. Must not be {@code null}.
+   * @return whether the certificates are published, one entry for each certificate.
+   * @since 5.3.9
+   */
+  public boolean[] certificatesAdded(List<CertificateInfo> certInfos) {
+    boolean[] ret = new boolean[certInfos.size()];
+    int idx = 0;
+    for (CertificateInfo certInfo : certInfos) {
+      ret[idx++] = certificateAdded(certInfo);
+    }
+    return ret;
+  } // method certificatesAdded
+
   /**
    * Publishes the revocation of a certificate.
    *
@@ -40,8 +40,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -274,6 +277,10 @@ public class CaManagerImpl implements CaManager, Closeable {
 
   private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
 
+  private ExecutorService certGenExecutor;
+
+  private KeypairPool keypairPool;
+
   private final Map<String, CmpResponder> cmpResponders = new ConcurrentHashMap<>();
 
   private final Map<String, ScepResponder> scepResponders = new ConcurrentHashMap<>();
@@ -416,6 +423,23 @@ public class CaManagerImpl implements CaManager, Closeable {
     int shardId = caServerConf.getShardId();
     LOG.info("ca.shardId: {}", shardId);
 
+    int certGenParallelism = caServerConf.getCertGenParallelism();
+    LOG.info("ca.certGenParallelism: {}", certGenParallelism);
+    if (certGenParallelism > 1 && certGenExecutor == null) {
+      AtomicInteger threadIndex = new AtomicInteger(1);
+      certGenExecutor = Executors.newFixedThreadPool(certGenParallelism, r -> {
+        Thread thread = new Thread(r, "cert-gen-" + threadIndex.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    int keypairPoolSize = caServerConf.getKeypairPoolSize();
+    LOG.info("ca.keypairPoolSize: {}", keypairPoolSize);
+    if (keypairPoolSize > 0 && keypairPool == null) {
+      keypairPool = new KeypairPool(keypairPoolSize, caServerConf.getKeypairPoolThreads());
+    }
+
     if (caServerConf.getCtLog() != null) {
       try {
         ctLogPublicKeyFinder = new CtLogPublicKeyFinder(caServerConf.getCtLog());
@@ -451,12 +475,25 @@ public class CaManagerImpl implements CaManager, Closeable {
     final long epoch = DateUtil.parseUtcTimeyyyyMMdd("20100101").getTime();
     UniqueIdGenerator idGen = new UniqueIdGenerator(epoch, shardId);
 
+    if (this.certstore != null) {
+      this.certstore.close();
+    }
+
     try {
       this.certstore = new CertStore(datasource, idGen);
     } catch (DataAccessException ex) {
       throw new CaMgmtException(ex.getMessage(), ex);
     }
 
+    int certStoreBatchSize = caServerConf.getCertStoreBatchSize();
+    LOG.info("ca.certStoreBatchSize: {}", certStoreBatchSize);
+    this.certstore.setBatchWriting(certStoreBatchSize, caServerConf.getCertStoreBatchDelay());
+
+    int verifiedPasswordCacheSize = caServerConf.getVerifiedPasswordCacheSize();
+    LOG.info("ca.verifiedPasswordCacheSize: {}", verifiedPasswordCacheSize);
+    this.certstore.setVerifiedPasswordCache(verifiedPasswordCacheSize,
+        caServerConf.getVerifiedPasswordCacheTtl());
+
     initCaAliases();
     initCertprofiles();
     initPublishers();
@@ -752,7 +789,8 @@ public class CaManagerImpl implements CaManager, Closeable {
           }
         }
       }
-      ctlogClient = new CtLogClient(ctlogControl.getServers(), ctxConf);
+      ctlogClient = new CtLogClient(ctlogControl.getServers(), ctxConf,
+          ctlogControl.getQuorum(), ctlogControl.getTimeout());
     }
 
     X509Ca ca;
@@ -802,6 +840,16 @@ public class CaManagerImpl implements CaManager, Closeable {
       persistentScheduledThreadPoolExecutor = null;
     }
 
+    if (certGenExecutor != null) {
+      certGenExecutor.shutdown();
+      certGenExecutor = null;
+    }
+
+    if (keypairPool != null) {
+      keypairPool.close();
+      keypairPool = null;
+    }
+
     for (String caName : x509cas.keySet()) {
       X509Ca ca = x509cas.get(caName);
       try {
@@ -819,6 +867,10 @@ public class CaManagerImpl implements CaManager, Closeable {
       }
     }
 
+    if (certstore != null) {
+      certstore.close();
+    }
+
     if (datasource != null) {
       try {
         datasource.close();
@@ -858,6 +910,22 @@ public class CaManagerImpl implements CaManager, Closeable {
     return scheduledThreadPoolExecutor;
   }
 
+  /**
+   * Returns the executor to generate the certificates of one request in parallel.
+   * @return the executor, or {@code null} if the certificates are generated sequentially.
+   */
+  public ExecutorService getCertGenExecutor() {
+    return certGenExecutor;
+  }
+
+  /**
+   * Returns the pool of pre-generated keypairs.
+   * @return the pool, or {@code null} if the keypairs are generated on demand.
+   */
+  KeypairPool getKeypairPool() {
+    return keypairPool;
+  }
+
   @Override
   public Set<String> getCertprofileNames() {
     return certprofileDbEntries.keySet();
@@ -2381,6 +2449,7 @@ public class CaManagerImpl implements CaManager, Closeable {
   public void changeUser(MgmtEntry.ChangeUser changeUserEntry) throws CaMgmtException {
     assertMasterModeAndSetuped();
     queryExecutor.changeUser(changeUserEntry);
+    certstore.invalidateVerifiedPassword(changeUserEntry.getIdent().getName().toLowerCase());
   }
 
   @Override
@@ -2390,6 +2459,7 @@ public class CaManagerImpl implements CaManager, Closeable {
     if (!queryExecutor.deleteRowWithName(username, "TUSER")) {
       throw new CaMgmtException("unknown user " + username);
     }
+    certstore.invalidateVerifiedPassword(username);
   } // method removeUser
 
   @Override
@@ -143,6 +143,46 @@ public class CaServerConf extends ValidatableConf {
    */
   private int shardId = 0;
 
+  /**
+   * number of threads to generate the certificates of one multi-template request in
+   * parallel, the default is 1 (sequential).
+   */
+  private int certGenParallelism = 1;
+
+  /**
+   * maximal number of certificates, requests and publish queue entries written to the
+   * database in one transaction (group commit), the default is 1 (no group commit).
+   */
+  private int certStoreBatchSize = 1;
+
+  /**
+   * maximal time in milliseconds to wait for further rows of a group commit, the default
+   * is 5.
+   */
+  private int certStoreBatchDelay = 5;
+
+  /**
+   * maximal number of pre-generated keypairs for each keypair generation control (algorithm,
+   * key size, curve), the default is 0 (no pre-generation).
+   */
+  private int keypairPoolSize = 0;
+
+  /**
+   * number of threads to pre-generate the keypairs, the default is 1.
+   */
+  private int keypairPoolThreads = 1;
+
+  /**
+   * maximal number of users whose successful authentication (REST, SCEP) is cached, the
+   * default is 0 (no cache).
+   */
+  private int verifiedPasswordCacheSize = 0;
+
+  /**
+   * time in seconds a successful user authentication is cached, the default is 300.
+   */
+  private int verifiedPasswordCacheTtl = 300;
+
   private List<DataSourceConf> datasources;
 
   private List<SslContext> sslContexts;
@@ -184,6 +224,62 @@ public class CaServerConf extends ValidatableConf {
     this.shardId = shardId;
   }
 
+  public int getCertGenParallelism() {
+    return certGenParallelism;
+  }
+
+  public void setCertGenParallelism(int certGenParallelism) {
+    this.certGenParallelism = certGenParallelism;
+  }
+
+  public int getCertStoreBatchSize() {
+    return certStoreBatchSize;
+  }
+
+  public void setCertStoreBatchSize(int certStoreBatchSize) {
+    this.certStoreBatchSize = certStoreBatchSize;
+  }
+
+  public int getCertStoreBatchDelay() {
+    return certStoreBatchDelay;
+  }
+
+  public void setCertStoreBatchDelay(int certStoreBatchDelay) {
+    this.certStoreBatchDelay = certStoreBatchDelay;
+  }
+
+  public int getKeypairPoolSize() {
+    return keypairPoolSize;
+  }
+
+  public void setKeypairPoolSize(int keypairPoolSize) {
+    this.keypairPoolSize = keypairPoolSize;
+  }
+
+  public int getKeypairPoolThreads() {
+    return keypairPoolThreads;
+  }
+
+  public void setKeypairPoolThreads(int keypairPoolThreads) {
+    this.keypairPoolThreads = keypairPoolThreads;
+  }
+
+  public int getVerifiedPasswordCacheSize() {
+    return verifiedPasswordCacheSize;
+  }
+
+  public void setVerifiedPasswordCacheSize(int verifiedPasswordCacheSize) {
+    this.verifiedPasswordCacheSize = verifiedPasswordCacheSize;
+  }
+
+  public int getVerifiedPasswordCacheTtl() {
+    return verifiedPasswordCacheTtl;
+  }
+
+  public void setVerifiedPasswordCacheTtl(int verifiedPasswordCacheTtl) {
+    this.verifiedPasswordCacheTtl = verifiedPasswordCacheTtl;
+  }
+
   public List<DataSourceConf> getDatasources() {
     return datasources;
   }
@@ -281,6 +377,34 @@ public class CaServerConf extends ValidatableConf {
       throw new InvalidConfException("shardId is not in [0, 127]");
     }
 
+    if (certGenParallelism < 1) {
+      throw new InvalidConfException("certGenParallelism must not be less than 1");
+    }
+
+    if (certStoreBatchSize < 1) {
+      throw new InvalidConfException("certStoreBatchSize must not be less than 1");
+    }
+
+    if (certStoreBatchDelay < 0) {
+      throw new InvalidConfException("certStoreBatchDelay must not be negative");
+    }
+
+    if (keypairPoolSize < 0) {
+      throw new InvalidConfException("keypairPoolSize must not be negative");
+    }
+
+    if (keypairPoolThreads < 1) {
+      throw new InvalidConfException("keypairPoolThreads must not be less than 1");
+    }
+
+    if (verifiedPasswordCacheSize < 0) {
+      throw new InvalidConfException("verifiedPasswordCacheSize must not be negative");
+    }
+
+    if (verifiedPasswordCacheTtl < 1) {
+      throw new InvalidConfException("verifiedPasswordCacheTtl must not be less than 1");
+    }
+
     notEmpty(datasources, "datasources");
     validate(remoteMgmt);
     validate(security);
@@ -20,6 +20,7 @@ package org.xipki.ca.server;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -59,19 +60,19 @@ class CertRepublisher {
 
   } // class QueueEntry
 
-  private class SerialWithIdQueueEntry implements QueueEntry {
+  private class SerialWithIdsQueueEntry implements QueueEntry {
 
-    private final CertStore.SerialWithId serialWithId;
+    private final List<CertStore.SerialWithId> serialWithIds;
 
-    public SerialWithIdQueueEntry(CertStore.SerialWithId serialWithId) {
-      this.serialWithId = Args.notNull(serialWithId, "serialWithId");
+    public SerialWithIdsQueueEntry(List<CertStore.SerialWithId> serialWithIds) {
+      this.serialWithIds = Args.notEmpty(serialWithIds, "serialWithIds");
     }
 
-    public CertStore.SerialWithId serialWithId() {
-      return serialWithId;
+    public List<CertStore.SerialWithId> serialWithIds() {
+      return serialWithIds;
     }
 
-  } // class SerialWithIdQueueEntry
+  } // class SerialWithIdsQueueEntry
 
   private class CertRepublishProducer implements Runnable {
 
@@ -94,7 +95,10 @@ class CertRepublisher {
             if (sid.getId() > maxId) {
               maxId = sid.getId();
             }
-            queue.put(new SerialWithIdQueueEntry(sid));
+          }
+
+          if (!serials.isEmpty()) {
+            queue.put(new SerialWithIdsQueueEntry(serials));
           }
 
           startId = maxId + 1;
@@ -149,12 +153,15 @@ class CertRepublisher {
           break;
         }
 
-        CertStore.SerialWithId sid = ((SerialWithIdQueueEntry) entry).serialWithId();
-
-        CertificateInfo certInfo;
+        List<CertStore.SerialWithId> sids = ((SerialWithIdsQueueEntry) entry).serialWithIds();
+        List<Long> certIds = new ArrayList<>(sids.size());
+        for (CertStore.SerialWithId sid : sids) {
+          certIds.add(sid.getId());
+        }
 
+        Map<Long, CertificateInfo> certInfos;
         try {
-          certInfo = certstore.getCertForId(ca, caCert, sid.getId(), caIdNameMap);
+          certInfos = certstore.getCertsForIds(ca, caCert, certIds, caIdNameMap);
         } catch (OperationException | CertificateException ex) {
           LogUtil.error(LOG, ex);
           failed = true;
@@ -163,22 +170,36 @@ class CertRepublisher {
 
         boolean allSucc = true;
         for (IdentifiedCertPublisher publisher : publishers) {
-          if (!certInfo.isRevoked() && !publisher.publishsGoodCert()) {
+          List<CertStore.SerialWithId> toPublishSids = new ArrayList<>(sids.size());
+          List<CertificateInfo> toPublish = new ArrayList<>(sids.size());
+          for (CertStore.SerialWithId sid : sids) {
+            CertificateInfo certInfo = certInfos.get(sid.getId());
+            // the certificate may have been removed in the meantime
+            if (certInfo == null || (!certInfo.isRevoked() && !publisher.publishsGoodCert())) {
+              continue;
+            }
+            toPublishSids.add(sid);
+            toPublish.add(certInfo);
+          }
+
+          if (toPublish.isEmpty()) {
             continue;
           }
 
-          boolean successful = publisher.certificateAdded(certInfo);
-          if (!successful) {
-            LOG.error("republish certificate serial={} to publisher {} failed",
-                LogUtil.formatCsn(sid.getSerial()), publisher.getIdent());
-            allSucc = false;
+          boolean[] successful = publisher.certificatesAdded(toPublish);
+          for (int i = 0; i < successful.length; i++) {
+            if (!successful[i]) {
+              LOG.error("republish certificate serial={} to publisher {} failed",
+                  LogUtil.formatCsn(toPublishSids.get(i).getSerial()), publisher.getIdent());
+              allSucc = false;
+            }
           }
         }
 
         if (!allSucc) {
           break;
         }
-        processLog.addNumProcessed(1);
+        processLog.addNumProcessed(sids.size());
       }
     } // method run
 
@@ -200,7 +221,7 @@ class CertRepublisher {
 
   private final int numThreads;
 
-  private final BlockingQueue<QueueEntry> queue = new ArrayBlockingQueue<>(1000);
+  private final BlockingQueue<QueueEntry> queue = new ArrayBlockingQueue<>(10);
 
   private final AtomicBoolean stopMe = new AtomicBoolean(false);
 
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -61,8 +62,10 @@ import org.xipki.ca.api.mgmt.CertListInfo;
 import org.xipki.ca.api.mgmt.CertListOrderBy;
 import org.xipki.ca.api.mgmt.CertWithRevocationInfo;
 import org.xipki.ca.api.mgmt.MgmtEntry;
+import org.xipki.ca.server.CertStoreBatchWriter.ParamsSetter;
 import org.xipki.datasource.DataAccessException;
 import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.datasource.DatabaseType;
 import org.xipki.security.CertRevocationInfo;
 import org.xipki.security.CrlReason;
 import org.xipki.security.HashAlgo;
@@ -92,6 +95,16 @@ public class CertStore {
 
   } // class CertStatus
 
+  /**
+   * Handler of the revoked certificates read by
+   * {@link CertStore#getRevokedCerts(NameId, Date, boolean, boolean, RevokedCertHandler)}.
+   */
+  public interface RevokedCertHandler {
+
+    void handle(CertRevInfoWithSerial revInfo) throws OperationException;
+
+  } // class RevokedCertHandler
+
   private class DbSchemaInfo {
     private final Map<String, String> variables = new HashMap<>();
 
@@ -244,8 +257,6 @@ public class CertStore {
 
   private final String sqlKnowsCertForSerial;
 
-  private final String sqlRevForId;
-
   private final String sqlCertStatusForSubjectFp;
 
   private final String sqlCertforSubjectIssued;
@@ -266,11 +277,7 @@ public class CertStore {
 
   private final LruCache<Integer, String> cacheSqlSuspendedSerials = new LruCache<>(5);
 
-  private final LruCache<Integer, String> cacheSqlDeltaCrlCacheIds = new LruCache<>(5);
-
-  private final LruCache<Integer, String> cacheSqlRevokedCerts = new LruCache<>(5);
-
-  private final LruCache<Integer, String> cacheSqlRevokedCertsWithEe = new LruCache<>(5);
+  private final LruCache<Integer, String> cacheSqlDeltaCrlCacheEntries = new LruCache<>(5);
 
   private final LruCache<Integer, String> cacheSqlSerials = new LruCache<>(5);
 
@@ -285,6 +292,10 @@ public class CertStore {
 
   private final UniqueIdGenerator idGenerator;
 
+  private volatile CertStoreBatchWriter batchWriter;
+
+  private volatile VerifiedPasswordCache verifiedPasswordCache;
+
   public CertStore(DataSourceWrapper datasource, UniqueIdGenerator idGenerator)
       throws DataAccessException {
     this.datasource = Args.notNull(datasource, "datasource");
@@ -307,7 +318,6 @@ public class CertStore {
     this.sqlCaHasUser = buildSelectFirstSql(
         "PERMISSION,PROFILES FROM CA_HAS_USER WHERE CA_ID=? AND USER_ID=?");
     this.sqlKnowsCertForSerial = buildSelectFirstSql("UID FROM CERT WHERE SN=? AND CA_ID=?");
-    this.sqlRevForId = buildSelectFirstSql("SN,EE,REV,RR,RT,RIT FROM CERT WHERE ID=?");
     this.sqlCertStatusForSubjectFp = buildSelectFirstSql("REV FROM CERT WHERE FP_S=? AND CA_ID=?");
     this.sqlCertforSubjectIssued = buildSelectFirstSql("ID FROM CERT WHERE CA_ID=? AND FP_S=?");
     this.sqlReqIdForSerial = buildSelectFirstSql("REQCERT.RID as REQ_ID FROM REQCERT INNER JOIN "
@@ -321,6 +331,63 @@ public class CertStore {
         "THISUPDATE,CRL FROM CRL WHERE CA_ID=? AND CRL_NO=?");
   } // constructor
 
+  /**
+   * Enables the group commit of the INSERT statements for the tables CERT, REQUEST, REQCERT
+   * and PUBLISHQUEUE.
+   *
+   * @param batchSize
+   *          Maximal number of rows written in one transaction. Values less than 2 disable
+   *          the group commit.
+   * @param batchDelay
+   *          Maximal time in milliseconds to wait for further rows.
+   */
+  public void setBatchWriting(int batchSize, int batchDelay) {
+    CertStoreBatchWriter oldWriter = batchWriter;
+    batchWriter = (batchSize < 2) ? null
+        : new CertStoreBatchWriter(datasource, batchSize, batchDelay);
+    if (oldWriter != null) {
+      oldWriter.close();
+    }
+  } // method setBatchWriting
+
+  /**
+   * Enables the cache of successful user authentications.
+   *
+   * @param size
+   *          Maximal number of cached users. Values less than 1 disable the cache.
+   * @param ttl
+   *          Time in seconds a successful authentication is cached.
+   */
+  public void setVerifiedPasswordCache(int size, int ttl) {
+    verifiedPasswordCache = (size < 1) ? null : new VerifiedPasswordCache(size, ttl);
+  }
+
+  VerifiedPasswordCache getVerifiedPasswordCache() {
+    return verifiedPasswordCache;
+  }
+
+  /**
+   * Removes the cached authentications of the given user. Must be called if the user is changed
+   * or removed.
+   *
+   * @param user
+   *          User name.
+   */
+  public void invalidateVerifiedPassword(String user) {
+    VerifiedPasswordCache cache = verifiedPasswordCache;
+    if (cache != null) {
+      cache.remove(user);
+    }
+  }
+
+  public void close() {
+    CertStoreBatchWriter writer = batchWriter;
+    batchWriter = null;
+    if (writer != null) {
+      writer.close();
+    }
+  }
+
   private String buildSelectFirstSql(String coreSql) {
     return datasource.buildSelectFirstSql(1, coreSql);
   }
@@ -360,13 +427,14 @@ public class CertStore {
     String reqSubjectText = null;
     Long fpReqSubject = null;
     if (reqSubject != null) {
-      fpReqSubject = X509Util.fpCanonicalizedName(reqSubject);
-      if (fpSubject == fpReqSubject) {
-        fpReqSubject = null;
-      } else {
+      long fp = X509Util.fpCanonicalizedName(reqSubject);
+      if (fpSubject != fp) {
+        fpReqSubject = fp;
         reqSubjectText = X509Util.cutX500Name(CaUtil.sortX509Name(reqSubject), maxX500nameLen);
       }
     }
+    final String reqSubjectText0 = reqSubjectText;
+    final Long fpReqSubject0 = fpReqSubject;
 
     byte[] encodedCert = certificate.getCert().getEncoded();
     String b64FpCert = base64Fp(encodedCert);
@@ -374,9 +442,7 @@ public class CertStore {
     String tid = (transactionId == null) ? null : Base64.encodeToString(transactionId);
 
     final String sql = dbSchemaVersion < 5 ? SQL_ADD_CERT_V4 : SQL_ADD_CERT;
-    PreparedStatement ps = borrowPreparedStatement(sql);
-
-    try {
+    executeInsert(sql, ps -> {
       // cert
       X509Cert cert = certificate.getCert();
       int idx = 1;
@@ -385,7 +451,7 @@ public class CertStore {
       ps.setString(idx++, cert.getSerialNumber().toString(16));
       ps.setString(idx++, subjectText);
       ps.setLong(idx++, fpSubject);
-      setLong(ps, idx++, fpReqSubject);
+      setLong(ps, idx++, fpReqSubject0);
       ps.setLong(idx++, cert.getNotBefore().getTime() / 1000); // notBeforeSeconds
       ps.setLong(idx++, cert.getNotAfter().getTime() / 1000); // notAfterSeconds
       setBoolean(ps, idx++, false);
@@ -399,46 +465,59 @@ public class CertStore {
       ps.setString(idx++, tid);
 
       ps.setString(idx++, b64FpCert);
-      ps.setString(idx++, reqSubjectText);
+      ps.setString(idx++, reqSubjectText0);
       // in this version we set CRL_SCOPE to fixed value 0
       ps.setInt(idx++, 0);
       ps.setString(idx++, b64Cert);
+    });
 
-      ps.executeUpdate();
-
-      certificate.setCertId(certId);
-    } catch (SQLException ex) {
-      throw datasource.translate(sql, ex);
-    } finally {
-      datasource.releaseResources(ps, null);
-    }
+    certificate.setCertId(certId);
   } // method addCert
 
   public void addToPublishQueue(NameId publisher, long certId, NameId ca)
       throws OperationException {
     Args.notNull(ca, "ca");
 
-    final String sql = SQL_INSERT_PUBLISHQUEUE;
+    try {
+      executeInsert(SQL_INSERT_PUBLISHQUEUE, ps -> {
+        ps.setInt(1, publisher.getId());
+        ps.setInt(2, ca.getId());
+        ps.setLong(3, certId);
+      });
+    } catch (DataAccessException ex) {
+      throw new OperationException(DATABASE_FAILURE, ex.getMessage());
+    }
+  } // method addToPublishQueue
+
+  public void removeFromPublishQueue(NameId publisher, long certId) throws OperationException {
+    final String sql = SQL_REMOVE_PUBLISHQUEUE;
     PreparedStatement ps = borrowPreparedStatement(sql);
     try {
       ps.setInt(1, publisher.getId());
-      ps.setInt(2, ca.getId());
-      ps.setLong(3, certId);
+      ps.setLong(2, certId);
       ps.executeUpdate();
     } catch (SQLException ex) {
       throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
     } finally {
       datasource.releaseResources(ps, null);
     }
-  } // method addToPublishQueue
+  } // method removeFromPublishQueue
+
+  public void removeFromPublishQueue(NameId publisher, List<Long> certIds)
+      throws OperationException {
+    if (certIds.isEmpty()) {
+      return;
+    }
 
-  public void removeFromPublishQueue(NameId publisher, long certId) throws OperationException {
     final String sql = SQL_REMOVE_PUBLISHQUEUE;
     PreparedStatement ps = borrowPreparedStatement(sql);
     try {
-      ps.setInt(1, publisher.getId());
-      ps.setLong(2, certId);
-      ps.executeUpdate();
+      for (Long certId : certIds) {
+        ps.setInt(1, publisher.getId());
+        ps.setLong(2, certId);
+        ps.addBatch();
+      }
+      ps.executeBatch();
     } catch (SQLException ex) {
       throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
     } finally {
@@ -1158,6 +1237,80 @@ public class CertStore {
       datasource.releaseResources(ps, rs);
     }
 
+    return toCertificateInfo(ca, caCert, certId, b64Cert, certprofileId, requestorId,
+        revoked, revReason, revTime, revInvTime, idNameMap);
+  } // method getCertForId
+
+  /**
+   * Retrieves the certificates for the given IDs with bulk queries.
+   *
+   * @param ca
+   *          CA.
+   * @param caCert
+   *          CA certificate.
+   * @param certIds
+   *          IDs of the certificates.
+   * @param idNameMap
+   *          ID name map.
+   * @return map of ID to the certificate, IDs without certificate are not contained.
+   * @throws OperationException
+   *           If error occurs while reading the database.
+   * @throws CertificateException
+   *           If a certificate could not be parsed.
+   */
+  public Map<Long, CertificateInfo> getCertsForIds(NameId ca, X509Cert caCert,
+      List<Long> certIds, CaIdNameMap idNameMap)
+          throws OperationException, CertificateException {
+    Args.notNull(ca, "ca");
+    Args.notNull(caCert, "caCert");
+    Args.notNull(certIds, "certIds");
+    Args.notNull(idNameMap, "idNameMap");
+
+    final int maxIdsPerQuery = 100;
+    Map<Long, CertificateInfo> ret = new HashMap<>();
+
+    for (int offset = 0; offset < certIds.size(); offset += maxIdsPerQuery) {
+      List<Long> ids = certIds.subList(offset,
+          Math.min(certIds.size(), offset + maxIdsPerQuery));
+
+      StringBuilder sb = new StringBuilder(80 + 2 * ids.size());
+      sb.append("SELECT ID,PID,RID,REV,RR,RT,RIT,CERT FROM CERT WHERE ID IN (");
+      for (int i = 0; i < ids.size(); i++) {
+        sb.append(i == 0 ? "?" : ",?");
+      }
+      final String sql = sb.append(")").toString();
+
+      ResultSet rs = null;
+      PreparedStatement ps = borrowPreparedStatement(sql);
+      try {
+        int idx = 1;
+        for (Long id : ids) {
+          ps.setLong(idx++, id);
+        }
+        rs = ps.executeQuery();
+
+        while (rs.next()) {
+          long certId = rs.getLong("ID");
+          boolean revoked = rs.getBoolean("REV");
+          ret.put(certId, toCertificateInfo(ca, caCert, certId, rs.getString("CERT"),
+              rs.getInt("PID"), rs.getInt("RID"), revoked,
+              revoked ? rs.getInt("RR") : 0, revoked ? rs.getLong("RT") : 0,
+              revoked ? rs.getLong("RIT") : 0, idNameMap));
+        }
+      } catch (SQLException ex) {
+        throw new OperationException(DATABASE_FAILURE,
+            datasource.translate(sql, ex).getMessage());
+      } finally {
+        datasource.releaseResources(ps, rs);
+      }
+    }
+
+    return ret;
+  } // method getCertsForIds
+
+  private static CertificateInfo toCertificateInfo(NameId ca, X509Cert caCert, long certId,
+      String b64Cert, int certprofileId, int requestorId, boolean revoked, int revReason,
+      long revTime, long revInvTime, CaIdNameMap idNameMap) throws CertificateException {
     byte[] encodedCert = Base64.decodeFast(b64Cert);
     X509Cert cert = X509Util.parseCert(encodedCert);
     CertWithDbId certWithMeta = new CertWithDbId(cert);
@@ -1174,7 +1327,7 @@ public class CertStore {
         new Date(revTime * 1000), invalidityTime);
     certInfo.setRevocationInfo(revInfo);
     return certInfo;
-  } // method getCertForId
+  } // method toCertificateInfo
 
   public CertWithRevocationInfo getCertWithRevocationInfo(int caId, BigInteger serial,
       CaIdNameMap idNameMap) throws OperationException {
@@ -1535,6 +1688,16 @@ public class CertStore {
   } // method listCerts
 
   public NameId authenticateUser(String user, byte[] password) throws OperationException {
+    VerifiedPasswordCache cache = verifiedPasswordCache;
+    long cacheGeneration = 0;
+    if (cache != null) {
+      NameId ident = cache.get(user, password);
+      if (ident != null) {
+        return ident;
+      }
+      cacheGeneration = cache.generation();
+    }
+
     final String sql = sqlActiveUserInfoForName;
 
     int id;
@@ -1564,7 +1727,15 @@ public class CertStore {
     }
 
     boolean valid = PasswordHash.validatePassword(password, expPasswordText);
-    return valid ? new NameId(id, user) : null;
+    if (!valid) {
+      return null;
+    }
+
+    NameId ident = new NameId(id, user);
+    if (cache != null) {
+      cache.put(user, password, ident, cacheGeneration);
+    }
+    return ident;
   } // method authenticateUser
 
   public String getUsername(int id) throws OperationException {
@@ -1642,24 +1813,60 @@ public class CertStore {
     }
   } // method knowsCertForSerial
 
-  public List<CertRevInfoWithSerial> getRevokedCerts(NameId ca, Date notExpiredAt, long startId,
-      int numEntries, boolean onlyCaCerts, boolean onlyUserCerts) throws OperationException {
+  /**
+   * Reads the revoked certificates in the order of their serial numbers with one cursor, and
+   * passes them one by one to the handler, so that the revoked certificates are not cached in
+   * memory.
+   *
+   * <p>The cursor uses a dedicated connection with autoCommit disabled, since otherwise the
+   * JDBC drivers of PostgreSQL and MySQL read the whole result set into memory.
+   *
+   * @param ca
+   *          CA.
+   * @param notExpiredAt
+   *          Only certificates not expired at this time are considered.
+   * @param onlyCaCerts
+   *          Whether only CA certificates are considered.
+   * @param onlyUserCerts
+   *          Whether only user certificates are considered.
+   * @param handler
+   *          Handler of the revoked certificates.
+   * @return number of revoked certificates.
+   * @throws OperationException
+   *           If error occurs while reading the database or handling the revoked certificates.
+   */
+  public int getRevokedCerts(NameId ca, Date notExpiredAt, boolean onlyCaCerts,
+      boolean onlyUserCerts, RevokedCertHandler handler) throws OperationException {
     Args.notNull(ca, "ca");
     Args.notNull(notExpiredAt, "notExpiredAt");
-    Args.positive(numEntries, "numEntries");
+    Args.notNull(handler, "handler");
     if (onlyCaCerts && onlyUserCerts) {
       throw new IllegalArgumentException("onlyCaCerts and onlyUserCerts cannot be both of true");
     }
     boolean withEe = onlyCaCerts || onlyUserCerts;
 
-    String sql = getSqlRevokedCerts(numEntries, withEe);
+    // serial numbers are saved as hex strings without leading zeros
+    String sql = StringUtil.concat("SELECT SN,RR,RT,RIT FROM CERT WHERE CA_ID=? AND REV=1",
+        " AND NAFTER>?", (withEe ? " AND EE=?" : ""), " ORDER BY LENGTH(SN),SN");
 
-    ResultSet rs = null;
-    PreparedStatement ps = borrowPreparedStatement(sql);
+    Connection conn;
+    try {
+      conn = datasource.getConnection();
+    } catch (DataAccessException ex) {
+      throw new OperationException(DATABASE_FAILURE, ex.getMessage());
+    }
 
+    ResultSet rs = null;
+    PreparedStatement ps = null;
     try {
+      conn.setAutoCommit(false);
+      ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      DatabaseType dbType = datasource.getDatabaseType();
+      // MySQL and MariaDB stream the rows only with the fetch size Integer.MIN_VALUE
+      ps.setFetchSize(dbType == DatabaseType.MYSQL || dbType == DatabaseType.MARIADB
+          ? Integer.MIN_VALUE : 1000);
+
       int idx = 1;
-      ps.setLong(idx++, startId - 1);
       ps.setInt(idx++, ca.getId());
       ps.setLong(idx++, notExpiredAt.getTime() / 1000 + 1);
       if (withEe) {
@@ -1667,92 +1874,93 @@ public class CertStore {
       }
       rs = ps.executeQuery();
 
-      List<CertRevInfoWithSerial> ret = new LinkedList<>();
+      int num = 0;
       while (rs.next()) {
         long revInvalidityTime = rs.getLong("RIT");
         Date invalidityTime = (revInvalidityTime == 0) ? null : new Date(1000 * revInvalidityTime);
-        CertRevInfoWithSerial revInfo = new CertRevInfoWithSerial(rs.getLong("ID"),
+        // ID is not required
+        CertRevInfoWithSerial revInfo = new CertRevInfoWithSerial(0,
             new BigInteger(rs.getString("SN"), 16), rs.getInt("RR"), // revReason
             new Date(1000 * rs.getLong("RT")), invalidityTime);
-        ret.add(revInfo);
+        handler.handle(revInfo);
+        num++;
       }
 
-      return ret;
+      return num;
     } catch (SQLException ex) {
       throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
     } finally {
-      datasource.releaseResources(ps, rs);
+      datasource.releaseResources(ps, rs, false);
+      try {
+        // read-only, nothing to commit
+        conn.rollback();
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LOG.warn("could not reset the connection: {}", ex.getMessage());
+      }
+      datasource.returnConnection(conn);
     }
   } // method getRevokedCerts
 
+  /**
+   * Returns the current revocation information of the certificates referenced by the entries in
+   * the table DELTACRL_CACHE, ordered by the ID of the entries.
+   *
+   * @param ca
+   *          CA.
+   * @param startId
+   *          Minimal ID of the DELTACRL_CACHE entries.
+   * @param numEntries
+   *          Maximal number of entries to be returned.
+   * @param onlyCaCerts
+   *          Whether only CA certificates are considered.
+   * @param onlyUserCerts
+   *          Whether only user certificates are considered.
+   * @return the revocation information, its id is the ID of the DELTACRL_CACHE entry.
+   * @throws OperationException
+   *           if database error occurs.
+   */
   public List<CertRevInfoWithSerial> getCertsForDeltaCrl(NameId ca, long startId, int numEntries,
       boolean onlyCaCerts, boolean onlyUserCerts) throws OperationException {
     Args.notNull(ca, "ca");
     Args.positive(numEntries, "numEntries");
 
-    String sql = getSqlDeltaCrlCacheIds(numEntries);
-    List<Long> ids = new LinkedList<>();
+    final String sql = getSqlDeltaCrlCacheEntries(numEntries);
+    List<CertRevInfoWithSerial> ret = new ArrayList<>();
     ResultSet rs = null;
 
     PreparedStatement ps = borrowPreparedStatement(sql);
     try {
-      ps.setLong(1, startId - 1);
-      ps.setInt(2, ca.getId());
+      int idx = 1;
+      ps.setLong(idx++, startId - 1);
+      ps.setInt(idx++, ca.getId());
+      // filter in the database, otherwise a filtered page would be considered as the last one
+      ps.setInt(idx++, onlyUserCerts ? 1 : 0);
+      ps.setInt(idx++, onlyCaCerts ? 0 : 1);
       rs = ps.executeQuery();
+
       while (rs.next()) {
         long id = rs.getLong("ID");
-        ids.add(id);
-      }
-    } catch (SQLException ex) {
-      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
-    } finally {
-      datasource.releaseResources(ps, rs);
-    }
-
-    sql = sqlRevForId;
-    ps = borrowPreparedStatement(sql);
-
-    List<CertRevInfoWithSerial> ret = new ArrayList<>();
-    for (Long id : ids) {
-      try {
-        ps.setLong(1, id);
-        rs = ps.executeQuery();
-
-        if (!rs.next()) {
-          continue;
-        }
-
-        int ee = rs.getInt("EE");
-        if (onlyCaCerts) {
-          if (ee != 0) {
-            continue;
-          }
-        } else if (onlyUserCerts) {
-          if (ee != 1) {
-            continue;
-          }
-        }
-
         CertRevInfoWithSerial revInfo;
 
-        String serial = rs.getString("SN");
-        boolean revoked = rs.getBoolean("REVOEKD");
+        BigInteger serial = new BigInteger(rs.getString("SN"), 16);
+        boolean revoked = rs.getBoolean("REV");
         if (revoked) {
           long revInvTime = rs.getLong("RIT");
           Date invalidityTime = (revInvTime == 0) ? null : new Date(1000 * revInvTime);
-          revInfo = new CertRevInfoWithSerial(id, new BigInteger(serial, 16), rs.getInt("RR"),
+          revInfo = new CertRevInfoWithSerial(id, serial, rs.getInt("RR"),
               new Date(1000 * rs.getLong("RT")), invalidityTime);
         } else {
-          revInfo = new CertRevInfoWithSerial(id, new BigInteger(serial, 16),
+          revInfo = new CertRevInfoWithSerial(id, serial,
               CrlReason.REMOVE_FROM_CRL.getCode(), new Date(1000 * rs.getLong("LUPDATE")), null);
         }
         ret.add(revInfo);
-      } catch (SQLException ex) {
-        throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
-      } finally {
-        datasource.releaseResources(null, rs);
       }
-    } // end for
+    } catch (SQLException ex) {
+      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
 
     return ret;
   } // method getCertsForDeltaCrl
@@ -1895,37 +2103,52 @@ public class CertStore {
     long id = idGenerator.nextId();
     long currentTimeSeconds = System.currentTimeMillis() / 1000;
     String b64Request = Base64.encodeToString(request);
-    final String sql = SQL_ADD_REQUEST;
-    PreparedStatement ps = borrowPreparedStatement(sql);
     try {
-      ps.setLong(1, id);
-      ps.setLong(2, currentTimeSeconds);
-      ps.setString(3, b64Request);
-      ps.executeUpdate();
-    } catch (SQLException ex) {
-      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
-    } finally {
-      datasource.releaseResources(ps, null);
+      executeInsert(SQL_ADD_REQUEST, ps -> {
+        ps.setLong(1, id);
+        ps.setLong(2, currentTimeSeconds);
+        ps.setString(3, b64Request);
+      });
+    } catch (DataAccessException ex) {
+      throw new OperationException(DATABASE_FAILURE, ex.getMessage());
     }
 
     return id;
   } // method addRequest
 
   public void addRequestCert(long requestId, long certId) throws OperationException {
-    final String sql = SQL_ADD_REQCERT;
     long id = idGenerator.nextId();
-    PreparedStatement ps = borrowPreparedStatement(sql);
     try {
-      ps.setLong(1, id);
-      ps.setLong(2, requestId);
-      ps.setLong(3, certId);
+      executeInsert(SQL_ADD_REQCERT, ps -> {
+        ps.setLong(1, id);
+        ps.setLong(2, requestId);
+        ps.setLong(3, certId);
+      });
+    } catch (DataAccessException ex) {
+      throw new OperationException(DATABASE_FAILURE, ex.getMessage());
+    }
+  } // method addRequestCert
+
+  /**
+   * Executes the INSERT statement, within the next group commit if batch writing is enabled.
+   */
+  private void executeInsert(String sql, ParamsSetter setter) throws DataAccessException {
+    CertStoreBatchWriter writer = batchWriter;
+    if (writer != null) {
+      writer.write(sql, setter);
+      return;
+    }
+
+    PreparedStatement ps = datasource.prepareStatement(sql);
+    try {
+      setter.set(ps);
       ps.executeUpdate();
     } catch (SQLException ex) {
-      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
+      throw datasource.translate(sql, ex);
     } finally {
       datasource.releaseResources(ps, null);
     }
-  } // method addRequestCert
+  } // method executeInsert
 
   private String getSqlCidFromPublishQueue(int numEntries) {
     String sql = cacheSqlCidFromPublishQueue.get(numEntries);
@@ -1956,30 +2179,17 @@ public class CertStore {
     return sql;
   } // method getSqlSuspendedSerials
 
-  private String getSqlDeltaCrlCacheIds(int numEntries) {
-    String sql = cacheSqlDeltaCrlCacheIds.get(numEntries);
-    if (sql == null) {
-      sql = datasource.buildSelectFirstSql(numEntries, "ID ASC",
-          "ID FROM DELTACRL_CACHE WHERE ID>? AND CA_ID=?");
-      cacheSqlDeltaCrlCacheIds.put(numEntries, sql);
-    }
-    return sql;
-  } // method getSqlDeltaCrlCacheIds
-
-  private String getSqlRevokedCerts(int numEntries, boolean withEe) {
-    LruCache<Integer, String> cache = withEe ? cacheSqlRevokedCertsWithEe : cacheSqlRevokedCerts;
-    String sql = cache.get(numEntries);
+  private String getSqlDeltaCrlCacheEntries(int numEntries) {
+    String sql = cacheSqlDeltaCrlCacheEntries.get(numEntries);
     if (sql == null) {
-      String coreSql =
-          "ID,SN,RR,RT,RIT FROM CERT WHERE ID>? AND CA_ID=? AND REV=1 AND NAFTER>?";
-      if (withEe) {
-        coreSql += " AND EE=?";
-      }
-      sql = datasource.buildSelectFirstSql(numEntries, "ID ASC", coreSql);
-      cache.put(numEntries, sql);
+      // the certificate is joined via CA_ID and SN, the unique constraint CONST_CA_SN
+      sql = datasource.buildSelectFirstSql(numEntries, "D.ID ASC",
+          "D.ID,C.SN,C.REV,C.RR,C.RT,C.RIT,C.LUPDATE FROM DELTACRL_CACHE D INNER JOIN CERT C"
+          + " ON C.CA_ID=D.CA_ID AND C.SN=D.SN WHERE D.ID>? AND D.CA_ID=? AND C.EE IN (?,?)");
+      cacheSqlDeltaCrlCacheEntries.put(numEntries, sql);
     }
     return sql;
-  } // method getSqlRevokedCerts
+  } // method getSqlDeltaCrlCacheEntries
 
   private String getSqlSerials(int numEntries, boolean onlyRevoked) {
     LruCache<Integer, String> cache = onlyRevoked ? cacheSqlSerialsRevoked : cacheSqlSerials;
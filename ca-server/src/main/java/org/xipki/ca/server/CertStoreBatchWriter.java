@@ -0,0 +1,295 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+/**
+ * Group-commit writer of the {@link CertStore}. The INSERT statements of concurrent threads
+ * are collected for up to a configured delay or until the maximal batch size is reached,
+ * and are then executed as JDBC batches within one transaction. The callers are blocked
+ * until the transaction containing their rows has been committed.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class CertStoreBatchWriter implements Closeable {
+
+  /**
+   * Sets the parameters of a prepared statement.
+   */
+  interface ParamsSetter {
+
+    void set(PreparedStatement ps) throws SQLException;
+
+  } // class ParamsSetter
+
+  private static class Row {
+
+    private final String sql;
+
+    private final ParamsSetter setter;
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    Row(String sql, ParamsSetter setter) {
+      this.sql = sql;
+      this.setter = setter;
+    }
+
+  } // class Row
+
+  private static final Logger LOG = LoggerFactory.getLogger(CertStoreBatchWriter.class);
+
+  private final DataSourceWrapper datasource;
+
+  private final int maxBatchSize;
+
+  private final long maxDelayNanos;
+
+  private final BlockingQueue<Row> queue = new LinkedBlockingQueue<>();
+
+  private final Thread writer;
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param datasource
+   *          The datasource.
+   * @param maxBatchSize
+   *          Maximal number of rows written in one transaction.
+   * @param maxDelay
+   *          Maximal time in milliseconds to wait for further rows.
+   */
+  CertStoreBatchWriter(DataSourceWrapper datasource, int maxBatchSize, int maxDelay) {
+    this.datasource = Args.notNull(datasource, "datasource");
+    this.maxBatchSize = Args.positive(maxBatchSize, "maxBatchSize");
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Args.notNegative(maxDelay, "maxDelay"));
+
+    this.writer = new Thread(this::run, "certstore-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  } // constructor
+
+  /**
+   * Executes the INSERT statement within the next group commit, and waits until the
+   * transaction has been committed.
+   *
+   * @param sql
+   *          The SQL statement.
+   * @param setter
+   *          The setter of the statement parameters.
+   * @throws DataAccessException
+   *           If the row could not be written.
+   */
+  void write(String sql, ParamsSetter setter) throws DataAccessException {
+    Row row = new Row(Args.notNull(sql, "sql"), Args.notNull(setter, "setter"));
+    if (closed) {
+      throw new DataAccessException("CertStoreBatchWriter is closed");
+    }
+    queue.add(row);
+
+    try {
+      row.future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new DataAccessException("interrupted");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof DataAccessException) {
+        throw (DataAccessException) cause;
+      }
+      throw new DataAccessException(cause.getMessage(), cause);
+    }
+  } // method write
+
+  @Override
+  public void close() {
+    closed = true;
+    writer.interrupt();
+    try {
+      writer.join(5000);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    Row row;
+    while ((row = queue.poll()) != null) {
+      row.future.completeExceptionally(
+          new DataAccessException("CertStoreBatchWriter is closed"));
+    }
+  } // method close
+
+  private void run() {
+    while (!closed) {
+      List<Row> batch = new ArrayList<>(maxBatchSize);
+      try {
+        batch.add(queue.take());
+
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= maxBatchSize || remaining <= 0) {
+            break;
+          }
+
+          Row row = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (row == null) {
+            break;
+          }
+          batch.add(row);
+        }
+      } catch (InterruptedException ex) {
+        // closed, the collected rows will be written below.
+      }
+
+      if (!batch.isEmpty()) {
+        try {
+          writeBatch(batch);
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "could not write " + batch.size() + " rows");
+          for (Row row : batch) {
+            row.future.completeExceptionally(th);
+          }
+        }
+      }
+    }
+  } // method run
+
+  private void writeBatch(List<Row> batch) {
+    // group the rows by statement, the statements are executed in the order of appearance
+    Map<String, List<Row>> groups = new LinkedHashMap<>();
+    for (Row row : batch) {
+      groups.computeIfAbsent(row.sql, k -> new ArrayList<>()).add(row);
+    }
+
+    Connection conn;
+    try {
+      conn = datasource.getConnection();
+    } catch (DataAccessException ex) {
+      for (Row row : batch) {
+        row.future.completeExceptionally(ex);
+      }
+      return;
+    }
+
+    try {
+      String sql = null;
+      try {
+        conn.setAutoCommit(false);
+        for (Map.Entry<String, List<Row>> group : groups.entrySet()) {
+          sql = group.getKey();
+          PreparedStatement ps = datasource.prepareStatement(conn, sql);
+          try {
+            for (Row row : group.getValue()) {
+              row.setter.set(ps);
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          } finally {
+            datasource.releaseResources(ps, null, false);
+          }
+        }
+        conn.commit();
+        LOG.debug("wrote {} rows in one transaction", batch.size());
+      } catch (SQLException | DataAccessException ex) {
+        if (LOG.isDebugEnabled()) {
+          Exception ex2 = (ex instanceof SQLException)
+              ? datasource.translate(sql, (SQLException) ex) : ex;
+          LOG.debug("could not write rows in batch, write them one by one", ex2);
+        }
+
+        rollback(conn);
+        writeOneByOne(conn, batch);
+        return;
+      }
+    } finally {
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LOG.warn("could not set autoCommit to true: {}", ex.getMessage());
+      }
+      datasource.returnConnection(conn);
+    }
+
+    for (Row row : batch) {
+      row.future.complete(null);
+    }
+  } // method writeBatch
+
+  // the failure of one row shall not affect the others
+  private void writeOneByOne(Connection conn, List<Row> batch) {
+    try {
+      conn.setAutoCommit(true);
+    } catch (SQLException ex) {
+      DataAccessException dex = datasource.translate(null, ex);
+      for (Row row : batch) {
+        row.future.completeExceptionally(dex);
+      }
+      return;
+    }
+
+    for (Row row : batch) {
+      PreparedStatement ps = null;
+      try {
+        ps = datasource.prepareStatement(conn, row.sql);
+        row.setter.set(ps);
+        ps.executeUpdate();
+        row.future.complete(null);
+      } catch (SQLException ex) {
+        row.future.completeExceptionally(datasource.translate(row.sql, ex));
+      } catch (DataAccessException ex) {
+        row.future.completeExceptionally(ex);
+      } finally {
+        datasource.releaseResources(ps, null, false);
+      }
+    }
+  } // method writeOneByOne
+
+  private static void rollback(Connection conn) {
+    try {
+      conn.rollback();
+    } catch (SQLException ex) {
+      LOG.warn("could not rollback: {}", ex.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.operator.ContentSigner;
+import org.xipki.util.Args;
+
+/**
+ * Builder of X.509 CRL which does not keep the CRL entries in memory. The CRL entries are
+ * DER-encoded one by one to a temporary file, and while building the CRL the TBSCertList is
+ * streamed to the signer, so that only the digest is computed over it.
+ *
+ * <p>The generated CRL is identical to the one generated by
+ * {@link org.bouncycastle.cert.X509v2CRLBuilder} for the same input.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class CrlStreamBuilder implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final X500Name issuer;
+
+  private final Time thisUpdate;
+
+  private Time nextUpdate;
+
+  private final ExtensionsGenerator extGen = new ExtensionsGenerator();
+
+  private final Path entriesFile;
+
+  private final OutputStream entriesOut;
+
+  private long entriesLength;
+
+  private int numEntries;
+
+  CrlStreamBuilder(X500Name issuer, Date thisUpdate) throws IOException {
+    this.issuer = Args.notNull(issuer, "issuer");
+    this.thisUpdate = new Time(Args.notNull(thisUpdate, "thisUpdate"));
+    this.entriesFile = Files.createTempFile("crl-entries-", ".der");
+    try {
+      this.entriesOut = new BufferedOutputStream(Files.newOutputStream(entriesFile), BUFFER_SIZE);
+    } catch (IOException ex) {
+      Files.deleteIfExists(entriesFile);
+      throw ex;
+    }
+  } // constructor
+
+  void setNextUpdate(Date nextUpdate) {
+    this.nextUpdate = (nextUpdate == null) ? null : new Time(nextUpdate);
+  }
+
+  int getNumEntries() {
+    return numEntries;
+  }
+
+  void addCrlEntry(BigInteger serial, Date revocationDate, int reason, Date invalidityDate)
+      throws IOException {
+    List<Extension> extensions = new ArrayList<>(2);
+    if (reason != 0) {
+      extensions.add(new Extension(Extension.reasonCode, false,
+          CRLReason.lookup(reason).getEncoded(ASN1Encoding.DER)));
+    }
+
+    if (invalidityDate != null) {
+      extensions.add(new Extension(Extension.invalidityDate, false,
+          new ASN1GeneralizedTime(invalidityDate).getEncoded(ASN1Encoding.DER)));
+    }
+
+    addCrlEntry(serial, revocationDate,
+        extensions.isEmpty() ? null : new Extensions(extensions.toArray(new Extension[0])));
+  } // method addCrlEntry
+
+  void addCrlEntry(BigInteger serial, Date revocationDate, Extensions extensions)
+      throws IOException {
+    ASN1EncodableVector vec = new ASN1EncodableVector();
+    vec.add(new ASN1Integer(serial));
+    vec.add(new Time(revocationDate));
+    if (extensions != null) {
+      vec.add(extensions);
+    }
+
+    byte[] encoded = new DERSequence(vec).getEncoded(ASN1Encoding.DER);
+    entriesOut.write(encoded);
+    entriesLength += encoded.length;
+    numEntries++;
+  } // method addCrlEntry
+
+  void addExtension(ASN1ObjectIdentifier oid, boolean critical, ASN1Encodable value)
+      throws CertIOException {
+    try {
+      extGen.addExtension(oid, critical, value);
+    } catch (IOException ex) {
+      throw new CertIOException("cannot encode extension: " + ex.getMessage(), ex);
+    }
+  }
+
+  X509CRLHolder build(ContentSigner signer) throws IOException {
+    Args.notNull(signer, "signer");
+    entriesOut.close();
+
+    // TBSCertList without the revokedCertificates and crlExtensions
+    ASN1EncodableVector vec = new ASN1EncodableVector();
+    vec.add(new ASN1Integer(1)); // version v2
+    vec.add(signer.getAlgorithmIdentifier());
+    vec.add(issuer);
+    vec.add(thisUpdate);
+    if (nextUpdate != null) {
+      vec.add(nextUpdate);
+    }
+
+    byte[] tbsHead = concat(vec);
+    byte[] entriesHeader = (numEntries == 0) ? new byte[0] : derHeader(0x30, entriesLength);
+    byte[] tbsTail = extGen.isEmpty() ? new byte[0]
+        : new DERTaggedObject(true, 0, extGen.generate()).getEncoded(ASN1Encoding.DER);
+
+    long tbsBodyLength = tbsHead.length + entriesHeader.length + entriesLength + tbsTail.length;
+    byte[] tbsHeader = derHeader(0x30, tbsBodyLength);
+
+    // sign the TBSCertList
+    try (OutputStream sigOut = signer.getOutputStream()) {
+      writeTbsCertList(sigOut, tbsHeader, tbsHead, entriesHeader, tbsTail);
+    }
+
+    vec = new ASN1EncodableVector();
+    vec.add(signer.getAlgorithmIdentifier());
+    vec.add(new DERBitString(signer.getSignature()));
+    byte[] crlTail = concat(vec);
+
+    long crlBodyLength = tbsHeader.length + tbsBodyLength + crlTail.length;
+    byte[] crlHeader = derHeader(0x30, crlBodyLength);
+    long crlLength = crlHeader.length + crlBodyLength;
+    if (crlLength > Integer.MAX_VALUE - 8) {
+      throw new IOException("CRL too large: " + crlLength + " bytes");
+    }
+
+    // write the CRL directly to the target array
+    ArrayOutputStream crlOut = new ArrayOutputStream((int) crlLength);
+    crlOut.write(crlHeader);
+    writeTbsCertList(crlOut, tbsHeader, tbsHead, entriesHeader, tbsTail);
+    crlOut.write(crlTail);
+
+    return new X509CRLHolder(crlOut.buf);
+  } // method build
+
+  @Override
+  public void close() throws IOException {
+    try {
+      entriesOut.close();
+    } finally {
+      Files.deleteIfExists(entriesFile);
+    }
+  }
+
+  private void writeTbsCertList(OutputStream out, byte[] tbsHeader, byte[] tbsHead,
+      byte[] entriesHeader, byte[] tbsTail) throws IOException {
+    out.write(tbsHeader);
+    out.write(tbsHead);
+    out.write(entriesHeader);
+
+    if (numEntries > 0) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      try (InputStream in = Files.newInputStream(entriesFile)) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          out.write(buffer, 0, read);
+        }
+      }
+    }
+
+    out.write(tbsTail);
+  } // method writeTbsCertList
+
+  private static byte[] concat(ASN1EncodableVector vec) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < vec.size(); i++) {
+      out.write(vec.get(i).toASN1Primitive().getEncoded(ASN1Encoding.DER));
+    }
+    return out.toByteArray();
+  } // method concat
+
+  private static byte[] derHeader(int tag, long length) {
+    if (length < 128) {
+      return new byte[]{(byte) tag, (byte) length};
+    }
+
+    int numLenBytes = (64 - Long.numberOfLeadingZeros(length) + 7) / 8;
+    byte[] ret = new byte[2 + numLenBytes];
+    ret[0] = (byte) tag;
+    ret[1] = (byte) (0x80 | numLenBytes);
+    for (int i = 0; i < numLenBytes; i++) {
+      ret[2 + i] = (byte) (length >>> (8 * (numLenBytes - 1 - i)));
+    }
+    return ret;
+  } // method derHeader
+
+  private static class ArrayOutputStream extends OutputStream {
+
+    private final byte[] buf;
+
+    private int count;
+
+    ArrayOutputStream(int size) {
+      this.buf = new byte[size];
+    }
+
+    @Override
+    public void write(int b) {
+      buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      System.arraycopy(b, off, buf, count, len);
+      count += len;
+    }
+
+  } // class ArrayOutputStream
+
+}
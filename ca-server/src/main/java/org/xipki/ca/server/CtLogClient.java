@@ -17,7 +17,13 @@
 
 package org.xipki.ca.server;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -25,17 +31,28 @@ import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.ca.api.OperationException;
 import org.xipki.ca.api.OperationException.ErrorCode;
+import org.xipki.ca.api.mgmt.CtlogControl;
 import org.xipki.security.HashAlgo;
 import org.xipki.security.X509Cert;
 import org.xipki.security.ctlog.CtLog;
@@ -47,10 +64,9 @@ import org.xipki.security.ctlog.CtLog.SignedCertificateTimestampList;
 import org.xipki.security.ctlog.CtLogMessages.AddPreChainRequest;
 import org.xipki.security.ctlog.CtLogMessages.AddPreChainResponse;
 import org.xipki.util.Args;
-import org.xipki.util.Curl;
-import org.xipki.util.Curl.CurlResult;
-import org.xipki.util.DefaultCurl;
 import org.xipki.util.Hex;
+import org.xipki.util.IoUtil;
+import org.xipki.util.ObjectCreationException;
 import org.xipki.util.StringUtil;
 import org.xipki.util.http.SslContextConf;
 
@@ -59,33 +75,92 @@ import com.alibaba.fastjson.JSON;
 /**
  * Certificate transparency (CT) log client.
  *
+ * <p>The pre-certificate is submitted to all CT logs concurrently, and the SCTs are returned
+ * as soon as the quorum of SCTs has been received. The HTTP connections are kept alive and
+ * reused for the next submissions. The connections of submissions which are no longer
+ * required are disconnected.
+ *
  * @author Lijun Liao
  */
-public class CtLogClient {
+public class CtLogClient implements Closeable {
 
   private static Logger LOG = LoggerFactory.getLogger(CtLogClient.class);
 
-  private final Curl curl;
+  /**
+   * Expected maximal number of pre-certificates submitted concurrently. Further submissions
+   * wait for a free thread.
+   */
+  private static final int MAX_CONCURRENT_SUBMISSIONS = 16;
+
+  private final List<URL> addPreChainUrls;
+
+  private final SslContextConf sslContextConf;
+
+  private final int quorum;
+
+  private final int timeout;
 
-  private final List<String> addPreChainUrls;
+  private final ThreadPoolExecutor executor;
+
+  private SSLSocketFactory sslSocketFactory;
+
+  private HostnameVerifier hostnameVerifier;
+
+  private boolean initialized;
 
   public CtLogClient(List<String> serverUrls, SslContextConf sslContextConf) {
+    this(serverUrls, sslContextConf, Args.notEmpty(serverUrls, "serverUrls").size(),
+        CtlogControl.DFLT_TIMEOUT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param serverUrls
+   *          URLs of the CT log servers.
+   * @param sslContextConf
+   *          SSL context configuration, may be {@code null}.
+   * @param quorum
+   *          Minimal number of SCTs.
+   * @param timeout
+   *          Timeout in milliseconds to connect to and read from a CT log server, also the
+   *          maximal time to wait for the quorum of SCTs.
+   */
+  public CtLogClient(List<String> serverUrls, SslContextConf sslContextConf, int quorum,
+      int timeout) {
     Args.notEmpty(serverUrls, "serverUrls");
+    this.sslContextConf = sslContextConf;
+    this.quorum = Args.range(quorum, "quorum", 1, serverUrls.size());
+    this.timeout = Args.positive(timeout, "timeout");
 
-    DefaultCurl dfltCurl  = new DefaultCurl();
-    dfltCurl.setSslContextConf(sslContextConf);
-    this.curl = dfltCurl;
     this.addPreChainUrls = new ArrayList<>(serverUrls.size());
     for (String m : serverUrls) {
       String addPreChainUrl = m.endsWith("/")
           ? m + "ct/v1/add-pre-chain" : m + "/ct/v1/add-pre-chain";
-      this.addPreChainUrls.add(addPreChainUrl);
+      try {
+        this.addPreChainUrls.add(new URL(addPreChainUrl));
+      } catch (MalformedURLException ex) {
+        throw new IllegalArgumentException("invalid CT log URL " + m, ex);
+      }
     }
+
+    // one thread per CT log and concurrent submission, idle threads are terminated.
+    int maxThreads = addPreChainUrls.size() * MAX_CONCURRENT_SUBMISSIONS;
+    AtomicInteger threadIndex = new AtomicInteger(1);
+    this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread thread = new Thread(r, "ctlog-" + threadIndex.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.executor.allowCoreThreadTimeOut(true);
   } // constructor
 
   public SignedCertificateTimestampList getCtLogScts(
       X509CertificateHolder precert, X509Cert caCert, List<X509Cert> certchain,
       CtLogPublicKeyFinder publicKeyFinder) throws OperationException {
+    initIfNotDone();
+
     AddPreChainRequest request = new AddPreChainRequest();
     List<byte[]> chain = new LinkedList<>();
     request.setChain(chain);
@@ -124,69 +199,231 @@ public class CtLogClient {
       LOG.debug("CTLog Request: {}", StringUtil.toUtf8String(content));
     }
 
+    // submit to all CT logs concurrently
+    CompletionService<SignedCertificateTimestamp> completionService =
+        new ExecutorCompletionService<>(executor);
+    List<SctTask> tasks = new ArrayList<>(addPreChainUrls.size());
+    List<Future<SignedCertificateTimestamp>> futures = new ArrayList<>(addPreChainUrls.size());
+    for (URL url : addPreChainUrls) {
+      SctTask task = new SctTask(url, content, issuerKeyHash, preCertTbsCert, publicKeyFinder);
+      tasks.add(task);
+      futures.add(completionService.submit(task));
+    }
+
     List<SignedCertificateTimestamp> scts = new ArrayList<>(addPreChainUrls.size());
-    Map<String, String> headers = new HashMap<>();
-    headers.put("content-type", "application/json");
-    for (String url : addPreChainUrls) {
-      CurlResult res;
+    int maxFailures = addPreChainUrls.size() - quorum;
+    List<String> failures = new LinkedList<>();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+    try {
+      while (scts.size() < quorum && failures.size() <= maxFailures) {
+        long remaining = deadline - System.nanoTime();
+        Future<SignedCertificateTimestamp> future = (remaining <= 0) ? null
+            : completionService.poll(remaining, TimeUnit.NANOSECONDS);
+        if (future == null) {
+          failures.add("timeout after " + timeout + " ms");
+          break;
+        }
+
+        try {
+          scts.add(future.get());
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          LOG.warn("could not get SCT: {}", cause.getMessage());
+          LOG.debug("could not get SCT", cause);
+          failures.add(cause.getMessage());
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE, "interrupted");
+    } finally {
+      // the SCTs of the remaining CT logs are not required. Interrupting the thread does not
+      // abort a blocking read from the HTTP connection, hence the connection is disconnected.
+      for (int i = 0; i < futures.size(); i++) {
+        if (!futures.get(i).isDone()) {
+          futures.get(i).cancel(true);
+          tasks.get(i).cancel();
+        }
+      }
+    }
+
+    if (scts.size() < quorum) {
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE, "received only " + scts.size()
+          + " of required " + quorum + " SCTs: " + failures);
+    }
+
+    return new SignedCertificateTimestampList(new SerializedSCT(scts));
+  } // method getCtLogScts
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private SignedCertificateTimestamp getSct(SctTask task, URL url, byte[] content,
+      byte[] issuerKeyHash, byte[] preCertTbsCert, CtLogPublicKeyFinder publicKeyFinder)
+      throws OperationException {
+    byte[] respContent;
+    try {
+      respContent = post(task, url, content);
+    } catch (IOException ex) {
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE,
+          "error while calling " + url + ": " + ex.getMessage());
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("CTLog Response: {}", StringUtil.toUtf8String(respContent));
+    }
+
+    AddPreChainResponse resp = JSON.parseObject(respContent, AddPreChainResponse.class);
+
+    DigitallySigned ds = DigitallySigned.getInstance(resp.getSignature(), new AtomicInteger(0));
+    byte sctVersion = resp.getSct_version();
+    byte[] logId = resp.getId();
+    String hexLogId = Hex.encodeUpper(logId);
+    long timestamp = resp.getTimestamp();
+    byte[] extensions = resp.getExtensions();
+
+    PublicKey verifyKey = publicKeyFinder == null ? null : publicKeyFinder.getPublicKey(logId);
+    if (verifyKey == null) {
+      LOG.warn("could not find CtLog public key 0x{} to verify the SCT", hexLogId);
+    } else {
+      SignatureAndHashAlgorithm algorithm = ds.getAlgorithm();
+      String sigAlgo = getSignatureAlgo(algorithm);
+
+      boolean sigValid;
       try {
-        res = curl.curlPost(url, false, headers, null, content);
-      } catch (Exception ex) {
-        throw new OperationException(ErrorCode.SYSTEM_FAILURE,
-            "error while calling " + url + ": " + ex.getMessage());
+        Signature sig = Signature.getInstance(sigAlgo, "BC");
+        sig.initVerify(verifyKey);
+        CtLog.update(sig, sctVersion, timestamp, extensions, issuerKeyHash, preCertTbsCert);
+        sigValid = sig.verify(ds.getSignature());
+      } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException
+          | SignatureException ex) {
+        throw new OperationException(ErrorCode.SYSTEM_FAILURE, "error verifying SCT signature");
       }
 
-      byte[] respContent = res.getContent();
-      if (respContent == null) {
-        throw new OperationException(ErrorCode.SYSTEM_FAILURE,
-            "server does not return any content while responding " + url);
+      if (sigValid) {
+        LOG.info("verified SCT signature with logId {} and timestamp {}", hexLogId, timestamp);
+      } else {
+        throw new OperationException(ErrorCode.SYSTEM_FAILURE, "SCT signature is invalid");
       }
+    }
+
+    return new SignedCertificateTimestamp(sctVersion, logId, timestamp, extensions, ds);
+  } // method getSct
 
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("CTLog Response: {}", StringUtil.toUtf8String(respContent));
+  private byte[] post(SctTask task, URL url, byte[] content) throws IOException {
+    HttpURLConnection httpConn = IoUtil.openHttpConn(url);
+    task.setConnection(httpConn);
+    if (httpConn instanceof HttpsURLConnection) {
+      if (sslSocketFactory != null) {
+        ((HttpsURLConnection) httpConn).setSSLSocketFactory(sslSocketFactory);
+      }
+      if (hostnameVerifier != null) {
+        ((HttpsURLConnection) httpConn).setHostnameVerifier(hostnameVerifier);
       }
+    }
 
-      AddPreChainResponse resp = JSON.parseObject(respContent, AddPreChainResponse.class);
+    httpConn.setConnectTimeout(timeout);
+    httpConn.setReadTimeout(timeout);
+    httpConn.setRequestMethod("POST");
+    httpConn.setUseCaches(false);
+    httpConn.setDoOutput(true);
+    httpConn.setRequestProperty("Content-Type", "application/json");
+    httpConn.setFixedLengthStreamingMode(content.length);
 
-      DigitallySigned ds = DigitallySigned.getInstance(resp.getSignature(), new AtomicInteger(0));
-      byte sctVersion = resp.getSct_version();
-      byte[] logId = resp.getId();
-      String hexLogId = Hex.encodeUpper(logId);
-      long timestamp = resp.getTimestamp();
-      byte[] extensions = resp.getExtensions();
+    try (OutputStream out = httpConn.getOutputStream()) {
+      out.write(content);
+    }
 
-      PublicKey verifyKey = publicKeyFinder == null ? null : publicKeyFinder.getPublicKey(logId);
-      if (verifyKey == null) {
-        LOG.warn("could not find CtLog public key 0x{} to verify the SCT", hexLogId);
-      } else {
-        SignatureAndHashAlgorithm algorithm = ds.getAlgorithm();
-        String sigAlgo = getSignatureAlgo(algorithm);
+    // the connection is not disconnected, and is reused after the response has been read
+    // completely.
+    int respCode = httpConn.getResponseCode();
+    if (respCode != HttpURLConnection.HTTP_OK) {
+      InputStream errorStream = httpConn.getErrorStream();
+      if (errorStream != null) {
+        IoUtil.read(errorStream);
+      }
+      throw new IOException("bad response: " + respCode + " " + httpConn.getResponseMessage());
+    }
 
-        boolean sigValid;
-        try {
-          Signature sig = Signature.getInstance(sigAlgo, "BC");
-          sig.initVerify(verifyKey);
-          CtLog.update(sig, sctVersion, timestamp, extensions, issuerKeyHash, preCertTbsCert);
-          sigValid = sig.verify(ds.getSignature());
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException
-            | SignatureException ex) {
-          throw new OperationException(ErrorCode.SYSTEM_FAILURE, "error verifying SCT signature");
-        }
+    byte[] respContent = IoUtil.read(httpConn.getInputStream());
+    if (respContent == null || respContent.length == 0) {
+      throw new IOException("server does not return any content");
+    }
+    return respContent;
+  } // method post
 
-        if (sigValid) {
-          LOG.info("verified SCT signature with logId {} and timestamp {}", hexLogId, timestamp);
-        } else {
-          throw new OperationException(ErrorCode.SYSTEM_FAILURE, "SCT signature is invalid");
-        }
+  private synchronized void initIfNotDone() throws OperationException {
+    if (initialized) {
+      return;
+    }
+
+    if (sslContextConf != null && sslContextConf.isUseSslConf()) {
+      try {
+        sslSocketFactory = sslContextConf.getSslSocketFactory();
+        hostnameVerifier = sslContextConf.buildHostnameVerifier();
+      } catch (ObjectCreationException ex) {
+        throw new OperationException(ErrorCode.SYSTEM_FAILURE,
+            "could not initialize SSL context: " + ex.getMessage());
       }
+    }
+
+    initialized = true;
+  } // method initIfNotDone
+
+  /**
+   * Submission of the pre-certificate to one CT log. The HTTP connection is disconnected if
+   * the task is cancelled.
+   */
+  private class SctTask implements Callable<SignedCertificateTimestamp> {
+
+    private final URL url;
+
+    private final byte[] content;
+
+    private final byte[] issuerKeyHash;
+
+    private final byte[] preCertTbsCert;
+
+    private final CtLogPublicKeyFinder publicKeyFinder;
+
+    private volatile HttpURLConnection connection;
+
+    private volatile boolean cancelled;
 
-      SignedCertificateTimestamp sct = new SignedCertificateTimestamp(sctVersion,
-          logId, timestamp, extensions, ds);
-      scts.add(sct);
+    SctTask(URL url, byte[] content, byte[] issuerKeyHash, byte[] preCertTbsCert,
+        CtLogPublicKeyFinder publicKeyFinder) {
+      this.url = url;
+      this.content = content;
+      this.issuerKeyHash = issuerKeyHash;
+      this.preCertTbsCert = preCertTbsCert;
+      this.publicKeyFinder = publicKeyFinder;
     }
 
-    return new SignedCertificateTimestampList(new SerializedSCT(scts));
-  } // method getCtLogScts
+    @Override
+    public SignedCertificateTimestamp call() throws OperationException {
+      return getSct(this, url, content, issuerKeyHash, preCertTbsCert, publicKeyFinder);
+    }
+
+    void setConnection(HttpURLConnection connection) throws IOException {
+      this.connection = connection;
+      if (cancelled) {
+        connection.disconnect();
+        throw new IOException("cancelled");
+      }
+    }
+
+    void cancel() {
+      cancelled = true;
+      HttpURLConnection conn = connection;
+      if (conn != null) {
+        conn.disconnect();
+      }
+    }
+
+  } // class SctTask
 
   private static String getSignatureAlgo(SignatureAndHashAlgorithm algorithm)
       throws OperationException {
@@ -0,0 +1,224 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xipki.ca.api.NameId;
+import org.xipki.ca.api.OperationException;
+import org.xipki.security.CertRevocationInfo;
+import org.xipki.security.CrlReason;
+import org.xipki.security.X509Cert;
+import org.xipki.util.Args;
+
+/**
+ * In-memory set of the entries of the next deltaCRL, i.e. the certificates whose revocation
+ * status has been changed since the last full CRL, sorted by serial number.
+ *
+ * <p>The entries are appended as the certificates are revoked or unrevoked by this instance.
+ * Before a deltaCRL is generated, the entries written to the table DELTACRL_CACHE by other
+ * instances (or before the start of this instance) are merged in, only the new rows are read.
+ * Hence the generation of a deltaCRL costs time proportional to the number of changes, and not
+ * to the number of certificates.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class DeltaCrlCache {
+
+  private static class Entry {
+
+    private final CertRevInfoWithSerial revInfo;
+
+    private final long seq;
+
+    Entry(CertRevInfoWithSerial revInfo, long seq) {
+      this.revInfo = revInfo;
+      this.seq = seq;
+    }
+
+  } // class Entry
+
+  /**
+   * Source of the rows of the table DELTACRL_CACHE, see
+   * {@link CertStore#getCertsForDeltaCrl(NameId, long, int, boolean, boolean)}.
+   */
+  interface RowSource {
+
+    List<CertRevInfoWithSerial> getCertsForDeltaCrl(NameId ca, long startId, int numEntries,
+        boolean onlyCaCerts, boolean onlyUserCerts) throws OperationException;
+
+  }
+
+  // The IDs are generated by UniqueIdGenerator, with the time in milliseconds in the highest bits.
+  // Rows within the last minute before the last synchronized one are read again, since the
+  // clocks of the instances are not exactly synchronized.
+  static final long SYNC_MARGIN = 60000L << 17;
+
+  static final int SYNC_PAGE_SIZE = 1000;
+
+  private final NameId ca;
+
+  private final boolean onlyCaCerts;
+
+  private final boolean onlyUserCerts;
+
+  private final TreeMap<BigInteger, Entry> entries = new TreeMap<>();
+
+  private long seq;
+
+  // maximal ID of the DELTACRL_CACHE rows that have been read, -1 if not synchronized yet.
+  private long syncedMaxId = -1;
+
+  // DELTACRL_CACHE rows with ID not greater than this value are covered by a full CRL.
+  private long coveredMaxId;
+
+  DeltaCrlCache(NameId ca, boolean onlyCaCerts, boolean onlyUserCerts) {
+    this.ca = Args.notNull(ca, "ca");
+    this.onlyCaCerts = onlyCaCerts;
+    this.onlyUserCerts = onlyUserCerts;
+  }
+
+  /**
+   * Adds the revocation of a certificate.
+   *
+   * @param cert
+   *          The revoked certificate.
+   * @param revInfo
+   *          The revocation information.
+   */
+  void revoked(X509Cert cert, CertRevocationInfo revInfo) {
+    put(cert, new CertRevInfoWithSerial(0, cert.getSerialNumber(), revInfo.getReason(),
+        revInfo.getRevocationTime(), revInfo.getInvalidityTime()));
+  }
+
+  /**
+   * Adds the unrevocation of a certificate.
+   *
+   * @param cert
+   *          The unrevoked certificate.
+   */
+  void unrevoked(X509Cert cert) {
+    put(cert, new CertRevInfoWithSerial(0, cert.getSerialNumber(), CrlReason.REMOVE_FROM_CRL,
+        new Date(), null));
+  }
+
+  private void put(X509Cert cert, CertRevInfoWithSerial revInfo) {
+    boolean ee = cert.getBasicConstraints() == -1;
+    if ((onlyCaCerts && ee) || (onlyUserCerts && !ee)) {
+      return;
+    }
+
+    synchronized (this) {
+      entries.put(revInfo.getSerial(), new Entry(revInfo, ++seq));
+    }
+  }
+
+  /**
+   * Reads the rows added to the table DELTACRL_CACHE since the last synchronization.
+   *
+   * @param certstore
+   *          The certificate store.
+   * @throws OperationException
+   *           if database error occurs.
+   */
+  void sync(CertStore certstore) throws OperationException {
+    sync(certstore::getCertsForDeltaCrl);
+  }
+
+  void sync(RowSource rowSource) throws OperationException {
+    long startId;
+    synchronized (this) {
+      startId = (syncedMaxId == -1) ? coveredMaxId
+          : Math.max(coveredMaxId, syncedMaxId - SYNC_MARGIN);
+    }
+    startId++;
+
+    long maxId = startId - 1;
+    List<CertRevInfoWithSerial> revInfos;
+    do {
+      revInfos = rowSource.getCertsForDeltaCrl(ca, startId, SYNC_PAGE_SIZE,
+          onlyCaCerts, onlyUserCerts);
+      synchronized (this) {
+        for (CertRevInfoWithSerial revInfo : revInfos) {
+          // the database contains the current status of the certificate.
+          entries.put(revInfo.getSerial(), new Entry(revInfo, ++seq));
+          maxId = Math.max(maxId, revInfo.getId());
+        }
+      }
+      startId = maxId + 1;
+    } while (revInfos.size() >= SYNC_PAGE_SIZE);
+
+    synchronized (this) {
+      syncedMaxId = Math.max(syncedMaxId, maxId);
+    }
+  } // method sync
+
+  /**
+   * Returns the current mark, used to clear the entries covered by a full CRL.
+   *
+   * @return the current mark.
+   */
+  synchronized long mark() {
+    return seq;
+  }
+
+  /**
+   * Removes the entries covered by a full CRL.
+   *
+   * @param mark
+   *          The mark retrieved via {@link #mark()} before the full CRL is generated.
+   * @param maxIdOfDeltaCrlCache
+   *          Maximal ID of the table DELTACRL_CACHE before the full CRL is generated.
+   */
+  synchronized void clear(long mark, long maxIdOfDeltaCrlCache) {
+    Iterator<Map.Entry<BigInteger, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().getValue().seq <= mark) {
+        it.remove();
+      }
+    }
+
+    coveredMaxId = Math.max(coveredMaxId, maxIdOfDeltaCrlCache);
+  } // method clear
+
+  /**
+   * Returns the entries of the deltaCRL.
+   *
+   * @return the entries sorted by the serial number ASC.
+   */
+  synchronized List<CertRevInfoWithSerial> getEntries() {
+    List<CertRevInfoWithSerial> ret = new ArrayList<>(entries.size());
+    for (Entry entry : entries.values()) {
+      ret.add(entry.revInfo);
+    }
+    return ret;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+}
@@ -18,9 +18,13 @@
 package org.xipki.ca.server;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.bouncycastle.cert.X509CRLHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xipki.ca.api.CertWithDbId;
 import org.xipki.ca.api.CertificateInfo;
 import org.xipki.ca.api.NameId;
@@ -31,6 +35,7 @@ import org.xipki.password.PasswordResolver;
 import org.xipki.security.CertRevocationInfo;
 import org.xipki.security.X509Cert;
 import org.xipki.util.Args;
+import org.xipki.util.ConfPairs;
 import org.xipki.util.FileOrValue;
 
 /**
@@ -42,14 +47,53 @@ import org.xipki.util.FileOrValue;
 
 class IdentifiedCertPublisher implements Closeable {
 
+  private static final Logger LOG = LoggerFactory.getLogger(IdentifiedCertPublisher.class);
+
+  private static final String KEY_QUEUE_PARALLELISM = "publishqueue.parallelism";
+
   private final MgmtEntry.Publisher entry;
 
   private final CertPublisher certPublisher;
 
+  private final int queueParallelism;
+
+  private final LongAdder queuePublished = new LongAdder();
+
+  private final LongAdder queueFailed = new LongAdder();
+
+  private volatile long queueRate;
+
   IdentifiedCertPublisher(MgmtEntry.Publisher entry, CertPublisher certPublisher) {
     this.entry = Args.notNull(entry, "entry");
     this.certPublisher = Args.notNull(certPublisher, "certPublisher");
-  }
+
+    // number of threads to publish the certificates in the PUBLISHQUEUE
+    int parallelism = 1;
+    String conf = entry.getConf();
+    if (conf != null && conf.contains(KEY_QUEUE_PARALLELISM)) {
+      String str = null;
+      try {
+        str = new ConfPairs(conf).value(KEY_QUEUE_PARALLELISM);
+      } catch (IllegalArgumentException ex) {
+        LOG.warn("conf of publisher {} is not in the ConfPairs format, ignore {}",
+            entry.getIdent().getName(), KEY_QUEUE_PARALLELISM);
+      }
+
+      if (str != null) {
+        try {
+          parallelism = Integer.parseInt(str.trim());
+        } catch (NumberFormatException ex) {
+          parallelism = 0;
+        }
+
+        if (parallelism < 1) {
+          throw new IllegalArgumentException("invalid " + KEY_QUEUE_PARALLELISM + " '" + str
+              + "' of publisher " + entry.getIdent().getName());
+        }
+      }
+    }
+    this.queueParallelism = parallelism;
+  } // constructor
 
   public void initialize(PasswordResolver passwordResolver,
       Map<String, FileOrValue> datasourceConfs)
@@ -65,6 +109,10 @@ class IdentifiedCertPublisher implements Closeable {
     return certPublisher.certificateAdded(certInfo);
   }
 
+  public boolean[] certificatesAdded(List<CertificateInfo> certInfos) {
+    return certPublisher.certificatesAdded(certInfos);
+  }
+
   public boolean certificateRevoked(X509Cert caCert, CertWithDbId cert, String certprofile,
       CertRevocationInfo revInfo) {
     return certPublisher.certificateRevoked(caCert, cert, certprofile, revInfo);
@@ -74,6 +122,40 @@ class IdentifiedCertPublisher implements Closeable {
     return certPublisher.crlAdded(caCert, crl);
   }
 
+  public int getQueueParallelism() {
+    return queueParallelism;
+  }
+
+  /**
+   * Returns the number of certificates published from the PUBLISHQUEUE.
+   * @return the number of published certificates.
+   */
+  public long getQueuePublished() {
+    return queuePublished.sum();
+  }
+
+  /**
+   * Returns the number of certificates that could not be published from the PUBLISHQUEUE.
+   * @return the number of failures.
+   */
+  public long getQueueFailed() {
+    return queueFailed.sum();
+  }
+
+  /**
+   * Returns the throughput of the last drain of the PUBLISHQUEUE.
+   * @return the number of published certificates per second.
+   */
+  public long getQueueRate() {
+    return queueRate;
+  }
+
+  void recordQueueProgress(int published, int failed, long rate) {
+    queuePublished.add(published);
+    queueFailed.add(failed);
+    queueRate = rate;
+  }
+
   public MgmtEntry.Publisher getDbEntry() {
     return entry;
   }
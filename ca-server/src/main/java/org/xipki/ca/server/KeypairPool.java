@@ -0,0 +1,271 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.io.Closeable;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.DSAParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ca.api.profile.KeypairGenControl;
+import org.xipki.security.EdECConstants;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+/**
+ * Pool of pre-generated keypairs for the CA-side key generation. For each combination of
+ * algorithm, key size, curve and domain parameters one pool is created on first use, and
+ * refilled by background threads of low priority up to the configured depth.
+ *
+ * <p>Each filler thread uses its own {@link KeyPairGenerator}, the generation of keypairs of
+ * the same type is therefore not serialized.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class KeypairPool implements Closeable {
+
+  private class Pool {
+
+    private final String name;
+
+    private final String algorithm;
+
+    private final AlgorithmParameterSpec params;
+
+    private final int keysize;
+
+    private final BlockingQueue<KeyPair> keypairs = new ArrayBlockingQueue<>(depth);
+
+    private final AtomicInteger numFillers = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private Pool(String name, String algorithm, AlgorithmParameterSpec params, int keysize) {
+      this.name = name;
+      this.algorithm = algorithm;
+      this.params = params;
+      this.keysize = keysize;
+    }
+
+    private KeyPair poll() {
+      KeyPair keypair = keypairs.poll();
+      if (keypair == null) {
+        misses.increment();
+      } else {
+        hits.increment();
+      }
+
+      refill();
+      return keypair;
+    } // method poll
+
+    private void refill() {
+      while (!closed && keypairs.remainingCapacity() > 0) {
+        int num = numFillers.get();
+        if (num >= numThreads) {
+          return;
+        }
+
+        if (numFillers.compareAndSet(num, num + 1)) {
+          try {
+            executor.execute(this::fill);
+          } catch (RejectedExecutionException ex) {
+            numFillers.decrementAndGet();
+          }
+          return;
+        }
+      }
+    } // method refill
+
+    private void fill() {
+      try {
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance(algorithm, "BC");
+        if (params == null) {
+          kpGen.initialize(keysize, new SecureRandom());
+        } else {
+          kpGen.initialize(params, new SecureRandom());
+        }
+
+        while (!closed && keypairs.remainingCapacity() > 0) {
+          if (!keypairs.offer(kpGen.generateKeyPair())) {
+            break;
+          }
+        }
+      } catch (GeneralSecurityException | RuntimeException ex) {
+        LogUtil.error(LOG, ex, "could not generate keypair for pool " + name);
+      } finally {
+        numFillers.decrementAndGet();
+      }
+    } // method fill
+
+  } // class Pool
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeypairPool.class);
+
+  private final int depth;
+
+  private final int numThreads;
+
+  private final ExecutorService executor;
+
+  private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param depth
+   *          Maximal number of pre-generated keypairs of each pool.
+   * @param numThreads
+   *          Number of threads to generate the keypairs.
+   */
+  KeypairPool(int depth, int numThreads) {
+    this.depth = Args.positive(depth, "depth");
+    this.numThreads = Args.positive(numThreads, "numThreads");
+
+    AtomicInteger threadIndex = new AtomicInteger(1);
+    this.executor = Executors.newFixedThreadPool(numThreads, r -> {
+      Thread thread = new Thread(r, "keypair-pool-" + threadIndex.getAndIncrement());
+      thread.setDaemon(true);
+      // generate the keypairs on idle cores
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+  } // constructor
+
+  /**
+   * Retrieves a pre-generated keypair, and triggers the refilling of the pool.
+   *
+   * @param control
+   *          Control of the keypair generation. Must not be {@code null}.
+   * @return the pre-generated keypair, or {@code null} if the pool is empty or the control is
+   *         not supported.
+   */
+  KeyPair poll(KeypairGenControl control) {
+    Pool pool = getPool(Args.notNull(control, "control"));
+    return (pool == null) ? null : pool.poll();
+  } // method poll
+
+  /**
+   * Returns the status of all pools.
+   *
+   * @return map of the pool name to its status: depth (number of pre-generated keypairs),
+   *         hits and misses.
+   */
+  Map<String, Map<String, Object>> getStatuses() {
+    Map<String, Map<String, Object>> ret = new TreeMap<>();
+    for (Pool pool : pools.values()) {
+      Map<String, Object> status = new LinkedHashMap<>();
+      status.put("depth", pool.keypairs.size());
+      status.put("hits", pool.hits.sum());
+      status.put("misses", pool.misses.sum());
+      ret.put(pool.name, status);
+    }
+    return ret;
+  } // method getStatuses
+
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+    for (Pool pool : pools.values()) {
+      pool.keypairs.clear();
+    }
+  } // method close
+
+  private Pool getPool(KeypairGenControl control) {
+    String name;
+    if (control instanceof KeypairGenControl.RSAKeypairGenControl) {
+      KeypairGenControl.RSAKeypairGenControl kg = (KeypairGenControl.RSAKeypairGenControl) control;
+      name = "RSA/" + kg.getKeysize() + "/" + kg.getPublicExponent().toString(16);
+    } else if (control instanceof KeypairGenControl.ECKeypairGenControl) {
+      name = "EC/" + ((KeypairGenControl.ECKeypairGenControl) control).getCurveOid().getId();
+    } else if (control instanceof KeypairGenControl.DSAKeypairGenControl) {
+      DSAParameterSpec spec =
+          ((KeypairGenControl.DSAKeypairGenControl) control).getParameterSpec();
+      name = "DSA/" + spec.getP().bitLength() + "/" + spec.getQ().bitLength() + "/"
+          + HashAlgo.SHA1.hexHash(spec.getP().toByteArray(), spec.getQ().toByteArray(),
+              spec.getG().toByteArray()).substring(0, 16);
+    } else if (control instanceof KeypairGenControl.EDDSAKeypairGenControl) {
+      ASN1ObjectIdentifier curveOid = ((KeypairGenControl.EDDSAKeypairGenControl) control)
+          .getKeyAlgorithm().getAlgorithm();
+      name = EdECConstants.getName(curveOid);
+      if (name == null) {
+        return null;
+      }
+    } else {
+      return null;
+    }
+
+    Pool pool = pools.get(name);
+    if (pool != null) {
+      return pool;
+    }
+
+    return pools.computeIfAbsent(name, k -> newPool(k, control));
+  } // method getPool
+
+  private Pool newPool(String name, KeypairGenControl control) {
+    LOG.info("created keypair pool {} with depth {}", name, depth);
+
+    if (control instanceof KeypairGenControl.RSAKeypairGenControl) {
+      KeypairGenControl.RSAKeypairGenControl kg = (KeypairGenControl.RSAKeypairGenControl) control;
+      BigInteger publicExponent = kg.getPublicExponent();
+      return new Pool(name, "RSA", new RSAKeyGenParameterSpec(kg.getKeysize(), publicExponent),
+          0);
+    } else if (control instanceof KeypairGenControl.ECKeypairGenControl) {
+      ASN1ObjectIdentifier curveOid = ((KeypairGenControl.ECKeypairGenControl) control)
+          .getCurveOid();
+      return new Pool(name, "EC", new ECGenParameterSpec(curveOid.getId()), 0);
+    } else if (control instanceof KeypairGenControl.DSAKeypairGenControl) {
+      return new Pool(name, "DSA",
+          ((KeypairGenControl.DSAKeypairGenControl) control).getParameterSpec(), 0);
+    } else {
+      ASN1ObjectIdentifier curveOid = ((KeypairGenControl.EDDSAKeypairGenControl) control)
+          .getKeyAlgorithm().getAlgorithm();
+      return new Pool(name, name, null, EdECConstants.getKeyBitSize(curveOid));
+    }
+  } // method newPool
+
+}
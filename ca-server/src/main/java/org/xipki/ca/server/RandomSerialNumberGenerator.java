@@ -18,23 +18,57 @@
 package org.xipki.ca.server;
 
 import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
 /**
  * Random serial number generator.
  *
+ * <p>Each thread uses its own DRBG-backed {@link SecureRandom} and its own buffer, so that
+ * concurrent issuing threads do not contend for a shared generator.
+ *
  * @author Lijun Liao
  * @since 2.0.0
  */
 
 class RandomSerialNumberGenerator {
 
+  private static class ThreadState {
+
+    private final SecureRandom random = newSecureRandom();
+
+    // random bytes are retrieved in blocks, since each request to the DRBG costs several
+    // hash operations independent of the number of requested bytes.
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    private int blockOffset = BLOCK_SIZE;
+
+    private byte[] buffer = new byte[0];
+
+    private void nextBytes(byte[] bytes) {
+      int off = 0;
+      while (off < bytes.length) {
+        if (blockOffset == BLOCK_SIZE) {
+          random.nextBytes(block);
+          blockOffset = 0;
+        }
+
+        int len = Math.min(bytes.length - off, BLOCK_SIZE - blockOffset);
+        System.arraycopy(block, blockOffset, bytes, off, len);
+        blockOffset += len;
+        off += len;
+      }
+    } // method nextBytes
+
+  } // class ThreadState
+
+  private static final int BLOCK_SIZE = 1024;
+
   private static RandomSerialNumberGenerator instance;
 
-  private final SecureRandom random;
+  private final ThreadLocal<ThreadState> threadStates = ThreadLocal.withInitial(ThreadState::new);
 
   private RandomSerialNumberGenerator() {
-    this.random = new SecureRandom();
   }
 
   /**
@@ -43,27 +77,68 @@ class RandomSerialNumberGenerator {
    * @return the serial number.
    */
   public BigInteger nextSerialNumber(int byteLen) {
-    final byte[] rndBytes = new byte[byteLen];
+    ThreadState state = threadStates.get();
+    if (state.buffer.length != byteLen) {
+      state.buffer = new byte[byteLen];
+    }
+
+    final byte[] rndBytes = state.buffer;
     final int minWeight = byteLen * 2;
 
     while (true) {
-      random.nextBytes(rndBytes);
+      state.nextBytes(rndBytes);
       // set the first bit to 0.
       rndBytes[0] &= 0x7F;
 
       // check NAF weight
-      BigInteger bi = new BigInteger(rndBytes);
-
-      BigInteger threeBi = bi.shiftLeft(1).add(bi);
-      BigInteger diff = threeBi.xor(bi);
-      int nafWeight = diff.bitCount();
-      if (nafWeight >= minWeight) {
-        return bi;
+      if (nafWeight(rndBytes) >= minWeight) {
+        return new BigInteger(rndBytes);
       }
     }
 
   } // method nextSerialNumber
 
+  /**
+   * Computes the NAF weight of a non-negative integer x, as bitCount((3 * x) XOR x), without
+   * allocating {@link BigInteger}s.
+   *
+   * @param bytes
+   *          Big-endian two's-complement representation of x, the first bit must be 0.
+   * @return the NAF weight.
+   */
+  static int nafWeight(byte[] bytes) {
+    int weight = 0;
+    // carry of the addition x + (x << 1)
+    int addCarry = 0;
+    // most significant bit of the less significant byte, shifted in by (x << 1)
+    int shiftCarry = 0;
+
+    for (int i = bytes.length - 1; i >= 0; i--) {
+      int xi = bytes[i] & 0xFF;
+      int sum = xi + (((xi << 1) | shiftCarry) & 0xFF) + addCarry;
+      weight += Integer.bitCount((sum & 0xFF) ^ xi);
+
+      addCarry = sum >>> 8;
+      shiftCarry = xi >>> 7;
+    }
+
+    // the bytes beyond the most significant one are 0 in x, and since the first bit of x
+    // is 0, only the addition carry remains in 3 * x.
+    return weight + addCarry;
+  } // method nafWeight
+
+  private static SecureRandom newSecureRandom() {
+    // DRBG (Java 9+) and SHA1PRNG instances do not share any state, unlike NativePRNG.
+    for (String algo : new String[]{"DRBG", "SHA1PRNG"}) {
+      try {
+        return SecureRandom.getInstance(algo);
+      } catch (NoSuchAlgorithmException ex) {
+        // try the next one
+      }
+    }
+    return new SecureRandom();
+  } // method newSecureRandom
+
   public static synchronized RandomSerialNumberGenerator getInstance() {
     if (instance == null) {
       instance = new RandomSerialNumberGenerator();
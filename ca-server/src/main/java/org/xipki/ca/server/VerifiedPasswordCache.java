@@ -0,0 +1,190 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xipki.ca.api.NameId;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+import org.xipki.util.LruCache;
+
+/**
+ * Cache of the successful user authentications, so that the expensive PBKDF2 computation of
+ * {@link PasswordHash#validatePassword(byte[], String)} is not repeated for clients that
+ * authenticate every request. Only a salted SHA-256 digest of the verified password is kept.
+ * Entries are evicted in LRU-order if the cache is full, and are dropped as soon as they
+ * expire, or when the user is changed or removed.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class VerifiedPasswordCache {
+
+  private static final class CacheEntry {
+
+    private final NameId ident;
+
+    private final byte[] passwordDigest;
+
+    // in milliseconds
+    private final long expiresAt;
+
+    private CacheEntry(NameId ident, byte[] passwordDigest, long expiresAt) {
+      this.ident = ident;
+      this.passwordDigest = passwordDigest;
+      this.expiresAt = expiresAt;
+    }
+
+  } // class CacheEntry
+
+  private final LruCache<String, CacheEntry> cache;
+
+  // in milliseconds
+  private final long ttl;
+
+  private final byte[] salt = new byte[32];
+
+  private final AtomicLong hits = new AtomicLong(0);
+
+  private final AtomicLong misses = new AtomicLong(0);
+
+  // incremented by each invalidation
+  private final AtomicLong generation = new AtomicLong(0);
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize
+   *          Maximal number of cached users.
+   * @param ttl
+   *          Time in seconds a successful authentication is cached.
+   */
+  VerifiedPasswordCache(int maxSize, int ttl) {
+    this.cache = new LruCache<>(Args.positive(maxSize, "maxSize"));
+    this.ttl = Args.positive(ttl, "ttl") * 1000L;
+    new SecureRandom().nextBytes(salt);
+  }
+
+  /**
+   * Returns the identifier of the user if the given password has been verified before.
+   *
+   * @param user
+   *          User name.
+   * @param password
+   *          Password to be verified.
+   * @return the identifier of the user, or {@code null} if not cached.
+   */
+  NameId get(String user, byte[] password) {
+    CacheEntry entry = cache.get(user);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    if (entry.expiresAt <= System.currentTimeMillis()) {
+      cache.remove(user);
+      misses.incrementAndGet();
+      return null;
+    }
+
+    if (!MessageDigest.isEqual(entry.passwordDigest, digest(password))) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    return entry.ident;
+  } // method get
+
+  /**
+   * Returns the current generation, to be retrieved before the user is read from the database.
+   * @return the current generation.
+   */
+  long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Caches the successful authentication.
+   *
+   * @param user
+   *          User name.
+   * @param password
+   *          The verified password.
+   * @param ident
+   *          Identifier of the user.
+   * @param generation
+   *          The generation retrieved via {@link #generation()} before the user was read from
+   *          the database. If any entry has been invalidated since then, nothing is cached.
+   */
+  void put(String user, byte[] password, NameId ident, long generation) {
+    CacheEntry entry =
+        new CacheEntry(ident, digest(password), System.currentTimeMillis() + ttl);
+    synchronized (this.generation) {
+      if (this.generation.get() == generation) {
+        cache.put(user, entry);
+      }
+    }
+  } // method put
+
+  void remove(String user) {
+    synchronized (generation) {
+      generation.incrementAndGet();
+      cache.remove(user);
+    }
+  }
+
+  void clear() {
+    synchronized (generation) {
+      generation.incrementAndGet();
+      cache.evictAll();
+    }
+  }
+
+  int size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the number of authentications answered from the cache, i.e. the number of
+   * avoided PBKDF2 computations.
+   * @return the number of cache hits.
+   */
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  private byte[] digest(byte[] password) {
+    return HashAlgo.SHA256.hash(salt, password);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("VerifiedPasswordCache[size=%d,hits=%d,misses=%d]",
+        size(), getHits(), getMisses());
+  }
+
+}
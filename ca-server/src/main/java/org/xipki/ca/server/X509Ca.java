@@ -49,17 +49,22 @@ import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.ASN1Integer;
@@ -91,7 +96,6 @@ import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
 import org.bouncycastle.cert.CertIOException;
 import org.bouncycastle.cert.X509CRLHolder;
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.X509v2CRLBuilder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.bouncycastle.crypto.RuntimeCryptoException;
 import org.slf4j.Logger;
@@ -127,6 +131,7 @@ import org.xipki.ca.api.profile.ExtensionValue;
 import org.xipki.ca.api.profile.ExtensionValues;
 import org.xipki.ca.api.profile.KeypairGenControl;
 import org.xipki.security.CertRevocationInfo;
+import org.xipki.security.BatchSigner;
 import org.xipki.security.ConcurrentBagEntrySigner;
 import org.xipki.security.ConcurrentContentSigner;
 import org.xipki.security.CrlReason;
@@ -270,16 +275,25 @@ public class X509Ca implements Closeable {
       }
 
       boolean createDeltaCrlNow = false;
-      if (control.getDeltaCrlIntervals() > 0 && !createFullCrlNow) {
+      int deltaCrlIntervalMinutes = control.getDeltaCrlIntervalMinutes();
+      if ((control.getDeltaCrlIntervals() > 0 || deltaCrlIntervalMinutes > 0)
+          && !createFullCrlNow) {
         // if no CRL will be issued, check whether it is time to generate DeltaCRL
         // In seconds
         long lastIssueTimeOfDeltaCrl = certstore.getThisUpdateOfCurrentCrl(caIdent, true);
         long lastIssueTime = Math.max(lastIssueTimeOfDeltaCrl, lastIssueTimeOfFullCrl);
 
-        Date nearestScheduledCrlIssueTime = getScheduledCrlGenTimeNotAfter(
-            new Date(lastIssueTime * 1000));
-        Date nextScheduledCrlIssueTime = new Date(
-            nearestScheduledCrlIssueTime.getTime() + control.getDeltaCrlIntervals() * MS_PER_DAY);
+        Date nextScheduledCrlIssueTime;
+        if (deltaCrlIntervalMinutes > 0) {
+          nextScheduledCrlIssueTime =
+              new Date(lastIssueTime * 1000 + deltaCrlIntervalMinutes * MS_PER_MINUTE);
+        } else {
+          Date nearestScheduledCrlIssueTime = getScheduledCrlGenTimeNotAfter(
+              new Date(lastIssueTime * 1000));
+          nextScheduledCrlIssueTime = new Date(nearestScheduledCrlIssueTime.getTime()
+              + control.getDeltaCrlIntervals() * MS_PER_DAY);
+        }
+
         if (!nextScheduledCrlIssueTime.after(now)) {
           // at least one interval was skipped
           createDeltaCrlNow = true;
@@ -291,35 +305,30 @@ public class X509Ca implements Closeable {
         return;
       }
 
-      int intervals;
+      Date nextUpdate = getCrlNextUpdate(now, createDeltaCrlNow);
+
       if (createDeltaCrlNow) {
-        intervals = control.getDeltaCrlIntervals();
-      } else {
-        if (!control.isExtendedNextUpdate() && control.getDeltaCrlIntervals() > 0) {
-          intervals = control.getDeltaCrlIntervals();
-        } else {
-          intervals = control.getFullCrlIntervals();
+        try {
+          generateCrl(true, now, nextUpdate, CaAuditConstants.MSGID_ca_routine);
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th);
         }
+        // the deltaCRL contains all changes since the last full CRL, no clear here.
+        return;
       }
 
-      Date nextUpdate =
-          new Date(getScheduledCrlGenTimeNotAfter(now).getTime()
-              + (intervals + control.getOverlapDays()) * MS_PER_DAY);
-
       long maxIdOfDeltaCrlCache;
+      long deltaCrlCacheMark;
       try {
         maxIdOfDeltaCrlCache = certstore.getMaxIdOfDeltaCrlCache(caIdent);
-        generateCrl(createDeltaCrlNow, now, nextUpdate, CaAuditConstants.MSGID_ca_routine);
+        deltaCrlCacheMark = (deltaCrlCache == null) ? 0 : deltaCrlCache.mark();
+        generateCrl(false, now, nextUpdate, CaAuditConstants.MSGID_ca_routine);
       } catch (Throwable th) {
         LogUtil.error(LOG, th);
         return;
       }
 
-      try {
-        certstore.clearDeltaCrlCache(caIdent, maxIdOfDeltaCrlCache);
-      } catch (Throwable th) {
-        LogUtil.error(LOG, th, "could not clear DeltaCRLCache of CA " + caIdent);
-      }
+      clearDeltaCrlCache(deltaCrlCacheMark, maxIdOfDeltaCrlCache);
     } // method run0
 
   } // class CrlGenerationService
@@ -356,7 +365,7 @@ public class X509Ca implements Closeable {
 
   } // class SuspendedCertsRevoker
 
-  private static class OperationExceptionWithIndex extends OperationException {
+  static class OperationExceptionWithIndex extends OperationException {
 
     private static final long serialVersionUID = 1L;
 
@@ -373,6 +382,18 @@ public class X509Ca implements Closeable {
 
   }
 
+  /**
+   * Generation of the certificate for the request with given index, and its revocation. The
+   * generated certificate must not be {@code null}.
+   */
+  interface CertGenTask<T> {
+
+    T generate(int index) throws OperationExceptionWithIndex;
+
+    void revert(T generated) throws OperationException;
+
+  }
+
   private static final TimeZone TIMEZONE_UTC = TimeZone.getTimeZone("UTC");
 
   private static final long MS_PER_SECOND = 1000L;
@@ -412,6 +433,9 @@ public class X509Ca implements Closeable {
 
   private final CaManagerImpl caManager;
 
+  // null if no deltaCRL will be generated
+  private final DeltaCrlCache deltaCrlCache;
+
   private SecureRandom random = new SecureRandom();
 
   private AtomicBoolean crlGenInProcess = new AtomicBoolean(false);
@@ -422,6 +446,10 @@ public class X509Ca implements Closeable {
 
   private ScheduledFuture<?> suspendedCertsRevoker;
 
+  // publishes the certificates in the PUBLISHQUEUE for publishers with
+  // publishqueue.parallelism > 1, the idle threads are terminated.
+  private final ThreadPoolExecutor publishQueueExecutor;
+
   public X509Ca(CaManagerImpl caManager, CaInfo caInfo, CertStore certstore,
       CtLogClient ctlogClient)
       throws OperationException {
@@ -434,6 +462,24 @@ public class X509Ca implements Closeable {
     this.caCert = caInfo.getCert();
     this.certstore = Args.notNull(certstore, "certstore");
 
+    AtomicInteger threadIndex = new AtomicInteger(1);
+    this.publishQueueExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread thread = new Thread(r,
+              "publishqueue-" + caIdent.getName() + "-" + threadIndex.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.publishQueueExecutor.allowCoreThreadTimeOut(true);
+
+    if (shouldPublishToDeltaCrlCache()) {
+      CrlControl crlControl = caInfo.getCrlControl();
+      this.deltaCrlCache = new DeltaCrlCache(caIdent, crlControl.isOnlyContainsCaCerts(),
+          crlControl.isOnlyContainsUserCerts());
+    } else {
+      this.deltaCrlCache = null;
+    }
+
     SubjectPublicKeyInfo caSpki = this.caCert.getSubjectPublicKeyInfo();
     ASN1ObjectIdentifier caSpkiAlgId = caSpki.getAlgorithm().getAlgorithm();
     if (caSpkiAlgId.equals(PKCSObjectIdentifiers.rsaEncryption)) {
@@ -697,35 +743,58 @@ public class X509Ca implements Closeable {
     crlGenInProcess.set(true);
     try {
       Date thisUpdate = new Date();
-      Date nearestScheduledIssueTime = getScheduledCrlGenTimeNotAfter(thisUpdate);
-
-      int intervals;
-      if (!control.isExtendedNextUpdate() && control.getDeltaCrlIntervals() > 0) {
-        intervals = control.getDeltaCrlIntervals();
-      } else {
-        intervals = control.getFullCrlIntervals();
-      }
-
-      Date nextUpdate = new Date(nearestScheduledIssueTime.getTime()
-          + (intervals + control.getOverlapDays()) * MS_PER_DAY);
+      Date nextUpdate = getCrlNextUpdate(thisUpdate, false);
 
       long maxIdOfDeltaCrlCache = certstore.getMaxIdOfDeltaCrlCache(caIdent);
+      long deltaCrlCacheMark = (deltaCrlCache == null) ? 0 : deltaCrlCache.mark();
       X509CRLHolder crl = generateCrl(false, thisUpdate, nextUpdate, msgId);
       if (crl == null) {
         return null;
       }
 
-      try {
-        certstore.clearDeltaCrlCache(caIdent, maxIdOfDeltaCrlCache);
-      } catch (Throwable th) {
-        LogUtil.error(LOG, th, "could not clear DeltaCRLCache of CA " + caIdent);
-      }
+      clearDeltaCrlCache(deltaCrlCacheMark, maxIdOfDeltaCrlCache);
       return crl;
     } finally {
       crlGenInProcess.set(false);
     }
   } // method generateCrlOnDemand
 
+  private Date getCrlNextUpdate(Date thisUpdate, boolean deltaCrl) {
+    CrlControl control = caInfo.getCrlControl();
+    long overlap = control.getOverlapDays() * MS_PER_DAY;
+
+    int deltaCrlIntervalMinutes = control.getDeltaCrlIntervalMinutes();
+    if (deltaCrlIntervalMinutes > 0 && (deltaCrl || !control.isExtendedNextUpdate())) {
+      return new Date(thisUpdate.getTime() + deltaCrlIntervalMinutes * MS_PER_MINUTE + overlap);
+    }
+
+    int intervals;
+    if (deltaCrl) {
+      intervals = control.getDeltaCrlIntervals();
+    } else {
+      if (!control.isExtendedNextUpdate() && control.getDeltaCrlIntervals() > 0) {
+        intervals = control.getDeltaCrlIntervals();
+      } else {
+        intervals = control.getFullCrlIntervals();
+      }
+    }
+
+    return new Date(getScheduledCrlGenTimeNotAfter(thisUpdate).getTime()
+        + intervals * MS_PER_DAY + overlap);
+  } // method getCrlNextUpdate
+
+  private void clearDeltaCrlCache(long deltaCrlCacheMark, long maxIdOfDeltaCrlCache) {
+    if (deltaCrlCache != null) {
+      deltaCrlCache.clear(deltaCrlCacheMark, maxIdOfDeltaCrlCache);
+    }
+
+    try {
+      certstore.clearDeltaCrlCache(caIdent, maxIdOfDeltaCrlCache);
+    } catch (Throwable th) {
+      LogUtil.error(LOG, th, "could not clear DeltaCRLCache of CA " + caIdent);
+    }
+  } // method clearDeltaCrlCache
+
   private X509CRLHolder generateCrl(boolean deltaCrl, Date thisUpdate, Date nextUpdate,
       String msgId) throws OperationException {
     boolean successful = false;
@@ -780,181 +849,107 @@ public class X509Ca implements Closeable {
       boolean indirectCrl = (crlSigner != null);
       X500Name crlIssuer = indirectCrl ? crlSigner.getSubject() : pci.getSubject();
 
-      X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(crlIssuer, thisUpdate);
-      if (nextUpdate != null) {
-        crlBuilder.setNextUpdate(nextUpdate);
+      CrlControl crlControl = caInfo.getCrlControl();
+      boolean onlyUserCerts = crlControl.isOnlyContainsUserCerts();
+      boolean onlyCaCerts = crlControl.isOnlyContainsCaCerts();
+      if (onlyUserCerts && onlyCaCerts) {
+        throw new IllegalStateException(
+            "should not reach here, onlyUserCerts and onlyCACerts are both true");
       }
 
-      final int numEntries = 100;
-
-      // 10 minutes buffer
-      Date notExpireAt = new Date(thisUpdate.getTime() - 600L * MS_PER_SECOND);
-
-      long startId = 1;
-
-      // we have to cache the serial entries to sort them
-      List<CertRevInfoWithSerial> allRevInfos = new LinkedList<>();
+      BigInteger crlNumber;
+      X509CRLHolder crl;
 
-      List<CertRevInfoWithSerial> revInfos;
+      // the CRL entries are written to a temporary file instead of being cached in memory
+      try (CrlStreamBuilder crlBuilder = new CrlStreamBuilder(crlIssuer, thisUpdate)) {
+        crlBuilder.setNextUpdate(nextUpdate);
 
-      do {
         if (deltaCrl) {
-          revInfos = certstore.getCertsForDeltaCrl(caIdent, startId, numEntries,
-              control.isOnlyContainsCaCerts(), control.isOnlyContainsUserCerts());
-        } else {
-          revInfos = certstore.getRevokedCerts(caIdent, notExpireAt, startId, numEntries,
-              control.isOnlyContainsCaCerts(), control.isOnlyContainsUserCerts());
-        }
-        allRevInfos.addAll(revInfos);
-
-        long maxId = 1;
-        for (CertRevInfoWithSerial revInfo : revInfos) {
-          if (revInfo.getId() > maxId) {
-            maxId = revInfo.getId();
+          // the entries of a delta CRL are maintained in memory, sorted by SerialNumber ASC
+          if (deltaCrlCache != null) {
+            deltaCrlCache.sync(certstore);
+            for (CertRevInfoWithSerial revInfo : deltaCrlCache.getEntries()) {
+              addCrlEntry(crlBuilder, revInfo, indirectCrl, pci.getSubject());
+            }
           }
-        } // end for
-        startId = maxId + 1;
-      } while (revInfos.size() >= numEntries); // end do
-
-      if (revInfos != null) { // free the memory
-        revInfos.clear();
-      }
-
-      // sort the list by SerialNumber ASC
-      Collections.sort(allRevInfos);
-
-      boolean isFirstCrlEntry = true;
-      CrlControl crlControl = caInfo.getCrlControl();
+        } else {
+          // 10 minutes buffer
+          Date notExpireAt = new Date(thisUpdate.getTime() - 600L * MS_PER_SECOND);
 
-      for (CertRevInfoWithSerial revInfo : allRevInfos) {
-        CrlReason reason = revInfo.getReason();
-        if (crlControl.isExcludeReason() && reason != CrlReason.REMOVE_FROM_CRL) {
-          reason = CrlReason.UNSPECIFIED;
+          // the revoked certificates are read sorted by SerialNumber ASC
+          certstore.getRevokedCerts(caIdent, notExpireAt, onlyCaCerts, onlyUserCerts,
+              revInfo -> addCrlEntry(crlBuilder, revInfo, indirectCrl, pci.getSubject()));
         }
 
-        Date revocationTime = revInfo.getRevocationTime();
-        Date invalidityTime = revInfo.getInvalidityTime();
-
-        switch (crlControl.getInvalidityDateMode()) {
-          case forbidden:
-            invalidityTime = null;
-            break;
-          case optional:
-            break;
-          case required:
-            if (invalidityTime == null) {
-              invalidityTime = revocationTime;
-            }
-            break;
-          default:
-            throw new IllegalStateException(
-                "unknown TripleState " + crlControl.getInvalidityDateMode());
+        crlNumber = caInfo.nextCrlNumber();
+        event.addEventData(CaAuditConstants.NAME_crl_number, crlNumber);
+        if (baseCrlNumber != null) {
+          event.addEventData(CaAuditConstants.NAME_basecrl_number, baseCrlNumber);
         }
 
-        BigInteger serial = revInfo.getSerial();
-        LOG.debug("added cert ca={} serial={} to CRL", caIdent, serial);
+        try {
+          // AuthorityKeyIdentifier
+          byte[] akiValues = indirectCrl
+              ? crlSigner.getSigner().getCertificate().getSubjectKeyId()
+              : pci.getSubjectKeyIdentifer();
+          AuthorityKeyIdentifier aki = new AuthorityKeyIdentifier(akiValues);
+          crlBuilder.addExtension(Extension.authorityKeyIdentifier, false, aki);
+
+          // add extension CRL Number
+          crlBuilder.addExtension(Extension.cRLNumber, false, new ASN1Integer(crlNumber));
+
+          // IssuingDistributionPoint
+          if (onlyUserCerts || onlyCaCerts || indirectCrl) {
+            IssuingDistributionPoint idp = new IssuingDistributionPoint(
+                (DistributionPointName) null, // distributionPoint,
+                onlyUserCerts, // onlyContainsUserCerts,
+                onlyCaCerts, // onlyContainsCACerts,
+                (ReasonFlags) null, // onlySomeReasons,
+                indirectCrl, // indirectCRL,
+                false); // onlyContainsAttributeCerts
+
+            crlBuilder.addExtension(Extension.issuingDistributionPoint, true, idp);
+          }
 
-        if (!indirectCrl || !isFirstCrlEntry) {
-          if (invalidityTime != null) {
-            crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode(),
-                invalidityTime);
-          } else {
-            crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode());
+          // Delta CRL Indicator
+          if (deltaCrl) {
+            crlBuilder.addExtension(Extension.deltaCRLIndicator, true,
+                new ASN1Integer(baseCrlNumber));
           }
-          continue;
-        }
 
-        List<Extension> extensions = new ArrayList<>(3);
-        if (reason != CrlReason.UNSPECIFIED) {
-          Extension ext = createReasonExtension(reason.getCode());
-          extensions.add(ext);
-        }
-        if (invalidityTime != null) {
-          Extension ext = createInvalidityDateExtension(invalidityTime);
-          extensions.add(ext);
+          // freshestCRL
+          List<String> deltaCrlUris = pci.getCaUris().getDeltaCrlUris();
+          if ((control.getDeltaCrlIntervals() > 0 || control.getDeltaCrlIntervalMinutes() > 0)
+              && CollectionUtil.isNotEmpty(deltaCrlUris)) {
+            CRLDistPoint cdp = CaUtil.createCrlDistributionPoints(deltaCrlUris,
+                pci.getSubject(), crlIssuer);
+            crlBuilder.addExtension(Extension.freshestCRL, false, cdp);
+          }
+        } catch (CertIOException ex) {
+          LogUtil.error(LOG, ex, "crlBuilder.addExtension");
+          throw new OperationException(INVALID_EXTENSION, ex);
         }
 
-        Extension ext = createCertificateIssuerExtension(pci.getSubject());
-        extensions.add(ext);
-
-        crlBuilder.addCRLEntry(serial, revocationTime,
-            new Extensions(extensions.toArray(new Extension[0])));
-        isFirstCrlEntry = false;
-      }
-
-      allRevInfos.clear(); // free the memory
-
-      BigInteger crlNumber = caInfo.nextCrlNumber();
-      event.addEventData(CaAuditConstants.NAME_crl_number, crlNumber);
-      if (baseCrlNumber != null) {
-        event.addEventData(CaAuditConstants.NAME_basecrl_number, baseCrlNumber);
-      }
-
-      boolean onlyUserCerts = crlControl.isOnlyContainsUserCerts();
-      boolean onlyCaCerts = crlControl.isOnlyContainsCaCerts();
-      if (onlyUserCerts && onlyCaCerts) {
-        throw new IllegalStateException(
-            "should not reach here, onlyUserCerts and onlyCACerts are both true");
-      }
-
-      try {
-        // AuthorityKeyIdentifier
-        byte[] akiValues = indirectCrl
-            ? crlSigner.getSigner().getCertificate().getSubjectKeyId()
-            : pci.getSubjectKeyIdentifer();
-        AuthorityKeyIdentifier aki = new AuthorityKeyIdentifier(akiValues);
-        crlBuilder.addExtension(Extension.authorityKeyIdentifier, false, aki);
-
-        // add extension CRL Number
-        crlBuilder.addExtension(Extension.cRLNumber, false, new ASN1Integer(crlNumber));
-
-        // IssuingDistributionPoint
-        if (onlyUserCerts || onlyCaCerts || indirectCrl) {
-          IssuingDistributionPoint idp = new IssuingDistributionPoint(
-              (DistributionPointName) null, // distributionPoint,
-              onlyUserCerts, // onlyContainsUserCerts,
-              onlyCaCerts, // onlyContainsCACerts,
-              (ReasonFlags) null, // onlySomeReasons,
-              indirectCrl, // indirectCRL,
-              false); // onlyContainsAttributeCerts
-
-          crlBuilder.addExtension(Extension.issuingDistributionPoint, true, idp);
-        }
+        @SuppressWarnings("resource")
+        ConcurrentContentSigner concurrentSigner = (crlSigner == null)
+            ? caInfo.getSigner(null) : crlSigner.getSigner();
 
-        // Delta CRL Indicator
-        if (deltaCrl) {
-          crlBuilder.addExtension(Extension.deltaCRLIndicator, true,
-              new ASN1Integer(baseCrlNumber));
+        ConcurrentBagEntrySigner signer0;
+        try {
+          signer0 = concurrentSigner.borrowSigner();
+        } catch (NoIdleSignerException ex) {
+          throw new OperationException(SYSTEM_FAILURE,
+              "NoIdleSignerException: " + ex.getMessage());
         }
 
-        // freshestCRL
-        List<String> deltaCrlUris = pci.getCaUris().getDeltaCrlUris();
-        if (control.getDeltaCrlIntervals() > 0 && CollectionUtil.isNotEmpty(deltaCrlUris)) {
-          CRLDistPoint cdp = CaUtil.createCrlDistributionPoints(deltaCrlUris, pci.getSubject(),
-              crlIssuer);
-          crlBuilder.addExtension(Extension.freshestCRL, false, cdp);
+        try {
+          crl = crlBuilder.build(signer0.value());
+        } finally {
+          concurrentSigner.requiteSigner(signer0);
         }
-      } catch (CertIOException ex) {
-        LogUtil.error(LOG, ex, "crlBuilder.addExtension");
-        throw new OperationException(INVALID_EXTENSION, ex);
-      }
-
-      @SuppressWarnings("resource")
-      ConcurrentContentSigner concurrentSigner = (crlSigner == null)
-          ? caInfo.getSigner(null) : crlSigner.getSigner();
-
-      ConcurrentBagEntrySigner signer0;
-      try {
-        signer0 = concurrentSigner.borrowSigner();
-      } catch (NoIdleSignerException ex) {
-        throw new OperationException(SYSTEM_FAILURE, "NoIdleSignerException: " + ex.getMessage());
-      }
-
-      X509CRLHolder crl;
-      try {
-        crl = crlBuilder.build(signer0.value());
-      } finally {
-        concurrentSigner.requiteSigner(signer0);
+      } catch (IOException ex) {
+        LogUtil.error(LOG, ex, "could not build CRL");
+        throw new OperationException(CRL_FAILURE, ex);
       }
 
       caInfo.getCaEntry().setNextCrlNumber(crlNumber.longValue() + 1);
@@ -1155,49 +1150,136 @@ public class X509Ca implements Closeable {
   private boolean publishCertsInQueue(IdentifiedCertPublisher publisher) {
     Args.notNull(publisher, "publisher");
     final int numEntries = 500;
+    final String publisherName = publisher.getIdent().getName();
+
+    final int parallelism = publisher.getQueueParallelism();
+    ExecutorService executor = null;
+    if (parallelism > 1) {
+      executor = publishQueueExecutor;
+      synchronized (publishQueueExecutor) {
+        if (publishQueueExecutor.getMaximumPoolSize() < parallelism) {
+          publishQueueExecutor.setMaximumPoolSize(parallelism);
+          publishQueueExecutor.setCorePoolSize(parallelism);
+        }
+      }
+    }
+
+    final long start = System.currentTimeMillis();
+    long numPublished = 0;
 
     while (true) {
       List<Long> certIds;
+      Map<Long, CertificateInfo> certInfos;
       try {
         certIds = certstore.getPublishQueueEntries(caIdent, publisher.getIdent(), numEntries);
-      } catch (OperationException ex) {
+        if (CollectionUtil.isEmpty(certIds)) {
+          break;
+        }
+
+        certInfos = certstore.getCertsForIds(caIdent, caCert, certIds, caIdNameMap);
+      } catch (OperationException | CertificateException ex) {
         LogUtil.error(LOG, ex);
         return false;
       }
 
-      if (CollectionUtil.isEmpty(certIds)) {
-        break;
-      }
+      List<Long> publishedIds = publishCerts(publisher, executor, parallelism,
+          certIds, certInfos);
+      int numFailed = certIds.size() - publishedIds.size();
 
-      for (Long certId : certIds) {
-        CertificateInfo certInfo;
-
-        try {
-          certInfo = certstore.getCertForId(caIdent, caCert, certId, caIdNameMap);
-        } catch (OperationException | CertificateException ex) {
-          LogUtil.error(LOG, ex);
-          return false;
-        }
+      try {
+        certstore.removeFromPublishQueue(publisher.getIdent(), publishedIds);
+      } catch (OperationException ex) {
+        LogUtil.warn(LOG, ex, "could not remove " + publishedIds.size()
+            + " republished certs for publisher=" + publisherName);
+        return false;
+      }
 
-        boolean successful = publisher.certificateAdded(certInfo);
-        if (!successful) {
-          LOG.error("republishing certificate id={} failed", certId);
-          return false;
-        }
+      numPublished += publishedIds.size();
+      long duration = Math.max(1, System.currentTimeMillis() - start);
+      long rate = numPublished * 1000 / duration;
+      publisher.recordQueueProgress(publishedIds.size(), numFailed, rate);
+      LOG.info("published {} certificates of CA {} in PUBLISHQUEUE to publisher {}, "
+          + "{} certificates/s", numPublished, caIdent.getName(), publisherName, rate);
 
-        try {
-          certstore.removeFromPublishQueue(publisher.getIdent(), certId);
-        } catch (OperationException ex) {
-          LogUtil.warn(LOG, ex, "could not remove republished cert id=" + certId
-              + " and publisher=" + publisher.getIdent().getName());
-          continue;
-        }
-      } // end for
+      if (numFailed > 0) {
+        return false;
+      }
     } // end while
 
     return true;
   } // method publishCertsInQueue
 
+  /**
+   * Publishes the certificates via the bulk API of the publisher. If an executor is given, the
+   * certificates are split into {@code parallelism} chunks which are published concurrently.
+   *
+   * @return IDs of the certificates which have been published.
+   */
+  private static List<Long> publishCerts(IdentifiedCertPublisher publisher,
+      ExecutorService executor, int parallelism, List<Long> certIds,
+      Map<Long, CertificateInfo> certInfos) {
+    if (executor == null) {
+      return publishCerts(publisher, certIds, certInfos);
+    }
+
+    int chunkSize = (certIds.size() + parallelism - 1) / parallelism;
+    List<List<Long>> chunks = new ArrayList<>(parallelism);
+    List<Future<List<Long>>> futures = new ArrayList<>(parallelism);
+    for (int off = 0; off < certIds.size(); off += chunkSize) {
+      List<Long> chunk = certIds.subList(off, Math.min(certIds.size(), off + chunkSize));
+      chunks.add(chunk);
+      futures.add(executor.submit(() -> publishCerts(publisher, chunk, certInfos)));
+    }
+
+    List<Long> publishedIds = new ArrayList<>(certIds.size());
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        publishedIds.addAll(futures.get(i).get());
+      } catch (ExecutionException ex) {
+        LogUtil.error(LOG, ex.getCause(), "republishing " + chunks.get(i).size()
+            + " certificates failed");
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        LOG.error("interrupted: {}", ex.getMessage());
+        break;
+      }
+    }
+    return publishedIds;
+  } // method publishCerts
+
+  private static List<Long> publishCerts(IdentifiedCertPublisher publisher,
+      List<Long> certIds, Map<Long, CertificateInfo> certInfos) {
+    List<Long> publishedIds = new ArrayList<>(certIds.size());
+    List<Long> existingIds = new ArrayList<>(certIds.size());
+    List<CertificateInfo> existingCertInfos = new ArrayList<>(certIds.size());
+
+    for (Long certId : certIds) {
+      CertificateInfo certInfo = certInfos.get(certId);
+      if (certInfo == null) {
+        // the certificate has been removed in the meantime
+        LOG.info("certificate id={} in PUBLISHQUEUE does not exist", certId);
+        publishedIds.add(certId);
+      } else {
+        existingIds.add(certId);
+        existingCertInfos.add(certInfo);
+      }
+    }
+
+    if (existingCertInfos.isEmpty()) {
+      return publishedIds;
+    }
+
+    boolean[] successful = publisher.certificatesAdded(existingCertInfos);
+    for (int i = 0; i < successful.length; i++) {
+      if (successful[i]) {
+        publishedIds.add(existingIds.get(i));
+      } else {
+        LOG.error("republishing certificate id={} failed", existingIds.get(i));
+      }
+    }
+    return publishedIds;
+  } // method publishCerts
+
   private boolean publishCrl(X509CRLHolder crl) {
     try {
       certstore.addCrl(caIdent, crl);
@@ -1359,6 +1441,10 @@ public class X509Ca implements Closeable {
       return null;
     }
 
+    if (deltaCrlCache != null) {
+      deltaCrlCache.revoked(revokedCert.getCert().getCert(), revokedCert.getRevInfo());
+    }
+
     for (IdentifiedCertPublisher publisher : publishers()) {
       if (!publisher.isAsyn()) {
         boolean successful;
@@ -1425,6 +1511,10 @@ public class X509Ca implements Closeable {
       return null;
     }
 
+    if (deltaCrlCache != null) {
+      deltaCrlCache.revoked(revokedCert.getCert().getCert(), revokedCert.getRevInfo());
+    }
+
     for (IdentifiedCertPublisher publisher : publishers()) {
       if (!publisher.isAsyn()) {
         boolean successful;
@@ -1472,6 +1562,10 @@ public class X509Ca implements Closeable {
       return null;
     }
 
+    if (deltaCrlCache != null) {
+      deltaCrlCache.unrevoked(unrevokedCert.getCert());
+    }
+
     for (IdentifiedCertPublisher publisher : publishers()) {
       if (!publisher.isAsyn()) {
         boolean successful;
@@ -1508,8 +1602,7 @@ public class X509Ca implements Closeable {
       return false;
     }
 
-    int deltaCrlInterval = control.getDeltaCrlIntervals();
-    return deltaCrlInterval != 0 && deltaCrlInterval < control.getFullCrlIntervals();
+    return control.isDeltaCrlEnabled();
   } // method shouldPublishToDeltaCrlCache
 
   public void revokeCa(CertRevocationInfo revocationInfo, String msgId) throws OperationException {
@@ -1619,54 +1712,106 @@ public class X509Ca implements Closeable {
       }
     }
 
-    List<CertificateInfo> certInfos = new ArrayList<>(n);
-    OperationExceptionWithIndex exception = null;
+    ExecutorService executor = caManager.getCertGenExecutor();
+    return generateAll(n, n == 1 ? null : executor, new CertGenTask<CertificateInfo>() {
 
-    for (int i = 0; i < n; i++) {
-      if (exception != null) {
-        break;
+      @Override
+      public CertificateInfo generate(int index) throws OperationExceptionWithIndex {
+        return generateCert(index, gcts.get(index), requestor, reqType, transactionId, msgId);
       }
-      GrantedCertTemplate gct = gcts.get(i);
-      final NameId certprofilIdent = gct.certprofile.getIdent();
-      final String subjectText = gct.grantedSubjectText;
-      LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'",
-          caIdent.getName(), certprofilIdent.getName(), subjectText);
 
-      boolean successful = false;
-      try {
-        CertificateInfo certInfo = generateCert(gct, requestor, reqType, transactionId, msgId);
-        successful = true;
-        certInfos.add(certInfo);
+      @Override
+      public void revert(CertificateInfo certInfo) throws OperationException {
+        removeCert(certInfo.getCert().getCert().getSerialNumber(), msgId);
+      }
 
-        if (LOG.isInfoEnabled()) {
-          String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
-          CertWithDbId cert = certInfo.getCert();
-          LOG.info("{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
-              prefix, caIdent.getName(), certprofilIdent.getName(),
-              cert.getCert().getSubjectRfc4519Text(), cert.getCert().getSerialNumberHex());
+    });
+  } // method generateCerts
+
+  /**
+   * Generates the certificates for n requests, concurrently if an executor is given. If the
+   * generation of one certificate fails, the pending generations are cancelled, and all
+   * generated certificates are reverted after the running generations have finished.
+   *
+   * @param n Number of requests.
+   * @param executor Executor to generate the certificates concurrently, may be {@code null}.
+   * @param task Generation and revocation of the certificates.
+   * @return the generated certificates, in the order of the requests.
+   * @throws OperationExceptionWithIndex
+   *         if the generation of any certificate fails.
+   */
+  static <T> List<T> generateAll(int n, ExecutorService executor, CertGenTask<T> task)
+      throws OperationExceptionWithIndex {
+    List<T> generated = new ArrayList<>(n);
+    OperationExceptionWithIndex exception = null;
+
+    if (executor == null) {
+      for (int i = 0; i < n; i++) {
+        try {
+          generated.add(task.generate(i));
+        } catch (OperationExceptionWithIndex ex) {
+          exception = ex;
+          break;
         }
-      } catch (OperationException ex) {
-        exception = new OperationExceptionWithIndex(i, ex);
-      } catch (Throwable th) {
-        exception = new OperationExceptionWithIndex(i, new OperationException(SYSTEM_FAILURE, th));
-      } finally {
-        if (!successful) {
-          LOG.error("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
-              caIdent.getName(), certprofilIdent.getName(), subjectText);
+      }
+    } else {
+      // Future.cancel() cannot be used to skip the pending tasks: a running task is marked as
+      // cancelled as well, and its result would not be reverted. The pending tasks return
+      // null instead once the generation is aborted.
+      AtomicBoolean aborted = new AtomicBoolean(false);
+      List<Future<T>> futures = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        final int index = i;
+        futures.add(executor.submit(() -> aborted.get() ? null : task.generate(index)));
+      }
+
+      // wait for all tasks, also if interrupted, so that all generated certificates can be
+      // reverted on failure
+      boolean interrupted = false;
+      for (int i = 0; i < n; i++) {
+        Future<T> future = futures.get(i);
+        while (true) {
+          try {
+            T result = future.get();
+            if (result != null) {
+              generated.add(result);
+            }
+            break;
+          } catch (ExecutionException ex) {
+            if (exception == null) {
+              Throwable cause = ex.getCause();
+              exception = (cause instanceof OperationExceptionWithIndex)
+                  ? (OperationExceptionWithIndex) cause
+                  : new OperationExceptionWithIndex(i,
+                      new OperationException(SYSTEM_FAILURE, cause));
+              aborted.set(true);
+            }
+            break;
+          } catch (InterruptedException ex) {
+            interrupted = true;
+            if (exception == null) {
+              exception = new OperationExceptionWithIndex(i,
+                  new OperationException(SYSTEM_FAILURE, "interrupted"));
+              aborted.set(true);
+            }
+          }
         }
       }
+
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
     }
 
     if (exception != null) {
       LOG.error("could not generate certificate for request[{}], reverted all generated"
           + " certificates", exception.getIndex());
       // delete generated certificates
-      for (CertificateInfo m : certInfos) {
-        BigInteger serial = m.getCert().getCert().getSerialNumber();
+      for (T m : generated) {
         try {
-          removeCert(serial, msgId);
+          task.revert(m);
         } catch (Throwable thr) {
-          LogUtil.error(LOG, thr, "could not delete certificate serial=" + serial);
+          LogUtil.error(LOG, thr, "could not revert generated certificate");
         }
       }
 
@@ -1674,8 +1819,41 @@ public class X509Ca implements Closeable {
       throw exception;
     }
 
-    return certInfos;
-  }
+    return generated;
+  } // method generateAll
+
+  private CertificateInfo generateCert(int index, GrantedCertTemplate gct,
+      RequestorInfo requestor, RequestType reqType, byte[] transactionId, String msgId)
+      throws OperationExceptionWithIndex {
+    final NameId certprofilIdent = gct.certprofile.getIdent();
+    final String subjectText = gct.grantedSubjectText;
+    LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'",
+        caIdent.getName(), certprofilIdent.getName(), subjectText);
+
+    boolean successful = false;
+    try {
+      CertificateInfo certInfo = generateCert(gct, requestor, reqType, transactionId, msgId);
+      successful = true;
+
+      if (LOG.isInfoEnabled()) {
+        String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
+        CertWithDbId cert = certInfo.getCert();
+        LOG.info("{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
+            prefix, caIdent.getName(), certprofilIdent.getName(),
+            cert.getCert().getSubjectRfc4519Text(), cert.getCert().getSerialNumberHex());
+      }
+      return certInfo;
+    } catch (OperationException ex) {
+      throw new OperationExceptionWithIndex(index, ex);
+    } catch (Throwable th) {
+      throw new OperationExceptionWithIndex(index, new OperationException(SYSTEM_FAILURE, th));
+    } finally {
+      if (!successful) {
+        LOG.error("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
+            caIdent.getName(), certprofilIdent.getName(), subjectText);
+      }
+    }
+  } // method generateCert
 
   public CertificateInfo generateCert(CertTemplateData certTemplate, RequestorInfo requestor,
       RequestType reqType, byte[] transactionId, String msgId) throws OperationException {
@@ -1749,20 +1927,7 @@ public class X509Ca implements Closeable {
       if (addCtlog) {
         certBuilder.addExtension(Extn.id_precertificate, true, DERNull.INSTANCE);
 
-        ConcurrentBagEntrySigner signer0;
-        try {
-          signer0 = gct.signer.borrowSigner();
-        } catch (NoIdleSignerException ex) {
-          throw new OperationException(SYSTEM_FAILURE, ex);
-        }
-
-        X509CertificateHolder precert;
-        try {
-          precert = certBuilder.build(signer0.value());
-        } finally {
-          // returns the signer after the signing so that it can be used by others
-          gct.signer.requiteSigner(signer0);
-        }
+        X509CertificateHolder precert = buildCert(certBuilder, gct.signer);
 
         SignedCertificateTimestampList scts = getCtlogScts(precert);
 
@@ -1780,19 +1945,7 @@ public class X509Ca implements Closeable {
             new Extension(Extn.id_SCTs, extnSctCtrl.isCritical(), extnValue));
       }
 
-      ConcurrentBagEntrySigner signer0;
-      try {
-        signer0 = gct.signer.borrowSigner();
-      } catch (NoIdleSignerException ex) {
-        throw new OperationException(SYSTEM_FAILURE, ex);
-      }
-
-      X509CertificateHolder bcCert;
-      try {
-        bcCert = certBuilder.build(signer0.value());
-      } finally {
-        gct.signer.requiteSigner(signer0);
-      }
+      X509CertificateHolder bcCert = buildCert(certBuilder, gct.signer);
 
       byte[] encodedCert = bcCert.getEncoded();
       int maxCertSize = gct.certprofile.getMaxCertSize();
@@ -1974,7 +2127,10 @@ public class X509Ca implements Closeable {
 
           BigInteger publicExponent = tkg.getPublicExponent();
 
-          KeyPair kp = KeyUtil.generateRSAKeypair(keysize, publicExponent, random);
+          KeyPair kp = pollKeypair(kg);
+          if (kp == null) {
+            kp = KeyUtil.generateRSAKeypair(keysize, publicExponent, random);
+          }
           java.security.interfaces.RSAPublicKey rsaPubKey =
               (java.security.interfaces.RSAPublicKey) kp.getPublic();
 
@@ -2007,7 +2163,10 @@ public class X509Ca implements Closeable {
         } else if (kg instanceof KeypairGenControl.ECKeypairGenControl) {
           KeypairGenControl.ECKeypairGenControl tkg = (KeypairGenControl.ECKeypairGenControl) kg;
           ASN1ObjectIdentifier curveOid = tkg.getCurveOid();
-          KeyPair kp = KeyUtil.generateECKeypair(curveOid, random);
+          KeyPair kp = pollKeypair(kg);
+          if (kp == null) {
+            kp = KeyUtil.generateECKeypair(curveOid, random);
+          }
           ECPublicKey pub = (ECPublicKey) kp.getPublic();
           int orderBitLength = pub.getParams().getOrder().bitLength();
 
@@ -2034,7 +2193,10 @@ public class X509Ca implements Closeable {
               new org.bouncycastle.asn1.sec.ECPrivateKey(orderBitLength, priv.getS()));
         } else if (kg instanceof KeypairGenControl.DSAKeypairGenControl) {
           KeypairGenControl.DSAKeypairGenControl tkg = (KeypairGenControl.DSAKeypairGenControl) kg;
-          KeyPair kp = KeyUtil.generateDSAKeypair(tkg.getParameterSpec(), random);
+          KeyPair kp = pollKeypair(kg);
+          if (kp == null) {
+            kp = KeyUtil.generateDSAKeypair(tkg.getParameterSpec(), random);
+          }
 
           grantedPublicKeyInfo = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(),
               new ASN1Integer(((DSAPublicKey) kp.getPublic()).getY()));
@@ -2046,7 +2208,10 @@ public class X509Ca implements Closeable {
         } else if (kg instanceof KeypairGenControl.EDDSAKeypairGenControl) {
           KeypairGenControl.EDDSAKeypairGenControl tkg =
               (KeypairGenControl.EDDSAKeypairGenControl) kg;
-          KeyPair kp = KeyUtil.generateEdECKeypair(tkg.getKeyAlgorithm().getAlgorithm(), random);
+          KeyPair kp = pollKeypair(kg);
+          if (kp == null) {
+            kp = KeyUtil.generateEdECKeypair(tkg.getKeyAlgorithm().getAlgorithm(), random);
+          }
           grantedPublicKeyInfo = KeyUtil.createSubjectPublicKeyInfo(kp.getPublic());
           // make sure that the algorithm match
           if (!grantedPublicKeyInfo.getAlgorithm().equals(tkg.getKeyAlgorithm())) {
@@ -2165,6 +2330,11 @@ public class X509Ca implements Closeable {
 
   } // method createGrantedCertTemplate
 
+  private KeyPair pollKeypair(KeypairGenControl keypairGenControl) {
+    KeypairPool keypairPool = caManager.getKeypairPool();
+    return (keypairPool == null) ? null : keypairPool.poll(keypairGenControl);
+  }
+
   public IdentifiedCertprofile getX509Certprofile(String certprofileName) {
     if (certprofileName == null) {
       return null;
@@ -2443,9 +2613,40 @@ public class X509Ca implements Closeable {
       HealthCheckResult publisherHealth = new HealthCheckResult();
       publisherHealth.setName("Publisher");
       publisherHealth.setHealthy(publisher.isHealthy());
+      Map<String, Object> statuses = publisherHealth.getStatuses();
+      statuses.put("name", publisher.getIdent().getName());
+      statuses.put("queuePublished", publisher.getQueuePublished());
+      statuses.put("queueFailed", publisher.getQueueFailed());
+      statuses.put("queueRate", publisher.getQueueRate());
       result.addChildCheck(publisherHealth);
     }
 
+    VerifiedPasswordCache passwordCache = certstore.getVerifiedPasswordCache();
+    if (passwordCache != null) {
+      HealthCheckResult cacheHealth = new HealthCheckResult();
+      cacheHealth.setName("VerifiedPasswordCache");
+      cacheHealth.setHealthy(true);
+      Map<String, Object> statuses = cacheHealth.getStatuses();
+      statuses.put("size", passwordCache.size());
+      // each hit is an avoided PBKDF2 computation
+      statuses.put("hits", passwordCache.getHits());
+      statuses.put("misses", passwordCache.getMisses());
+      result.addChildCheck(cacheHealth);
+    }
+
+    KeypairPool keypairPool = caManager.getKeypairPool();
+    if (keypairPool != null) {
+      for (Map.Entry<String, Map<String, Object>> entry : keypairPool.getStatuses().entrySet()) {
+        HealthCheckResult poolHealth = new HealthCheckResult();
+        poolHealth.setName("KeypairPool");
+        poolHealth.setHealthy(true);
+        Map<String, Object> statuses = poolHealth.getStatuses();
+        statuses.put("name", entry.getKey());
+        statuses.putAll(entry.getValue());
+        result.addChildCheck(poolHealth);
+      }
+    }
+
     result.setHealthy(healthy);
 
     return result;
@@ -2472,6 +2673,29 @@ public class X509Ca implements Closeable {
     return event;
   }
 
+  private static X509CertificateHolder buildCert(X509v3CertificateBuilder certBuilder,
+      ConcurrentContentSigner signer) throws OperationException {
+    BatchSigner batchSigner = signer.getBatchSigner();
+    if (batchSigner != null) {
+      // signed together with the certificates of concurrent requests
+      return certBuilder.build(batchSigner.newContentSigner());
+    }
+
+    ConcurrentBagEntrySigner signer0;
+    try {
+      signer0 = signer.borrowSigner();
+    } catch (NoIdleSignerException ex) {
+      throw new OperationException(SYSTEM_FAILURE, ex);
+    }
+
+    try {
+      return certBuilder.build(signer0.value());
+    } finally {
+      // returns the signer after the signing so that it can be used by others
+      signer.requiteSigner(signer0);
+    }
+  } // method buildCert
+
   private boolean verifySignature(X509Cert cert) {
     Args.notNull(cert, "cert");
     PublicKey caPublicKey = caCert.getPublicKey();
@@ -2526,8 +2750,72 @@ public class X509Ca implements Closeable {
     if (executor != null) {
       executor.purge();
     }
+
+    if (ctlogClient != null) {
+      ctlogClient.close();
+    }
+
+    publishQueueExecutor.shutdown();
   }
 
+  private void addCrlEntry(CrlStreamBuilder crlBuilder, CertRevInfoWithSerial revInfo,
+      boolean indirectCrl, X500Name caSubject) throws OperationException {
+    CrlControl crlControl = caInfo.getCrlControl();
+
+    CrlReason reason = revInfo.getReason();
+    if (crlControl.isExcludeReason() && reason != CrlReason.REMOVE_FROM_CRL) {
+      reason = CrlReason.UNSPECIFIED;
+    }
+
+    Date revocationTime = revInfo.getRevocationTime();
+    Date invalidityTime = revInfo.getInvalidityTime();
+
+    switch (crlControl.getInvalidityDateMode()) {
+      case forbidden:
+        invalidityTime = null;
+        break;
+      case optional:
+        break;
+      case required:
+        if (invalidityTime == null) {
+          invalidityTime = revocationTime;
+        }
+        break;
+      default:
+        throw new IllegalStateException(
+            "unknown TripleState " + crlControl.getInvalidityDateMode());
+    }
+
+    BigInteger serial = revInfo.getSerial();
+    LOG.debug("added cert ca={} serial={} to CRL", caIdent, serial);
+
+    try {
+      if (!indirectCrl || crlBuilder.getNumEntries() > 0) {
+        crlBuilder.addCrlEntry(serial, revocationTime, reason.getCode(), invalidityTime);
+        return;
+      }
+
+      // the first entry of an indirect CRL
+      List<Extension> extensions = new ArrayList<>(3);
+      if (reason != CrlReason.UNSPECIFIED) {
+        Extension ext = createReasonExtension(reason.getCode());
+        extensions.add(ext);
+      }
+      if (invalidityTime != null) {
+        Extension ext = createInvalidityDateExtension(invalidityTime);
+        extensions.add(ext);
+      }
+
+      Extension ext = createCertificateIssuerExtension(caSubject);
+      extensions.add(ext);
+
+      crlBuilder.addCrlEntry(serial, revocationTime,
+          new Extensions(extensions.toArray(new Extension[0])));
+    } catch (IOException ex) {
+      throw new OperationException(CRL_FAILURE, "could not add CRL entry: " + ex.getMessage());
+    }
+  } // method addCrlEntry
+
   private static Extension createReasonExtension(int reasonCode) {
     CRLReason crlReason = CRLReason.lookup(reasonCode);
     try {
@@ -35,6 +35,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.crypto.Cipher;
@@ -955,13 +958,27 @@ public class CmpResponder extends BaseCmpResponder {
       Long reqDbId = null;
       boolean savingRequestFailed = false;
 
+      // the certificates are independent of each other, and may be generated in parallel
+      ExecutorService executor = caManager.getCertGenExecutor();
+      List<Future<CertificateInfo>> futures = null;
+      if (executor != null && n > 1) {
+        futures = new ArrayList<>(n);
+        for (CertTemplateData certTemplate : certTemplates) {
+          futures.add(executor.submit(() -> kup
+              ? ca.regenerateCert(certTemplate, requestor, RequestType.CMP, tid.getOctets(), msgId)
+              : ca.generateCert(certTemplate, requestor, RequestType.CMP, tid.getOctets(), msgId)));
+        }
+      }
+
       for (int i = 0; i < n; i++) {
         CertTemplateData certTemplate = certTemplates.get(i);
         ASN1Integer certReqId = certTemplate.getCertReqId();
 
         CertificateInfo certInfo;
         try {
-          if (kup) {
+          if (futures != null) {
+            certInfo = getCertInfo(futures.get(i));
+          } else if (kup) {
             certInfo = ca.regenerateCert(certTemplate, requestor, RequestType.CMP,
                 tid.getOctets(), msgId);
           } else {
@@ -998,6 +1015,22 @@ public class CmpResponder extends BaseCmpResponder {
     return ret;
   } // method generateCertificates
 
+  private static CertificateInfo getCertInfo(Future<CertificateInfo> future)
+      throws OperationException {
+    try {
+      return future.get();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof OperationException) {
+        throw (OperationException) cause;
+      }
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE, cause);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE, "interrupted");
+    }
+  } // method getCertInfo
+
   private CertResponse postProcessCertInfo(ASN1Integer certReqId, CmpRequestorInfo requestor,
       CertificateInfo certInfo, ASN1OctetString tid, CmpControl cmpControl) {
     if (cmpControl.isConfirmCert()) {
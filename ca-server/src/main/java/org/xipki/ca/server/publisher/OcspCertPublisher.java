@@ -20,7 +20,9 @@ package org.xipki.ca.server.publisher;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.cert.X509CRLHolder;
@@ -149,6 +151,22 @@ public class OcspCertPublisher extends CertPublisher {
     }
   } // method certificateAdded
 
+  @Override
+  public boolean[] certificatesAdded(List<CertificateInfo> certInfos) {
+    try {
+      queryExecutor.addCerts(certInfos);
+      boolean[] ret = new boolean[certInfos.size()];
+      Arrays.fill(ret, true);
+      return ret;
+    } catch (Exception ex) {
+      LOG.warn("could not save {} certificates in batch, save them one by one: {}",
+          certInfos.size(), ex.getMessage());
+      LOG.debug("error", ex);
+      // the failure of one certificate shall not affect the others
+      return super.certificatesAdded(certInfos);
+    }
+  } // method certificatesAdded
+
   @Override
   public boolean certificateRevoked(X509Cert caCert, CertWithDbId cert,
       String certprofile, CertRevocationInfo revInfo) {
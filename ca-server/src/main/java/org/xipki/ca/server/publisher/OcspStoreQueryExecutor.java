@@ -19,6 +19,7 @@ package org.xipki.ca.server.publisher;
 
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -27,6 +28,7 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +36,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.ca.api.CertWithDbId;
+import org.xipki.ca.api.CertificateInfo;
 import org.xipki.ca.api.OperationException;
 import org.xipki.ca.api.OperationException.ErrorCode;
 import org.xipki.datasource.DataAccessException;
@@ -121,6 +124,11 @@ class OcspStoreQueryExecutor {
       "INSERT INTO CERT (ID,LUPDATE,SN,NBEFORE,NAFTER,REV,IID,HASH,SUBJECT) "
       + "VALUES (?,?,?,?,?,?,?,?,?)";
 
+  private static final String SQL_UPDATE_CERT =
+      "UPDATE CERT SET LUPDATE=?,REV=?,RT=?,RIT=?,RR=? WHERE ID=?";
+
+  private static final int MAX_IN_SIZE = 100;
+
   private static final Logger LOG = LoggerFactory.getLogger(OcspStoreQueryExecutor.class);
 
   private final DataSourceWrapper datasource;
@@ -228,43 +236,12 @@ class OcspStoreQueryExecutor {
     }
 
     final String sql = revoked ? SQL_ADD_REVOKED_CERT : SQL_ADD_CERT;
-
     long certId = certificate.getCertId();
-    byte[] encodedCert = certificate.getCert().getEncoded();
-    String certHash = certhashAlgo.base64Hash(encodedCert);
-
-    X509Cert cert = certificate.getCert();
-    long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
-    long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
-    String cuttedSubject = X509Util.cutText(certificate.getCert().getSubjectRfc4519Text(),
-                            maxX500nameLen);
 
     PreparedStatement ps = datasource.prepareStatement(sql);
 
     try {
-      // CERT
-      int idx = 1;
-      ps.setLong(idx++, certId);
-      ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
-      ps.setString(idx++, serialNumber.toString(16));
-      ps.setLong(idx++, notBeforeSeconds);
-      ps.setLong(idx++, notAfterSeconds);
-      setBoolean(ps, idx++, revoked);
-      ps.setInt(idx++, issuerId);
-      ps.setString(idx++, certHash);
-      ps.setString(idx++, cuttedSubject);
-
-      if (revoked) {
-        long revTime = revInfo.getRevocationTime().getTime() / 1000;
-        ps.setLong(idx++, revTime);
-        if (revInfo.getInvalidityTime() != null) {
-          ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
-        } else {
-          ps.setNull(idx++, Types.BIGINT);
-        }
-        int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
-        ps.setInt(idx++, reasonCode);
-      }
+      setAddCertParams(ps, issuerId, certificate, revInfo);
 
       try {
         ps.executeUpdate();
@@ -288,33 +265,180 @@ class OcspStoreQueryExecutor {
     }
   } // method addOrUpdateCert
 
-  private void updateRegisteredCert(long registeredCertId, CertRevocationInfo revInfo)
-      throws DataAccessException {
-    boolean revoked = (revInfo != null);
-
-    final String sql = "UPDATE CERT SET LUPDATE=?,REV=?,RT=?,RIT=?,RR=? WHERE ID=?";
+  /**
+   * Adds or updates the certificates in bulk. The certificates are grouped by issuer, and the
+   * rows of each issuer are written via JDBC batches within one transaction: the already
+   * registered certificates are looked up with one query per 100 certificates, and are then
+   * updated, the others are inserted.
+   *
+   * @param certInfos
+   *          Certificates to be added or updated.
+   * @throws DataAccessException
+   *           If database error occurs. In this case no certificate has been written.
+   */
+  void addCerts(List<CertificateInfo> certInfos) throws DataAccessException {
+    Args.notNull(certInfos, "certInfos");
+    if (certInfos.isEmpty()) {
+      return;
+    }
 
-    PreparedStatement ps = datasource.prepareStatement(sql);
+    Map<Integer, List<CertificateInfo>> issuerCertsMap = new LinkedHashMap<>();
+    for (CertificateInfo certInfo : certInfos) {
+      int issuerId = getIssuerId(certInfo.getIssuerCert());
+      issuerCertsMap.computeIfAbsent(issuerId, k -> new ArrayList<>()).add(certInfo);
+    }
 
+    Connection conn = datasource.getConnection();
+    String sql = null;
     try {
-      int idx = 1;
-      ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
-      setBoolean(ps, idx++, revoked);
-      if (revoked) {
-        long revTime = revInfo.getRevocationTime().getTime() / 1000;
-        ps.setLong(idx++, revTime);
-        if (revInfo.getInvalidityTime() != null) {
-          ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
-        } else {
-          ps.setNull(idx++, Types.INTEGER);
+      conn.setAutoCommit(false);
+
+      for (Map.Entry<Integer, List<CertificateInfo>> entry : issuerCertsMap.entrySet()) {
+        int issuerId = entry.getKey();
+        List<CertificateInfo> issuerCerts = entry.getValue();
+
+        List<String> serials = new ArrayList<>(issuerCerts.size());
+        for (CertificateInfo certInfo : issuerCerts) {
+          serials.add(certInfo.getCert().getCert().getSerialNumber().toString(16));
+        }
+        Map<String, Long> registeredIds = getCertIds(conn, issuerId, serials);
+
+        List<CertificateInfo> goodCerts = new LinkedList<>();
+        List<CertificateInfo> revokedCerts = new LinkedList<>();
+        Map<Long, CertRevocationInfo> updates = new LinkedHashMap<>();
+
+        int idx = 0;
+        for (CertificateInfo certInfo : issuerCerts) {
+          CertRevocationInfo revInfo = certInfo.getRevocationInfo();
+          Long registeredId = registeredIds.get(serials.get(idx++));
+          if (registeredId == null) {
+            (revInfo == null ? goodCerts : revokedCerts).add(certInfo);
+          } else if (publishGoodCerts || revInfo != null) {
+            updates.put(registeredId, revInfo);
+          }
+        }
+
+        if (!updates.isEmpty()) {
+          sql = SQL_UPDATE_CERT;
+          PreparedStatement ps = datasource.prepareStatement(conn, sql);
+          try {
+            for (Map.Entry<Long, CertRevocationInfo> update : updates.entrySet()) {
+              setUpdateCertParams(ps, update.getKey(), update.getValue());
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          } finally {
+            datasource.releaseResources(ps, null, false);
+          }
         }
-        ps.setInt(idx++, revInfo.getReason().getCode());
+
+        if (!goodCerts.isEmpty()) {
+          sql = SQL_ADD_CERT;
+          addCertsBatch(conn, sql, issuerId, goodCerts);
+        }
+
+        if (!revokedCerts.isEmpty()) {
+          sql = SQL_ADD_REVOKED_CERT;
+          addCertsBatch(conn, sql, issuerId, revokedCerts);
+        }
+      }
+
+      conn.commit();
+    } catch (SQLException ex) {
+      rollback(conn);
+      throw datasource.translate(sql, ex);
+    } catch (DataAccessException | RuntimeException ex) {
+      rollback(conn);
+      throw ex;
+    } finally {
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LOG.warn("could not set autoCommit to true: {}", ex.getMessage());
+      }
+      datasource.returnConnection(conn);
+    }
+  } // method addCerts
+
+  private void addCertsBatch(Connection conn, String sql, int issuerId,
+      List<CertificateInfo> certInfos) throws DataAccessException, SQLException {
+    PreparedStatement ps = datasource.prepareStatement(conn, sql);
+    try {
+      for (CertificateInfo certInfo : certInfos) {
+        setAddCertParams(ps, issuerId, certInfo.getCert(), certInfo.getRevocationInfo());
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    } finally {
+      datasource.releaseResources(ps, null, false);
+    }
+  } // method addCertsBatch
+
+  private void setAddCertParams(PreparedStatement ps, int issuerId, CertWithDbId certificate,
+      CertRevocationInfo revInfo) throws SQLException {
+    boolean revoked = (revInfo != null);
+    X509Cert cert = certificate.getCert();
+    String certHash = certhashAlgo.base64Hash(cert.getEncoded());
+    long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
+    long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
+    String cuttedSubject = X509Util.cutText(cert.getSubjectRfc4519Text(), maxX500nameLen);
+
+    // CERT
+    int idx = 1;
+    ps.setLong(idx++, certificate.getCertId());
+    ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
+    ps.setString(idx++, cert.getSerialNumber().toString(16));
+    ps.setLong(idx++, notBeforeSeconds);
+    ps.setLong(idx++, notAfterSeconds);
+    setBoolean(ps, idx++, revoked);
+    ps.setInt(idx++, issuerId);
+    ps.setString(idx++, certHash);
+    ps.setString(idx++, cuttedSubject);
+
+    if (revoked) {
+      long revTime = revInfo.getRevocationTime().getTime() / 1000;
+      ps.setLong(idx++, revTime);
+      if (revInfo.getInvalidityTime() != null) {
+        ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
+      } else {
+        ps.setNull(idx++, Types.BIGINT);
+      }
+      int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
+      ps.setInt(idx++, reasonCode);
+    }
+  } // method setAddCertParams
+
+  private static void setUpdateCertParams(PreparedStatement ps, long registeredCertId,
+      CertRevocationInfo revInfo) throws SQLException {
+    boolean revoked = (revInfo != null);
+
+    int idx = 1;
+    ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
+    setBoolean(ps, idx++, revoked);
+    if (revoked) {
+      long revTime = revInfo.getRevocationTime().getTime() / 1000;
+      ps.setLong(idx++, revTime);
+      if (revInfo.getInvalidityTime() != null) {
+        ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
       } else {
-        ps.setNull(idx++, Types.INTEGER); // rev_time
-        ps.setNull(idx++, Types.INTEGER); // rev_invalidity_time
-        ps.setNull(idx++, Types.INTEGER); // rev_reason
+        ps.setNull(idx++, Types.INTEGER);
       }
-      ps.setLong(idx++, registeredCertId);
+      ps.setInt(idx++, revInfo.getReason().getCode());
+    } else {
+      ps.setNull(idx++, Types.INTEGER); // rev_time
+      ps.setNull(idx++, Types.INTEGER); // rev_invalidity_time
+      ps.setNull(idx++, Types.INTEGER); // rev_reason
+    }
+    ps.setLong(idx++, registeredCertId);
+  } // method setUpdateCertParams
+
+  private void updateRegisteredCert(long registeredCertId, CertRevocationInfo revInfo)
+      throws DataAccessException {
+    final String sql = SQL_UPDATE_CERT;
+    PreparedStatement ps = datasource.prepareStatement(sql);
+
+    try {
+      setUpdateCertParams(ps, registeredCertId, revInfo);
       ps.executeUpdate();
     } catch (SQLException ex) {
       throw datasource.translate(sql, ex);
@@ -507,6 +631,48 @@ class OcspStoreQueryExecutor {
     }
   } // method getCertId
 
+  /**
+   * Returns the database Ids of the registered certificates.
+   * @return map of the hex serial number to the database table id of the registered
+   *         certificates.
+   */
+  private Map<String, Long> getCertIds(Connection conn, int issuerId, List<String> serials)
+      throws DataAccessException {
+    Map<String, Long> ret = new HashMap<>();
+
+    for (int off = 0; off < serials.size(); off += MAX_IN_SIZE) {
+      List<String> subSerials = serials.subList(off, Math.min(serials.size(), off + MAX_IN_SIZE));
+
+      StringBuilder sb = new StringBuilder("SELECT ID,SN FROM CERT WHERE IID=? AND SN IN (");
+      for (int i = 0; i < subSerials.size(); i++) {
+        sb.append(i == 0 ? "?" : ",?");
+      }
+      sb.append(")");
+      final String sql = sb.toString();
+
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      ResultSet rs = null;
+      try {
+        int idx = 1;
+        ps.setInt(idx++, issuerId);
+        for (String serial : subSerials) {
+          ps.setString(idx++, serial);
+        }
+
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          ret.put(rs.getString("SN"), rs.getLong("ID"));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, rs, false);
+      }
+    }
+
+    return ret;
+  } // method getCertIds
+
   boolean isHealthy() {
     final String sql = "SELECT ID FROM ISSUER";
 
@@ -526,6 +692,14 @@ class OcspStoreQueryExecutor {
     }
   } // method isHealthy
 
+  private static void rollback(Connection conn) {
+    try {
+      conn.rollback();
+    } catch (SQLException ex) {
+      LOG.warn("could not rollback: {}", ex.getMessage());
+    }
+  }
+
   private static void setBoolean(PreparedStatement ps, int index, boolean value)
       throws SQLException {
     ps.setInt(index, value ? 1 : 0);
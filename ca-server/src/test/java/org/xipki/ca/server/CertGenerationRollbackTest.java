@@ -0,0 +1,178 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.ca.api.OperationException;
+import org.xipki.ca.api.OperationException.ErrorCode;
+import org.xipki.ca.server.X509Ca.CertGenTask;
+import org.xipki.ca.server.X509Ca.OperationExceptionWithIndex;
+
+/**
+ * Test for the rollback of the certificates generated for multiple requests.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class CertGenerationRollbackTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void init() {
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSequential() throws Exception {
+    MockTask task = new MockTask(-1, 0);
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), X509Ca.generateAll(5, null, task));
+    Assert.assertTrue("reverted", task.reverted.isEmpty());
+  }
+
+  @Test
+  public void testSequentialRollback() throws Exception {
+    MockTask task = new MockTask(2, 0);
+    assertFailure(2, 5, null, task);
+    Assert.assertEquals("generated", Arrays.asList(0, 1), sorted(task.generated));
+    assertAllReverted(task);
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    MockTask task = new MockTask(-1, 10);
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7),
+        X509Ca.generateAll(8, executor, task));
+    Assert.assertTrue("reverted", task.reverted.isEmpty());
+  }
+
+  @Test
+  public void testParallelRollback() throws Exception {
+    // the request 1 fails while the requests 0 and 2 are being generated
+    MockTask task = new MockTask(1, 200);
+    assertFailure(1, 8, executor, task);
+    assertAllReverted(task);
+  }
+
+  @Test
+  public void testParallelRollbackIfInterrupted() throws Exception {
+    MockTask task = new MockTask(-1, 200);
+    Thread.currentThread().interrupt();
+    try {
+      assertFailure(0, 8, executor, task);
+      Assert.assertTrue("interrupted flag is restored", Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+    assertAllReverted(task);
+  }
+
+  private static void assertFailure(int expectedIndex, int n, ExecutorService executor,
+      MockTask task) {
+    try {
+      X509Ca.generateAll(n, executor, task);
+      Assert.fail("OperationExceptionWithIndex expected");
+    } catch (OperationExceptionWithIndex ex) {
+      Assert.assertEquals("index", expectedIndex, ex.getIndex());
+    }
+  }
+
+  private static void assertAllReverted(MockTask task) {
+    Assert.assertEquals("running tasks", 0, task.running.get());
+    Assert.assertEquals("reverted", sorted(task.generated), sorted(task.reverted));
+  }
+
+  private static List<Integer> sorted(Set<Integer> set) {
+    List<Integer> list = new ArrayList<>(set);
+    Collections.sort(list);
+    return list;
+  }
+
+  private static class MockTask implements CertGenTask<Integer> {
+
+    private final int failedIndex;
+
+    private final long durationMs;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final Set<Integer> generated = ConcurrentHashMap.newKeySet();
+
+    private final Set<Integer> reverted = ConcurrentHashMap.newKeySet();
+
+    MockTask(int failedIndex, long durationMs) {
+      this.failedIndex = failedIndex;
+      this.durationMs = durationMs;
+    }
+
+    @Override
+    public Integer generate(int index) throws OperationExceptionWithIndex {
+      running.incrementAndGet();
+      try {
+        if (index == failedIndex) {
+          throw new OperationExceptionWithIndex(index,
+              new OperationException(ErrorCode.SYSTEM_FAILURE, "failed"));
+        }
+
+        if (durationMs > 0) {
+          // not interruptible, like the signing of a certificate
+          long end = System.currentTimeMillis() + durationMs;
+          long now;
+          while ((now = System.currentTimeMillis()) < end) {
+            try {
+              Thread.sleep(end - now);
+            } catch (InterruptedException ex) {
+              // ignore
+            }
+          }
+        }
+
+        generated.add(index);
+        return index;
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void revert(Integer generated) {
+      reverted.add(generated);
+    }
+
+  } // class MockTask
+
+}
@@ -0,0 +1,104 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * CrlStreamBuilder test.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class CrlStreamBuilderTest {
+
+  private static final X500Name ISSUER = new X500Name("CN=CRL Issuer,O=xipki");
+
+  private final KeyPair keypair;
+
+  public CrlStreamBuilderTest() throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+    kpGen.initialize(2048);
+    keypair = kpGen.generateKeyPair();
+  }
+
+  @Test
+  public void testEmptyCrl() throws Exception {
+    assertSameCrl(0);
+  }
+
+  @Test
+  public void testCrl() throws Exception {
+    assertSameCrl(1000);
+  }
+
+  private void assertSameCrl(int numEntries) throws Exception {
+    Date thisUpdate = new Date(System.currentTimeMillis() / 1000 * 1000);
+    Date nextUpdate = new Date(thisUpdate.getTime() + 86400000L);
+
+    X509v2CRLBuilder expectedBuilder = new X509v2CRLBuilder(ISSUER, thisUpdate);
+    expectedBuilder.setNextUpdate(nextUpdate);
+
+    X509CRLHolder crl;
+    try (CrlStreamBuilder builder = new CrlStreamBuilder(ISSUER, thisUpdate)) {
+      builder.setNextUpdate(nextUpdate);
+
+      for (int i = 0; i < numEntries; i++) {
+        BigInteger serial = BigInteger.valueOf(1000L + i * 997L);
+        Date revocationTime = new Date(thisUpdate.getTime() - i * 1000L);
+        int reason = i % 5;
+        if (i % 3 == 0) {
+          expectedBuilder.addCRLEntry(serial, revocationTime, reason, revocationTime);
+          builder.addCrlEntry(serial, revocationTime, reason, revocationTime);
+        } else {
+          expectedBuilder.addCRLEntry(serial, revocationTime, reason);
+          builder.addCrlEntry(serial, revocationTime, reason, null);
+        }
+      }
+
+      expectedBuilder.addExtension(Extension.cRLNumber, false, new ASN1Integer(123));
+      builder.addExtension(Extension.cRLNumber, false, new ASN1Integer(123));
+
+      crl = builder.build(newSigner());
+      Assert.assertEquals("number of entries", numEntries, builder.getNumEntries());
+    }
+
+    X509CRLHolder expectedCrl = expectedBuilder.build(newSigner());
+    Assert.assertArrayEquals("encoded CRL", expectedCrl.getEncoded(), crl.getEncoded());
+  } // method assertSameCrl
+
+  private ContentSigner newSigner() throws Exception {
+    // RSA PKCS#1 v1.5 signatures are deterministic
+    return new JcaContentSignerBuilder("SHA256withRSA").build(keypair.getPrivate());
+  }
+
+}
@@ -0,0 +1,211 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.ca.api.NameId;
+import org.xipki.security.CertRevocationInfo;
+import org.xipki.security.CrlReason;
+import org.xipki.security.X509Cert;
+
+/**
+ * Test for {@link DeltaCrlCache}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class DeltaCrlCacheTest {
+
+  private static final NameId CA = new NameId(1, "ca1");
+
+  private static KeyPair keypair;
+
+  private static ContentSigner signer;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(256);
+    keypair = kpGen.generateKeyPair();
+    signer = new JcaContentSignerBuilder("SHA256withECDSA").build(keypair.getPrivate());
+  }
+
+  @Test
+  public void testCacheHit() throws Exception {
+    DeltaCrlCache cache = new DeltaCrlCache(CA, false, false);
+    cache.revoked(createCert(3), new CertRevocationInfo(CrlReason.KEY_COMPROMISE));
+    cache.revoked(createCert(1), new CertRevocationInfo(CrlReason.SUPERSEDED));
+
+    // the local revocations are returned without reading the database
+    Assert.assertEquals(Arrays.asList(1L, 3L), serials(cache.getEntries()));
+
+    MockRowSource rows = new MockRowSource();
+    cache.sync(rows);
+    Assert.assertEquals(Arrays.asList(1L, 3L), serials(cache.getEntries()));
+    Assert.assertEquals("queries", 1, rows.startIds.size());
+  }
+
+  @Test
+  public void testNewRevocation() throws Exception {
+    DeltaCrlCache cache = new DeltaCrlCache(CA, false, false);
+    X509Cert cert = createCert(5);
+    cache.revoked(cert, new CertRevocationInfo(CrlReason.CERTIFICATE_HOLD));
+    Assert.assertEquals(CrlReason.CERTIFICATE_HOLD, cache.getEntries().get(0).getReason());
+
+    // the entry of a certificate is replaced by its latest status
+    cache.unrevoked(cert);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(CrlReason.REMOVE_FROM_CRL, cache.getEntries().get(0).getReason());
+
+    cache.revoked(cert, new CertRevocationInfo(CrlReason.KEY_COMPROMISE));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(CrlReason.KEY_COMPROMISE, cache.getEntries().get(0).getReason());
+
+    // revocation by another instance, read from the database
+    MockRowSource rows = new MockRowSource();
+    rows.add(100, 5, CrlReason.AFFILIATION_CHANGED);
+    rows.add(101, 6, CrlReason.SUPERSEDED);
+    cache.sync(rows);
+    Assert.assertEquals(Arrays.asList(5L, 6L), serials(cache.getEntries()));
+    Assert.assertEquals(CrlReason.AFFILIATION_CHANGED, cache.getEntries().get(0).getReason());
+
+    // a full CRL covers the entries before the mark, but not the later revocations
+    long mark = cache.mark();
+    cache.revoked(createCert(7), new CertRevocationInfo(CrlReason.CESSATION_OF_OPERATION));
+    cache.clear(mark, 101);
+    Assert.assertEquals(Arrays.asList(7L), serials(cache.getEntries()));
+
+    // rows covered by the full CRL are not read again
+    rows.startIds.clear();
+    cache.sync(rows);
+    Assert.assertEquals(Arrays.asList(102L), rows.startIds);
+    Assert.assertEquals(Arrays.asList(7L), serials(cache.getEntries()));
+  }
+
+  @Test
+  public void testSyncMargin() throws Exception {
+    final long margin = DeltaCrlCache.SYNC_MARGIN;
+    DeltaCrlCache cache = new DeltaCrlCache(CA, false, false);
+    MockRowSource rows = new MockRowSource();
+
+    // first synchronization: all rows not covered by a full CRL are read
+    cache.clear(cache.mark(), 10);
+    cache.sync(rows);
+    Assert.assertEquals(Arrays.asList(11L), rows.startIds);
+
+    // the synchronized ID is less than the margin: start after the covered rows
+    rows.add(margin, 1, CrlReason.KEY_COMPROMISE);
+    cache.sync(rows);
+    rows.startIds.clear();
+    cache.sync(rows);
+    Assert.assertEquals(Arrays.asList(11L), rows.startIds);
+
+    // the rows within the margin before the last synchronized one are read again
+    long maxId = 3 * margin;
+    rows.add(maxId, 2, CrlReason.KEY_COMPROMISE);
+    cache.sync(rows);
+    rows.startIds.clear();
+    cache.sync(rows);
+    Assert.assertEquals(Arrays.asList(maxId - margin + 1), rows.startIds);
+
+    // a row written late by another instance with a slower clock: it is found if its ID is
+    // within the margin, and missed otherwise
+    rows.add(maxId - margin + 1, 3, CrlReason.SUPERSEDED);
+    rows.add(maxId - margin, 4, CrlReason.SUPERSEDED);
+    cache.sync(rows);
+    Assert.assertEquals(Arrays.asList(1L, 2L, 3L), serials(cache.getEntries()));
+  }
+
+  @Test
+  public void testSyncPages() throws Exception {
+    final int n = DeltaCrlCache.SYNC_PAGE_SIZE * 2 + 1;
+    DeltaCrlCache cache = new DeltaCrlCache(CA, false, false);
+    MockRowSource rows = new MockRowSource();
+    for (int i = 1; i <= n; i++) {
+      rows.add(i, i, CrlReason.KEY_COMPROMISE);
+    }
+
+    cache.sync(rows);
+    Assert.assertEquals(n, cache.size());
+    Assert.assertEquals("queries", 3, rows.startIds.size());
+  }
+
+  private static List<Long> serials(List<CertRevInfoWithSerial> revInfos) {
+    List<Long> ret = new ArrayList<>(revInfos.size());
+    for (CertRevInfoWithSerial m : revInfos) {
+      ret.add(m.getSerial().longValue());
+    }
+    return ret;
+  }
+
+  private static X509Cert createCert(long serial) throws Exception {
+    X500Name subject = new X500Name("CN=EE " + serial);
+    Date notBefore = new Date();
+    Date notAfter = new Date(notBefore.getTime() + 365L * 24 * 3600 * 1000);
+    return new X509Cert(new JcaX509v3CertificateBuilder(new X500Name("CN=ca1"),
+        BigInteger.valueOf(serial), notBefore, notAfter, subject, keypair.getPublic())
+        .build(signer));
+  }
+
+  /**
+   * Rows of the table DELTACRL_CACHE, keyed by the ID.
+   */
+  private static class MockRowSource implements DeltaCrlCache.RowSource {
+
+    private final TreeMap<Long, CertRevInfoWithSerial> rows = new TreeMap<>();
+
+    private final List<Long> startIds = new ArrayList<>();
+
+    void add(long id, long serial, CrlReason reason) {
+      rows.put(id, new CertRevInfoWithSerial(id, BigInteger.valueOf(serial), reason,
+          new Date(), null));
+    }
+
+    @Override
+    public List<CertRevInfoWithSerial> getCertsForDeltaCrl(NameId ca, long startId,
+        int numEntries, boolean onlyCaCerts, boolean onlyUserCerts) {
+      startIds.add(startId);
+      List<CertRevInfoWithSerial> ret = new ArrayList<>(numEntries);
+      for (CertRevInfoWithSerial m : rows.tailMap(startId).values()) {
+        if (ret.size() == numEntries) {
+          break;
+        }
+        ret.add(m);
+      }
+      return ret;
+    }
+
+  } // class MockRowSource
+
+}
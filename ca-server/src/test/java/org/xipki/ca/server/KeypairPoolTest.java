@@ -0,0 +1,79 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.interfaces.ECPublicKey;
+import java.util.Map;
+
+import org.bouncycastle.asn1.sec.SECObjectIdentifiers;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.ca.api.profile.KeypairGenControl;
+
+/**
+ * KeypairPool test.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class KeypairPoolTest {
+
+  @BeforeClass
+  public static void init() {
+    if (Security.getProvider("BC") == null) {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+  }
+
+  @Test
+  public void testPreGeneration() throws Exception {
+    KeypairGenControl control = new KeypairGenControl.ECKeypairGenControl(
+        SECObjectIdentifiers.secp256r1);
+
+    try (KeypairPool pool = new KeypairPool(4, 2)) {
+      // the pool is created and filled on first use
+      Assert.assertNull("keypair of empty pool", pool.poll(control));
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (depth(pool) < 4 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals("depth", 4, depth(pool));
+
+      KeyPair keypair = pool.poll(control);
+      Assert.assertNotNull("pre-generated keypair", keypair);
+      Assert.assertEquals("curve size", 256,
+          ((ECPublicKey) keypair.getPublic()).getParams().getOrder().bitLength());
+
+      Map<String, Object> status = pool.getStatuses().get("EC/1.2.840.10045.3.1.7");
+      Assert.assertEquals("hits", 1L, status.get("hits"));
+      Assert.assertEquals("misses", 1L, status.get("misses"));
+    }
+  } // method testPreGeneration
+
+  private static int depth(KeypairPool pool) {
+    Map<String, Object> status = pool.getStatuses().get("EC/1.2.840.10045.3.1.7");
+    return (status == null) ? 0 : (Integer) status.get("depth");
+  }
+
+}
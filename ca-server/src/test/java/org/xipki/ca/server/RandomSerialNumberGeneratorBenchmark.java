@@ -0,0 +1,116 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.function.IntFunction;
+
+import org.xipki.util.BenchmarkExecutor;
+
+/**
+ * Benchmark of the {@link RandomSerialNumberGenerator} against the former implementation with
+ * one shared {@link SecureRandom} and {@link BigInteger}-based NAF check.
+ *
+ * <p>Usage: {@code RandomSerialNumberGeneratorBenchmark [threads [duration [byteLen]]]}, the
+ * default is 32 threads, 10 seconds and 18 bytes.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class RandomSerialNumberGeneratorBenchmark extends BenchmarkExecutor {
+
+  private static class SharedRandomGenerator {
+
+    private final SecureRandom random = new SecureRandom();
+
+    public BigInteger nextSerialNumber(int byteLen) {
+      final byte[] rndBytes = new byte[byteLen];
+      final int minWeight = byteLen * 2;
+
+      while (true) {
+        random.nextBytes(rndBytes);
+        rndBytes[0] &= 0x7F;
+
+        BigInteger bi = new BigInteger(rndBytes);
+        BigInteger threeBi = bi.shiftLeft(1).add(bi);
+        BigInteger diff = threeBi.xor(bi);
+        if (diff.bitCount() >= minWeight) {
+          return bi;
+        }
+      }
+    } // method nextSerialNumber
+
+  } // class SharedRandomGenerator
+
+  private class Testor implements Runnable {
+
+    @Override
+    public void run() {
+      // account in blocks to keep the counter out of the measurement
+      final int blockSize = 100;
+      while (!stop()) {
+        for (int i = 0; i < blockSize; i++) {
+          generator.apply(byteLen);
+        }
+        account(blockSize, 0);
+      }
+    }
+
+  } // class Testor
+
+  private final IntFunction<BigInteger> generator;
+
+  private final int byteLen;
+
+  public RandomSerialNumberGeneratorBenchmark(String description,
+      IntFunction<BigInteger> generator, int byteLen) {
+    super(description);
+    this.generator = generator;
+    this.byteLen = byteLen;
+  }
+
+  @Override
+  protected Runnable getTestor() throws Exception {
+    return new Testor();
+  }
+
+  public static void main(String[] args) {
+    int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 32;
+    String duration = (args.length > 1) ? args[1] : "10s";
+    int byteLen = (args.length > 2) ? Integer.parseInt(args[2]) : 18;
+
+    SharedRandomGenerator shared = new SharedRandomGenerator();
+    RandomSerialNumberGenerator current = RandomSerialNumberGenerator.getInstance();
+
+    BenchmarkExecutor[] benchmarks = {
+      new RandomSerialNumberGeneratorBenchmark("shared SecureRandom, BigInteger NAF check",
+          shared::nextSerialNumber, byteLen),
+      new RandomSerialNumberGeneratorBenchmark("per-thread DRBG, allocation-free NAF check",
+          current::nextSerialNumber, byteLen)};
+
+    for (BenchmarkExecutor benchmark : benchmarks) {
+      benchmark.setThreads(threads);
+      benchmark.setDuration(duration);
+      benchmark.setUnit("serial numbers");
+      benchmark.execute();
+    }
+  } // method main
+
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * RandomSerialNumberGenerator test.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class RandomSerialNumberGeneratorTest {
+
+  @Test
+  public void testNafWeight() {
+    Random random = new Random(1);
+    for (int len = 1; len <= 20; len++) {
+      byte[] bytes = new byte[len];
+      for (int i = 0; i < 1000; i++) {
+        random.nextBytes(bytes);
+        bytes[0] &= 0x7F;
+        if (i == 0) {
+          // maximal value
+          for (int j = 0; j < len; j++) {
+            bytes[j] = (byte) (j == 0 ? 0x7F : 0xFF);
+          }
+        }
+
+        BigInteger bi = new BigInteger(bytes);
+        int expected = bi.shiftLeft(1).add(bi).xor(bi).bitCount();
+        Assert.assertEquals("NAF weight of " + bi.toString(16), expected,
+            RandomSerialNumberGenerator.nafWeight(bytes));
+      }
+    }
+  } // method testNafWeight
+
+  @Test
+  public void testNextSerialNumber() {
+    RandomSerialNumberGenerator generator = RandomSerialNumberGenerator.getInstance();
+    for (int len = 8; len <= 20; len++) {
+      for (int i = 0; i < 100; i++) {
+        BigInteger serial = generator.nextSerialNumber(len);
+        Assert.assertEquals("signum", 1, serial.signum());
+        Assert.assertTrue("bitLength", serial.bitLength() <= len * 8 - 1);
+
+        int nafWeight = serial.shiftLeft(1).add(serial).xor(serial).bitCount();
+        Assert.assertTrue("NAF weight", nafWeight >= len * 2);
+      }
+    }
+  } // method testNextSerialNumber
+
+}
@@ -0,0 +1,70 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.ca.api.NameId;
+
+/**
+ * VerifiedPasswordCache test.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class VerifiedPasswordCacheTest {
+
+  private static final byte[] PASSWORD = "password1".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void testGetAndPut() {
+    VerifiedPasswordCache cache = new VerifiedPasswordCache(10, 300);
+    NameId ident = new NameId(1, "user1");
+
+    Assert.assertNull("empty cache", cache.get("user1", PASSWORD));
+    cache.put("user1", PASSWORD, ident, cache.generation());
+
+    Assert.assertEquals("cached user", ident, cache.get("user1", PASSWORD));
+    Assert.assertNull("wrong password",
+        cache.get("user1", "password2".getBytes(StandardCharsets.UTF_8)));
+    Assert.assertNull("other user", cache.get("user2", PASSWORD));
+
+    Assert.assertEquals("hits", 1, cache.getHits());
+    Assert.assertEquals("misses", 3, cache.getMisses());
+  } // method testGetAndPut
+
+  @Test
+  public void testInvalidation() {
+    VerifiedPasswordCache cache = new VerifiedPasswordCache(10, 300);
+    NameId ident = new NameId(1, "user1");
+
+    cache.put("user1", PASSWORD, ident, cache.generation());
+    cache.remove("user1");
+    Assert.assertNull("removed user", cache.get("user1", PASSWORD));
+
+    // authentication started before the invalidation must not be cached
+    long generation = cache.generation();
+    cache.remove("user2");
+    cache.put("user1", PASSWORD, ident, generation);
+    Assert.assertNull("outdated authentication", cache.get("user1", PASSWORD));
+  } // method testInvalidation
+
+}
@@ -17,8 +17,6 @@
 
 package org.xipki.ctlog.dummyserver;
 
-import org.xipki.util.Base64;
-
 /**
  * The CT Log servlet EC.
  *
@@ -28,16 +26,8 @@ import org.xipki.util.Base64;
 //CHECKSTYLE:SKIP
 public class CtLogServletEC extends CtLogServlet {
 
-  private static final String privateKey =
-        "MEECAQAwEwYHKoZIzj0CAQYIKoZIzj0DAQcEJzAlAgEBBCA5yyZCYzCoBiIEspXdhwWyhQOmfB6O"
-      + "nhFO/g2UCMxkew==";
-
-  private static final String publicKey =
-        "MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEt13k6XhtxLVQlTmmP9NVgsLF2EA2U0Blp2ug1cm7"
-      + "H0ltv7NnrCRq+K87YyiggdGdrKwvDN5/DE1muN/jUditww==";
-
   public CtLogServletEC() {
-    super(Base64.decode(privateKey), Base64.decode(publicKey));
+    super(CtLogService.newEcInstance());
   }
 
 }
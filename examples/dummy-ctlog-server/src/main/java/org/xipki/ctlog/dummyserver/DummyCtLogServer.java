@@ -0,0 +1,131 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ctlog.dummyserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.xipki.security.ctlog.CtLogMessages.AddPreChainRequest;
+import org.xipki.util.IoUtil;
+
+import com.alibaba.fastjson.JSON;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Standalone stand-in CT Log server for load tests, without servlet container. It serves the
+ * same RSA and EC CT logs as the servlets, under the URLs
+ * {@code http://<host>:<port>/ctlogrsa} and {@code http://<host>:<port>/ctlogec}.
+ *
+ * <p>Usage: {@code DummyCtLogServer [port [delay [jitter]]]}. The default port is 8082. Each
+ * response is delayed by {@code delay} plus a random value in [0, {@code jitter}) milliseconds
+ * to simulate the latency of a public CT log, the default is 0.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+public class DummyCtLogServer {
+
+  private static class AddPreChainHandler implements HttpHandler {
+
+    private final CtLogService service;
+
+    private final int delay;
+
+    private final int jitter;
+
+    AddPreChainHandler(CtLogService service, int delay, int jitter) {
+      this.service = service;
+      this.delay = delay;
+      this.jitter = jitter;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+          sendResponse(exchange, 405, "method not allowed");
+          return;
+        }
+
+        byte[] respContent;
+        try (InputStream in = exchange.getRequestBody()) {
+          AddPreChainRequest req = JSON.parseObject(IoUtil.read(in), AddPreChainRequest.class);
+          respContent = service.addPreChain(req);
+        } catch (IllegalArgumentException ex) {
+          sendResponse(exchange, 400, ex.getMessage());
+          return;
+        } catch (Exception ex) {
+          sendResponse(exchange, 500, ex.getMessage());
+          return;
+        }
+
+        int sleep = delay + (jitter > 0 ? ThreadLocalRandom.current().nextInt(jitter) : 0);
+        if (sleep > 0) {
+          try {
+            Thread.sleep(sleep);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, respContent.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(respContent);
+        }
+      } finally {
+        exchange.close();
+      }
+    } // method handle
+
+    private static void sendResponse(HttpExchange exchange, int status, String message)
+        throws IOException {
+      byte[] content = (message == null ? "" : message).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(status, content.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(content);
+      }
+    } // method sendResponse
+
+  } // class AddPreChainHandler
+
+  public static void main(String[] args) throws IOException {
+    int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8082;
+    int delay = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+    int jitter = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+
+    HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/ctlogrsa/ct/v1/add-pre-chain",
+        new AddPreChainHandler(CtLogService.newRsaInstance(), delay, jitter));
+    server.createContext("/ctlogec/ct/v1/add-pre-chain",
+        new AddPreChainHandler(CtLogService.newEcInstance(), delay, jitter));
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+
+    System.out.println("dummy CT log server started on port " + port + ", delay " + delay
+        + " ms, jitter " + jitter + " ms: /ctlogrsa, /ctlogec");
+  } // method main
+
+}
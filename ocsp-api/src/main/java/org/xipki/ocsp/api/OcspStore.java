@@ -19,7 +19,9 @@ package org.xipki.ocsp.api;
 
 import java.io.Closeable;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.xipki.datasource.DataSourceWrapper;
@@ -110,7 +112,49 @@ public abstract class OcspStore implements Closeable {
       boolean inheritCaRevocation) throws OcspStoreException {
     CertStatusInfo info = getCertStatus0(time, reqIssuer, serialNumber,
         includeCertHash, includeRit, inheritCaRevocation);
+    applyMinNextUpdatePeriod(time, info);
+    return info;
+  } // method getCertStatus
+
+  /**
+   * Return the status of several certificates issued by the same issuer. This is
+   * equivalent to calling {@link #getCertStatus(Date, RequestIssuer, BigInteger, boolean,
+   * boolean, boolean)} for each serial number, but allows the store to retrieve all
+   * statuses at once.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate statuses, in the same order as the serialNumbers.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  public final List<CertStatusInfo> getCertStatuses(Date time, RequestIssuer reqIssuer,
+      List<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) throws OcspStoreException {
+    List<CertStatusInfo> infos = getCertStatuses0(time, reqIssuer, serialNumbers,
+        includeCertHash, includeRit, inheritCaRevocation);
+    if (infos.size() != serialNumbers.size()) {
+      throw new OcspStoreException("store " + name + " returned " + infos.size()
+          + " statuses for " + serialNumbers.size() + " serial numbers");
+    }
+
+    for (CertStatusInfo info : infos) {
+      applyMinNextUpdatePeriod(time, info);
+    }
+    return infos;
+  } // method getCertStatuses
 
+  private void applyMinNextUpdatePeriod(Date time, CertStatusInfo info) {
     if (info != null && minNextUpdatePeriod != null && !isIgnoreExpiredCrls()) {
       if (unknownCertBehaviour == UnknownCertBehaviour.good
           || unknownCertBehaviour == UnknownCertBehaviour.unknown) {
@@ -126,9 +170,7 @@ public abstract class OcspStore implements Closeable {
         }
       }
     }
-
-    return info;
-  } // method getCertStatus
+  } // method applyMinNextUpdatePeriod
 
   /**
    * Return the certificate status.
@@ -153,6 +195,39 @@ public abstract class OcspStore implements Closeable {
       BigInteger serialNumber, boolean includeCertHash, boolean includeRit,
       boolean inheritCaRevocation) throws OcspStoreException;
 
+  /**
+   * Return the status of several certificates issued by the same issuer. The default
+   * implementation calls {@link #getCertStatus0(Date, RequestIssuer, BigInteger, boolean,
+   * boolean, boolean)} for each serial number. Stores backed by a database should
+   * overwrite it to retrieve all statuses with one query.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate statuses, in the same order as the serialNumbers.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  protected List<CertStatusInfo> getCertStatuses0(Date time, RequestIssuer reqIssuer,
+      List<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) throws OcspStoreException {
+    List<CertStatusInfo> infos = new ArrayList<>(serialNumbers.size());
+    for (BigInteger serialNumber : serialNumbers) {
+      infos.add(getCertStatus0(time, reqIssuer, serialNumber, includeCertHash, includeRit,
+          inheritCaRevocation));
+    }
+    return infos;
+  } // method getCertStatuses0
+
   /**
    * Initialize the OCSP store.
    *
@@ -19,6 +19,8 @@ package org.xipki.ocsp.server;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.security.SignatureException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -31,6 +33,7 @@ import org.xipki.ocsp.server.type.ResponderID;
 import org.xipki.ocsp.server.type.ResponseData;
 import org.xipki.ocsp.server.type.SingleResponse;
 import org.xipki.ocsp.server.type.TaggedCertSequence;
+import org.xipki.security.BatchSigner;
 import org.xipki.security.ConcurrentBagEntrySigner;
 import org.xipki.security.ConcurrentContentSigner;
 import org.xipki.security.NoIdleSignerException;
@@ -49,9 +52,24 @@ public class OCSPRespBuilder {
   private static final byte[] successfulStatus = Hex.decode("0a0100");
   private static final byte[] responseTypeBasic = Hex.decode("06092b0601050507300101");
 
+  // maximal length of all headers in front of the tbsResponseData: 5 headers with at most
+  // 6 bytes, the successfulStatus and the responseTypeBasic.
+  private static final int MAX_PREFIX_LEN = 5 * 6 + 3 + 11;
+
+  // reserved for the signatureAlgorithm and signature, enough for RSA with 8192-bit key.
+  private static final int SUFFIX_RESERVED_LEN = 1200;
+
+  private static final int INITIAL_BUFFER_LEN = 4096;
+
+  // larger buffers are not reused to limit the memory per thread.
+  private static final int MAX_CACHED_BUFFER_LEN = 64 * 1024;
+
+  private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
   private List<SingleResponse> list = new LinkedList<>();
   private Extensions responseExtensions = null;
   private ResponderID responderId;
+  private ResponseTemplate template;
 
   /**
    * basic constructor.
@@ -63,6 +81,17 @@ public class OCSPRespBuilder {
     this.responderId = responderId;
   }
 
+  /**
+   * Constructor using the pre-encoded parts of the response.
+   *
+   * @param template
+   *          Response template
+   */
+  OCSPRespBuilder(ResponseTemplate template) {
+    this.template = template;
+    this.responderId = template.getResponderId();
+  }
+
   /**
    * Add a response for a particular Certificate ID.
    *
@@ -86,6 +115,19 @@ public class OCSPRespBuilder {
     this.responseExtensions = responseExtensions;
   }
 
+  /**
+   * Builds the OCSP response with the certificates of the template. Requires that this
+   * builder is constructed with a {@link ResponseTemplate}.
+   */
+  // CHECKSTYLE:SKIP
+  byte[] buildOCSPResponse(ConcurrentContentSigner signer, Date producedAt)
+      throws OCSPException, NoIdleSignerException {
+    if (template == null) {
+      throw new IllegalStateException("builder is not constructed with a template");
+    }
+    return buildOCSPResponse(signer, template.getCerts(), producedAt);
+  }
+
   // CHECKSTYLE:SKIP
   public byte[] buildOCSPResponse(ConcurrentContentSigner signer,
       TaggedCertSequence taggedCertSequence, Date producedAt)
@@ -93,28 +135,54 @@ public class OCSPRespBuilder {
     ResponseData responseData = new ResponseData(0,
         responderId, producedAt, list, responseExtensions);
 
-    byte[] tbs = new byte[responseData.getEncodedLength()];
-    responseData.write(tbs, 0);
+    // The whole OCSPResponse is encoded in one reusable buffer. The tbsResponseData is
+    // written after the space reserved for the headers, and is passed directly from the
+    // buffer to the signer. The headers are written once the length of signature is known.
+    final int tbsOffset = MAX_PREFIX_LEN;
+    final int tbsLen = responseData.getEncodedLength();
+    final int certsLen = (taggedCertSequence == null) ? 0 : taggedCertSequence.getEncodedLength();
 
-    ConcurrentBagEntrySigner signer0 = signer.borrowSigner();
+    byte[] buffer = getBuffer(tbsOffset + tbsLen + certsLen + SUFFIX_RESERVED_LEN);
+    responseData.write(buffer, tbsOffset);
 
     byte[] signature;
-    byte[] sigAlgId;
+    byte[] sigAlgId = (template == null) ? null : template.getEncodedSigAlgId();
 
-    try {
-      XiContentSigner csigner0 = signer0.value();
-      OutputStream sigOut = csigner0.getOutputStream();
+    BatchSigner batchSigner = signer.getBatchSigner();
+    if (batchSigner != null) {
+      // signed together with the responses of concurrent requests
       try {
-        sigOut.write(tbs);
-        sigOut.close();
-      } catch (IOException ex) {
+        signature = batchSigner.sign(Arrays.copyOfRange(buffer, tbsOffset, tbsOffset + tbsLen));
+      } catch (SignatureException ex) {
         throw new OCSPException("exception signing TBSRequest: " + ex.getMessage(), ex);
       }
 
-      signature = csigner0.getSignature();
-      sigAlgId = csigner0.getEncodedAlgorithmIdentifier();
-    } finally {
-      signer.requiteSigner(signer0);
+      if (sigAlgId == null) {
+        sigAlgId = batchSigner.getEncodedAlgorithmIdentifier();
+      }
+    } else {
+      ConcurrentBagEntrySigner signer0 = signer.borrowSigner();
+      try {
+        XiContentSigner csigner0 = signer0.value();
+        OutputStream sigOut = csigner0.getOutputStream();
+        try {
+          sigOut.write(buffer, tbsOffset, tbsLen);
+          sigOut.close();
+        } catch (IOException ex) {
+          throw new OCSPException("exception signing TBSRequest: " + ex.getMessage(), ex);
+        }
+
+        signature = csigner0.getSignature();
+        if (sigAlgId == null) {
+          sigAlgId = csigner0.getEncodedAlgorithmIdentifier();
+        }
+      } finally {
+        signer.requiteSigner(signer0);
+      }
+    }
+
+    if (template != null && template.getEncodedSigAlgId() == null) {
+      template.setEncodedSigAlgId(sigAlgId);
     }
 
     // ----- Get the length -----
@@ -123,10 +191,7 @@ public class OCSPRespBuilder {
     int signatureLen = getLen(signatureBodyLen);
 
     // BasicOCSPResponse
-    int basicResponseBodyLen = tbs.length + sigAlgId.length + signatureLen;
-    if (taggedCertSequence != null) {
-      basicResponseBodyLen += taggedCertSequence.getEncodedLength();
-    }
+    int basicResponseBodyLen = tbsLen + sigAlgId.length + signatureLen + certsLen;
     int basicResponseLen = getLen(basicResponseBodyLen);
 
     // OCSPResponse.[0].responseBytes
@@ -141,9 +206,18 @@ public class OCSPRespBuilder {
     int ocspResponseBodyLen = successfulStatus.length + taggedResponseBytesLen;
     int ocspResponseLen = getLen(ocspResponseBodyLen);
 
+    // all headers in front of the tbsResponseData
+    final int prefixLen = ocspResponseLen - basicResponseBodyLen;
+    final int start = tbsOffset - prefixLen;
+    final int end = start + ocspResponseLen;
+    if (end > buffer.length) {
+      // signature is longer than expected
+      buffer = Arrays.copyOf(buffer, end);
+    }
+
     // encode
-    byte[] out = new byte[ocspResponseLen];
-    int offset = 0;
+    byte[] out = buffer;
+    int offset = start;
     offset += ASN1Type.writeHeader((byte) 0x30, ocspResponseBodyLen, out, offset);
     // OCSPResponse.responseStatus
     offset += arraycopy(successfulStatus, out, offset);
@@ -162,8 +236,8 @@ public class OCSPRespBuilder {
 
     // BasicOCSPResponse
     offset += ASN1Type.writeHeader((byte) 0x30, basicResponseBodyLen, out, offset);
-    // BasicOCSPResponse.tbsResponseData
-    offset += arraycopy(tbs, out, offset);
+    // BasicOCSPResponse.tbsResponseData, already written
+    offset += tbsLen;
 
     // BasicOCSPResponse.signatureAlgorithm
     offset += arraycopy(sigAlgId, out, offset);
@@ -176,9 +250,24 @@ public class OCSPRespBuilder {
     if (taggedCertSequence != null) {
       offset += taggedCertSequence.write(out, offset);
     }
-    return out;
+
+    if (buffer.length <= MAX_CACHED_BUFFER_LEN) {
+      BUFFERS.set(buffer);
+    }
+    return Arrays.copyOfRange(out, start, end);
   } // method buildOCSPResponse
 
+  private static byte[] getBuffer(int minLen) {
+    byte[] buffer = BUFFERS.get();
+    if (buffer == null || buffer.length < minLen) {
+      buffer = new byte[Math.max(minLen, INITIAL_BUFFER_LEN)];
+      if (buffer.length <= MAX_CACHED_BUFFER_LEN) {
+        BUFFERS.set(buffer);
+      }
+    }
+    return buffer;
+  } // method getBuffer
+
   private static int getLen(int bodyLen) {
     return ASN1Type.getHeaderLen(bodyLen) + bodyLen;
   }
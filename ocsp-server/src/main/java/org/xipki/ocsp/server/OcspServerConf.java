@@ -321,6 +321,11 @@ public class OcspServerConf extends ValidatableConf {
 
     private List<String> stores;
 
+    /**
+     * Configuration to generate the responses in advance. Requires the response cache.
+     */
+    private PreSign preSign;
+
     private String name;
 
     public List<String> getServletPaths() {
@@ -385,6 +390,14 @@ public class OcspServerConf extends ValidatableConf {
       this.stores = stores;
     }
 
+    public PreSign getPreSign() {
+      return preSign;
+    }
+
+    public void setPreSign(PreSign preSign) {
+      this.preSign = preSign;
+    }
+
     public String getName() {
       return name;
     }
@@ -401,16 +414,122 @@ public class OcspServerConf extends ValidatableConf {
       notEmpty(response, "response");
       notEmpty(stores, "stores");
       notEmpty(name, "name");
+      validate(preSign);
     }
 
   } // class Responder
 
+  public static class PreSign extends ValidatableConf {
+
+    /**
+     * A new response will be generated if the cached one expires within this window.
+     * Defaults to 1 hour.
+     */
+    private String refreshWindow;
+
+    /**
+     * Interval between two runs. Defaults to 1 hour.
+     */
+    private String interval;
+
+    /**
+     * Maximal number of responses to be signed per second. Non-positive value for no limit.
+     */
+    private int maxRate = 100;
+
+    /**
+     * Number of certificates read from the database in one query.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * File to save the progress, so that the processing can be resumed after restart.
+     */
+    private String progressFile;
+
+    public String getRefreshWindow() {
+      return refreshWindow;
+    }
+
+    public void setRefreshWindow(String refreshWindow) {
+      this.refreshWindow = refreshWindow;
+    }
+
+    public Validity refreshWindow() {
+      return refreshWindow == null
+          ? new Validity(1, Unit.HOUR) : Validity.getInstance(refreshWindow);
+    }
+
+    public String getInterval() {
+      return interval;
+    }
+
+    public void setInterval(String interval) {
+      this.interval = interval;
+    }
+
+    public Validity interval() {
+      return interval == null ? new Validity(1, Unit.HOUR) : Validity.getInstance(interval);
+    }
+
+    public int getMaxRate() {
+      return maxRate;
+    }
+
+    public void setMaxRate(int maxRate) {
+      this.maxRate = maxRate;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public String getProgressFile() {
+      return progressFile;
+    }
+
+    public void setProgressFile(String progressFile) {
+      this.progressFile = progressFile;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (batchSize < 1) {
+        throw new InvalidConfException("batchSize must not be less than 1: " + batchSize);
+      }
+    }
+
+  } // class PreSign
+
   public static class ResponseCache extends ValidatableConf {
 
     private DataSourceConf datasource;
 
     private String validity;
 
+    /**
+     * Maximal number of responses cached in memory in front of the database.
+     * Non-positive value or {@code null} to deactivate the in-memory cache.
+     */
+    private Integer memoryCacheSize;
+
+    /**
+     * Size of the queue of responses to be written asynchronously to the database.
+     * If the queue is full, new responses will not be cached in the database.
+     * Non-positive value or {@code null} to write the responses synchronously.
+     */
+    private Integer writeQueueSize;
+
+    /**
+     * Maximal number of responses written to the database in one JDBC batch.
+     * Only used if the responses are written asynchronously.
+     */
+    private Integer writeBatchSize;
+
     public DataSourceConf getDatasource() {
       return datasource;
     }
@@ -431,6 +550,30 @@ public class OcspServerConf extends ValidatableConf {
       return validity == null ? new Validity(1, Unit.DAY) : Validity.getInstance(validity);
     }
 
+    public Integer getMemoryCacheSize() {
+      return memoryCacheSize;
+    }
+
+    public void setMemoryCacheSize(Integer memoryCacheSize) {
+      this.memoryCacheSize = memoryCacheSize;
+    }
+
+    public Integer getWriteQueueSize() {
+      return writeQueueSize;
+    }
+
+    public void setWriteQueueSize(Integer writeQueueSize) {
+      this.writeQueueSize = writeQueueSize;
+    }
+
+    public Integer getWriteBatchSize() {
+      return writeBatchSize;
+    }
+
+    public void setWriteBatchSize(Integer writeBatchSize) {
+      this.writeBatchSize = writeBatchSize;
+    }
+
     @Override
     public void validate() throws InvalidConfException {
       notNull(datasource, "datasource");
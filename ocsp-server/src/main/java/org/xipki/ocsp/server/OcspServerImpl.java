@@ -39,7 +39,10 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.bouncycastle.asn1.ASN1InputStream;
@@ -76,6 +79,7 @@ import org.xipki.ocsp.server.ResponderOption.OcspMode;
 import org.xipki.ocsp.server.store.CaDbCertStatusStore;
 import org.xipki.ocsp.server.store.CrlDbCertStatusStore;
 import org.xipki.ocsp.server.store.DbCertStatusStore;
+import org.xipki.ocsp.server.store.InMemoryResponseCache;
 import org.xipki.ocsp.server.store.ResponseCacher;
 import org.xipki.ocsp.server.store.ejbca.EjbcaCertStatusStore;
 import org.xipki.ocsp.server.type.CertID;
@@ -85,8 +89,6 @@ import org.xipki.ocsp.server.type.Extension;
 import org.xipki.ocsp.server.type.Extensions;
 import org.xipki.ocsp.server.type.OID;
 import org.xipki.ocsp.server.type.OcspRequest;
-import org.xipki.ocsp.server.type.ResponderID;
-import org.xipki.ocsp.server.type.TaggedCertSequence;
 import org.xipki.ocsp.server.type.WritableOnlyExtension;
 import org.xipki.password.PasswordResolverException;
 import org.xipki.security.AlgorithmCode;
@@ -154,6 +156,16 @@ public class OcspServerImpl implements OcspServer {
     }
   } // class OcspRespControl
 
+  private static class StoreCertStatus {
+    final OcspStore store;
+    final CertStatusInfo info;
+
+    StoreCertStatus(OcspStore store, CertStatusInfo info) {
+      this.store = store;
+      this.info = info;
+    }
+  } // class StoreCertStatus
+
   public static final long DFLT_CACHE_MAX_AGE = 60; // 1 minute
 
   private static final String STORE_TYPE_XIPKI_DB = "xipki-db";
@@ -211,6 +223,10 @@ public class OcspServerImpl implements OcspServer {
 
   private AtomicBoolean initialized = new AtomicBoolean(false);
 
+  private List<ResponsePreSigner> preSigners = new ArrayList<>();
+
+  private ScheduledThreadPoolExecutor preSignExecutor;
+
   static {
     unsuccesfulOCSPRespMap = new HashMap<>(10);
     for (OcspResponseStatus status : OcspResponseStatus.values()) {
@@ -324,6 +340,7 @@ public class OcspServerImpl implements OcspServer {
     initialized.set(false);
 
     // reset
+    stopPreSigners();
     responseCacher = null;
     responders.clear();
     signers.clear();
@@ -477,7 +494,15 @@ public class OcspServerImpl implements OcspServer {
       } finally {
         closeStream(dsStream);
       }
-      responseCacher = new ResponseCacher(datasource, master, cacheType.validity());
+      Integer memoryCacheSize = cacheType.getMemoryCacheSize();
+      responseCacher = new ResponseCacher(datasource, master, cacheType.validity(),
+          memoryCacheSize == null ? 0 : memoryCacheSize.intValue());
+      if (cacheType.getWriteQueueSize() != null) {
+        responseCacher.setWriteQueueSize(cacheType.getWriteQueueSize());
+      }
+      if (cacheType.getWriteBatchSize() != null) {
+        responseCacher.setWriteBatchSize(cacheType.getWriteBatchSize());
+      }
       responseCacher.init();
     }
 
@@ -606,11 +631,63 @@ public class OcspServerImpl implements OcspServer {
       list2.add(m.str);
     }
     this.servletPaths = list2;
+
+    // pre-signers
+    for (OcspServerConf.Responder m : conf.getResponders()) {
+      OcspServerConf.PreSign preSignConf = m.getPreSign();
+      if (preSignConf == null) {
+        continue;
+      }
+
+      if (responseCacher == null) {
+        throw new InvalidConfException("preSign of responder '" + m.getName()
+            + "' requires the responseCache");
+      }
+
+      ResponsePreSigner preSigner = new ResponsePreSigner(this, m.getName(),
+          responders.get(m.getName()), preSignConf);
+      if (preSigner.getRefreshWindow() >= responseCacher.getValidity()) {
+        throw new InvalidConfException("preSign.refreshWindow of responder '" + m.getName()
+            + "' must be shorter than the validity of responseCache");
+      }
+      preSigners.add(preSigner);
+    }
+
+    if (!preSigners.isEmpty()) {
+      preSignExecutor = new ScheduledThreadPoolExecutor(preSigners.size());
+      int idx = 0;
+      for (OcspServerConf.Responder m : conf.getResponders()) {
+        if (m.getPreSign() != null) {
+          long intervalMinutes = m.getPreSign().interval().approxMinutes();
+          preSignExecutor.scheduleWithFixedDelay(preSigners.get(idx++), 1, intervalMinutes,
+              TimeUnit.MINUTES);
+        }
+      }
+    }
   } // method init0
 
+  private void stopPreSigners() {
+    for (ResponsePreSigner preSigner : preSigners) {
+      preSigner.stop();
+    }
+    preSigners.clear();
+
+    if (preSignExecutor != null) {
+      preSignExecutor.shutdown();
+      try {
+        preSignExecutor.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException ex) {
+        LOG.error("interrupted: {}", ex.getMessage());
+      }
+      preSignExecutor = null;
+    }
+  } // method stopPreSigners
+
   @Override
   public void close() {
     LOG.info("stopped OCSP Responder");
+    stopPreSigners();
+
     if (responseCacher != null) {
       responseCacher.close();
     }
@@ -823,55 +900,15 @@ public class OcspServerImpl implements OcspServer {
         }
       }
 
-      ResponderID responderId = signer.getResponderId(repOpt.isResponderIdByName());
-      OCSPRespBuilder builder = new OCSPRespBuilder(responderId);
-
-      boolean unknownAsRevoked = false;
-      AtomicBoolean unknownAsRevoked0 = new AtomicBoolean(false);
-      for (int i = 0; i < requestsSize; i++) {
-        OcspRespWithCacheInfo failureOcspResp = processCertReq(
-            unknownAsRevoked0, requestList.get(i),
-            builder, responder, reqOpt, repOpt, repControl);
-
-        if (failureOcspResp != null) {
-          return failureOcspResp;
-        }
-
-        if (unknownAsRevoked0.get()) {
-          unknownAsRevoked = true;
-        }
-      }
-
-      if (unknownAsRevoked && repControl.includeExtendedRevokeExtension) {
-        respExtensions.add(extension_pkix_ocsp_extendedRevoke);
-      }
-
-      if (!respExtensions.isEmpty()) {
-        builder.setResponseExtensions(new Extensions(respExtensions));
-      }
-
-      TaggedCertSequence certsInResp;
-      EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
-      if (certsMode == EmbedCertsMode.SIGNER) {
-        certsInResp = signer.getSequenceOfCert();
-      } else if (certsMode == EmbedCertsMode.NONE) {
-        certsInResp = null;
-      } else {
-        // certsMode == EmbedCertsMode.SIGNER_AND_CA
-        certsInResp = signer.getSequenceOfCertChain();
-      }
-
       Date producedAt = new Date();
-      byte[] encodeOcspResponse;
-      try {
-        encodeOcspResponse = builder.buildOCSPResponse(concurrentSigner, certsInResp, producedAt);
-      } catch (NoIdleSignerException ex) {
-        return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
-      } catch (OCSPException ex) {
-        LogUtil.error(LOG, ex, "answer() basicOcspBuilder.build");
-        return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
+      Object respOrErrorResp = buildResponse(responder, requestList, respExtensions,
+          concurrentSigner, repControl, producedAt);
+      if (respOrErrorResp instanceof OcspRespWithCacheInfo) {
+        return (OcspRespWithCacheInfo) respOrErrorResp;
       }
 
+      byte[] encodeOcspResponse = (byte[]) respOrErrorResp;
+
       long producedAtSeconds = producedAt.getTime() / 1000;
       // cache response in database
       if (canCacheDb && repControl.canCacheInfo) {
@@ -897,8 +934,222 @@ public class OcspServerImpl implements OcspServer {
     }
   } // method ask
 
+  /**
+   * Generates the OCSP response for the given certificate in advance, and stores it in the
+   * response cache. A new response will only be generated if no cached response is
+   * available, or if the cached one expires in the given refresh window.
+   *
+   * @param preSigner
+   *          The pre-signer, provides the responder, the refresh window and the rate limit.
+   * @param issuer
+   *          The issuer of the certificate.
+   * @param serialNumber
+   *          Serial number of the certificate.
+   * @return whether a new response has been generated.
+   * @throws IOException
+   *           If error occurs while generating the response.
+   * @throws CertificateException
+   *           If error occurs while storing the issuer in the response cache.
+   * @throws InvalidConfException
+   *           If error occurs while storing the issuer in the response cache.
+   * @throws DataAccessException
+   *           If database error occurs.
+   * @throws InterruptedException
+   *           If interrupted while waiting for the rate limit.
+   */
+  boolean preSign(ResponsePreSigner preSigner, RequestIssuer issuer, BigInteger serialNumber)
+      throws IOException, CertificateException, InvalidConfException, DataAccessException,
+        InterruptedException {
+    if (responseCacher == null || !responseCacher.isOnService()) {
+      return false;
+    }
+
+    ResponderImpl responder = preSigner.getResponder();
+    long refreshWindow = preSigner.getRefreshWindow();
+
+    ConcurrentContentSigner concurrentSigner = responder.getSigner().getFirstSigner();
+    AlgorithmCode sigAlgCode = concurrentSigner.getAlgorithmCode();
+
+    Integer issuerId = responseCacher.getIssuerId(issuer);
+    if (issuerId != null) {
+      OcspRespWithCacheInfo cachedResp = responseCacher.getOcspResponseFromDb(
+          issuerId.intValue(), serialNumber, sigAlgCode);
+      if (cachedResp != null) {
+        ResponseCacheInfo cacheInfo = cachedResp.getCacheInfo();
+        long expiresAt = cacheInfo.getGeneratedAt() + responseCacher.getValidity();
+        if (cacheInfo.getNextUpdate() != null) {
+          expiresAt = Math.min(expiresAt, cacheInfo.getNextUpdate());
+        }
+
+        if (expiresAt - System.currentTimeMillis() / 1000 > refreshWindow) {
+          return false;
+        }
+      }
+    } else if (master) {
+      X509Cert issuerCert = null;
+      for (OcspStore store : responder.getStores()) {
+        issuerCert = store.getIssuerCert(issuer);
+        if (issuerCert != null) {
+          break;
+        }
+      }
+
+      if (issuerCert == null) {
+        return false;
+      }
+
+      issuerId = responseCacher.storeIssuer(issuerCert);
+    } else {
+      return false;
+    }
+
+    OcspRespControl repControl = new OcspRespControl();
+    repControl.canCacheInfo = true;
+
+    // only the signing operations are limited by maxRate
+    preSigner.waitForRateLimit();
+
+    Date producedAt = new Date();
+    Object respOrErrorResp = buildResponse(responder,
+        Collections.singletonList(new CertID(issuer, serialNumber)), new LinkedList<>(),
+        concurrentSigner, repControl, producedAt);
+
+    // Don't cache the response with status UNKNOWN, since this may result in DDoS of storage
+    if (respOrErrorResp instanceof OcspRespWithCacheInfo || !repControl.canCacheInfo) {
+      return false;
+    }
+
+    responseCacher.storeOcspResponse(issuerId.intValue(), serialNumber,
+        producedAt.getTime() / 1000, repControl.cacheNextUpdate, sigAlgCode,
+        (byte[]) respOrErrorResp, true);
+    return true;
+  } // method preSign
+
+  /**
+   * Builds the OCSP response for the given requests.
+   *
+   * @return the encoded OCSP response, or the unsuccessful response in case of error.
+   */
+  private Object buildResponse(ResponderImpl responder, List<CertID> requestList,
+      List<Extension> respExtensions, ConcurrentContentSigner concurrentSigner,
+      OcspRespControl repControl, Date producedAt) throws IOException {
+    ResponseSigner signer = responder.getSigner();
+    RequestOption reqOpt = responder.getRequestOption();
+    OcspServerConf.ResponseOption repOpt = responder.getResponseOption();
+    final int requestsSize = requestList.size();
+
+    ResponseTemplate template = signer.getResponseTemplate(concurrentSigner,
+        repOpt.isResponderIdByName(), repOpt.getEmbedCertsMode());
+    OCSPRespBuilder builder = new OCSPRespBuilder(template);
+
+    // retrieve the status of several certificates of the same issuer at once
+    StoreCertStatus[] prefetchedStatuses = (requestsSize > 1)
+        ? prefetchCertStatuses(responder, requestList) : null;
+
+    boolean unknownAsRevoked = false;
+    AtomicBoolean unknownAsRevoked0 = new AtomicBoolean(false);
+    for (int i = 0; i < requestsSize; i++) {
+      OcspRespWithCacheInfo failureOcspResp = processCertReq(
+          unknownAsRevoked0, requestList.get(i),
+          prefetchedStatuses == null ? null : prefetchedStatuses[i],
+          builder, responder, reqOpt, repOpt, repControl);
+
+      if (failureOcspResp != null) {
+        return failureOcspResp;
+      }
+
+      if (unknownAsRevoked0.get()) {
+        unknownAsRevoked = true;
+      }
+    }
+
+    if (unknownAsRevoked && repControl.includeExtendedRevokeExtension) {
+      respExtensions.add(extension_pkix_ocsp_extendedRevoke);
+    }
+
+    if (!respExtensions.isEmpty()) {
+      builder.setResponseExtensions(new Extensions(respExtensions));
+    }
+
+    try {
+      return builder.buildOCSPResponse(concurrentSigner, producedAt);
+    } catch (NoIdleSignerException ex) {
+      return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
+    } catch (OCSPException ex) {
+      LogUtil.error(LOG, ex, "answer() basicOcspBuilder.build");
+      return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
+    }
+  } // method buildResponse
+
+  /**
+   * Retrieves the status of the certificates with the same issuer at once.
+   *
+   * @return the status of the certificates. The status of a certificate is {@code null} if
+   *         it is not retrieved, and must be retrieved individually.
+   */
+  private StoreCertStatus[] prefetchCertStatuses(ResponderImpl responder,
+      List<CertID> requestList) {
+    RequestOption reqOpt = responder.getRequestOption();
+    OcspServerConf.ResponseOption repOpt = responder.getResponseOption();
+    final int requestsSize = requestList.size();
+
+    Map<RequestIssuer, List<Integer>> issuerIndexes = new HashMap<>();
+    for (int i = 0; i < requestsSize; i++) {
+      RequestIssuer reqIssuer = requestList.get(i).getIssuer();
+      if (!reqOpt.allows(reqIssuer.hashAlgorithm())) {
+        continue;
+      }
+
+      List<Integer> indexes = issuerIndexes.get(reqIssuer);
+      if (indexes == null) {
+        indexes = new ArrayList<>(requestsSize);
+        issuerIndexes.put(reqIssuer, indexes);
+      }
+      indexes.add(i);
+    }
+
+    StoreCertStatus[] statuses = new StoreCertStatus[requestsSize];
+    Date now = new Date();
+    for (Entry<RequestIssuer, List<Integer>> entry : issuerIndexes.entrySet()) {
+      RequestIssuer reqIssuer = entry.getKey();
+      List<Integer> indexes = entry.getValue();
+      if (indexes.size() < 2) {
+        continue;
+      }
+
+      for (OcspStore store : responder.getStores()) {
+        if (!store.knowsIssuer(reqIssuer)) {
+          continue;
+        }
+
+        List<BigInteger> serials = new ArrayList<>(indexes.size());
+        for (Integer index : indexes) {
+          serials.add(requestList.get(index).getSerialNumber());
+        }
+
+        try {
+          List<CertStatusInfo> infos = store.getCertStatuses(now, reqIssuer, serials,
+              repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
+              responder.getResponderOption().isInheritCaRevocation());
+          for (int i = 0; i < indexes.size(); i++) {
+            CertStatusInfo info = infos.get(i);
+            if (info != null) {
+              statuses[indexes.get(i)] = new StoreCertStatus(store, info);
+            }
+          }
+        } catch (OcspStoreException ex) {
+          // the status will be retrieved individually
+          LogUtil.warn(LOG, ex, "getCertStatuses() of CertStatusStore " + store.getName());
+        }
+        break;
+      }
+    }
+
+    return statuses;
+  } // method prefetchCertStatuses
+
   private OcspRespWithCacheInfo processCertReq(AtomicBoolean unknownAsRevoked,
-      CertID certId, OCSPRespBuilder builder,
+      CertID certId, StoreCertStatus prefetchedStatus, OCSPRespBuilder builder,
       ResponderImpl responder, RequestOption reqOpt, OcspServerConf.ResponseOption repOpt,
       OcspRespControl repControl) throws IOException {
     HashAlgo reqHashAlgo = certId.getIssuer().hashAlgorithm();
@@ -914,45 +1165,37 @@ public class OcspServerImpl implements OcspServer {
 
     RequestIssuer reqIssuer = certId.getIssuer();
     Date now = new Date();
-    for (OcspStore store : responder.getStores()) {
-      if (!store.knowsIssuer(reqIssuer)) {
-        continue;
+    if (prefetchedStatus != null) {
+      certStatusInfo = prefetchedStatus.info;
+      OcspRespWithCacheInfo failureOcspResp =
+          applyUnknownCertBehaviour(prefetchedStatus.store, certStatusInfo);
+      if (failureOcspResp != null) {
+        return failureOcspResp;
       }
+    } else {
+      for (OcspStore store : responder.getStores()) {
+        if (!store.knowsIssuer(reqIssuer)) {
+          continue;
+        }
 
-      try {
-        certStatusInfo = store.getCertStatus(now, certId.getIssuer(), serial,
-            repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
-            responder.getResponderOption().isInheritCaRevocation());
-        if (certStatusInfo != null) {
-          CertStatus status = certStatusInfo.getCertStatus();
-          if (status == CertStatus.UNKNOWN || status == CertStatus.IGNORE) {
-            switch (store.getUnknownCertBehaviour()) {
-              case unknown:
-                break;
-              case good:
-                if (status == CertStatus.UNKNOWN) {
-                  certStatusInfo.setCertStatus(CertStatus.GOOD);
-                }
-                break;
-              case malformedRequest:
-                return unsuccesfulOCSPRespMap.get(OcspResponseStatus.malformedRequest);
-              case internalError:
-                return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
-              case tryLater:
-                return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
-              default:
-                break;
+        try {
+          certStatusInfo = store.getCertStatus(now, certId.getIssuer(), serial,
+              repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
+              responder.getResponderOption().isInheritCaRevocation());
+          if (certStatusInfo != null) {
+            OcspRespWithCacheInfo failureOcspResp =
+                applyUnknownCertBehaviour(store, certStatusInfo);
+            if (failureOcspResp != null) {
+              return failureOcspResp;
             }
-          } else if (status == CertStatus.CRL_EXPIRED) {
-            return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
-          }
 
-          exceptionOccurs = false;
-          break;
+            exceptionOccurs = false;
+            break;
+          }
+        } catch (OcspStoreException ex) {
+          exceptionOccurs = true;
+          LogUtil.error(LOG, ex, "getCertStatus() of CertStatusStore " + store.getName());
         }
-      } catch (OcspStoreException ex) {
-        exceptionOccurs = true;
-        LogUtil.error(LOG, ex, "getCertStatus() of CertStatusStore " + store.getName());
       }
     }
 
@@ -1077,6 +1320,39 @@ public class OcspServerImpl implements OcspServer {
     return null;
   } // method processCertReq
 
+  /**
+   * Applies the unknownCertBehaviour of the store.
+   *
+   * @return the unsuccessful response, or {@code null} if the status can be returned.
+   */
+  private OcspRespWithCacheInfo applyUnknownCertBehaviour(OcspStore store,
+      CertStatusInfo certStatusInfo) {
+    CertStatus status = certStatusInfo.getCertStatus();
+    if (status == CertStatus.UNKNOWN || status == CertStatus.IGNORE) {
+      switch (store.getUnknownCertBehaviour()) {
+        case unknown:
+          break;
+        case good:
+          if (status == CertStatus.UNKNOWN) {
+            certStatusInfo.setCertStatus(CertStatus.GOOD);
+          }
+          break;
+        case malformedRequest:
+          return unsuccesfulOCSPRespMap.get(OcspResponseStatus.malformedRequest);
+        case internalError:
+          return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
+        case tryLater:
+          return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
+        default:
+          break;
+      }
+    } else if (status == CertStatus.CRL_EXPIRED) {
+      return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
+    }
+
+    return null;
+  } // method applyUnknownCertBehaviour
+
   @Override
   public HealthCheckResult healthCheck(Responder responder2) {
     ResponderImpl responder = (ResponderImpl) responder2;
@@ -1102,6 +1378,29 @@ public class OcspServerImpl implements OcspServer {
     signerHealth.setHealthy(signerHealthy);
     result.addChildCheck(signerHealth);
 
+    if (responseCacher != null) {
+      HealthCheckResult cacheHealth = new HealthCheckResult();
+      cacheHealth.setName("ResponseCache");
+      cacheHealth.setHealthy(responseCacher.isOnService());
+      Map<String, Object> statuses = cacheHealth.getStatuses();
+      statuses.put("dbHits", responseCacher.getDbHits());
+      statuses.put("dbMisses", responseCacher.getDbMisses());
+      statuses.put("dbWrites", responseCacher.getWrittenResponses());
+      statuses.put("writeQueueDepth", responseCacher.getWriteQueueDepth());
+      statuses.put("droppedWrites", responseCacher.getDroppedWrites());
+
+      InMemoryResponseCache memoryCache = responseCacher.getMemoryCache();
+      if (memoryCache != null) {
+        statuses.put("memoryHits", memoryCache.getHits());
+        statuses.put("memoryMisses", memoryCache.getMisses());
+        statuses.put("memorySize", memoryCache.size());
+        statuses.put("memoryExpirations", memoryCache.getExpirations());
+        statuses.put("memoryEvictions", memoryCache.getEvictions());
+      }
+      // the response cache is optional, and does not influence the overall health.
+      result.addChildCheck(cacheHealth);
+    }
+
     result.setHealthy(healthy);
     return result;
   } // method healthCheck
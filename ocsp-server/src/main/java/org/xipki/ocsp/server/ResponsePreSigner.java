@@ -0,0 +1,226 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.server.store.PreSignableStore;
+import org.xipki.ocsp.server.store.PreSignableStore.StoredCertId;
+import org.xipki.util.Args;
+import org.xipki.util.IoUtil;
+import org.xipki.util.LogUtil;
+
+/**
+ * Generates the OCSP responses of all certificates known by the stores in advance, and
+ * saves them in the response cache. This is similar to the lightweight responders
+ * specified in RFC 5019.
+ *
+ * <p>The certificates are processed incrementally ordered by the database ID. The
+ * position of each store is saved in the progress file (if configured), so that the
+ * processing can be resumed after restart.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class ResponsePreSigner implements Runnable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResponsePreSigner.class);
+
+  private final OcspServerImpl server;
+
+  private final String responderName;
+
+  private final ResponderImpl responder;
+
+  // in seconds
+  private final long refreshWindow;
+
+  private final int batchSize;
+
+  // minimal duration between two signing operations, in nano-seconds
+  private final long minNanosPerSign;
+
+  private final File progressFile;
+
+  private final Properties progress = new Properties();
+
+  private final AtomicBoolean inProcess = new AtomicBoolean(false);
+
+  private volatile boolean stopped;
+
+  private long nextSignTime;
+
+  ResponsePreSigner(OcspServerImpl server, String responderName, ResponderImpl responder,
+      OcspServerConf.PreSign conf) {
+    this.server = Args.notNull(server, "server");
+    this.responderName = Args.notBlank(responderName, "responderName");
+    this.responder = Args.notNull(responder, "responder");
+    Args.notNull(conf, "conf");
+    this.refreshWindow = conf.refreshWindow().approxMinutes() * 60;
+    this.batchSize = conf.getBatchSize();
+    this.minNanosPerSign = conf.getMaxRate() > 0
+        ? TimeUnit.SECONDS.toNanos(1) / conf.getMaxRate() : 0;
+
+    String str = conf.getProgressFile();
+    this.progressFile = (str == null) ? null : new File(IoUtil.expandFilepath(str));
+    if (progressFile != null && progressFile.exists()) {
+      try (InputStream is = Files.newInputStream(progressFile.toPath())) {
+        progress.load(is);
+      } catch (IOException ex) {
+        LogUtil.warn(LOG, ex, "could not read progress file " + progressFile.getPath()
+            + ", start from the beginning");
+      }
+    }
+  } // constructor
+
+  long getRefreshWindow() {
+    return refreshWindow;
+  }
+
+  ResponderImpl getResponder() {
+    return responder;
+  }
+
+  void stop() {
+    this.stopped = true;
+  }
+
+  @Override
+  public void run() {
+    if (!inProcess.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      for (OcspStore store : responder.getStores()) {
+        if (stopped) {
+          break;
+        }
+
+        if (store instanceof PreSignableStore) {
+          preSign(store.getName(), (PreSignableStore) store);
+        }
+      }
+    } catch (Throwable th) {
+      LogUtil.error(LOG, th, "error while pre-signing OCSP responses of responder "
+          + responderName);
+    } finally {
+      inProcess.set(false);
+    }
+  } // method run
+
+  private void preSign(String storeName, PreSignableStore store) throws Exception {
+    long startId = getStartId(storeName);
+    LOG.info("start pre-signing OCSP responses of responder {} for store {} from ID {}",
+        responderName, storeName, startId);
+
+    long numSigned = 0;
+    long numProcessed = 0;
+    long start = System.currentTimeMillis();
+
+    while (!stopped) {
+      List<StoredCertId> certIds = store.getCertIds(startId, batchSize);
+      if (certIds.isEmpty()) {
+        // whole table processed, start from the beginning in the next run
+        saveStartId(storeName, 0);
+        LOG.info("finished pre-signing OCSP responses of responder {} for store {}: "
+            + "processed {} certificates, signed {} responses in {} ms", responderName,
+            storeName, numProcessed, numSigned, System.currentTimeMillis() - start);
+        return;
+      }
+
+      for (StoredCertId certId : certIds) {
+        if (stopped) {
+          break;
+        }
+
+        startId = certId.getId() + 1;
+        numProcessed++;
+        if (certId.getIssuer() == null) {
+          continue;
+        }
+
+        if (server.preSign(this, certId.getIssuer(), certId.getSerialNumber())) {
+          numSigned++;
+        }
+      }
+
+      saveStartId(storeName, startId);
+    }
+  } // method preSign
+
+  /**
+   * Waits until the next signing operation is allowed by maxRate. Called by
+   * {@link OcspServerImpl#preSign} only if a new response will be signed.
+   */
+  void waitForRateLimit() throws InterruptedException {
+    if (minNanosPerSign == 0) {
+      return;
+    }
+
+    long now = System.nanoTime();
+    if (nextSignTime > now) {
+      TimeUnit.NANOSECONDS.sleep(nextSignTime - now);
+      now = nextSignTime;
+    }
+    nextSignTime = now + minNanosPerSign;
+  } // method waitForRateLimit
+
+  private long getStartId(String storeName) {
+    String str = progress.getProperty(storeName);
+    if (str == null) {
+      return 0;
+    }
+
+    try {
+      return Long.parseLong(str.trim());
+    } catch (NumberFormatException ex) {
+      LOG.warn("invalid progress '{}' for store {}, start from the beginning", str, storeName);
+      return 0;
+    }
+  } // method getStartId
+
+  private void saveStartId(String storeName, long startId) {
+    progress.setProperty(storeName, Long.toString(startId));
+    if (progressFile == null) {
+      return;
+    }
+
+    try {
+      IoUtil.mkdirsParent(progressFile.toPath());
+      try (OutputStream os = Files.newOutputStream(progressFile.toPath())) {
+        progress.store(os, "pre-signing progress of responder " + responderName);
+      }
+    } catch (IOException ex) {
+      LogUtil.warn(LOG, ex, "could not save progress file " + progressFile.getPath());
+    }
+  } // method saveStartId
+
+}
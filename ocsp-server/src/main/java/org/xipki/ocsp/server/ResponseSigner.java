@@ -22,6 +22,7 @@ import java.security.cert.CertificateException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
@@ -29,6 +30,7 @@ import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.RSASSAPSSparams;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.Certificate;
+import org.xipki.ocsp.server.OcspServerConf.EmbedCertsMode;
 import org.xipki.ocsp.server.type.ResponderID;
 import org.xipki.ocsp.server.type.TaggedCertSequence;
 import org.xipki.security.ConcurrentContentSigner;
@@ -63,6 +65,8 @@ class ResponseSigner {
 
   private final boolean macSigner;
 
+  private final Map<String, ResponseTemplate> responseTemplates = new ConcurrentHashMap<>();
+
   ResponseSigner(List<ConcurrentContentSigner> signers) throws CertificateException, IOException {
     this.signers = Args.notEmpty(signers, "signers");
     ConcurrentContentSigner firstSigner = signers.get(0);
@@ -145,6 +149,41 @@ class ResponseSigner {
     return byName ? responderIdByName :  responderIdByKey;
   }
 
+  /**
+   * Returns the template of responses signed by the given signer.
+   *
+   * @param signer
+   *          One of the signers of this ResponseSigner.
+   * @param responderIdByName
+   *          Whether the responder is identified by name.
+   * @param certsMode
+   *          Which certificates are embedded in the response.
+   * @return the response template.
+   */
+  public ResponseTemplate getResponseTemplate(ConcurrentContentSigner signer,
+      boolean responderIdByName, EmbedCertsMode certsMode) {
+    String key = signer.getAlgorithmName() + "/" + responderIdByName + "/" + certsMode;
+    ResponseTemplate template = responseTemplates.get(key);
+    if (template == null) {
+      TaggedCertSequence certs;
+      if (certsMode == EmbedCertsMode.SIGNER) {
+        certs = sequenceOfCert;
+      } else if (certsMode == EmbedCertsMode.NONE) {
+        certs = null;
+      } else {
+        // certsMode == EmbedCertsMode.SIGNER_AND_CA
+        certs = sequenceOfCertChain;
+      }
+
+      template = new ResponseTemplate(getResponderId(responderIdByName), certs);
+      ResponseTemplate existing = responseTemplates.putIfAbsent(key, template);
+      if (existing != null) {
+        template = existing;
+      }
+    }
+    return template;
+  } // method getResponseTemplate
+
   public X509Cert getCert() {
     return cert;
   }
@@ -0,0 +1,62 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xipki.ocsp.server;
+
+import org.xipki.ocsp.server.type.ResponderID;
+import org.xipki.ocsp.server.type.TaggedCertSequence;
+import org.xipki.util.Args;
+
+/**
+ * Pre-encoded constant parts of the OCSP responses for one combination of responder ID,
+ * signature algorithm and embedded certificates. Only the SingleResponses, producedAt and
+ * the signature need to be encoded for each response; they are written directly into the
+ * output buffer.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class ResponseTemplate {
+
+  private final ResponderID responderId;
+
+  private final TaggedCertSequence certs;
+
+  private volatile byte[] encodedSigAlgId;
+
+  ResponseTemplate(ResponderID responderId, TaggedCertSequence certs) {
+    this.responderId = Args.notNull(responderId, "responderId");
+    this.certs = certs;
+  }
+
+  ResponderID getResponderId() {
+    return responderId;
+  }
+
+  TaggedCertSequence getCerts() {
+    return certs;
+  }
+
+  byte[] getEncodedSigAlgId() {
+    return encodedSigAlgId;
+  }
+
+  void setEncodedSigAlgId(byte[] encodedSigAlgId) {
+    this.encodedSigAlgId = encodedSigAlgId;
+  }
+
+}
@@ -67,7 +67,7 @@ import com.alibaba.fastjson.JSON;
  * @since 2.0.0
  */
 
-public class CaDbCertStatusStore extends OcspStore {
+public class CaDbCertStatusStore extends OcspStore implements PreSignableStore {
 
   private class StoreUpdateService implements Runnable {
 
@@ -181,6 +181,7 @@ public class CaDbCertStatusStore extends OcspStore {
         try {
           rs = ps.executeQuery();
           List<IssuerEntry> caInfos = new LinkedList<>();
+          IssuerStore.DuplicateDetector duplicateDetector = new IssuerStore.DuplicateDetector();
           while (rs.next()) {
             byte[] certBytes = Base64.decode(rs.getString("CERT"));
             String sha1Fp = HashAlgo.SHA1.base64Hash(certBytes);
@@ -191,12 +192,8 @@ public class CaDbCertStatusStore extends OcspStore {
             X509Cert cert = X509Util.parseCert(certBytes);
 
             IssuerEntry caInfoEntry = new IssuerEntry(rs.getInt("ID"), cert);
-            RequestIssuer reqIssuer = new RequestIssuer(HashAlgo.SHA1,
-                caInfoEntry.getEncodedHash(HashAlgo.SHA1));
-            for (IssuerEntry existingIssuer : caInfos) {
-              if (existingIssuer.matchHash(reqIssuer)) {
-                throw new Exception("found at least two issuers with the same subject and key");
-              }
+            if (duplicateDetector.isDuplicate(caInfoEntry)) {
+              throw new Exception("found at least two issuers with the same subject and key");
             }
 
             String str = rs.getString("REV_INFO");
@@ -525,6 +522,16 @@ public class CaDbCertStatusStore extends OcspStore {
     return (issuer == null) ? null : issuer.getCert();
   } // method getIssuerCert
 
+  @Override
+  public List<StoredCertId> getCertIds(long startId, int numEntries)
+      throws OcspStoreException {
+    if (!initialized) {
+      throw new OcspStoreException("initialization of CertStore is still in process");
+    }
+
+    return DbCertStatusStore.getCertIds(datasource, issuerStore, "CA_ID", startId, numEntries);
+  }
+
   protected boolean isInitialized() {
     return initialized;
   }
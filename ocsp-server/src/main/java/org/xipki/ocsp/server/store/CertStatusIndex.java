@@ -0,0 +1,401 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.util.concurrent.locks.StampedLock;
+
+import org.xipki.util.Args;
+
+/**
+ * In-memory index of the certificate status, keyed by (issuer ID, serial number).
+ *
+ * <p>The index is an open-addressing hash table with linear probing, whose slots are
+ * spread over parallel primitive arrays, so that no object is created per entry. The
+ * serial number (at most 160 bits) and the issuer ID are packed into three longs.
+ * All times are stored in seconds as unsigned 32-bit integers, times after
+ * 2106-02-07 are truncated to this date.
+ *
+ * <p>Memory footprint: each slot needs 45 bytes (3 longs for the key, 5 ints for
+ * NBEFORE, NAFTER, RT, RIT and CRL_ID, and 1 byte for the revocation status and reason).
+ * The table is doubled once it is 3/4 full, so that one entry occupies between 60 and 120
+ * bytes, e.g. 10 million certificates require between 600 MB and 1.2 GB heap.
+ *
+ * <p>Lookups are lock-free (optimistic reads) and may be executed concurrently with
+ * one writer.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class CertStatusIndex {
+
+  /**
+   * The status of a certificate.
+   */
+  public static final class Entry {
+
+    private final boolean revoked;
+
+    private final int reason;
+
+    private final long notBefore;
+
+    private final long notAfter;
+
+    private final long revTime;
+
+    private final long invalidityTime;
+
+    private final int crlId;
+
+    private Entry(boolean revoked, int reason, long notBefore, long notAfter, long revTime,
+        long invalidityTime, int crlId) {
+      this.revoked = revoked;
+      this.reason = reason;
+      this.notBefore = notBefore;
+      this.notAfter = notAfter;
+      this.revTime = revTime;
+      this.invalidityTime = invalidityTime;
+      this.crlId = crlId;
+    }
+
+    public boolean isRevoked() {
+      return revoked;
+    }
+
+    public int getReason() {
+      return reason;
+    }
+
+    /**
+     * Returns the notBefore in seconds, 0 if not known.
+     * @return the notBefore in seconds.
+     */
+    public long getNotBefore() {
+      return notBefore;
+    }
+
+    /**
+     * Returns the notAfter in seconds, 0 if not known.
+     * @return the notAfter in seconds.
+     */
+    public long getNotAfter() {
+      return notAfter;
+    }
+
+    /**
+     * Returns the revocation time in seconds, 0 if not revoked.
+     * @return the revocation time in seconds.
+     */
+    public long getRevTime() {
+      return revTime;
+    }
+
+    /**
+     * Returns the invalidity time in seconds, 0 if not present.
+     * @return the invalidity time in seconds.
+     */
+    public long getInvalidityTime() {
+      return invalidityTime;
+    }
+
+    public int getCrlId() {
+      return crlId;
+    }
+
+  } // class Entry
+
+  private static final class Table {
+
+    private final int mask;
+
+    private final long[] keys0;
+
+    private final long[] keys1;
+
+    // bit 63: slot used, bits 32-62: issuer ID, bits 0-31: bits 128-159 of serial number.
+    private final long[] keys2;
+
+    private final int[] notBefores;
+
+    private final int[] notAfters;
+
+    private final int[] revTimes;
+
+    private final int[] invalidityTimes;
+
+    private final int[] crlIds;
+
+    // bit 7: revoked, bits 0-3: reason
+    private final byte[] statuses;
+
+    private Table(int capacity) {
+      this.mask = capacity - 1;
+      this.keys0 = new long[capacity];
+      this.keys1 = new long[capacity];
+      this.keys2 = new long[capacity];
+      this.notBefores = new int[capacity];
+      this.notAfters = new int[capacity];
+      this.revTimes = new int[capacity];
+      this.invalidityTimes = new int[capacity];
+      this.crlIds = new int[capacity];
+      this.statuses = new byte[capacity];
+    }
+
+    private int capacity() {
+      return mask + 1;
+    }
+
+    /**
+     * Returns the slot of the given key. If the key is not contained, the negative value
+     * (-slot - 1) of the free slot will be returned.
+     */
+    private int find(long k0, long k1, long k2) {
+      int slot = hash(k0, k1, k2) & mask;
+      // the table is never full, the bound protects the optimistic reads only.
+      for (int i = 0; i <= mask; i++) {
+        long v2 = keys2[slot];
+        if (v2 == 0) {
+          return -slot - 1;
+        } else if (v2 == k2 && keys0[slot] == k0 && keys1[slot] == k1) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return Integer.MIN_VALUE;
+    } // method find
+
+    private void copyTo(int slot, Table dest, int destSlot) {
+      dest.keys0[destSlot] = keys0[slot];
+      dest.keys1[destSlot] = keys1[slot];
+      dest.keys2[destSlot] = keys2[slot];
+      dest.notBefores[destSlot] = notBefores[slot];
+      dest.notAfters[destSlot] = notAfters[slot];
+      dest.revTimes[destSlot] = revTimes[slot];
+      dest.invalidityTimes[destSlot] = invalidityTimes[slot];
+      dest.crlIds[destSlot] = crlIds[slot];
+      dest.statuses[destSlot] = statuses[slot];
+    } // method copyTo
+
+  } // class Table
+
+  private static final long USED = 1L << 63;
+
+  private static final long MAX_UINT = 0xFFFFFFFFL;
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private final StampedLock lock = new StampedLock();
+
+  private volatile Table table;
+
+  private int size;
+
+  private int threshold;
+
+  public CertStatusIndex(int expectedSize) {
+    Args.notNegative(expectedSize, "expectedSize");
+    int capacity = 16;
+    while (capacity < MAX_CAPACITY && capacity * 3L / 4 < expectedSize) {
+      capacity <<= 1;
+    }
+    this.table = new Table(capacity);
+    this.threshold = capacity / 4 * 3;
+  }
+
+  /**
+   * Whether the serial number can be hold in this index.
+   * @param serialNumber the serial number
+   * @return whether the serial number is positive and has at most 160 bits.
+   */
+  public static boolean isSupported(BigInteger serialNumber) {
+    return serialNumber.signum() == 1 && serialNumber.bitLength() <= 160;
+  }
+
+  /**
+   * Adds or replaces the status of a certificate.
+   *
+   * @param issuerId
+   *          Issuer ID (column IID), must not be negative.
+   * @param serialNumber
+   *          Serial number, must be {@link #isSupported(BigInteger) supported}.
+   * @param revoked
+   *          Whether the certificate is revoked.
+   * @param reason
+   *          Revocation reason.
+   * @param notBefore
+   *          notBefore in seconds, 0 if not known.
+   * @param notAfter
+   *          notAfter in seconds, 0 if not known.
+   * @param revTime
+   *          Revocation time in seconds.
+   * @param invalidityTime
+   *          Invalidity time in seconds, 0 if not present.
+   * @param crlId
+   *          CRL ID, 0 if not present.
+   */
+  public void put(int issuerId, BigInteger serialNumber, boolean revoked, int reason,
+      long notBefore, long notAfter, long revTime, long invalidityTime, int crlId) {
+    Args.notNegative(issuerId, "issuerId");
+    if (!isSupported(serialNumber)) {
+      throw new IllegalArgumentException("unsupported serialNumber " + serialNumber);
+    }
+
+    long k0 = serialNumber.longValue();
+    long k1 = serialNumber.bitLength() > 64 ? serialNumber.shiftRight(64).longValue() : 0;
+    long k2 = key2(issuerId, serialNumber);
+
+    long stamp = lock.writeLock();
+    try {
+      Table tab = table;
+      int slot = tab.find(k0, k1, k2);
+      if (slot < 0) {
+        if (size >= threshold) {
+          tab = resize();
+          slot = tab.find(k0, k1, k2);
+        }
+
+        slot = -slot - 1;
+        size++;
+        tab.keys0[slot] = k0;
+        tab.keys1[slot] = k1;
+      }
+
+      tab.notBefores[slot] = toUint(notBefore);
+      tab.notAfters[slot] = toUint(notAfter);
+      tab.revTimes[slot] = revoked ? toUint(revTime) : 0;
+      tab.invalidityTimes[slot] = revoked ? toUint(invalidityTime) : 0;
+      tab.crlIds[slot] = crlId;
+      tab.statuses[slot] = (byte) (revoked ? (0x80 | (reason & 0x0F)) : 0);
+      // set the key2 at the end, it marks the slot as used.
+      tab.keys2[slot] = k2;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  } // method put
+
+  /**
+   * Returns the status of the certificate.
+   *
+   * @param issuerId
+   *          Issuer ID (column IID).
+   * @param serialNumber
+   *          Serial number.
+   * @return the status of the certificate, or {@code null} if the certificate is not
+   *         contained in the index.
+   */
+  public Entry get(int issuerId, BigInteger serialNumber) {
+    if (issuerId < 0 || !isSupported(serialNumber)) {
+      return null;
+    }
+
+    long k0 = serialNumber.longValue();
+    long k1 = serialNumber.bitLength() > 64 ? serialNumber.shiftRight(64).longValue() : 0;
+    long k2 = key2(issuerId, serialNumber);
+
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      Entry entry = get0(k0, k1, k2);
+      if (lock.validate(stamp)) {
+        return entry;
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      return get0(k0, k1, k2);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  } // method get
+
+  private Entry get0(long k0, long k1, long k2) {
+    Table tab = table;
+    int slot = tab.find(k0, k1, k2);
+    if (slot < 0) {
+      return null;
+    }
+
+    int status = tab.statuses[slot];
+    return new Entry((status & 0x80) != 0, status & 0x0F,
+        Integer.toUnsignedLong(tab.notBefores[slot]),
+        Integer.toUnsignedLong(tab.notAfters[slot]),
+        Integer.toUnsignedLong(tab.revTimes[slot]),
+        Integer.toUnsignedLong(tab.invalidityTimes[slot]), tab.crlIds[slot]);
+  } // method get0
+
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  public int capacity() {
+    return table.capacity();
+  }
+
+  // must be called within the write lock.
+  private Table resize() {
+    Table oldTab = table;
+    int oldCapacity = oldTab.capacity();
+    if (oldCapacity >= MAX_CAPACITY) {
+      throw new IllegalStateException("CertStatusIndex is full");
+    }
+
+    Table newTab = new Table(oldCapacity << 1);
+    for (int i = 0; i < oldCapacity; i++) {
+      long k2 = oldTab.keys2[i];
+      if (k2 != 0) {
+        int destSlot = -newTab.find(oldTab.keys0[i], oldTab.keys1[i], k2) - 1;
+        oldTab.copyTo(i, newTab, destSlot);
+      }
+    }
+
+    this.table = newTab;
+    this.threshold = newTab.capacity() / 4 * 3;
+    return newTab;
+  } // method resize
+
+  private static long key2(int issuerId, BigInteger serialNumber) {
+    long high = serialNumber.bitLength() > 128
+        ? serialNumber.shiftRight(128).longValue() & MAX_UINT : 0;
+    // issuerId is not negative, it occupies the bits 32-62.
+    return USED | ((long) issuerId << 32) | high;
+  }
+
+  private static int hash(long k0, long k1, long k2) {
+    long h = k0 * 0x9E3779B97F4A7C15L;
+    h ^= k1 * 0xC2B2AE3D27D4EB4FL;
+    h ^= k2 * 0x165667B19E3779F9L;
+    h ^= (h >>> 32);
+    h *= 0xBF58476D1CE4E5B9L;
+    return (int) (h ^ (h >>> 29));
+  }
+
+  private static int toUint(long value) {
+    if (value <= 0) {
+      return 0;
+    }
+    return (int) Math.min(value, MAX_UINT);
+  }
+
+}
@@ -66,8 +66,12 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
 
   private int sqlBatchCommit;
 
+  private int importWorkers;
+
   private boolean ignoreExpiredCrls;
 
+  private boolean memoryMappedCrls;
+
   private boolean crlUpdated;
 
   /**
@@ -82,9 +86,21 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
    * <li>sqlBatchCommit:
    *   <p>
    *   Number of SQL queries before next commit, default to be 1000.</li>
+   * <li>importWorkers:
+   *   <p>
+   *   Number of workers importing the CRLs of different CAs in parallel, each with its own
+   *   database connection, default to be 1. If the CRLs of only one CA are to be imported,
+   *   the revokedCertificates of CRLs larger than 1 MB are imported in up to importWorkers
+   *   segments in parallel instead. The import uses up to importWorkers + 1 connections, the
+   *   maximal pool size of the datasource must be large enough for these and the connections
+   *   used to answer the OCSP requests.</li>
    * <li>ignoreExpiredCrls:
    *   <p>
    *   Whether expired CRLs are ignored, default to true.</li>
+   * <li>memoryMappedCrls:
+   *   <p>
+   *   Whether the revokedCertificates are read from a memory-mapped view of the CRL file
+   *   instead of a stream, default to false. CRLs larger than 2 GB are not supported.</li>
    * </ul>
    * @param datasource DataSource.
    */
@@ -96,9 +112,15 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     String value = getStrValue(sourceConf, "sqlBatchCommit", false);
     this.sqlBatchCommit = StringUtil.isBlank(value) ? 1000 : Integer.parseInt(value);
 
+    value = getStrValue(sourceConf, "importWorkers", false);
+    this.importWorkers = StringUtil.isBlank(value) ? 1 : Integer.parseInt(value);
+
     value = getStrValue(sourceConf, "ignoreExpiredCrls", false);
     this.ignoreExpiredCrls = StringUtil.isBlank(value) ? true : Boolean.parseBoolean(value);
 
+    value = getStrValue(sourceConf, "memoryMappedCrls", false);
+    this.memoryMappedCrls = StringUtil.isBlank(value) ? false : Boolean.parseBoolean(value);
+
     super.datasource = datasource;
     updateStore(true);
     super.init(sourceConf, datasource);
@@ -169,7 +191,8 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
           return;
         }
 
-        ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls);
+        ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls,
+            memoryMappedCrls, importWorkers);
 
         if (importCrl.importCrlToOcspDb()) {
           LOG.info("updated CertStore {} successfully", name);
@@ -25,6 +25,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -62,6 +63,7 @@ import org.xipki.util.Base64;
 import org.xipki.util.CollectionUtil;
 import org.xipki.util.LogUtil;
 import org.xipki.util.StringUtil;
+import org.xipki.util.Validity;
 
 import com.alibaba.fastjson.JSON;
 
@@ -72,7 +74,7 @@ import com.alibaba.fastjson.JSON;
  * @since 2.0.0
  */
 
-public class DbCertStatusStore extends OcspStore {
+public class DbCertStatusStore extends OcspStore implements PreSignableStore {
 
   private class StoreUpdateService implements Runnable {
 
@@ -83,18 +85,114 @@ public class DbCertStatusStore extends OcspStore {
 
   } // class StoreUpdateService
 
+  private class CertStatusIndexUpdateService implements Runnable {
+
+    @Override
+    public void run() {
+      boolean reload = System.currentTimeMillis() - certStatusIndexLoadedAt
+          >= certStatusIndexReloadInterval.approxMinutes() * 60 * 1000;
+      updateCertStatusIndex(reload);
+    }
+
+  } // class CertStatusIndexUpdateService
+
+  private static class CertEntry {
+
+    private int crlId;
+
+    private long notBefore;
+
+    private long notAfter;
+
+    private String b64CertHash;
+
+    private boolean revoked;
+
+    private int reason;
+
+    private long revTime;
+
+    private long invalTime;
+
+    private static CertEntry of(ResultSet rs, boolean includeCertHash, boolean includeRit)
+        throws SQLException {
+      CertEntry entry = new CertEntry();
+      entry.crlId = rs.getInt("CRL_ID");
+      entry.notBefore = rs.getLong("NBEFORE");
+      entry.notAfter = rs.getLong("NAFTER");
+      if (includeCertHash) {
+        entry.b64CertHash = rs.getString("HASH");
+      }
+
+      entry.revoked = rs.getBoolean("REV");
+      if (entry.revoked) {
+        entry.reason = rs.getInt("RR");
+        entry.revTime = rs.getLong("RT");
+        if (includeRit) {
+          entry.invalTime = rs.getLong("RIT");
+        }
+      }
+      return entry;
+    } // method of
+
+    private static CertEntry of(CertStatusIndex.Entry indexEntry) {
+      if (indexEntry == null) {
+        return null;
+      }
+
+      CertEntry entry = new CertEntry();
+      entry.crlId = indexEntry.getCrlId();
+      entry.notBefore = indexEntry.getNotBefore();
+      entry.notAfter = indexEntry.getNotAfter();
+      entry.revoked = indexEntry.isRevoked();
+      entry.reason = indexEntry.getReason();
+      entry.revTime = indexEntry.getRevTime();
+      entry.invalTime = indexEntry.getInvalidityTime();
+      return entry;
+    } // method of
+
+  } // class CertEntry
+
   protected DataSourceWrapper datasource;
 
   private static final Logger LOG = LoggerFactory.getLogger(DbCertStatusStore.class);
 
   private static final long MS_PER_5MIN = 300L * 1000;
 
+  private static final int CERT_STATUS_INDEX_BATCH_SIZE = 10000;
+
+  // maximal number of serial numbers in the IN-clause of one query
+  private static final int MAX_SERIALS_PER_QUERY = 100;
+
+  // in seconds. The rows written in this period before the last seen LUPDATE will be
+  // read again, this tolerates small clock skews and late commits.
+  private static final long CERT_STATUS_INDEX_OVERLAP = 60;
+
   private final Object lock = new Object();
 
+  private final Object certStatusIndexLock = new Object();
+
   private final AtomicBoolean storeUpdateInProcess = new AtomicBoolean(false);
 
   private final StoreUpdateService storeUpdateService = new StoreUpdateService();
 
+  private final CertStatusIndexUpdateService certStatusIndexUpdateService =
+      new CertStatusIndexUpdateService();
+
+  private boolean useCertStatusIndex;
+
+  private Validity certStatusIndexRefreshInterval;
+
+  private Validity certStatusIndexReloadInterval;
+
+  private volatile CertStatusIndex certStatusIndex;
+
+  // minimal LUPDATE (inclusive, in seconds) of the next incremental update
+  private long certStatusIndexSince;
+
+  // in milliseconds
+  private long certStatusIndexLoadedAt;
+
   private String sqlCsNoRit;
 
   private String sqlCs;
@@ -147,6 +245,10 @@ public class DbCertStatusStore extends OcspStore {
       try {
         updateIssuers();
         updateCrls();
+        if (force && useCertStatusIndex) {
+          // the table CERT may have been rewritten, e.g. by the import of CRLs.
+          updateCertStatusIndex(true);
+        }
       } finally {
         initialized = true;
         storeUpdateInProcess.set(false);
@@ -217,6 +319,7 @@ public class DbCertStatusStore extends OcspStore {
       try {
         rs = ps.executeQuery();
         List<IssuerEntry> caInfos = new LinkedList<>();
+        IssuerStore.DuplicateDetector duplicateDetector = new IssuerStore.DuplicateDetector();
         while (rs.next()) {
           String sha1Fp = rs.getString("S1C");
           if (!issuerFilter.includeIssuerWithSha1Fp(sha1Fp)) {
@@ -225,12 +328,8 @@ public class DbCertStatusStore extends OcspStore {
 
           X509Cert cert = X509Util.parseCert(StringUtil.toUtf8Bytes(rs.getString("CERT")));
           IssuerEntry caInfoEntry = new IssuerEntry(rs.getInt("ID"), cert);
-          RequestIssuer reqIssuer = new RequestIssuer(HashAlgo.SHA1,
-              caInfoEntry.getEncodedHash(HashAlgo.SHA1));
-          for (IssuerEntry existingIssuer : caInfos) {
-            if (existingIssuer.matchHash(reqIssuer)) {
-              throw new Exception("found at least two issuers with the same subject and key");
-            }
+          if (duplicateDetector.isDuplicate(caInfoEntry)) {
+            throw new Exception("found at least two issuers with the same subject and key");
           }
 
           String str = rs.getString("REV_INFO");
@@ -282,6 +381,95 @@ public class DbCertStatusStore extends OcspStore {
     }
   } // method updateCrls
 
+  private void updateCertStatusIndex(boolean reload) {
+    synchronized (certStatusIndexLock) {
+      try {
+        long start = System.currentTimeMillis();
+        if (reload || certStatusIndex == null) {
+          CertStatusIndex index = new CertStatusIndex(datasource.getCount(null, "CERT"));
+          long maxLastUpdate = 0;
+          long startId = 0;
+          final String sql = datasource.buildSelectFirstSql(CERT_STATUS_INDEX_BATCH_SIZE,
+              "ID ASC", "ID,IID,SN,LUPDATE,NBEFORE,NAFTER,REV,RR,RT,RIT,CRL_ID FROM CERT "
+              + "WHERE ID>=?");
+
+          while (true) {
+            PreparedStatement ps = preparedStatement(sql);
+            ResultSet rs = null;
+            int num = 0;
+            try {
+              ps.setLong(1, startId);
+              rs = ps.executeQuery();
+              while (rs.next()) {
+                num++;
+                startId = rs.getLong("ID") + 1;
+                maxLastUpdate = Math.max(maxLastUpdate, addToCertStatusIndex(index, rs));
+              }
+            } catch (SQLException ex) {
+              throw datasource.translate(sql, ex);
+            } finally {
+              releaseDbResources(ps, rs);
+            }
+
+            if (num < CERT_STATUS_INDEX_BATCH_SIZE) {
+              break;
+            }
+          }
+
+          this.certStatusIndex = index;
+          this.certStatusIndexLoadedAt = start;
+          this.certStatusIndexSince = maxLastUpdate - CERT_STATUS_INDEX_OVERLAP;
+          LOG.info("loaded {} certificates of store {} to the status index in {} ms",
+              index.size(), name, System.currentTimeMillis() - start);
+        } else {
+          CertStatusIndex index = certStatusIndex;
+          long maxLastUpdate = 0;
+          int num = 0;
+          final String sql = "SELECT IID,SN,LUPDATE,NBEFORE,NAFTER,REV,RR,RT,RIT,CRL_ID "
+              + "FROM CERT WHERE LUPDATE>=?";
+          PreparedStatement ps = preparedStatement(sql);
+          ResultSet rs = null;
+          try {
+            ps.setLong(1, certStatusIndexSince);
+            rs = ps.executeQuery();
+            while (rs.next()) {
+              num++;
+              maxLastUpdate = Math.max(maxLastUpdate, addToCertStatusIndex(index, rs));
+            }
+          } catch (SQLException ex) {
+            throw datasource.translate(sql, ex);
+          } finally {
+            releaseDbResources(ps, rs);
+          }
+
+          if (num > 0) {
+            this.certStatusIndexSince = Math.max(certStatusIndexSince,
+                maxLastUpdate - CERT_STATUS_INDEX_OVERLAP);
+          }
+          LOG.debug("updated {} certificates of store {} in the status index in {} ms",
+              num, name, System.currentTimeMillis() - start);
+        }
+      } catch (Throwable th) {
+        LogUtil.error(LOG, th, "error while updating the certificate status index");
+      }
+    }
+  } // method updateCertStatusIndex
+
+  private static long addToCertStatusIndex(CertStatusIndex index, ResultSet rs)
+      throws SQLException {
+    BigInteger serialNumber = new BigInteger(rs.getString("SN"), 16);
+    if (!CertStatusIndex.isSupported(serialNumber)) {
+      LOG.warn("ignored certificate with unsupported serial number 0x{}",
+          serialNumber.toString(16));
+    } else {
+      boolean revoked = rs.getBoolean("REV");
+      index.put(rs.getInt("IID"), serialNumber, revoked, revoked ? rs.getInt("RR") : 0,
+          rs.getLong("NBEFORE"), rs.getLong("NAFTER"), revoked ? rs.getLong("RT") : 0,
+          revoked ? rs.getLong("RIT") : 0, rs.getInt("CRL_ID"));
+    }
+    return rs.getLong("LUPDATE");
+  } // method addToCertStatusIndex
+
   @Override
   protected CertStatusInfo getCertStatus0(Date time, RequestIssuer reqIssuer,
       BigInteger serialNumber, boolean includeCertHash, boolean includeRit,
@@ -294,195 +482,276 @@ public class DbCertStatusStore extends OcspStore {
       throw new OcspStoreException("initialization of CertStore is still in process");
     }
 
-    String sql;
-
-    try {
-      IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
-      if (issuer == null) {
-        return null;
-      }
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return null;
+    }
 
-      CrlInfo crlInfo = null;
-      if (issuer.getCrlId() != 0) {
-        crlInfo = issuerStore.getCrlInfo(issuer.getCrlId());
-        // check whether CRL is expired
-        if (isIgnoreExpiredCrls()) {
-          // CRL will expire in 5 minutes
-          if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
-          }
-        }
-      }
+    if (isIssuerCrlExpired(issuer, time)) {
+      return CertStatusInfo.getCrlExpiredStatusInfo();
+    }
 
+    CertEntry entry;
+    CertStatusIndex index = certStatusIndex;
+    if (index != null && !includeCertHash) {
+      // no database access
+      entry = CertEntry.of(index.get(issuer.getId(), serialNumber));
+    } else {
+      String sql;
       if (includeCertHash) {
         sql = includeRit ? sqlCsWithCertHash : sqlCsNoRitWithCertHash;
       } else {
         sql = includeRit ? sqlCs : sqlCsNoRit;
       }
 
+      entry = null;
       ResultSet rs = null;
-      CertStatusInfo certStatusInfo = null;
-
-      boolean unknown = true;
-      boolean ignore = false;
-      String b64CertHash = null;
-      boolean revoked = false;
-      int reason = 0;
-      long revTime = 0;
-      long invalTime = 0;
-      int crlId = 0;
-
-      PreparedStatement ps = datasource.prepareStatement(sql);
-
+      PreparedStatement ps = null;
       try {
+        ps = datasource.prepareStatement(sql);
         ps.setInt(1, issuer.getId());
         ps.setString(2, serialNumber.toString(16));
         rs = ps.executeQuery();
 
         if (rs.next()) {
-          unknown = false;
-          crlId = rs.getInt("CRL_ID");
-
-          long timeInSec = time.getTime() / 1000;
-          if (!ignore && ignoreNotYetValidCert) {
-            long notBeforeInSec = rs.getLong("NBEFORE");
-            if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
-              ignore = true;
-            }
-          }
-
-          if (!ignore && ignoreExpiredCert) {
-            long notAfterInSec = rs.getLong("NAFTER");
-            if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
-              ignore = true;
-            }
-          }
-
-          if (!ignore) {
-            if (includeCertHash) {
-              b64CertHash = rs.getString("HASH");
-            }
-
-            revoked = rs.getBoolean("REV");
-            if (revoked) {
-              reason = rs.getInt("RR");
-              revTime = rs.getLong("RT");
-              if (includeRit) {
-                invalTime = rs.getLong("RIT");
-              }
-            }
-          }
-        } // end if (rs.next())
+          entry = CertEntry.of(rs, includeCertHash, includeRit);
+        }
       } catch (SQLException ex) {
-        throw datasource.translate(sql, ex);
+        DataAccessException dex = datasource.translate(sql, ex);
+        throw new OcspStoreException(dex.getMessage(), dex);
+      } catch (DataAccessException ex) {
+        throw new OcspStoreException(ex.getMessage(), ex);
       } finally {
         releaseDbResources(ps, rs);
       }
+    }
 
-      if (crlId == 0) {
-        crlId = issuer.getCrlId();
+    return buildCertStatusInfo(time, issuer, entry, includeRit, inheritCaRevocation);
+  } // method getCertStatus0
+
+  @Override
+  protected List<CertStatusInfo> getCertStatuses0(Date time, RequestIssuer reqIssuer,
+      List<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) throws OcspStoreException {
+    if (serialNumbers.size() < 2 || (certStatusIndex != null && !includeCertHash)) {
+      // no gain in a batch query
+      return super.getCertStatuses0(time, reqIssuer, serialNumbers, includeCertHash,
+          includeRit, inheritCaRevocation);
+    }
+
+    if (!initialized) {
+      throw new OcspStoreException("initialization of CertStore is still in process");
+    }
+
+    final int size = serialNumbers.size();
+    List<CertStatusInfo> ret = new ArrayList<>(size);
+
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null || isIssuerCrlExpired(issuer, time)) {
+      // no database access
+      return super.getCertStatuses0(time, reqIssuer, serialNumbers, includeCertHash,
+          includeRit, inheritCaRevocation);
+    }
+
+    List<BigInteger> positiveSerials = new ArrayList<>(size);
+    for (BigInteger serialNumber : serialNumbers) {
+      if (serialNumber.signum() == 1 && !positiveSerials.contains(serialNumber)) {
+        positiveSerials.add(serialNumber);
       }
+    }
+
+    StringBuilder coreSql = new StringBuilder(200);
+    coreSql.append("SELECT SN,NBEFORE,NAFTER,REV,RR,RT,CRL_ID");
+    if (includeRit) {
+      coreSql.append(",RIT");
+    }
+    if (includeCertHash) {
+      coreSql.append(",HASH");
+    }
+    coreSql.append(" FROM CERT WHERE IID=? AND SN IN (");
+
+    Map<BigInteger, CertEntry> entries = new HashMap<>();
+    for (int offset = 0; offset < positiveSerials.size(); offset += MAX_SERIALS_PER_QUERY) {
+      List<BigInteger> serials = positiveSerials.subList(offset,
+          Math.min(positiveSerials.size(), offset + MAX_SERIALS_PER_QUERY));
 
-      if (crlInfo == null && crlId != 0) {
-        crlInfo = issuerStore.getCrlInfo(crlId);
+      StringBuilder sb = new StringBuilder(coreSql.length() + 2 * serials.size());
+      sb.append(coreSql);
+      for (int i = 0; i < serials.size(); i++) {
+        sb.append(i == 0 ? "?" : ",?");
       }
+      final String sql = sb.append(")").toString();
 
-      Date thisUpdate;
-      Date nextUpdate;
-      if (crlInfo == null) {
-        thisUpdate = new Date();
-        nextUpdate = null;
-      } else {
-        thisUpdate = crlInfo.getThisUpdate();
-        nextUpdate = crlInfo.getNextUpdate();
+      ResultSet rs = null;
+      PreparedStatement ps = null;
+      try {
+        ps = datasource.prepareStatement(sql);
+        int idx = 1;
+        ps.setInt(idx++, issuer.getId());
+        for (BigInteger serial : serials) {
+          ps.setString(idx++, serial.toString(16));
+        }
 
-        if (isIgnoreExpiredCrls()) {
-          // CRL will expire in 5 minutes
-          if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
-          }
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          entries.put(new BigInteger(rs.getString("SN"), 16),
+              CertEntry.of(rs, includeCertHash, includeRit));
         }
+      } catch (SQLException ex) {
+        DataAccessException dex = datasource.translate(sql, ex);
+        throw new OcspStoreException(dex.getMessage(), dex);
+      } catch (DataAccessException ex) {
+        throw new OcspStoreException(ex.getMessage(), ex);
+      } finally {
+        releaseDbResources(ps, rs);
       }
+    }
 
-      if (unknown) {
-        certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
-      } else if (ignore) {
-        certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
+    for (BigInteger serialNumber : serialNumbers) {
+      if (serialNumber.signum() != 1) {
+        // non-positive serial number, handled as in the single lookup
+        ret.add(getCertStatus0(time, reqIssuer, serialNumber, includeCertHash, includeRit,
+            inheritCaRevocation));
       } else {
-        byte[] certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
-        if (revoked) {
-          Date invTime = (invalTime == 0 || invalTime == revTime)
-              ? null : new Date(invalTime * 1000);
-          CertRevocationInfo revInfo = new CertRevocationInfo(reason,
-              new Date(revTime * 1000), invTime);
-          certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-              certHashAlgo, certHash, thisUpdate, nextUpdate, null);
-        } else {
-          certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
-              certHash, thisUpdate, nextUpdate, null);
-        }
+        ret.add(buildCertStatusInfo(time, issuer, entries.get(serialNumber), includeRit,
+            inheritCaRevocation));
       }
+    }
 
-      if (includeCrlId && crlInfo != null) {
-        certStatusInfo.setCrlId(crlInfo.getCrlId());
-      }
+    return ret;
+  } // method getCertStatuses0
 
-      if (includeArchiveCutoff) {
-        if (retentionInterval != 0) {
-          Date date;
-          // expired certificate remains in status store for ever
-          if (retentionInterval < 0) {
-            date = issuer.getNotBefore();
-          } else {
-            long nowInMs = System.currentTimeMillis();
-            long dateInMs = Math.max(issuer.getNotBefore().getTime(),
-                nowInMs - DAY * retentionInterval);
-            date = new Date(dateInMs);
-          }
+  private boolean isIssuerCrlExpired(IssuerEntry issuer, Date time) {
+    if (issuer.getCrlId() == 0 || !isIgnoreExpiredCrls()) {
+      return false;
+    }
 
-          certStatusInfo.setArchiveCutOff(date);
+    CrlInfo crlInfo = issuerStore.getCrlInfo(issuer.getCrlId());
+    // CRL will expire in 5 minutes
+    return crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN;
+  } // method isIssuerCrlExpired
+
+  private CertStatusInfo buildCertStatusInfo(Date time, IssuerEntry issuer, CertEntry entry,
+      boolean includeRit, boolean inheritCaRevocation) {
+    boolean ignore = false;
+    if (entry != null) {
+      long timeInSec = time.getTime() / 1000;
+      if (ignoreNotYetValidCert) {
+        if (entry.notBefore != 0 && timeInSec < entry.notBefore) {
+          ignore = true;
         }
       }
 
-      if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
-        return certStatusInfo;
+      if (!ignore && ignoreExpiredCert) {
+        if (entry.notAfter != 0 && timeInSec > entry.notAfter) {
+          ignore = true;
+        }
       }
+    }
 
-      CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
-      CertStatus certStatus = certStatusInfo.getCertStatus();
-      boolean replaced = false;
-      if (certStatus == CertStatus.GOOD) {
-        replaced = true;
-      } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
-        if (unknownCertBehaviour == UnknownCertBehaviour.good) {
-          replaced = true;
-        }
-      } else if (certStatus == CertStatus.REVOKED) {
-        if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
-              caRevInfo.getRevocationTime())) {
-          replaced = true;
+    int crlId = issuer.getCrlId();
+    if (crlId == 0 && entry != null) {
+      crlId = entry.crlId;
+    }
+
+    CrlInfo crlInfo = (crlId == 0) ? null : issuerStore.getCrlInfo(crlId);
+
+    Date thisUpdate;
+    Date nextUpdate;
+    if (crlInfo == null) {
+      thisUpdate = new Date();
+      nextUpdate = null;
+    } else {
+      thisUpdate = crlInfo.getThisUpdate();
+      nextUpdate = crlInfo.getNextUpdate();
+
+      if (isIgnoreExpiredCrls()) {
+        // CRL will expire in 5 minutes
+        if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
+          return CertStatusInfo.getCrlExpiredStatusInfo();
         }
       }
+    }
+
+    CertStatusInfo certStatusInfo;
+    if (entry == null) {
+      certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
+    } else if (ignore) {
+      certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
+    } else {
+      byte[] certHash = (entry.b64CertHash == null)
+          ? null : Base64.decodeFast(entry.b64CertHash);
+      if (entry.revoked) {
+        long revTime = entry.revTime;
+        long invalTime = includeRit ? entry.invalTime : 0;
+        Date invTime = (invalTime == 0 || invalTime == revTime)
+            ? null : new Date(invalTime * 1000);
+        CertRevocationInfo revInfo = new CertRevocationInfo(entry.reason,
+            new Date(revTime * 1000), invTime);
+        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
+            certHashAlgo, certHash, thisUpdate, nextUpdate, null);
+      } else {
+        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
+            certHash, thisUpdate, nextUpdate, null);
+      }
+    }
 
-      if (replaced) {
-        CertRevocationInfo newRevInfo;
-        if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
-          newRevInfo = caRevInfo;
+    if (includeCrlId && crlInfo != null) {
+      certStatusInfo.setCrlId(crlInfo.getCrlId());
+    }
+
+    if (includeArchiveCutoff) {
+      if (retentionInterval != 0) {
+        Date date;
+        // expired certificate remains in status store for ever
+        if (retentionInterval < 0) {
+          date = issuer.getNotBefore();
         } else {
-          newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
-              caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+          long nowInMs = System.currentTimeMillis();
+          long dateInMs = Math.max(issuer.getNotBefore().getTime(),
+              nowInMs - DAY * retentionInterval);
+          date = new Date(dateInMs);
         }
-        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
-            certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
-            certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
-            certStatusInfo.getCertprofile());
+
+        certStatusInfo.setArchiveCutOff(date);
       }
+    }
+
+    if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
       return certStatusInfo;
-    } catch (DataAccessException ex) {
-      throw new OcspStoreException(ex.getMessage(), ex);
     }
 
-  } // method getCertStatus0
+    CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
+    CertStatus certStatus = certStatusInfo.getCertStatus();
+    boolean replaced = false;
+    if (certStatus == CertStatus.GOOD) {
+      replaced = true;
+    } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
+      if (unknownCertBehaviour == UnknownCertBehaviour.good) {
+        replaced = true;
+      }
+    } else if (certStatus == CertStatus.REVOKED) {
+      if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
+            caRevInfo.getRevocationTime())) {
+        replaced = true;
+      }
+    }
+
+    if (replaced) {
+      CertRevocationInfo newRevInfo;
+      if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
+        newRevInfo = caRevInfo;
+      } else {
+        newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
+            caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+      }
+      certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
+          certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
+          certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
+          certStatusInfo.getCertprofile());
+    }
+    return certStatusInfo;
+  } // method buildCertStatusInfo
 
   /**
    * Borrow Prepared Statement.
@@ -529,6 +798,21 @@ public class DbCertStatusStore extends OcspStore {
    * <li>caCerts: optional
    *   <p>
    *   CA certificate files to be included / excluded.</li>
+   * <li>certStatusIndex: optional
+   *   <p>
+   *   If present, the status of all certificates is loaded into the memory (see
+   *   {@link CertStatusIndex} for the memory footprint), and the requests without
+   *   certificate hash are answered without accessing the database. It may contain
+   *   following key-value pairs:
+   *   <ul>
+   *   <li>refreshInterval: interval to read the changed certificates (determined by the
+   *     column LUPDATE), default to 1m. New certificates are reported as unknown and
+   *     revocations are not visible until the next refresh. The refresh uses the index
+   *     IDX_CERT_LUPDATE, databases created before version 5.3.9 need to add it via
+   *     <code>CREATE INDEX IDX_CERT_LUPDATE ON CERT (LUPDATE)</code>.</li>
+   *   <li>reloadInterval: interval to reload all certificates, this removes the deleted
+   *     certificates from the index, default to 1d.</li>
+   *   </ul></li>
    *  </ul>
    * @param datasource DataSource.
    */
@@ -541,6 +825,15 @@ public class DbCertStatusStore extends OcspStore {
       if (objValue != null) {
         caCerts = JSON.parseObject(JSON.toJSONBytes(objValue), OcspServerConf.CaCerts.class);
       }
+
+      objValue = sourceConf.get("certStatusIndex");
+      if (objValue != null) {
+        Map<?, ?> indexConf = (objValue instanceof Map) ? (Map<?, ?>) objValue
+            : Collections.emptyMap();
+        this.useCertStatusIndex = true;
+        this.certStatusIndexRefreshInterval = getValidity(indexConf, "refreshInterval", "1m");
+        this.certStatusIndexReloadInterval = getValidity(indexConf, "reloadInterval", "1d");
+      }
     }
 
     this.datasource = Args.notNull(datasource, "datasource");
@@ -583,26 +876,44 @@ public class DbCertStatusStore extends OcspStore {
 
     updateIssuerStore();
 
+    if (useCertStatusIndex) {
+      updateCertStatusIndex(true);
+    }
+
     if (this.scheduledThreadPoolExecutor != null) {
       this.scheduledThreadPoolExecutor.shutdownNow();
+      this.scheduledThreadPoolExecutor = null;
     }
 
-    if (updateInterval != null) {
-      List<Runnable> scheduledServices = getScheduledServices();
-      int size = scheduledServices == null ? 0 : scheduledServices.size();
-      if (size > 0) {
-        this.scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(size);
-        Random random = new Random();
-        long intervalSeconds = updateInterval.approxMinutes() * 60;
-        for (Runnable service : scheduledServices) {
-          this.scheduledThreadPoolExecutor.scheduleAtFixedRate(service,
-              intervalSeconds + random.nextInt(60), intervalSeconds,
-              TimeUnit.SECONDS);
-        }
+    List<Runnable> scheduledServices = (updateInterval == null) ? null : getScheduledServices();
+    int size = scheduledServices == null ? 0 : scheduledServices.size();
+    if (size > 0 || useCertStatusIndex) {
+      this.scheduledThreadPoolExecutor =
+          new ScheduledThreadPoolExecutor(size + (useCertStatusIndex ? 1 : 0));
+    }
+
+    if (size > 0) {
+      Random random = new Random();
+      long intervalSeconds = updateInterval.approxMinutes() * 60;
+      for (Runnable service : scheduledServices) {
+        this.scheduledThreadPoolExecutor.scheduleAtFixedRate(service,
+            intervalSeconds + random.nextInt(60), intervalSeconds,
+            TimeUnit.SECONDS);
       }
     }
+
+    if (useCertStatusIndex) {
+      long intervalSeconds = certStatusIndexRefreshInterval.approxMinutes() * 60;
+      this.scheduledThreadPoolExecutor.scheduleWithFixedDelay(certStatusIndexUpdateService,
+          intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
   } // method init
 
+  private static Validity getValidity(Map<?, ?> conf, String name, String defaultValue) {
+    Object value = conf.get(name);
+    return Validity.getInstance(value == null ? defaultValue : value.toString());
+  }
+
   @Override
   public void close() {
     if (scheduledThreadPoolExecutor != null) {
@@ -610,6 +921,8 @@ public class DbCertStatusStore extends OcspStore {
       scheduledThreadPoolExecutor = null;
     }
 
+    certStatusIndex = null;
+
     if (datasource != null) {
       datasource.close();
     }
@@ -633,6 +946,56 @@ public class DbCertStatusStore extends OcspStore {
     return initialized;
   }
 
+  @Override
+  public List<StoredCertId> getCertIds(long startId, int numEntries)
+      throws OcspStoreException {
+    if (!initialized) {
+      throw new OcspStoreException("initialization of CertStore is still in process");
+    }
+
+    return getCertIds(datasource, issuerStore, "IID", startId, numEntries);
+  }
+
+  static List<StoredCertId> getCertIds(DataSourceWrapper datasource, IssuerStore issuerStore,
+      String issuerIdColumn, long startId, int numEntries) throws OcspStoreException {
+    final String sql = datasource.buildSelectFirstSql(numEntries, "ID ASC",
+        "ID," + issuerIdColumn + ",SN FROM CERT WHERE ID>=?");
+
+    Map<Integer, RequestIssuer> reqIssuers = new HashMap<>();
+    List<StoredCertId> ret = new ArrayList<>(numEntries);
+
+    ResultSet rs = null;
+    PreparedStatement ps = null;
+    try {
+      ps = datasource.prepareStatement(sql);
+      ps.setLong(1, startId);
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        int issuerId = rs.getInt(issuerIdColumn);
+        RequestIssuer reqIssuer = reqIssuers.get(issuerId);
+        if (reqIssuer == null && !reqIssuers.containsKey(issuerId)) {
+          IssuerEntry issuer = issuerStore.getIssuerForId(issuerId);
+          if (issuer != null) {
+            reqIssuer = new RequestIssuer(HashAlgo.SHA1, issuer.getEncodedHash(HashAlgo.SHA1));
+          }
+          reqIssuers.put(issuerId, reqIssuer);
+        }
+
+        BigInteger serialNumber = new BigInteger(rs.getString("SN"), 16);
+        ret.add(new StoredCertId(rs.getLong("ID"), reqIssuer, serialNumber));
+      }
+    } catch (SQLException ex) {
+      DataAccessException dex = datasource.translate(sql, ex);
+      throw new OcspStoreException(dex.getMessage(), dex);
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+
+    return ret;
+  } // method getCertIds
+
   static Set<X509Cert> parseCerts(Collection<String> certFiles)
       throws OcspStoreException {
     Set<X509Cert> certs = new HashSet<>(certFiles.size());
@@ -32,11 +32,25 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
@@ -210,6 +224,18 @@ class ImportCrl {
   private static final String CORE_SQL_SELECT_ID_CERT
       = "ID,REV,RR,RT,RIT,CRL_ID FROM CERT WHERE IID=? AND SN=?";
 
+  private static final String SQL_SELECT_CERTS_PREFIX
+      = "SELECT ID,SN,REV,RR,RT,RIT,CRL_ID FROM CERT WHERE IID=? AND SN IN (";
+
+  // number of revoked certificates imported with one query and one batch per statement
+  private static final int REVOKED_CERTS_CHUNK_SIZE = 1000;
+
+  // maximal number of serial numbers in the IN clause of one query
+  private static final int MAX_IN_SIZE = 100;
+
+  // minimal size in bytes of the revokedCertificates segments imported in parallel
+  private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
   private final String basedir;
 
   private final String sqlSelectIdCert;
@@ -222,6 +248,20 @@ class ImportCrl {
 
   private final boolean ignoreExpiredCrls;
 
+  // whether the CRLs are parsed from a memory-mapped view of the file
+  private final boolean memoryMappedCrls;
+
+  private final int numWorkers;
+
+  // maximal number of workers importing the segments of one CRL
+  private final int numSegmentWorkers;
+
+  // shared by the workers: the IDs of table ISSUER are derived from the maximal ID
+  private final Object issuerLock;
+
+  // shared by the workers
+  private AtomicLong maxCertId;
+
   private PreparedStatement psDeleteCert;
 
   private PreparedStatement psInsertCert;
@@ -237,17 +277,42 @@ class ImportCrl {
   private PreparedStatement psUpdateCertLastupdate;
 
   public ImportCrl(DataSourceWrapper datasource, String basedir, int sqlBatchCommit,
-      boolean ignoreExpiredCrls) throws DataAccessException {
+      boolean ignoreExpiredCrls, boolean memoryMappedCrls, int numWorkers)
+          throws DataAccessException {
     this.sqlBatchCommit = Args.min(sqlBatchCommit, "sqlBatchCommit", 1);
     this.ignoreExpiredCrls = ignoreExpiredCrls;
+    this.memoryMappedCrls = memoryMappedCrls;
+    this.numWorkers = Args.positive(numWorkers, "numWorkers");
+    this.numSegmentWorkers = numWorkers;
     this.datasource = Args.notNull(datasource, "datasource");
     this.basedir = Args.notNull(basedir, "basedir");
     this.certhashAlgo = DbCertStatusStore.getCertHashAlgo(datasource);
+    this.issuerLock = new Object();
 
     LOG.info("UPDATE_CERTSTORE");
     this.sqlSelectIdCert = datasource.buildSelectFirstSql(1, CORE_SQL_SELECT_ID_CERT);
   }
 
+  /**
+   * Constructor of a worker. Each worker uses its own connection and prepared statements.
+   *
+   * @param parent The importer which creates the worker.
+   * @param numSegmentWorkers Maximal number of workers importing the segments of one CRL.
+   */
+  private ImportCrl(ImportCrl parent, int numSegmentWorkers) {
+    this.sqlBatchCommit = parent.sqlBatchCommit;
+    this.ignoreExpiredCrls = parent.ignoreExpiredCrls;
+    this.memoryMappedCrls = parent.memoryMappedCrls;
+    this.numWorkers = parent.numWorkers;
+    this.numSegmentWorkers = numSegmentWorkers;
+    this.datasource = parent.datasource;
+    this.basedir = parent.basedir;
+    this.certhashAlgo = parent.certhashAlgo;
+    this.issuerLock = parent.issuerLock;
+    this.maxCertId = parent.maxCertId;
+    this.sqlSelectIdCert = parent.sqlSelectIdCert;
+  }
+
   public boolean importCrlToOcspDb() {
     File[] crlDirs = new File(basedir).listFiles();
     // parse the CRL directories except the CRL
@@ -370,6 +435,70 @@ class ImportCrl {
       m.shareCaWithOtherCrl = shareCaWithOtherCrl;
     }
 
+    // The CRLs of the same CA are imported one after another by the same worker.
+    Map<String, List<CrlDirInfo>> crlDirInfosByCa = new LinkedHashMap<>();
+    for (CrlDirInfo m : crlDirInfos) {
+      if (m.updateMe) {
+        List<CrlDirInfo> list = crlDirInfosByCa.get(m.base64Sha1Fp);
+        if (list == null) {
+          list = new ArrayList<>(1);
+          crlDirInfosByCa.put(m.base64Sha1Fp, list);
+        }
+        list.add(m);
+      }
+    }
+
+    try {
+      maxCertId = new AtomicLong(datasource.getMax(null, "CERT", "ID"));
+    } catch (DataAccessException ex) {
+      LogUtil.error(LOG, ex, "could not import CRL to OCSP database");
+      return false;
+    }
+
+    int workers = Math.min(numWorkers, crlDirInfosByCa.size());
+    if (workers <= 1) {
+      List<CrlDirInfo> list = new ArrayList<>(crlDirInfos.size());
+      for (List<CrlDirInfo> m : crlDirInfosByCa.values()) {
+        list.addAll(m);
+      }
+      return importCrls(list);
+    }
+
+    // the CRLs are not imported in segments, so that at most numWorkers connections are used.
+    LOG.info("importing CRLs of {} CAs with {} workers", crlDirInfosByCa.size(), workers);
+    AtomicInteger threadIndex = new AtomicInteger(1);
+    ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+      Thread thread = new Thread(r, "import-crl-" + threadIndex.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>(crlDirInfosByCa.size());
+      for (List<CrlDirInfo> list : crlDirInfosByCa.values()) {
+        futures.add(executor.submit(() -> new ImportCrl(this, 1).importCrls(list)));
+      }
+
+      boolean succ = true;
+      for (Future<Boolean> future : futures) {
+        try {
+          succ &= future.get();
+        } catch (ExecutionException ex) {
+          LogUtil.error(LOG, ex.getCause(), "could not import CRL to OCSP database");
+          succ = false;
+        }
+      }
+      return succ;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      LOG.error("importing CRL to OCSP database interrupted");
+      return false;
+    } finally {
+      executor.shutdown();
+    }
+  } // method importCrlToOcspDb
+
+  private boolean importCrls(List<CrlDirInfo> crlDirInfos) {
     Connection conn = null;
     boolean autoCommitChanged = false;
     try {
@@ -382,18 +511,10 @@ class ImportCrl {
         autoCommitChanged = true;
       }
 
-      psDeleteCert = datasource.prepareStatement(conn, SQL_DELETE_CERT);
-      psInsertCert = datasource.prepareStatement(conn, SQL_INSERT_CERT);
-      psInsertCertRev = datasource.prepareStatement(conn, SQL_INSERT_CERT_REV);
-      psSelectIdCert = datasource.prepareStatement(conn, sqlSelectIdCert);
-      psUpdateCert = datasource.prepareStatement(conn, SQL_UPDATE_CERT);
-      psUpdateCertRev = datasource.prepareStatement(conn, SQL_UPDATE_CERT_REV);
-      psUpdateCertLastupdate = datasource.prepareStatement(conn, SQL_UPDATE_CERT_LUPDATE);
+      prepareStatements(conn);
 
       for (CrlDirInfo crlDirInfo : crlDirInfos) {
-        if (crlDirInfo.updateMe) {
-          importCrl(conn, crlDirInfo);
-        }
+        importCrl(conn, crlDirInfo);
       }
 
       return true;
@@ -415,13 +536,7 @@ class ImportCrl {
         }
       }
 
-      releaseResources(psDeleteCert, null);
-      releaseResources(psInsertCert, null);
-      releaseResources(psInsertCertRev, null);
-      releaseResources(psSelectIdCert, null);
-      releaseResources(psUpdateCert, null);
-      releaseResources(psUpdateCertRev, null);
-      releaseResources(psUpdateCertLastupdate, null);
+      releaseStatements();
 
       if (conn != null) {
         datasource.returnConnection(conn);
@@ -429,7 +544,27 @@ class ImportCrl {
     }
 
     return false;
-  } // method importCrlToOcspDb
+  } // method importCrls
+
+  private void prepareStatements(Connection conn) throws DataAccessException {
+    psDeleteCert = datasource.prepareStatement(conn, SQL_DELETE_CERT);
+    psInsertCert = datasource.prepareStatement(conn, SQL_INSERT_CERT);
+    psInsertCertRev = datasource.prepareStatement(conn, SQL_INSERT_CERT_REV);
+    psSelectIdCert = datasource.prepareStatement(conn, sqlSelectIdCert);
+    psUpdateCert = datasource.prepareStatement(conn, SQL_UPDATE_CERT);
+    psUpdateCertRev = datasource.prepareStatement(conn, SQL_UPDATE_CERT_REV);
+    psUpdateCertLastupdate = datasource.prepareStatement(conn, SQL_UPDATE_CERT_LUPDATE);
+  } // method prepareStatements
+
+  private void releaseStatements() {
+    releaseResources(psDeleteCert, null);
+    releaseResources(psInsertCert, null);
+    releaseResources(psInsertCertRev, null);
+    releaseResources(psSelectIdCert, null);
+    releaseResources(psUpdateCert, null);
+    releaseResources(psUpdateCertRev, null);
+    releaseResources(psUpdateCertLastupdate, null);
+  } // method releaseStatements
 
   private void importCrl(Connection conn, CrlDirInfo crlDirInfo) {
     // Delete the files UPDATE.SUCC and UPDATE.FAIL
@@ -462,7 +597,7 @@ class ImportCrl {
       CrlInfo crlInfo = null;
 
       if (!crlDirInfo.deleteMe & crlDirInfo.revocationinfo == null) {
-        crl = new CrlStreamParser(new File(crlDir, "ca.crl"));
+        crl = new CrlStreamParser(new File(crlDir, "ca.crl"), memoryMappedCrls);
         Date now = new Date();
         if (crl.getNextUpdate() != null && crl.getNextUpdate().before(now)) {
           if (ignoreExpiredCrls) {
@@ -568,13 +703,15 @@ class ImportCrl {
             crl.getThisUpdate(), crl.getNextUpdate(), crlId);
       }
 
-      if (crlDirInfo.deleteMe) {
-        deleteCa(conn, crlDirInfo, caCert);
-      } else {
-        importCa(conn, crlDirInfo, caCert);
-      }
+      synchronized (issuerLock) {
+        if (crlDirInfo.deleteMe) {
+          deleteCa(conn, crlDirInfo, caCert);
+        } else {
+          importCa(conn, crlDirInfo, caCert);
+        }
 
-      commit(conn);
+        commit(conn);
+      }
 
       if (crl == null) {
         LOG.info("Ignored CRL (name={}) in the folder {}: CA is revoked",
@@ -767,106 +904,18 @@ class ImportCrl {
       CrlStreamParser crl, File crlDir, long startTimeSec)
           throws DataAccessException, ImportCrlException, IOException {
     int caId = caCert.databaseId.intValue();
-    AtomicLong maxId = new AtomicLong(datasource.getMax(conn, "CERT", "ID"));
-
-    boolean isDeltaCrl = crl.isDeltaCrl();
 
-    // import the revoked information
-    try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
-      int num = 0;
-      while (revokedCertList.hasNext()) {
-        num++;
-
-        // If the system time is adjusted to a previous time point during the
-        // import process, System.currentTime...() may be before startTime.
-        // Since all entries in the database whose Last-Update is before
-        // startTime will be deleted, we must ensure that the Last-Update is
-        // not before startTime.
-        long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
-
-        RevokedCert revCert = revokedCertList.next();
-        BigInteger serial = revCert.getSerialNumber();
-        long rt = revCert.getRevocationDate();
-        long rit = revCert.getInvalidityDate();
-        int reason = revCert.getReason();
-        X500Name issuer = revCert.getCertificateIssuer();
-        if (issuer != null && !issuer.equals(caCert.subject)) {
-          throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
-        }
-
-        String sql = null;
-        try {
-          if (reason == CrlReason.REMOVE_FROM_CRL.getCode()) {
-            if (isDeltaCrl) {
-              // delete the entry
-              sql = SQL_DELETE_CERT;
-              psDeleteCert.setInt(1, caId);
-              psDeleteCert.setString(2, serial.toString(16));
-              psDeleteCert.executeUpdate();
-            } else {
-              LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
-            }
-            continue;
-          }
-
-          CertInfo existingCertInfo = getCertInfo(caId, serial);
-          PreparedStatement ps;
-
-          if (existingCertInfo == null) {
-            sql = SQL_INSERT_CERT_REV;
-            long id = maxId.incrementAndGet();
-            ps = psInsertCertRev;
-            int offset = 1;
-
-            ps.setLong(offset++, id);
-            ps.setInt(offset++, caId);
-            ps.setString(offset++, serial.toString(16));
-            ps.setInt(offset++, 1);
-            ps.setInt(offset++, reason);
-            ps.setLong(offset++, rt);
-            if (rit != 0) {
-              ps.setLong(offset++, rit);
-            } else {
-              ps.setNull(offset++, Types.BIGINT);
-            }
-            ps.setLong(offset++, updateTimeSec);
-            ps.setInt(offset++, crlInfoId);
-          } else {
-            if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
-              sql = SQL_UPDATE_CERT_REV;
-              ps = psUpdateCertRev;
-              int offset = 1;
-
-              ps.setInt(offset++, 1);
-              ps.setInt(offset++, reason);
-              ps.setLong(offset++, rt);
-              if (rit != 0) {
-                ps.setLong(offset++, rit);
-              } else {
-                ps.setNull(offset++, Types.BIGINT);
-              }
-              ps.setLong(offset++, updateTimeSec);
-              ps.setInt(offset++, crlInfoId);
-              ps.setLong(offset++, existingCertInfo.id);
-            } else {
-              sql = SQL_UPDATE_CERT_LUPDATE;
-              ps = psUpdateCertLastupdate;
-              ps.setLong(1, updateTimeSec);
-              ps.setLong(2, existingCertInfo.id);
-            }
-          }
-
-          ps.executeUpdate();
-
-          if (num % sqlBatchCommit == 0) {
-            commit(conn);
-          }
-        } catch (SQLException ex) {
-          throw datasource.translate(sql, ex);
-        }
+    // the segment workers use numSegments connections in addition to conn
+    int numSegments = Math.min(numSegmentWorkers,
+        crl.getRevokedCertificatesSize() / MIN_SEGMENT_SIZE);
+    if (numSegments > 1) {
+      importRevokedCertsInSegments(crlInfoId, caCert, crl, numSegments, startTimeSec);
+    } else {
+      try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
+        int num = importRevokedCerts(conn, crlInfoId, caCert, crl.isDeltaCrl(), revokedCertList,
+            startTimeSec);
+        LOG.info("imported {} revoked certificates", num);
       }
-
-      LOG.info("imported {} revoked certificates", num);
     }
 
     commit(conn);
@@ -911,7 +960,7 @@ class ImportCrl {
         }
 
         String certLogId = "(file " + certFile.getName() + ")";
-        addCertificate(maxId, crlInfoId, caCert, cert, null, certLogId);
+        addCertificate(maxCertId, crlInfoId, caCert, cert, null, certLogId);
 
         if (num >= sqlBatchCommit) {
           num = 0;
@@ -938,7 +987,7 @@ class ImportCrl {
           String line;
           while ((line = reader.readLine()) != null) {
             BigInteger serialNumber = new BigInteger(line.trim(), 16);
-            addCertificateBySerialNumber(maxId, caId, crlInfoId, serialNumber);
+            addCertificateBySerialNumber(maxCertId, caId, crlInfoId, serialNumber);
           }
         } catch (IOException ex) {
           LOG.warn("could not import certificates by serial numbers from file {}, ignore it",
@@ -956,6 +1005,371 @@ class ImportCrl {
     }
   } // method importCrlRevokedCertificates
 
+  /**
+   * Imports the revoked certificates in segments parsed in parallel, each segment is imported
+   * by a worker with its own connection. If the import of one segment fails, the other workers
+   * are interrupted, and the error is thrown once all workers have terminated.
+   *
+   * @param crlInfoId ID of the CRL.
+   * @param caCert The CA certificate.
+   * @param crl The CRL.
+   * @param numSegments Maximal number of segments.
+   * @param startTimeSec Start time of the import.
+   * @throws DataAccessException
+   *         If database exception occurs.
+   * @throws IOException
+   *         If IO error occurs.
+   * @throws ImportCrlException
+   *         If other exception occurs.
+   */
+  private void importRevokedCertsInSegments(int crlInfoId, CertWrapper caCert,
+      CrlStreamParser crl, int numSegments, long startTimeSec)
+          throws DataAccessException, ImportCrlException, IOException {
+    int[] offsets = crl.getRevokedCertificatesSegments(numSegments);
+    LOG.info("importing revoked certificates in {} segments", offsets.length - 1);
+
+    AtomicInteger threadIndex = new AtomicInteger(1);
+    ExecutorService executor = Executors.newFixedThreadPool(offsets.length - 1, r -> {
+      Thread thread = new Thread(r, "import-crl-segment-" + threadIndex.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    boolean succ = false;
+    try {
+      // the results are taken in the order of completion, so that a failure is detected
+      // without waiting for the preceding segments.
+      CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+      for (int i = 0; i < offsets.length - 1; i++) {
+        final int segmentOffset = offsets[i];
+        final int segmentEndOffset = offsets[i + 1];
+        completionService.submit(() -> new ImportCrl(this, 1).importRevokedCertsSegment(
+            crlInfoId, caCert, crl, segmentOffset, segmentEndOffset, startTimeSec));
+      }
+
+      int num = 0;
+      for (int i = 0; i < offsets.length - 1; i++) {
+        try {
+          num += completionService.take().get();
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof DataAccessException) {
+            throw (DataAccessException) cause;
+          } else if (cause instanceof ImportCrlException) {
+            throw (ImportCrlException) cause;
+          } else if (cause instanceof IOException) {
+            throw (IOException) cause;
+          } else {
+            throw new ImportCrlException("error importing revoked certificates", cause);
+          }
+        }
+      }
+
+      succ = true;
+      LOG.info("imported {} revoked certificates", num);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ImportCrlException("importing revoked certificates interrupted", ex);
+    } finally {
+      if (succ) {
+        executor.shutdown();
+      } else {
+        // stop the remaining workers, and wait until they do not write any more
+        executor.shutdownNow();
+        awaitTermination(executor);
+      }
+    }
+  } // method importRevokedCertsInSegments
+
+  private static void awaitTermination(ExecutorService executor) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (executor.awaitTermination(10, TimeUnit.SECONDS)) {
+          break;
+        }
+        LOG.info("waiting for the termination of the segment workers");
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  } // method awaitTermination
+
+  private int importRevokedCertsSegment(int crlInfoId, CertWrapper caCert, CrlStreamParser crl,
+      int segmentOffset, int segmentEndOffset, long startTimeSec)
+          throws DataAccessException, ImportCrlException, IOException {
+    Connection conn = datasource.getConnection();
+    boolean autoCommitChanged = false;
+    boolean succ = false;
+    try {
+      // disable the autoCommit for better performance
+      if (conn.getAutoCommit()) {
+        conn.setAutoCommit(false);
+        autoCommitChanged = true;
+      }
+
+      prepareStatements(conn);
+
+      try (RevokedCertsIterator revokedCertList =
+          crl.revokedCertificates(segmentOffset, segmentEndOffset)) {
+        int num = importRevokedCerts(conn, crlInfoId, caCert, crl.isDeltaCrl(), revokedCertList,
+            startTimeSec);
+        commit(conn);
+        succ = true;
+        return num;
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(null, ex);
+    } finally {
+      if (!succ) {
+        // discard the uncommitted changes, otherwise they are committed by setAutoCommit(true)
+        try {
+          conn.rollback();
+        } catch (SQLException ex) {
+          LOG.error("could not import CRL to OCSP database (Connection.rollback)");
+        }
+      }
+
+      if (autoCommitChanged) {
+        // change the autoCommit back to original value.
+        try {
+          conn.setAutoCommit(true);
+        } catch (SQLException ex) {
+          LOG.error("could not import CRL to OCSP database (Connection.setAutoCommit)");
+        }
+      }
+
+      releaseStatements();
+      datasource.returnConnection(conn);
+    }
+  } // method importRevokedCertsSegment
+
+  private int importRevokedCerts(Connection conn, int crlInfoId, CertWrapper caCert,
+      boolean isDeltaCrl, RevokedCertsIterator revokedCertList, long startTimeSec)
+          throws DataAccessException, ImportCrlException {
+    int caId = caCert.databaseId.intValue();
+
+    // the entries are imported in chunks: one query to find the existing entries, and
+    // JDBC batches to delete, insert and update the entries.
+    Map<String, RevokedCert> revCerts = new LinkedHashMap<>();
+    List<String> removedSerials = new ArrayList<>();
+
+    int num = 0;
+    int numCommitted = 0;
+    while (revokedCertList.hasNext()) {
+      num++;
+
+      RevokedCert revCert = revokedCertList.next();
+      BigInteger serial = revCert.getSerialNumber();
+      X500Name issuer = revCert.getCertificateIssuer();
+      if (issuer != null && !issuer.equals(caCert.subject)) {
+        throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
+      }
+
+      String hexSerial = serial.toString(16);
+      if (revCert.getReason() == CrlReason.REMOVE_FROM_CRL.getCode()) {
+        if (isDeltaCrl) {
+          // delete the entry
+          revCerts.remove(hexSerial);
+          removedSerials.add(hexSerial);
+        } else {
+          LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
+        }
+      } else {
+        revCerts.put(hexSerial, revCert);
+      }
+
+      if (revCerts.size() + removedSerials.size() >= REVOKED_CERTS_CHUNK_SIZE) {
+        if (Thread.currentThread().isInterrupted()) {
+          // the import of another segment failed
+          throw new ImportCrlException("importing revoked certificates interrupted");
+        }
+
+        importRevokedCertsChunk(conn, caId, crlInfoId, revCerts, removedSerials, startTimeSec);
+        if (num - numCommitted >= sqlBatchCommit) {
+          commit(conn);
+          numCommitted = num;
+        }
+      }
+    }
+
+    importRevokedCertsChunk(conn, caId, crlInfoId, revCerts, removedSerials, startTimeSec);
+    return num;
+  } // method importRevokedCerts
+
+  /**
+   * Imports a chunk of revoked certificates. The given collections are cleared.
+   *
+   * @param conn The database connection.
+   * @param caId Database ID of the CA.
+   * @param crlInfoId ID of the CRL.
+   * @param revCerts Revoked certificates to be added or updated, keyed by the hex serial number.
+   * @param removedSerials Hex serial numbers of the entries to be deleted.
+   * @param startTimeSec Start time of the import.
+   * @throws DataAccessException
+   *         If database exception occurs.
+   */
+  private void importRevokedCertsChunk(Connection conn, int caId, int crlInfoId,
+      Map<String, RevokedCert> revCerts, List<String> removedSerials, long startTimeSec)
+          throws DataAccessException {
+    // If the system time is adjusted to a previous time point during the
+    // import process, System.currentTime...() may be before startTime.
+    // Since all entries in the database whose Last-Update is before
+    // startTime will be deleted, we must ensure that the Last-Update is
+    // not before startTime.
+    long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
+
+    String sql = null;
+    try {
+      // the deletions precede the additions of the same chunk
+      if (!removedSerials.isEmpty()) {
+        sql = SQL_DELETE_CERT;
+        for (String serial : removedSerials) {
+          psDeleteCert.setInt(1, caId);
+          psDeleteCert.setString(2, serial);
+          psDeleteCert.addBatch();
+        }
+        psDeleteCert.executeBatch();
+        removedSerials.clear();
+      }
+
+      if (revCerts.isEmpty()) {
+        return;
+      }
+
+      Map<String, CertInfo> existingCertInfos = getCertInfos(conn, caId, revCerts.keySet());
+
+      int numInserts = 0;
+      int numUpdates = 0;
+      int numTouches = 0;
+
+      for (Entry<String, RevokedCert> entry : revCerts.entrySet()) {
+        String serial = entry.getKey();
+        RevokedCert revCert = entry.getValue();
+        int reason = revCert.getReason();
+        long rt = revCert.getRevocationDate();
+        long rit = revCert.getInvalidityDate();
+
+        CertInfo existingCertInfo = existingCertInfos.get(serial);
+        if (existingCertInfo == null) {
+          sql = SQL_INSERT_CERT_REV;
+          PreparedStatement ps = psInsertCertRev;
+          int offset = 1;
+
+          ps.setLong(offset++, maxCertId.incrementAndGet());
+          ps.setInt(offset++, caId);
+          ps.setString(offset++, serial);
+          ps.setInt(offset++, 1);
+          ps.setInt(offset++, reason);
+          ps.setLong(offset++, rt);
+          if (rit != 0) {
+            ps.setLong(offset++, rit);
+          } else {
+            ps.setNull(offset++, Types.BIGINT);
+          }
+          ps.setLong(offset++, updateTimeSec);
+          ps.setInt(offset++, crlInfoId);
+          ps.addBatch();
+          numInserts++;
+        } else if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
+          sql = SQL_UPDATE_CERT_REV;
+          PreparedStatement ps = psUpdateCertRev;
+          int offset = 1;
+
+          ps.setInt(offset++, 1);
+          ps.setInt(offset++, reason);
+          ps.setLong(offset++, rt);
+          if (rit != 0) {
+            ps.setLong(offset++, rit);
+          } else {
+            ps.setNull(offset++, Types.BIGINT);
+          }
+          ps.setLong(offset++, updateTimeSec);
+          ps.setInt(offset++, crlInfoId);
+          ps.setLong(offset++, existingCertInfo.id);
+          ps.addBatch();
+          numUpdates++;
+        } else {
+          sql = SQL_UPDATE_CERT_LUPDATE;
+          psUpdateCertLastupdate.setLong(1, updateTimeSec);
+          psUpdateCertLastupdate.setLong(2, existingCertInfo.id);
+          psUpdateCertLastupdate.addBatch();
+          numTouches++;
+        }
+      }
+
+      if (numInserts > 0) {
+        sql = SQL_INSERT_CERT_REV;
+        psInsertCertRev.executeBatch();
+      }
+
+      if (numUpdates > 0) {
+        sql = SQL_UPDATE_CERT_REV;
+        psUpdateCertRev.executeBatch();
+      }
+
+      if (numTouches > 0) {
+        sql = SQL_UPDATE_CERT_LUPDATE;
+        psUpdateCertLastupdate.executeBatch();
+      }
+
+      revCerts.clear();
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    }
+  } // method importRevokedCertsChunk
+
+  private Map<String, CertInfo> getCertInfos(Connection conn, int caId, Set<String> serials)
+      throws DataAccessException {
+    Map<String, CertInfo> ret = new HashMap<>();
+    List<String> serialList = new ArrayList<>(serials);
+
+    for (int from = 0; from < serialList.size(); from += MAX_IN_SIZE) {
+      List<String> subList =
+          serialList.subList(from, Math.min(from + MAX_IN_SIZE, serialList.size()));
+
+      StringBuilder sb = new StringBuilder(SQL_SELECT_CERTS_PREFIX.length() + 2 * subList.size());
+      sb.append(SQL_SELECT_CERTS_PREFIX);
+      for (int i = 0; i < subList.size(); i++) {
+        sb.append(i == 0 ? "?" : ",?");
+      }
+      sb.append(")");
+
+      final String sql = sb.toString();
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      ResultSet rs = null;
+      try {
+        int idx = 1;
+        ps.setInt(idx++, caId);
+        for (String serial : subList) {
+          ps.setString(idx++, serial);
+        }
+
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          CertInfo ci = new CertInfo();
+          ci.crlId = rs.getInt("CRL_ID");
+          ci.id = rs.getLong("ID");
+          ci.invalidityTime = rs.getLong("RIT");
+          ci.revocationReason = rs.getInt("RR");
+          ci.revocationTime = rs.getLong("RT");
+          ci.revoked = rs.getBoolean("REV");
+          ret.put(rs.getString("SN"), ci);
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseResources(ps, rs);
+      }
+    }
+
+    return ret;
+  } // method getCertInfos
+
   private static X509Cert parseCert(File certFile) throws ImportCrlException {
     try {
       return X509Util.parseCert(certFile);
@@ -0,0 +1,198 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.security.AlgorithmCode;
+import org.xipki.util.Args;
+import org.xipki.util.LruCache;
+
+/**
+ * In-memory (first level) cache of the OCSP responses. It is placed in front of the
+ * database-backed {@link ResponseCacher}. Entries are evicted in LRU-order if the cache
+ * is full, and are dropped as soon as they expire.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class InMemoryResponseCache {
+
+  private static final class CacheKey {
+
+    private final int issuerId;
+
+    private final BigInteger serialNumber;
+
+    private final AlgorithmCode sigAlg;
+
+    private final int hashCode;
+
+    private CacheKey(int issuerId, BigInteger serialNumber, AlgorithmCode sigAlg) {
+      this.issuerId = issuerId;
+      this.serialNumber = serialNumber;
+      this.sigAlg = sigAlg;
+      this.hashCode = 31 * (31 * issuerId + serialNumber.hashCode()) + sigAlg.getCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+
+      CacheKey other = (CacheKey) obj;
+      return issuerId == other.issuerId && sigAlg == other.sigAlg
+          && serialNumber.equals(other.serialNumber);
+    }
+
+  } // class CacheKey
+
+  private static final class CacheEntry {
+
+    private final OcspRespWithCacheInfo response;
+
+    // in seconds
+    private final long expiresAt;
+
+    private CacheEntry(OcspRespWithCacheInfo response, long expiresAt) {
+      this.response = response;
+      this.expiresAt = expiresAt;
+    }
+
+  } // class CacheEntry
+
+  private final LruCache<CacheKey, CacheEntry> cache;
+
+  private final AtomicLong hits = new AtomicLong(0);
+
+  private final AtomicLong misses = new AtomicLong(0);
+
+  private final AtomicLong expirations = new AtomicLong(0);
+
+  public InMemoryResponseCache(int maxSize) {
+    this.cache = new LruCache<>(Args.positive(maxSize, "maxSize"));
+  }
+
+  public OcspRespWithCacheInfo get(int issuerId, BigInteger serialNumber, AlgorithmCode sigAlg) {
+    CacheKey key = new CacheKey(issuerId, serialNumber, sigAlg);
+    CacheEntry entry = cache.get(key);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    if (entry.expiresAt <= System.currentTimeMillis() / 1000) {
+      cache.remove(key);
+      expirations.incrementAndGet();
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    return entry.response;
+  } // method get
+
+  /**
+   * Caches the response.
+   *
+   * @param issuerId
+   *          Issuer identifier.
+   * @param serialNumber
+   *          Serial number of the certificate.
+   * @param sigAlg
+   *          Signature algorithm of the response.
+   * @param response
+   *          The response.
+   * @param expiresAt
+   *          Epoch time in seconds, after which the response will not be returned.
+   */
+  public void put(int issuerId, BigInteger serialNumber, AlgorithmCode sigAlg,
+      OcspRespWithCacheInfo response, long expiresAt) {
+    if (expiresAt <= System.currentTimeMillis() / 1000) {
+      return;
+    }
+
+    cache.put(new CacheKey(issuerId, serialNumber, sigAlg), new CacheEntry(response, expiresAt));
+  } // method put
+
+  /**
+   * Removes all expired entries.
+   * @return number of removed entries.
+   */
+  public int removeExpiredEntries() {
+    long now = System.currentTimeMillis() / 1000;
+    int num = 0;
+    for (Entry<CacheKey, CacheEntry> entry : cache.snapshot().entrySet()) {
+      if (entry.getValue().expiresAt <= now) {
+        cache.remove(entry.getKey());
+        num++;
+      }
+    }
+
+    expirations.addAndGet(num);
+    return num;
+  } // method removeExpiredEntries
+
+  public void clear() {
+    cache.evictAll();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public int maxSize() {
+    return cache.maxSize();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getExpirations() {
+    return expirations.get();
+  }
+
+  public long getEvictions() {
+    return cache.evictionCount();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("InMemoryResponseCache[size=%d,maxSize=%d,hits=%d,misses=%d,"
+        + "expirations=%d,evictions=%d]", size(), maxSize(), getHits(), getMisses(),
+        getExpirations(), getEvictions());
+  }
+
+}
@@ -25,13 +25,11 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.bouncycastle.asn1.x509.Certificate;
-import org.xipki.ocsp.api.RequestIssuer;
 import org.xipki.security.CertRevocationInfo;
 import org.xipki.security.CrlReason;
 import org.xipki.security.HashAlgo;
 import org.xipki.security.X509Cert;
 import org.xipki.util.Args;
-import org.xipki.util.CompareUtil;
 
 /**
  * Issuer entry.
@@ -101,16 +99,6 @@ class IssuerEntry {
     return Arrays.copyOf(data, data.length);
   }
 
-  public boolean matchHash(RequestIssuer reqIssuer) {
-    byte[] issuerHash = issuerHashMap.get(reqIssuer.hashAlgorithm());
-    if (issuerHash == null) {
-      return false;
-    }
-
-    return CompareUtil.areEqual(issuerHash, 0, reqIssuer.getData(),
-        reqIssuer.getNameHashFrom(), issuerHash.length);
-  }
-
   public void setRevocationInfo(Date revocationTime) {
     Args.notNull(revocationTime, "revocationTime");
     this.revocationInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
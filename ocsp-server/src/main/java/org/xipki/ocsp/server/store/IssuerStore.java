@@ -26,26 +26,174 @@ import java.util.Map;
 import java.util.Set;
 
 import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.CompareUtil;
+import org.xipki.util.Hex;
 
 /**
  * Issuer store.
  *
+ * <p>The issuers are indexed by ID and, for each hash algorithm, by the issuerNameHash and
+ * issuerKeyHash in immutable open-addressing hash tables. The tables are rebuilt on each
+ * change and swapped atomically, so that the lookups are lock-free, O(1) and do not allocate
+ * any object.
+ *
  * @author Lijun Liao
  * @since 2.0.0
  */
 
 class IssuerStore {
 
-  private List<IssuerEntry> issuers = new ArrayList<>();
+  private static final class Index {
+
+    private final List<IssuerEntry> issuers;
+
+    private final Set<Integer> ids;
+
+    private final int mask;
+
+    private final IssuerEntry[] tableById;
+
+    // indexed by HashAlgo.ordinal()
+    private final IssuerEntry[][] tablesByHash;
+
+    // the encoded issuerNameHash and issuerKeyHash of the entries in tablesByHash
+    private final byte[][][] hashesByHash;
+
+    private Index(List<IssuerEntry> issuers, Set<Integer> ids) {
+      this.issuers = issuers;
+      this.ids = ids;
+
+      int capacity = capacity(issuers.size());
+      this.mask = capacity - 1;
+      this.tableById = new IssuerEntry[capacity];
+
+      HashAlgo[] hashAlgos = HashAlgo.values();
+      this.tablesByHash = new IssuerEntry[hashAlgos.length][capacity];
+      this.hashesByHash = new byte[hashAlgos.length][capacity][];
+
+      for (IssuerEntry issuer : issuers) {
+        int slot = hashId(issuer.getId()) & mask;
+        while (tableById[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        tableById[slot] = issuer;
+
+        for (HashAlgo ha : hashAlgos) {
+          byte[] encodedHash = issuer.getEncodedHash(ha);
+          IssuerEntry[] table = tablesByHash[ha.ordinal()];
+          byte[][] hashes = hashesByHash[ha.ordinal()];
+
+          slot = hashIssuer(encodedHash, 0, ha.getLength()) & mask;
+          while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+          }
+          table[slot] = issuer;
+          hashes[slot] = encodedHash;
+        }
+      }
+    } // constructor
+
+    private IssuerEntry getIssuerForId(int id) {
+      int slot = hashId(id) & mask;
+      IssuerEntry entry;
+      while ((entry = tableById[slot]) != null) {
+        if (entry.getId() == id) {
+          return entry;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    } // method getIssuerForId
+
+    private IssuerEntry getIssuerForFp(RequestIssuer reqIssuer) {
+      HashAlgo ha = reqIssuer.hashAlgorithm();
+      if (ha == null) {
+        return null;
+      }
+
+      int hlen = ha.getLength();
+      // OCTET STRING issuerNameHash and OCTET STRING issuerKeyHash
+      int len = (2 + hlen) << 1;
+      byte[] data = reqIssuer.getData();
+      int from = reqIssuer.getNameHashFrom();
+      if (from + len > data.length) {
+        return null;
+      }
+
+      IssuerEntry[] table = tablesByHash[ha.ordinal()];
+      byte[][] hashes = hashesByHash[ha.ordinal()];
 
-  private Set<Integer> ids = Collections.emptySet();
+      int slot = hashIssuer(data, from, hlen) & mask;
+      IssuerEntry entry;
+      while ((entry = table[slot]) != null) {
+        if (CompareUtil.areEqual(hashes[slot], 0, data, from, len)) {
+          return entry;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    } // method getIssuerForFp
+
+    private static int capacity(int size) {
+      // load factor at most 0.5, so that a free slot always terminates the probing
+      int capacity = 2;
+      while (capacity < 2 * size) {
+        capacity <<= 1;
+      }
+      return capacity;
+    }
+
+    private static int hashId(int id) {
+      int h = id * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    // the hashes are uniformly distributed, 4 bytes of each are enough.
+    private static int hashIssuer(byte[] encodedHash, int from, int hlen) {
+      int nameHashFrom = from + 2;
+      int keyHashFrom = from + 4 + hlen;
+      int h = readInt(encodedHash, nameHashFrom) * 31 + readInt(encodedHash, keyHashFrom);
+      return h ^ (h >>> 16);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+      return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+          | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+  } // class Index
+
+  /**
+   * Detects the issuers with the same subject and key, i.e. with the same SHA-1
+   * issuerNameHash and issuerKeyHash, while the issuers are loaded.
+   */
+  static final class DuplicateDetector {
+
+    // hex-encoded SHA-1 issuerNameHash and issuerKeyHash of the issuers
+    private final Set<String> hashes = new HashSet<>();
+
+    /**
+     * Registers the issuer.
+     *
+     * @param issuer
+     *          The issuer.
+     * @return whether an issuer with the same subject and key has been registered before.
+     */
+    boolean isDuplicate(IssuerEntry issuer) {
+      return !hashes.add(Hex.encode(issuer.getEncodedHash(HashAlgo.SHA1)));
+    }
+
+  } // class DuplicateDetector
+
+  private volatile Index index = new Index(Collections.emptyList(), Collections.emptySet());
 
   private Map<Integer, CrlInfo> crlInfos = new HashMap<>();
 
   public IssuerStore() {
   }
 
-  public void setIssuers(List<IssuerEntry> issuers) {
+  public synchronized void setIssuers(List<IssuerEntry> issuers) {
     Set<Integer> newIds = new HashSet<>();
     for (IssuerEntry issuer : issuers) {
       int id = issuer.getId();
@@ -56,18 +204,17 @@ class IssuerStore {
       newIds.add(id);
     }
 
-    // to accelerate the switch
-    List<IssuerEntry> copy = new ArrayList<IssuerEntry>(issuers);
-    this.ids = Collections.unmodifiableSet(newIds);
-    this.issuers = copy;
+    // build the new index completely before the switch
+    this.index = new Index(Collections.unmodifiableList(new ArrayList<>(issuers)),
+        Collections.unmodifiableSet(newIds));
   } // method setIssuers
 
   public int size() {
-    return ids.size();
+    return index.ids.size();
   }
 
   public Set<Integer> getIds() {
-    return ids;
+    return index.ids;
   }
 
   public Integer getIssuerIdForFp(RequestIssuer reqIssuer) {
@@ -76,31 +223,17 @@ class IssuerStore {
   }
 
   public IssuerEntry getIssuerForId(int id) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.getId() == id) {
-        return entry;
-      }
-    }
-
-    return null;
+    return index.getIssuerForId(id);
   }
 
   public IssuerEntry getIssuerForFp(RequestIssuer reqIssuer) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.matchHash(reqIssuer)) {
-        return entry;
-      }
-    }
-
-    return null;
+    return index.getIssuerForFp(reqIssuer);
   }
 
-  public void addIssuer(IssuerEntry issuer) {
-    this.issuers.add(issuer);
-
-    Set<Integer> newIds = new HashSet<>(this.ids);
-    newIds.add(issuer.getId());
-    this.ids = Collections.unmodifiableSet(newIds);
+  public synchronized void addIssuer(IssuerEntry issuer) {
+    List<IssuerEntry> newIssuers = new ArrayList<>(index.issuers);
+    newIssuers.add(issuer);
+    setIssuers(newIssuers);
   }
 
   public void setCrlInfos(Map<Integer, CrlInfo> crlInfos) {
@@ -0,0 +1,80 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.xipki.ocsp.api.OcspStoreException;
+import org.xipki.ocsp.api.RequestIssuer;
+
+/**
+ * OCSP store whose certificates can be enumerated, so that the OCSP responses can be
+ * generated in advance.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public interface PreSignableStore {
+
+  class StoredCertId {
+
+    private final long id;
+
+    private final RequestIssuer issuer;
+
+    private final BigInteger serialNumber;
+
+    public StoredCertId(long id, RequestIssuer issuer, BigInteger serialNumber) {
+      this.id = id;
+      this.issuer = issuer;
+      this.serialNumber = serialNumber;
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    public RequestIssuer getIssuer() {
+      return issuer;
+    }
+
+    public BigInteger getSerialNumber() {
+      return serialNumber;
+    }
+
+  } // class StoredCertId
+
+  /**
+   * Returns the identifiers of the certificates, ordered by the database ID. The issuer is
+   * identified by SHA-1 as specified in RFC 5019, and is {@code null} if the issuer is not
+   * served by this store.
+   *
+   * @param startId
+   *          The minimal database ID (inclusive) of the certificates.
+   * @param numEntries
+   *          Maximal number of certificates to be read from the database.
+   * @return the identifiers of the certificates. An empty list will be returned if there
+   *         is no certificate with database ID not less than the given startId.
+   * @throws OcspStoreException
+   *           If the certificates could not be retrieved.
+   */
+  List<StoredCertId> getCertIds(long startId, int numEntries) throws OcspStoreException;
+
+}
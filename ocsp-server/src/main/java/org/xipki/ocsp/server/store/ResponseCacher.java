@@ -24,15 +24,22 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.crypto.Digest;
 import org.slf4j.Logger;
@@ -88,8 +95,76 @@ public class ResponseCacher implements Closeable {
   private static final String SQL_UPDATE_RESP = "UPDATE OCSP SET GENERATED_AT=?,"
       + "NEXT_UPDATE=?,RESP=? WHERE ID=?";
 
+  private static final int DFLT_WRITE_BATCH_SIZE = 100;
+
+  // maximal number of IDs in the IN clause of one query
+  private static final int MAX_IN_SIZE = 100;
+
   private final ConcurrentBag<ConcurrentBagEntry<Digest>> idDigesters;
 
+  private static class PendingResponse {
+
+    private final long id;
+
+    private final int issuerId;
+
+    private final String ident;
+
+    private final long generatedAt;
+
+    private final long nextUpdate;
+
+    private final String b64Response;
+
+    PendingResponse(long id, int issuerId, String ident, long generatedAt, long nextUpdate,
+        String b64Response) {
+      this.id = id;
+      this.issuerId = issuerId;
+      this.ident = ident;
+      this.generatedAt = generatedAt;
+      this.nextUpdate = nextUpdate;
+      this.b64Response = b64Response;
+    }
+
+  } // class PendingResponse
+
+  private class ResponseWriter implements Runnable {
+
+    @Override
+    public void run() {
+      List<PendingResponse> batch = new ArrayList<>(writeBatchSize);
+      while (true) {
+        try {
+          PendingResponse first = writeQueue.poll(1, TimeUnit.SECONDS);
+          if (first == null) {
+            if (stopWriter.get()) {
+              break;
+            }
+            continue;
+          }
+
+          batch.add(first);
+          writeQueue.drainTo(batch, writeBatchSize - 1);
+          storeOcspResponses(batch);
+        } catch (InterruptedException ex) {
+          LOG.info("ResponseWriter interrupted");
+          stopWriter.set(true);
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "error while writing cached OCSP responses");
+        } finally {
+          batch.clear();
+        }
+      }
+
+      // write the remaining responses
+      writeQueue.drainTo(batch);
+      if (!batch.isEmpty()) {
+        storeOcspResponses(batch);
+      }
+    } // method run
+
+  } // class ResponseWriter
+
   private class IssuerUpdater implements Runnable {
 
     @Override
@@ -111,17 +186,24 @@ public class ResponseCacher implements Closeable {
 
     @Override
     public void run() {
-      if (inProcess.get()) {
+      if (!inProcess.compareAndSet(false, true)) {
         return;
       }
 
       synchronized (lock) {
-        inProcess.set(true);
         long now = System.currentTimeMillis() / 1000;
         long maxGeneratedAt = now - validity;
         long minNextUpdate = now + SEC_NEXT_UPDATE_BUFFER;
 
         try {
+          if (memoryCache != null) {
+            int num0 = memoryCache.removeExpiredEntries();
+            if (num0 > 0) {
+              LOG.info("removed {} expired responses from the in-memory cache: {}",
+                  num0, memoryCache);
+            }
+          }
+
           int num1 = removeExpiredResponses(maxGeneratedAt, minNextUpdate);
           if (num1 > 0 && LOG.isInfoEnabled()) {
             LOG.info("removed {} with thisUpdate < {} {} ({}) OR nextUpdate < {} ({})",
@@ -150,6 +232,26 @@ public class ResponseCacher implements Closeable {
 
   private final AtomicBoolean onService;
 
+  private final InMemoryResponseCache memoryCache;
+
+  private final AtomicLong dbHits = new AtomicLong(0);
+
+  private final AtomicLong dbMisses = new AtomicLong(0);
+
+  private final AtomicLong droppedWrites = new AtomicLong(0);
+
+  private final AtomicLong writtenResponses = new AtomicLong(0);
+
+  private final AtomicBoolean stopWriter = new AtomicBoolean(false);
+
+  private int writeQueueSize;
+
+  private int writeBatchSize = DFLT_WRITE_BATCH_SIZE;
+
+  private BlockingQueue<PendingResponse> writeQueue;
+
+  private Thread writerThread;
+
   private DataSourceWrapper datasource;
 
   private IssuerStore issuerStore = new IssuerStore();
@@ -161,6 +263,24 @@ public class ResponseCacher implements Closeable {
   private ScheduledFuture<?> issuerUpdater;
 
   public ResponseCacher(DataSourceWrapper datasource, boolean master, Validity validity) {
+    this(datasource, master, validity, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param datasource
+   *          Datasource of the cache database.
+   * @param master
+   *          Whether this responder is master.
+   * @param validity
+   *          Validity of the cached responses.
+   * @param memoryCacheSize
+   *          Maximal number of responses cached in memory in front of the database.
+   *          Non-positive value to deactivate the in-memory cache.
+   */
+  public ResponseCacher(DataSourceWrapper datasource, boolean master, Validity validity,
+      int memoryCacheSize) {
     this.datasource = Args.notNull(datasource, "datasource");
     this.master = master;
     this.validity = (int) (Args.notNull(validity, "validity").approxMinutes() * 60);
@@ -168,6 +288,7 @@ public class ResponseCacher implements Closeable {
     this.sqlSelectOcsp = datasource.buildSelectFirstSql(1,
         "IID,IDENT,GENERATED_AT,NEXT_UPDATE,RESP FROM OCSP WHERE ID=?");
     this.onService = new AtomicBoolean(false);
+    this.memoryCache = memoryCacheSize > 0 ? new InMemoryResponseCache(memoryCacheSize) : null;
 
     this.idDigesters = new ConcurrentBag<>();
     for (int i = 0; i < 20; i++) {
@@ -180,9 +301,79 @@ public class ResponseCacher implements Closeable {
     return onService.get() && issuerStore != null;
   }
 
+  /**
+   * Returns the in-memory cache.
+   * @return the in-memory cache, may be {@code null}.
+   */
+  public InMemoryResponseCache getMemoryCache() {
+    return memoryCache;
+  }
+
+  /**
+   * Sets the size of the queue of responses to be written asynchronously to the database.
+   * Must be called before {@link #init()}.
+   *
+   * @param writeQueueSize
+   *          Size of the queue. Non-positive value to write the responses synchronously.
+   */
+  public void setWriteQueueSize(int writeQueueSize) {
+    this.writeQueueSize = writeQueueSize;
+  }
+
+  /**
+   * Sets the maximal number of responses written to the database in one JDBC batch.
+   * Must be called before {@link #init()}.
+   *
+   * @param writeBatchSize
+   *          Maximal number of responses in one batch.
+   */
+  public void setWriteBatchSize(int writeBatchSize) {
+    this.writeBatchSize = Args.positive(writeBatchSize, "writeBatchSize");
+  }
+
+  /**
+   * Returns the number of responses waiting to be written to the database.
+   * @return number of responses in the write queue.
+   */
+  public int getWriteQueueDepth() {
+    return writeQueue == null ? 0 : writeQueue.size();
+  }
+
+  public long getDroppedWrites() {
+    return droppedWrites.get();
+  }
+
+  public long getWrittenResponses() {
+    return writtenResponses.get();
+  }
+
+  /**
+   * Returns the validity of the cached responses.
+   * @return the validity in seconds.
+   */
+  public int getValidity() {
+    return validity;
+  }
+
+  public long getDbHits() {
+    return dbHits.get();
+  }
+
+  public long getDbMisses() {
+    return dbMisses.get();
+  }
+
   public void init() {
     updateCacheStore();
 
+    if (writeQueueSize > 0) {
+      writeQueue = new ArrayBlockingQueue<>(writeQueueSize);
+      stopWriter.set(false);
+      writerThread = new Thread(new ResponseWriter(), "ocsp-response-cache-writer");
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+
     scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
     scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
 
@@ -197,6 +388,21 @@ public class ResponseCacher implements Closeable {
 
   @Override
   public void close() {
+    if (memoryCache != null) {
+      memoryCache.clear();
+    }
+
+    if (writerThread != null) {
+      // the remaining responses will be written before the thread terminates
+      stopWriter.set(true);
+      try {
+        writerThread.join();
+      } catch (InterruptedException ex) {
+        LOG.error("interrupted: {}", ex.getMessage());
+      }
+      writerThread = null;
+    }
+
     if (datasource != null) {
       datasource.close();
       datasource = null;
@@ -277,6 +483,42 @@ public class ResponseCacher implements Closeable {
 
   public OcspRespWithCacheInfo getOcspResponse(int issuerId, BigInteger serialNumber,
       AlgorithmCode sigAlg) throws DataAccessException {
+    if (memoryCache != null) {
+      OcspRespWithCacheInfo resp = memoryCache.get(issuerId, serialNumber, sigAlg);
+      if (resp != null) {
+        return resp;
+      }
+    }
+
+    OcspRespWithCacheInfo resp = getOcspResponseFromDb(issuerId, serialNumber, sigAlg);
+    if (resp == null) {
+      dbMisses.incrementAndGet();
+    } else {
+      dbHits.incrementAndGet();
+      if (memoryCache != null) {
+        ResponseCacheInfo cacheInfo = resp.getCacheInfo();
+        memoryCache.put(issuerId, serialNumber, sigAlg, resp,
+            memoryCacheExpiresAt(cacheInfo.getGeneratedAt(), cacheInfo.getNextUpdate()));
+      }
+    }
+    return resp;
+  } // method getOcspResponse
+
+  /**
+   * Returns the response cached in the database, the in-memory cache will be bypassed.
+   *
+   * @param issuerId
+   *          Issuer identifier.
+   * @param serialNumber
+   *          Serial number of the certificate.
+   * @param sigAlg
+   *          Signature algorithm of the response.
+   * @return the cached response, or {@code null} if not available.
+   * @throws DataAccessException
+   *           If database error occurs.
+   */
+  public OcspRespWithCacheInfo getOcspResponseFromDb(int issuerId, BigInteger serialNumber,
+      AlgorithmCode sigAlg) throws DataAccessException {
     final String sql = sqlSelectOcsp;
     byte[] identBytes = buildIdent(serialNumber, sigAlg);
     long id = deriveId(issuerId, identBytes);
@@ -324,10 +566,35 @@ public class ResponseCacher implements Closeable {
     } finally {
       datasource.releaseResources(ps, rs);
     }
-  } // method getOcspResponse
+  } // method getOcspResponseFromDb
 
   public void storeOcspResponse(int issuerId, BigInteger serialNumber, long generatedAt,
       Long nextUpdate, AlgorithmCode sigAlgCode, byte[] response) {
+    storeOcspResponse(issuerId, serialNumber, generatedAt, nextUpdate, sigAlgCode, response,
+        false);
+  }
+
+  /**
+   * Stores the OCSP response.
+   *
+   * @param issuerId
+   *          Issuer identifier.
+   * @param serialNumber
+   *          Serial number of the certificate.
+   * @param generatedAt
+   *          Epoch time in seconds when the response is generated.
+   * @param nextUpdate
+   *          Epoch time in seconds of the nextUpdate. May be {@code null}.
+   * @param sigAlgCode
+   *          Signature algorithm of the response.
+   * @param response
+   *          The encoded response.
+   * @param preSigned
+   *          Whether the response is generated in advance. Pre-signed responses will be
+   *          written synchronously to the database, and will not be cached in memory.
+   */
+  public void storeOcspResponse(int issuerId, BigInteger serialNumber, long generatedAt,
+      Long nextUpdate, AlgorithmCode sigAlgCode, byte[] response, boolean preSigned) {
     long nowInSec = System.currentTimeMillis() / 1000;
     if (nextUpdate == null) {
       nextUpdate = nowInSec + SEC_DFLT_NEXT_UPDATE_DURATION;
@@ -337,26 +604,39 @@ public class ResponseCacher implements Closeable {
       return;
     }
 
+    if (memoryCache != null && !preSigned) {
+      ResponseCacheInfo cacheInfo = new ResponseCacheInfo(generatedAt);
+      cacheInfo.setNextUpdate(nextUpdate);
+      memoryCache.put(issuerId, serialNumber, sigAlgCode,
+          new OcspRespWithCacheInfo(response, cacheInfo),
+          memoryCacheExpiresAt(generatedAt, nextUpdate));
+    }
+
     byte[] identBytes = buildIdent(serialNumber, sigAlgCode);
-    String ident = Base64.encodeToString(identBytes);
-    try {
-      long id = deriveId(issuerId, identBytes);
+    PendingResponse pendingResp = new PendingResponse(deriveId(issuerId, identBytes), issuerId,
+        Base64.encodeToString(identBytes), generatedAt, nextUpdate,
+        Base64.encodeToString(response));
+
+    if (writeQueue == null || preSigned) {
+      storeOcspResponse0(pendingResp);
+    } else if (!writeQueue.offer(pendingResp)) {
+      // do not block the responder, the response will be generated again if required.
+      long num = droppedWrites.incrementAndGet();
+      LOG.debug("write queue is full, dropped cached OCSP response iid={}, ident={}, "
+          + "dropped responses: {}", issuerId, pendingResp.ident, num);
+    }
+  } // method storeOcspResponse
 
+  private void storeOcspResponse0(PendingResponse resp) {
+    try {
       Connection conn = datasource.getConnection();
       try {
         String sql = SQL_ADD_RESP;
         PreparedStatement ps = datasource.prepareStatement(conn, sql);
 
-        String b64Response = Base64.encodeToString(response);
         Boolean dataIntegrityViolationException = null;
         try {
-          int idx = 1;
-          ps.setLong(idx++, id);
-          ps.setInt(idx++, issuerId);
-          ps.setString(idx++, ident);
-          ps.setLong(idx++, generatedAt);
-          ps.setLong(idx++, nextUpdate);
-          ps.setString(idx++, b64Response);
+          setAddRespParams(ps, resp);
           ps.execute();
         } catch (SQLException ex) {
           DataAccessException dex = datasource.translate(sql, ex);
@@ -370,18 +650,14 @@ public class ResponseCacher implements Closeable {
         }
 
         if (dataIntegrityViolationException == null) {
-          LOG.debug("added cached OCSP response iid={}, ident={}", issuerId, ident);
+          LOG.debug("added cached OCSP response iid={}, ident={}", resp.issuerId, resp.ident);
           return;
         }
 
         sql = SQL_UPDATE_RESP;
         ps = datasource.prepareStatement(conn, sql);
         try {
-          int idx = 1;
-          ps.setLong(idx++, generatedAt);
-          ps.setLong(idx++, nextUpdate);
-          ps.setString(idx++, b64Response);
-          ps.setLong(idx++, id);
+          setUpdateRespParams(ps, resp);
           ps.executeUpdate();
         } catch (SQLException ex) {
           throw datasource.translate(sql, ex);
@@ -391,13 +667,161 @@ public class ResponseCacher implements Closeable {
       } finally {
         datasource.returnConnection(conn);
       }
+      writtenResponses.incrementAndGet();
     } catch (DataAccessException ex) {
-      LOG.info("could not cache OCSP response iid={}, ident={}", issuerId, ident);
+      LOG.info("could not cache OCSP response iid={}, ident={}", resp.issuerId, resp.ident);
       if (LOG.isDebugEnabled()) {
-        LOG.debug("could not cache OCSP response iid=" + issuerId + ", ident=" + ident, ex);
+        LOG.debug("could not cache OCSP response iid=" + resp.issuerId
+            + ", ident=" + resp.ident, ex);
       }
     }
-  } // method storeOcspResponse
+  } // method storeOcspResponse0
+
+  /**
+   * Writes the responses with JDBC batches: first update the existing entries, and then
+   * insert the remaining ones. If the driver does not return the number of updated rows, the
+   * existing entries are queried. If the batch cannot be processed, the responses will be
+   * stored one by one.
+   *
+   * @param responses
+   *          Responses to be stored.
+   */
+  private void storeOcspResponses(List<PendingResponse> responses) {
+    // only the last response for the same ID is relevant
+    Map<Long, PendingResponse> map = new LinkedHashMap<>();
+    for (PendingResponse resp : responses) {
+      map.put(resp.id, resp);
+    }
+    List<PendingResponse> list = new ArrayList<>(map.values());
+
+    String sql = SQL_UPDATE_RESP;
+    try {
+      Connection conn = datasource.getConnection();
+      try {
+        List<PendingResponse> toInsert = new LinkedList<>();
+        int[] counts;
+        PreparedStatement ps = datasource.prepareStatement(conn, sql);
+        try {
+          for (PendingResponse resp : list) {
+            setUpdateRespParams(ps, resp);
+            ps.addBatch();
+          }
+
+          counts = ps.executeBatch();
+        } finally {
+          datasource.releaseResources(ps, null, false);
+        }
+
+        boolean countsKnown = true;
+        for (int count : counts) {
+          if (count == Statement.SUCCESS_NO_INFO) {
+            countsKnown = false;
+            break;
+          }
+        }
+
+        if (countsKnown) {
+          for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+              toInsert.add(list.get(i));
+            }
+          }
+        } else {
+          // some drivers, e.g. Oracle, do not return the number of updated rows
+          Set<Long> existingIds = getExistingResponseIds(conn, list);
+          for (PendingResponse resp : list) {
+            if (!existingIds.contains(resp.id)) {
+              toInsert.add(resp);
+            }
+          }
+        }
+
+        if (!toInsert.isEmpty()) {
+          sql = SQL_ADD_RESP;
+          ps = datasource.prepareStatement(conn, sql);
+          try {
+            for (PendingResponse resp : toInsert) {
+              setAddRespParams(ps, resp);
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          } finally {
+            datasource.releaseResources(ps, null, false);
+          }
+        }
+      } finally {
+        datasource.returnConnection(conn);
+      }
+
+      writtenResponses.addAndGet(list.size());
+      LOG.debug("added {} cached OCSP responses", list.size());
+    } catch (SQLException | DataAccessException ex) {
+      // maybe another responder has added some of the responses in the meantime
+      if (LOG.isDebugEnabled()) {
+        Exception ex2 = (ex instanceof SQLException)
+            ? datasource.translate(sql, (SQLException) ex) : ex;
+        LOG.debug("could not cache OCSP responses in batch, store them one by one", ex2);
+      }
+
+      for (PendingResponse resp : list) {
+        storeOcspResponse0(resp);
+      }
+    }
+  } // method storeOcspResponses
+
+  private Set<Long> getExistingResponseIds(Connection conn, List<PendingResponse> responses)
+      throws DataAccessException {
+    Set<Long> ids = new HashSet<>();
+    int size = responses.size();
+    for (int from = 0; from < size; from += MAX_IN_SIZE) {
+      int num = Math.min(MAX_IN_SIZE, size - from);
+      StringBuilder sb = new StringBuilder(30 + 2 * num);
+      sb.append("SELECT ID FROM OCSP WHERE ID IN (?");
+      for (int i = 1; i < num; i++) {
+        sb.append(",?");
+      }
+      sb.append(")");
+
+      String sql = sb.toString();
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      ResultSet rs = null;
+      try {
+        for (int i = 0; i < num; i++) {
+          ps.setLong(i + 1, responses.get(from + i).id);
+        }
+
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          ids.add(rs.getLong("ID"));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, rs, false);
+      }
+    }
+    return ids;
+  } // method getExistingResponseIds
+
+  private static void setAddRespParams(PreparedStatement ps, PendingResponse resp)
+      throws SQLException {
+    int idx = 1;
+    ps.setLong(idx++, resp.id);
+    ps.setInt(idx++, resp.issuerId);
+    ps.setString(idx++, resp.ident);
+    ps.setLong(idx++, resp.generatedAt);
+    ps.setLong(idx++, resp.nextUpdate);
+    ps.setString(idx++, resp.b64Response);
+  }
+
+  private static void setUpdateRespParams(PreparedStatement ps, PendingResponse resp)
+      throws SQLException {
+    int idx = 1;
+    ps.setLong(idx++, resp.generatedAt);
+    ps.setLong(idx++, resp.nextUpdate);
+    ps.setString(idx++, resp.b64Response);
+    ps.setLong(idx++, resp.id);
+  }
 
   private int removeExpiredResponses(long maxGeneratedAt, long minNextUpdate)
       throws DataAccessException {
@@ -513,6 +937,7 @@ public class ResponseCacher implements Closeable {
       ps = datasource.prepareStatement(SQL_SELECT_ISSUER);
       rs = ps.executeQuery();
       List<IssuerEntry> caInfos = new LinkedList<>();
+      IssuerStore.DuplicateDetector duplicateDetector = new IssuerStore.DuplicateDetector();
 
       PreparedStatement deleteIssuerStmt = null;
 
@@ -520,16 +945,7 @@ public class ResponseCacher implements Closeable {
         int id = rs.getInt("ID");
         X509Cert cert = X509Util.parseCert(StringUtil.toUtf8Bytes(rs.getString("CERT")));
         IssuerEntry caInfoEntry = new IssuerEntry(id, cert);
-        RequestIssuer reqIssuer = new RequestIssuer(HashAlgo.SHA1,
-            caInfoEntry.getEncodedHash(HashAlgo.SHA1));
-
-        boolean duplicated = false;
-        for (IssuerEntry existingIssuer : caInfos) {
-          if (existingIssuer.matchHash(reqIssuer)) {
-            duplicated = true;
-            break;
-          }
-        }
+        boolean duplicated = duplicateDetector.isDuplicate(caInfoEntry);
 
         String subject = cert.getSubject().toString();
         if (duplicated) {
@@ -558,6 +974,15 @@ public class ResponseCacher implements Closeable {
     return true;
   } // method initIssuerStore
 
+  private long memoryCacheExpiresAt(long generatedAt, Long nextUpdate) {
+    // same criteria as used for the responses in database
+    long expiresAt = generatedAt + validity;
+    if (nextUpdate != null) {
+      expiresAt = Math.min(expiresAt, nextUpdate - SEC_NEXT_UPDATE_BUFFER);
+    }
+    return expiresAt;
+  }
+
   private static byte[] buildIdent(BigInteger serialNumber, AlgorithmCode sigAlg) {
     byte[] snBytes = serialNumber.toByteArray();
     byte[] bytes = new byte[1 + snBytes.length];
@@ -17,8 +17,6 @@
 
 package org.xipki.ocsp.server.type;
 
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.Date;
 
 /**
@@ -81,35 +79,47 @@ public abstract class ASN1Type {
   } // method writeHeader
 
   public static int writeGeneralizedTime(Date time, byte[] out, int offset) {
-    OffsetDateTime offsetTime = time.toInstant().atOffset(ZoneOffset.UTC);
+    // compute the UTC date and time without creating any objects.
+    long epochSeconds = Math.floorDiv(time.getTime(), 1000L);
+    long epochDays = Math.floorDiv(epochSeconds, 86400L);
+    int secondOfDay = (int) Math.floorMod(epochSeconds, 86400L);
+
+    // convert days since 1970-01-01 to year, month and day (proleptic Gregorian calendar)
+    long zeroDays = epochDays + 719468; // days since 0000-03-01
+    long era = Math.floorDiv(zeroDays, 146097);
+    long dayOfEra = zeroDays - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long monthIndex = (5 * dayOfYear + 2) / 153; // March = 0
+    int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+    int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
     int idx = offset;
     out[idx++] = 0x18;
     out[idx++] = 15;
     // yyyyMMddhhmmssZ
     // year
-    int year = offsetTime.getYear();
     out[idx++] = (byte) (0x30 + year / 1000);
     out[idx++] = (byte) (0x30 + year / 100 % 10);
     out[idx++] = (byte) (0x30 + year / 10 % 10);
     out[idx++] = (byte) (0x30 + year % 10);
     // month
-    int month = offsetTime.getMonthValue();
     out[idx++] = (byte) (0x30 + month / 10);
     out[idx++] = (byte) (0x30 + month % 10);
     // day
-    int day = offsetTime.getDayOfMonth();
+    int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
     out[idx++] = (byte) (0x30 + day / 10);
     out[idx++] = (byte) (0x30 + day % 10);
     // hour
-    int hour = offsetTime.getHour();
+    int hour = secondOfDay / 3600;
     out[idx++] = (byte) (0x30 + hour / 10);
     out[idx++] = (byte) (0x30 + hour % 10);
     // minute
-    int minute = offsetTime.getMinute();
+    int minute = secondOfDay / 60 % 60;
     out[idx++] = (byte) (0x30 + minute / 10);
     out[idx++] = (byte) (0x30 + minute % 10);
     // second
-    int second = offsetTime.getSecond();
+    int second = secondOfDay % 60;
     out[idx++] = (byte) (0x30 + second / 10);
     out[idx++] = (byte) (0x30 + second % 10);
     out[idx++] = 'Z';
@@ -0,0 +1,102 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xipki.ocsp.server.impl.test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+import org.xipki.ocsp.server.store.CertStatusIndex;
+
+import junit.framework.Assert;
+
+/**
+ * Test for {@link CertStatusIndex}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class CertStatusIndexTest {
+
+  @Test
+  public void testPutAndGet() {
+    CertStatusIndex index = new CertStatusIndex(0);
+    BigInteger sn = BigInteger.ONE.shiftLeft(159).add(BigInteger.TEN);
+    index.put(1, sn, true, 1, 100, 0x1FFFFFFFFL, 200, 150, 3);
+    index.put(2, sn, false, 0, 100, 300, 0, 0, 0);
+
+    CertStatusIndex.Entry entry = index.get(1, sn);
+    Assert.assertTrue(entry.isRevoked());
+    Assert.assertEquals(1, entry.getReason());
+    Assert.assertEquals(100, entry.getNotBefore());
+    Assert.assertEquals(0xFFFFFFFFL, entry.getNotAfter());
+    Assert.assertEquals(200, entry.getRevTime());
+    Assert.assertEquals(150, entry.getInvalidityTime());
+    Assert.assertEquals(3, entry.getCrlId());
+
+    entry = index.get(2, sn);
+    Assert.assertFalse(entry.isRevoked());
+    Assert.assertEquals(300, entry.getNotAfter());
+
+    Assert.assertNull(index.get(3, sn));
+    Assert.assertNull(index.get(1, BigInteger.TEN));
+    Assert.assertNull(index.get(1, BigInteger.ONE.shiftLeft(160)));
+
+    // replace
+    index.put(2, sn, true, 4, 100, 300, 250, 0, 0);
+    Assert.assertEquals(2, index.size());
+    Assert.assertTrue(index.get(2, sn).isRevoked());
+  }
+
+  @Test
+  public void testIssuerIdsWithSameLowBits() {
+    CertStatusIndex index = new CertStatusIndex(0);
+    BigInteger sn = BigInteger.valueOf(12345);
+    index.put(1, sn, true, 1, 100, 300, 200, 0, 0);
+    index.put(1 + 65536, sn, false, 0, 100, 300, 0, 0, 0);
+    index.put(Integer.MAX_VALUE, sn, true, 4, 100, 300, 250, 0, 0);
+
+    Assert.assertEquals(3, index.size());
+    Assert.assertTrue(index.get(1, sn).isRevoked());
+    Assert.assertFalse(index.get(1 + 65536, sn).isRevoked());
+    Assert.assertEquals(4, index.get(Integer.MAX_VALUE, sn).getReason());
+    Assert.assertNull(index.get(1 + 2 * 65536, sn));
+    Assert.assertNull(index.get(-1, sn));
+  }
+
+  @Test
+  public void testResize() {
+    CertStatusIndex index = new CertStatusIndex(0);
+    Random random = new Random(1);
+    BigInteger[] serials = new BigInteger[10000];
+    for (int i = 0; i < serials.length; i++) {
+      serials[i] = new BigInteger(159, random).setBit(0);
+      index.put(i % 3, serials[i], i % 2 == 0, 1, i, i + 1, i + 2, 0, 0);
+    }
+
+    Assert.assertEquals(serials.length, index.size());
+    Assert.assertTrue(index.capacity() * 3 / 4 >= serials.length);
+
+    for (int i = 0; i < serials.length; i++) {
+      CertStatusIndex.Entry entry = index.get(i % 3, serials[i]);
+      Assert.assertEquals(i % 2 == 0, entry.isRevoked());
+      Assert.assertEquals(i + 1, entry.getNotAfter());
+    }
+  }
+
+}
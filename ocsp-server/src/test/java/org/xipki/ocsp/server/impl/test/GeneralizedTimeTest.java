@@ -0,0 +1,96 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.impl.test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Random;
+
+import org.bouncycastle.asn1.DERGeneralizedTime;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Test;
+import org.xipki.ocsp.server.type.ASN1Type;
+
+import junit.framework.Assert;
+
+/**
+ * Test for {@link ASN1Type#writeGeneralizedTime(Date, byte[], int)}, the output is compared
+ * with the one of BouncyCastle.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class GeneralizedTimeTest {
+
+  @Test
+  public void testEpoch() throws IOException {
+    assertEncoding(0L);
+    assertEncoding(-1L);
+    assertEncoding(-1000L);
+    assertEncoding(-1001L);
+  }
+
+  @Test
+  public void testMillisecondBoundaries() throws IOException {
+    long time = Instant.parse("2020-06-15T12:34:56Z").toEpochMilli();
+    for (long millis : new long[] {-1001, -1000, -999, -1, 0, 1, 499, 500, 999, 1000, 1001}) {
+      assertEncoding(time + millis);
+    }
+  }
+
+  @Test
+  public void testYearBoundaries() throws IOException {
+    String[] times = {"1950-01-01T00:00:00Z", "1969-12-31T23:59:59.999Z",
+        "1999-12-31T23:59:59.999Z", "2000-01-01T00:00:00Z", "2000-02-29T23:59:59.999Z",
+        "2000-03-01T00:00:00Z", "2049-12-31T23:59:59.999Z", "2050-01-01T00:00:00Z",
+        "2020-02-29T12:00:00Z", "2100-02-28T23:59:59.999Z", "2100-03-01T00:00:00Z",
+        "9999-12-31T23:59:59.999Z"};
+    for (String time : times) {
+      assertEncoding(Instant.parse(time).toEpochMilli());
+    }
+  }
+
+  @Test
+  public void testRandom() throws IOException {
+    Random random = new Random(20200615L);
+    // 1900-01-01 to 9999-12-31
+    long min = Instant.parse("1900-01-01T00:00:00Z").toEpochMilli();
+    long max = Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli();
+    for (int i = 0; i < 10000; i++) {
+      assertEncoding(min + (long) (random.nextDouble() * (max - min)));
+    }
+  }
+
+  private static void assertEncoding(long millis) throws IOException {
+    Date time = new Date(millis);
+    byte[] expected = new DERGeneralizedTime(time).getEncoded();
+
+    // write behind some bytes to check the offset and the returned length
+    byte[] out = new byte[3 + expected.length];
+    int len = ASN1Type.writeGeneralizedTime(time, out, 3);
+    Assert.assertEquals("length for " + millis, expected.length, len);
+
+    byte[] actual = new byte[len];
+    System.arraycopy(out, 3, actual, 0, len);
+    Assert.assertEquals("encoded " + Instant.ofEpochMilli(millis),
+        Hex.toHexString(expected), Hex.toHexString(actual));
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.impl.test;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.ocsp.server.store.InMemoryResponseCache;
+import org.xipki.security.AlgorithmCode;
+
+import junit.framework.Assert;
+
+/**
+ * Test for {@link InMemoryResponseCache}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class InMemoryResponseCacheTest {
+
+  private static final AlgorithmCode ALGO = AlgorithmCode.SHA256WITHRSA;
+
+  @Test
+  public void testHitAndMiss() {
+    InMemoryResponseCache cache = new InMemoryResponseCache(10);
+    long expiresAt = System.currentTimeMillis() / 1000 + 3600;
+    OcspRespWithCacheInfo resp = new OcspRespWithCacheInfo(new byte[]{1, 2, 3}, null);
+    cache.put(1, BigInteger.ONE, ALGO, resp, expiresAt);
+
+    Assert.assertSame(resp, cache.get(1, BigInteger.ONE, ALGO));
+    Assert.assertNull(cache.get(2, BigInteger.ONE, ALGO));
+    Assert.assertNull(cache.get(1, BigInteger.TEN, ALGO));
+    Assert.assertNull(cache.get(1, BigInteger.ONE, AlgorithmCode.SHA1WITHRSA));
+
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(3, cache.getMisses());
+  }
+
+  @Test
+  public void testExpiration() {
+    InMemoryResponseCache cache = new InMemoryResponseCache(10);
+    long now = System.currentTimeMillis() / 1000;
+    OcspRespWithCacheInfo resp = new OcspRespWithCacheInfo(new byte[]{1, 2, 3}, null);
+
+    // already expired, will not be cached
+    cache.put(1, BigInteger.ONE, ALGO, resp, now - 1);
+    Assert.assertEquals(0, cache.size());
+    Assert.assertNull(cache.get(1, BigInteger.ONE, ALGO));
+  }
+
+  @Test
+  public void testEviction() {
+    InMemoryResponseCache cache = new InMemoryResponseCache(2);
+    long expiresAt = System.currentTimeMillis() / 1000 + 3600;
+    OcspRespWithCacheInfo resp = new OcspRespWithCacheInfo(new byte[]{1, 2, 3}, null);
+
+    cache.put(1, BigInteger.valueOf(1), ALGO, resp, expiresAt);
+    cache.put(1, BigInteger.valueOf(2), ALGO, resp, expiresAt);
+    // make serial 1 the most recently used one
+    cache.get(1, BigInteger.valueOf(1), ALGO);
+    cache.put(1, BigInteger.valueOf(3), ALGO, resp, expiresAt);
+
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(1, cache.getEvictions());
+    Assert.assertNotNull(cache.get(1, BigInteger.valueOf(1), ALGO));
+    Assert.assertNull(cache.get(1, BigInteger.valueOf(2), ALGO));
+    Assert.assertNotNull(cache.get(1, BigInteger.valueOf(3), ALGO));
+  }
+
+}
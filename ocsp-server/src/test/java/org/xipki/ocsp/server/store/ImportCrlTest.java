@@ -0,0 +1,268 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Properties;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.datasource.DataSourceFactory;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.security.asn1.CrlStreamParser;
+import org.xipki.util.IoUtil;
+
+import junit.framework.Assert;
+
+/**
+ * Test for the import of CRLs whose revokedCertificates are imported in segments.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class ImportCrlTest {
+
+  // more than 3 MB of revokedCertificates, imported in 3 segments.
+  private static final int NUM_REVOKED_CERTS = 100000;
+
+  private static final int NUM_WORKERS = 3;
+
+  private static final String SEGMENT_THREAD_PREFIX = "import-crl-segment-";
+
+  private static File tmpDir;
+
+  private static X500Name caSubject;
+
+  private static ContentSigner caSigner;
+
+  private static byte[] encodedCaCert;
+
+  private DataSourceWrapper datasource;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    if (Security.getProvider("BC") == null) {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+
+    tmpDir = Files.createTempDirectory("import-crl").toFile();
+
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(256);
+    KeyPair kp = kpGen.generateKeyPair();
+
+    caSubject = new X500Name("CN=CA ImportCrlTest");
+    caSigner = new JcaContentSignerBuilder("SHA256withECDSA").build(kp.getPrivate());
+
+    Date now = new Date();
+    X509CertificateHolder caCert = new JcaX509v3CertificateBuilder(caSubject, BigInteger.ONE,
+        new Date(now.getTime() - 86400000L), new Date(now.getTime() + 365 * 86400000L),
+        caSubject, kp.getPublic()).build(caSigner);
+    encodedCaCert = caCert.getEncoded();
+  }
+
+  @AfterClass
+  public static void shutdown() {
+    if (tmpDir != null) {
+      deleteDir(tmpDir);
+    }
+  }
+
+  @After
+  public void closeDatasource() {
+    if (datasource != null) {
+      datasource.close();
+    }
+  }
+
+  @Test
+  public void testImportInSegments() throws Exception {
+    File crlDir = createCrlDir("segments", -1);
+    assertNumSegments(crlDir);
+
+    datasource = createDatasource("segments");
+    Assert.assertTrue("import CRL", newImportCrl("segments").importCrlToOcspDb());
+    Assert.assertTrue("UPDATEME.SUCC exists", new File(crlDir, "UPDATEME.SUCC").exists());
+
+    try (Connection conn = datasource.getConnection();
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery(
+            "SELECT COUNT(*),COUNT(DISTINCT SN),MIN(REV),MAX(RR) FROM CERT")) {
+      rs.next();
+      Assert.assertEquals("#CERT", NUM_REVOKED_CERTS, rs.getInt(1));
+      Assert.assertEquals("#distinct serial numbers", NUM_REVOKED_CERTS, rs.getInt(2));
+      Assert.assertEquals("all revoked", 1, rs.getInt(3));
+      Assert.assertEquals("max reason", 4, rs.getInt(4));
+    }
+  }
+
+  @Test
+  public void testImportInSegmentsFails() throws Exception {
+    // the 10th entry of the first segment has an invalid certificateIssuer.
+    File crlDir = createCrlDir("segments-fail", 10);
+    assertNumSegments(crlDir);
+
+    datasource = createDatasource("segments-fail");
+    newImportCrl("segments-fail").importCrlToOcspDb();
+    Assert.assertTrue("UPDATEME.FAIL exists", new File(crlDir, "UPDATEME.FAIL").exists());
+
+    // all segment workers must have terminated.
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith(SEGMENT_THREAD_PREFIX)) {
+        Assert.assertFalse("thread " + thread.getName() + " is alive", thread.isAlive());
+      }
+    }
+
+    // no more entries are written after the import.
+    int numCerts = countCerts();
+    Thread.sleep(500);
+    Assert.assertEquals("#CERT", numCerts, countCerts());
+  }
+
+  private ImportCrl newImportCrl(String name) throws Exception {
+    return new ImportCrl(datasource, new File(tmpDir, name).getPath(), 1000, false, false,
+        NUM_WORKERS);
+  }
+
+  private int countCerts() throws Exception {
+    try (Connection conn = datasource.getConnection();
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM CERT")) {
+      rs.next();
+      return rs.getInt(1);
+    }
+  }
+
+  private static void assertNumSegments(File crlDir) throws IOException {
+    CrlStreamParser crl = new CrlStreamParser(new File(crlDir, "ca.crl"));
+    Assert.assertTrue("revokedCertificates is not large enough",
+        crl.getRevokedCertificatesSize() >= NUM_WORKERS * 1024 * 1024);
+    Assert.assertEquals("#segments", NUM_WORKERS,
+        crl.getRevokedCertificatesSegments(NUM_WORKERS).length - 1);
+  }
+
+  /**
+   * Creates the directory basedir/crl-mycrl with the CA certificate, the CRL and UPDATEME.
+   *
+   * @param name Name of the basedir.
+   * @param invalidEntryIndex Index of the CRL entry with invalid certificateIssuer,
+   *          -1 if all entries are valid.
+   */
+  private static File createCrlDir(String name, int invalidEntryIndex) throws Exception {
+    Date now = new Date();
+    X509v2CRLBuilder builder = new X509v2CRLBuilder(caSubject, new Date(now.getTime() - 1000));
+    builder.setNextUpdate(new Date(now.getTime() + 86400000L));
+    builder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.ONE));
+
+    for (int i = 0; i < NUM_REVOKED_CERTS; i++) {
+      BigInteger serial = BigInteger.valueOf(1000000L + i);
+      Date revocationDate = new Date(now.getTime() - (i + 1) * 1000L);
+      if (i == invalidEntryIndex) {
+        ExtensionsGenerator extns = new ExtensionsGenerator();
+        extns.addExtension(Extension.certificateIssuer, true, new GeneralNames(
+            new GeneralName(new X500Name("CN=Other CA"))));
+        builder.addCRLEntry(serial, revocationDate, extns.generate());
+      } else {
+        builder.addCRLEntry(serial, revocationDate, i % 5);
+      }
+    }
+
+    X509CRLHolder crl = builder.build(caSigner);
+
+    File crlDir = new File(new File(tmpDir, name), "crl-mycrl");
+    crlDir.mkdirs();
+    IoUtil.save(new File(crlDir, "ca.crt"), encodedCaCert);
+    IoUtil.save(new File(crlDir, "ca.crl"), crl.getEncoded());
+    IoUtil.save(new File(crlDir, "UPDATEME"), new byte[0]);
+    return crlDir;
+  } // method createCrlDir
+
+  private static DataSourceWrapper createDatasource(String name) throws Exception {
+    Properties props = new Properties();
+    props.setProperty("dataSourceClassName", "org.h2.jdbcx.JdbcDataSource");
+    props.setProperty("dataSource.url",
+        "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+    props.setProperty("dataSource.user", "sa");
+    // one connection for the CRL and one for each segment
+    props.setProperty("maximumPoolSize", Integer.toString(NUM_WORKERS + 2));
+
+    DataSourceWrapper datasource = new DataSourceFactory().createDataSource(name, props, null);
+
+    String[] sqls = {
+      "CREATE TABLE DBSCHEMA (NAME VARCHAR(45) PRIMARY KEY, VALUE2 VARCHAR(100) NOT NULL)",
+      "INSERT INTO DBSCHEMA (NAME,VALUE2) VALUES ('CERTHASH_ALGO','SHA256')",
+      "CREATE TABLE CRL_INFO (ID INT PRIMARY KEY, NAME VARCHAR(100) NOT NULL,"
+          + " INFO VARCHAR(1000) NOT NULL)",
+      "CREATE TABLE ISSUER (ID SMALLINT PRIMARY KEY, SUBJECT VARCHAR(350) NOT NULL,"
+          + " NBEFORE BIGINT NOT NULL, NAFTER BIGINT NOT NULL, S1C CHAR(28) NOT NULL,"
+          + " REV_INFO VARCHAR(200), CERT VARCHAR(6000) NOT NULL, CRL_ID INT)",
+      "CREATE TABLE CERT (ID BIGINT PRIMARY KEY, IID SMALLINT NOT NULL, SN VARCHAR(40) NOT NULL,"
+          + " CRL_ID INT, LUPDATE BIGINT NOT NULL, NBEFORE BIGINT, NAFTER BIGINT,"
+          + " REV SMALLINT NOT NULL, RR SMALLINT, RT BIGINT, RIT BIGINT, HASH CHAR(86),"
+          + " SUBJECT VARCHAR(350), CONSTRAINT CONST_ISSUER_SN UNIQUE (IID, SN))"};
+
+    try (Connection conn = datasource.getConnection();
+        Statement stmt = conn.createStatement()) {
+      for (String sql : sqls) {
+        stmt.execute(sql);
+      }
+    }
+    return datasource;
+  } // method createDatasource
+
+  private static void deleteDir(File dir) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          deleteDir(file);
+        } else {
+          file.delete();
+        }
+      }
+    }
+    dir.delete();
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.X509Cert;
+
+import junit.framework.Assert;
+
+/**
+ * Test for the index of {@link IssuerStore}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class IssuerStoreTest {
+
+  // the IDs 1 to 64 are placed in 128 slots, 17 of them collide with an occupied slot and are
+  // found by probing. The hash tables collide with a probability of more than 1 - 10^-6.
+  private static final int NUM_ISSUERS = 64;
+
+  private static List<IssuerEntry> issuers;
+
+  private static IssuerEntry otherIssuer;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    issuers = new ArrayList<>(NUM_ISSUERS);
+    for (int i = 1; i <= NUM_ISSUERS; i++) {
+      issuers.add(createIssuer(i));
+    }
+    otherIssuer = createIssuer(NUM_ISSUERS + 1);
+  }
+
+  @Test
+  public void testLookupById() {
+    IssuerStore store = new IssuerStore();
+    store.setIssuers(issuers);
+    Assert.assertEquals(NUM_ISSUERS, store.size());
+
+    for (IssuerEntry issuer : issuers) {
+      Assert.assertSame("issuer " + issuer.getId(), issuer, store.getIssuerForId(issuer.getId()));
+    }
+
+    // miss
+    Assert.assertNull(store.getIssuerForId(0));
+    Assert.assertNull(store.getIssuerForId(NUM_ISSUERS + 1));
+    Assert.assertNull(store.getIssuerForId(1 + 65536));
+  }
+
+  @Test
+  public void testLookupByHash() {
+    IssuerStore store = new IssuerStore();
+    store.setIssuers(issuers);
+
+    for (HashAlgo ha : HashAlgo.values()) {
+      for (IssuerEntry issuer : issuers) {
+        RequestIssuer reqIssuer = new RequestIssuer(ha, issuer.getEncodedHash(ha));
+        Assert.assertSame(ha + " issuer " + issuer.getId(), issuer,
+            store.getIssuerForFp(reqIssuer));
+        Assert.assertEquals(ha + " issuer " + issuer.getId(),
+            Integer.valueOf(issuer.getId()), store.getIssuerIdForFp(reqIssuer));
+
+        // miss: same issuerNameHash, different issuerKeyHash
+        byte[] encodedHash = issuer.getEncodedHash(ha);
+        encodedHash[encodedHash.length - 1] ^= 1;
+        Assert.assertNull(ha + " modified issuer " + issuer.getId(),
+            store.getIssuerForFp(new RequestIssuer(ha, encodedHash)));
+      }
+
+      // miss: unknown issuer
+      Assert.assertNull(ha + " unknown issuer",
+          store.getIssuerForFp(new RequestIssuer(ha, otherIssuer.getEncodedHash(ha))));
+    }
+  }
+
+  @Test
+  public void testAddIssuer() {
+    IssuerStore store = new IssuerStore();
+    Assert.assertNull(store.getIssuerForId(1));
+
+    store.setIssuers(issuers.subList(0, NUM_ISSUERS / 2));
+    for (int i = NUM_ISSUERS / 2; i < NUM_ISSUERS; i++) {
+      store.addIssuer(issuers.get(i));
+    }
+
+    Assert.assertEquals(NUM_ISSUERS, store.size());
+    for (IssuerEntry issuer : issuers) {
+      Assert.assertSame("issuer " + issuer.getId(), issuer, store.getIssuerForId(issuer.getId()));
+      RequestIssuer reqIssuer =
+          new RequestIssuer(HashAlgo.SHA1, issuer.getEncodedHash(HashAlgo.SHA1));
+      Assert.assertSame("issuer " + issuer.getId(), issuer, store.getIssuerForFp(reqIssuer));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicatedId() {
+    List<IssuerEntry> list = new ArrayList<>(issuers);
+    list.add(issuers.get(0));
+    new IssuerStore().setIssuers(list);
+  }
+
+  @Test
+  public void testDuplicateDetector() throws Exception {
+    IssuerStore.DuplicateDetector detector = new IssuerStore.DuplicateDetector();
+    for (IssuerEntry issuer : issuers) {
+      Assert.assertFalse("issuer " + issuer.getId(), detector.isDuplicate(issuer));
+    }
+
+    // same subject and key, different ID
+    IssuerEntry issuer = issuers.get(0);
+    Assert.assertTrue(detector.isDuplicate(new IssuerEntry(NUM_ISSUERS + 2, issuer.getCert())));
+    Assert.assertFalse(detector.isDuplicate(otherIssuer));
+  }
+
+  private static IssuerEntry createIssuer(int id) throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(256);
+    KeyPair kp = kpGen.generateKeyPair();
+
+    X500Name subject = new X500Name("CN=CA " + id);
+    Date notBefore = new Date();
+    Date notAfter = new Date(notBefore.getTime() + 365L * 24 * 3600 * 1000);
+    X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject,
+        BigInteger.valueOf(id), notBefore, notAfter, subject, kp.getPublic());
+    X509Cert cert = new X509Cert(
+        builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(kp.getPrivate())));
+    return new IssuerEntry(id, cert);
+  }
+
+}
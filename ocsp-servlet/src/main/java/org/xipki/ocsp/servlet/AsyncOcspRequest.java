@@ -0,0 +1,274 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xipki.ocsp.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.ocsp.api.OcspServer;
+import org.xipki.ocsp.api.Responder;
+import org.xipki.util.LogUtil;
+
+/**
+ * Asynchronous processing of one OCSP request. The request body is read with a
+ * {@link ReadListener}, the response is computed by the given executor, and written with
+ * a {@link WriteListener}. The container thread is released directly after the start of
+ * the asynchronous processing.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+class AsyncOcspRequest implements ReadListener, WriteListener, AsyncListener, Runnable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncOcspRequest.class);
+
+  private static final int BUFFER_SIZE = 4096;
+
+  private final AsyncContext asyncContext;
+
+  private final HttpServletRequest req;
+
+  private final HttpServletResponse resp;
+
+  private final OcspServer server;
+
+  private final Responder responder;
+
+  private final boolean viaGet;
+
+  private final boolean logReqResp;
+
+  private final Executor executor;
+
+  private final AtomicBoolean completed = new AtomicBoolean(false);
+
+  private ServletInputStream input;
+
+  private ByteArrayOutputStream requestBuffer;
+
+  private byte[] reqContent;
+
+  private byte[] respContent;
+
+  private int respOffset;
+
+  private AsyncOcspRequest(HttpServletRequest req, HttpServletResponse resp, long timeout,
+      OcspServer server, Responder responder, boolean viaGet, boolean logReqResp,
+      Executor executor) {
+    this.req = req;
+    this.resp = resp;
+    this.server = server;
+    this.responder = responder;
+    this.viaGet = viaGet;
+    this.logReqResp = logReqResp;
+    this.executor = executor;
+    this.asyncContext = req.startAsync(req, resp);
+    this.asyncContext.setTimeout(timeout);
+    this.asyncContext.addListener(this);
+  } // constructor
+
+  /**
+   * Starts the processing of a request sent via HTTP POST, the request body will be read
+   * asynchronously.
+   */
+  static void startPost(HttpServletRequest req, HttpServletResponse resp, long timeout,
+      OcspServer server, Responder responder, boolean logReqResp, Executor executor)
+      throws IOException {
+    AsyncOcspRequest request = new AsyncOcspRequest(req, resp, timeout, server, responder,
+        false, logReqResp, executor);
+    int contentLength = req.getContentLength();
+    request.requestBuffer = new ByteArrayOutputStream(
+        (contentLength > 0 && contentLength <= responder.getMaxRequestSize())
+          ? contentLength : BUFFER_SIZE);
+    request.input = req.getInputStream();
+    request.input.setReadListener(request);
+  } // method startPost
+
+  /**
+   * Starts the processing of a request sent via HTTP GET, whose content is already known.
+   */
+  static void startGet(HttpServletRequest req, HttpServletResponse resp, long timeout,
+      OcspServer server, Responder responder, byte[] reqContent, boolean logReqResp,
+      Executor executor) {
+    AsyncOcspRequest request = new AsyncOcspRequest(req, resp, timeout, server, responder,
+        true, logReqResp, executor);
+    request.reqContent = reqContent;
+    request.submit();
+  } // method startGet
+
+  @Override
+  public void onDataAvailable() throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    while (input.isReady() && !input.isFinished()) {
+      int read = input.read(buffer);
+      if (read < 0) {
+        break;
+      }
+
+      requestBuffer.write(buffer, 0, read);
+      // request too long
+      if (requestBuffer.size() > responder.getMaxRequestSize()) {
+        sendErrorAndComplete(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        return;
+      }
+    }
+  } // method onDataAvailable
+
+  @Override
+  public void onAllDataRead() throws IOException {
+    if (completed.get()) {
+      return;
+    }
+
+    reqContent = requestBuffer.toByteArray();
+    requestBuffer = null;
+    submit();
+  } // method onAllDataRead
+
+  private void submit() {
+    try {
+      executor.execute(this);
+    } catch (RejectedExecutionException ex) {
+      LOG.warn("too many pending OCSP requests, reject the request");
+      sendErrorAndComplete(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+  } // method submit
+
+  @Override
+  public void run() {
+    if (completed.get()) {
+      // timed out while waiting for the executor
+      return;
+    }
+
+    try {
+      OcspRespWithCacheInfo ocspRespWithCacheInfo = server.answer(responder, reqContent, viaGet);
+      if (ocspRespWithCacheInfo == null || ocspRespWithCacheInfo.getResponse() == null) {
+        LOG.error("processRequest returned null, this should not happen");
+        sendErrorAndComplete(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        return;
+      }
+
+      respContent = ocspRespWithCacheInfo.getResponse();
+      if (logReqResp && LOG.isDebugEnabled()) {
+        LOG.debug("HTTP {} OCSP path: {}\nRequest:\n{}\nResponse:\n{}", viaGet ? "GET" : "POST",
+            req.getRequestURI(), LogUtil.base64Encode(reqContent),
+            LogUtil.base64Encode(respContent));
+      }
+
+      if (completed.get()) {
+        return;
+      }
+
+      resp.setStatus(HttpServletResponse.SC_OK);
+      if (viaGet) {
+        OcspServlet.addCacheHeaders(resp, responder, ocspRespWithCacheInfo);
+      }
+      resp.setContentType(OcspServlet.CT_RESPONSE);
+      resp.setContentLength(respContent.length);
+      resp.getOutputStream().setWriteListener(this);
+    } catch (Throwable th) {
+      LOG.error("Throwable thrown, this should not happen!", th);
+      sendErrorAndComplete(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+  } // method run
+
+  @Override
+  public void onWritePossible() throws IOException {
+    ServletOutputStream output = resp.getOutputStream();
+    while (output.isReady()) {
+      if (respOffset >= respContent.length) {
+        complete();
+        return;
+      }
+
+      int len = Math.min(BUFFER_SIZE, respContent.length - respOffset);
+      output.write(respContent, respOffset, len);
+      respOffset += len;
+    }
+  } // method onWritePossible
+
+  @Override
+  public void onError(Throwable th) {
+    LogUtil.warn(LOG, th, "error while processing OCSP request asynchronously");
+    complete();
+  }
+
+  @Override
+  public void onComplete(AsyncEvent event) throws IOException {
+    completed.set(true);
+  }
+
+  @Override
+  public void onTimeout(AsyncEvent event) throws IOException {
+    LOG.warn("processing of OCSP request timed out");
+    sendErrorAndComplete(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+  }
+
+  @Override
+  public void onError(AsyncEvent event) throws IOException {
+    onError(event.getThrowable());
+  }
+
+  @Override
+  public void onStartAsync(AsyncEvent event) throws IOException {
+  }
+
+  private void sendErrorAndComplete(int status) {
+    if (completed.get()) {
+      return;
+    }
+
+    try {
+      if (!resp.isCommitted()) {
+        resp.setStatus(status);
+        resp.setContentLength(0);
+      }
+    } catch (RuntimeException ex) {
+      LogUtil.warn(LOG, ex, "could not send error " + status);
+    }
+    complete();
+  } // method sendErrorAndComplete
+
+  private void complete() {
+    if (completed.compareAndSet(false, true)) {
+      try {
+        asyncContext.complete();
+      } catch (IllegalStateException ex) {
+        LOG.debug("AsyncContext already completed");
+      }
+    }
+  } // method complete
+
+}
@@ -67,6 +67,82 @@ public class OcspConf extends ValidatableConf {
 
   } // class RemoteMgmt
 
+  /**
+   * Asynchronous processing of the OCSP requests. The request is read and the response is
+   * written with non-blocking I/O, and the response is computed in a dedicated thread pool,
+   * so that the threads of the servlet container are not blocked by slow clients,
+   * database or signing.
+   */
+  public static class Async extends ValidatableConf {
+
+    private boolean enabled;
+
+    /**
+     * Number of threads to compute the responses.
+     */
+    private int threads = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximal number of requests waiting for a thread. Further requests are rejected with
+     * HTTP status 503.
+     */
+    private int queueSize = 1000;
+
+    /**
+     * Timeout of a request in milliseconds, including the reading of request and the
+     * writing of response.
+     */
+    private long timeout = 30000;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+
+    public int getQueueSize() {
+      return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+      this.queueSize = queueSize;
+    }
+
+    public long getTimeout() {
+      return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+      this.timeout = timeout;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (threads < 1) {
+        throw new InvalidConfException("threads must not be less than 1");
+      }
+
+      if (queueSize < 1) {
+        throw new InvalidConfException("queueSize must not be less than 1");
+      }
+
+      if (timeout < 1) {
+        throw new InvalidConfException("timeout must not be less than 1");
+      }
+    }
+
+  } // class Async
+
   public static final String DFLT_SERVER_CONF = "etc/ocsp/ocsp-responder.json";
 
   private String serverConf;
@@ -75,6 +151,8 @@ public class OcspConf extends ValidatableConf {
 
   private SecurityConf security;
 
+  private Async async;
+
   public static OcspConf readConfFromFile(String fileName)
       throws IOException, InvalidConfException {
     Args.notBlank(fileName, "fileName");
@@ -111,10 +189,19 @@ public class OcspConf extends ValidatableConf {
     this.security = security;
   }
 
+  public Async getAsync() {
+    return async;
+  }
+
+  public void setAsync(Async async) {
+    this.async = async;
+  }
+
   @Override
   public void validate() throws InvalidConfException {
     validate(remoteMgmt);
     validate(security);
+    validate(async);
   }
 
 }
@@ -20,6 +20,8 @@ package org.xipki.ocsp.servlet;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -59,16 +61,36 @@ public class OcspServlet extends HttpServlet {
 
   private static final String CT_REQUEST = "application/ocsp-request";
 
-  private static final String CT_RESPONSE = "application/ocsp-response";
+  static final String CT_RESPONSE = "application/ocsp-response";
 
   private boolean logReqResp;
 
   private OcspServer server;
 
+  private Executor asyncExecutor;
+
+  private long asyncTimeout;
+
+  private final AtomicBoolean asyncUnsupportedLogged = new AtomicBoolean(false);
+
   public void setLogReqResp(boolean logReqResp) {
     this.logReqResp = logReqResp;
   }
 
+  /**
+   * Enables the asynchronous processing of requests.
+   *
+   * @param executor
+   *          Executor to compute the responses. {@code null} to disable the asynchronous
+   *          processing.
+   * @param timeout
+   *          Timeout of a request in milliseconds.
+   */
+  public void setAsync(Executor executor, long timeout) {
+    this.asyncExecutor = executor;
+    this.asyncTimeout = timeout;
+  }
+
   public void setServer(OcspServer server) {
     this.server = Args.notNull(server, "server");
   }
@@ -92,6 +114,18 @@ public class OcspServlet extends HttpServlet {
       }
 
       Responder responder = responderAndPath.getResponder();
+      if (useAsync(req)) {
+        // request too long
+        if (req.getContentLength() > responder.getMaxRequestSize()) {
+          sendError(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+          return;
+        }
+
+        AsyncOcspRequest.startPost(req, resp, asyncTimeout, server, responder, logReqResp,
+            asyncExecutor);
+        return;
+      }
+
       byte[] reqContent = IoUtil.read(req.getInputStream());
       // request too long
       if (reqContent.length > responder.getMaxRequestSize()) {
@@ -124,7 +158,9 @@ public class OcspServlet extends HttpServlet {
 
       sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
     } finally {
-      resp.flushBuffer();
+      if (!req.isAsyncStarted()) {
+        resp.flushBuffer();
+      }
     }
   } // method doPost
 
@@ -178,6 +214,12 @@ public class OcspServlet extends HttpServlet {
         return;
       }
 
+      if (useAsync(req)) {
+        AsyncOcspRequest.startGet(req, resp, asyncTimeout, server, responder, ocsReqBytes,
+            logReqResp, asyncExecutor);
+        return;
+      }
+
       OcspRespWithCacheInfo ocspRespWithCacheInfo = server.answer(responder, ocsReqBytes, true);
       if (ocspRespWithCacheInfo == null || ocspRespWithCacheInfo.getResponse() == null) {
         LOG.error("processRequest returned null, this should not happen");
@@ -191,49 +233,7 @@ public class OcspServlet extends HttpServlet {
             LogUtil.base64Encode(encodedOcspResp));
       }
 
-      OcspRespWithCacheInfo.ResponseCacheInfo cacheInfo = ocspRespWithCacheInfo.getCacheInfo();
-      if (cacheInfo != null) {
-        encodedOcspResp = ocspRespWithCacheInfo.getResponse();
-        long now = System.currentTimeMillis();
-
-        // RFC 5019 6.2: Date: The date and time at which the OCSP server generated
-        // the HTTP response.
-        resp.addDateHeader("Date", now);
-        // RFC 5019 6.2: Last-Modified: date and time at which the OCSP responder
-        // last modified the response.
-        resp.addDateHeader("Last-Modified", cacheInfo.getGeneratedAt());
-        // RFC 5019 6.2: Expires: This date and time will be the same as the
-        // nextUpdate time-stamp in the OCSP
-        // response itself.
-        // This is overridden by max-age on HTTP/1.1 compatible components
-
-        Long nextUpdate = cacheInfo.getNextUpdate();
-
-        if (nextUpdate != null) {
-          resp.addDateHeader("Expires", nextUpdate.longValue());
-        }
-        // RFC 5019 6.2: This profile RECOMMENDS that the ETag value be the ASCII
-        // HEX representation of the SHA1 hash of the OCSPResponse structure.
-        resp.addHeader("ETag",
-            StringUtil.concat("\"", HashAlgo.SHA1.hexHash(encodedOcspResp), "\""));
-
-        // Max age must be in seconds in the cache-control header
-        long maxAge;
-        if (responder.getCacheMaxAge() != null) {
-          maxAge = responder.getCacheMaxAge().longValue();
-        } else {
-          maxAge = DFLT_CACHE_MAX_AGE;
-        }
-
-        if (cacheInfo.getNextUpdate() != null) {
-          maxAge = Math.min(maxAge,
-              (nextUpdate.longValue() - cacheInfo.getGeneratedAt()) / 1000);
-        }
-
-        resp.addHeader("Cache-Control",
-            StringUtil.concat("max-age=", Long.toString(maxAge),
-              ",public,no-transform,must-revalidate"));
-      } // end if (ocspRespWithCacheInfo)
+      addCacheHeaders(resp, responder, ocspRespWithCacheInfo);
 
       resp.setContentLength(encodedOcspResp.length);
       resp.setContentType(CT_RESPONSE);
@@ -247,10 +247,75 @@ public class OcspServlet extends HttpServlet {
 
       sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
     } finally {
-      resp.flushBuffer();
+      if (!req.isAsyncStarted()) {
+        resp.flushBuffer();
+      }
     }
   } // method doGet
 
+  private boolean useAsync(HttpServletRequest req) {
+    if (asyncExecutor == null) {
+      return false;
+    }
+
+    if (req.isAsyncSupported()) {
+      return true;
+    }
+
+    if (asyncUnsupportedLogged.compareAndSet(false, true)) {
+      LOG.warn("asynchronous processing is enabled, but not supported by the request, all "
+          + "filters and the servlet of the OCSP path must be declared async-supported");
+    }
+    return false;
+  } // method useAsync
+
+  static void addCacheHeaders(HttpServletResponse resp, Responder responder,
+      OcspRespWithCacheInfo ocspRespWithCacheInfo) {
+    byte[] encodedOcspResp = ocspRespWithCacheInfo.getResponse();
+    OcspRespWithCacheInfo.ResponseCacheInfo cacheInfo = ocspRespWithCacheInfo.getCacheInfo();
+    if (cacheInfo != null) {
+      long now = System.currentTimeMillis();
+
+      // RFC 5019 6.2: Date: The date and time at which the OCSP server generated
+      // the HTTP response.
+      resp.addDateHeader("Date", now);
+      // RFC 5019 6.2: Last-Modified: date and time at which the OCSP responder
+      // last modified the response.
+      resp.addDateHeader("Last-Modified", cacheInfo.getGeneratedAt());
+      // RFC 5019 6.2: Expires: This date and time will be the same as the
+      // nextUpdate time-stamp in the OCSP
+      // response itself.
+      // This is overridden by max-age on HTTP/1.1 compatible components
+
+      Long nextUpdate = cacheInfo.getNextUpdate();
+
+      if (nextUpdate != null) {
+        resp.addDateHeader("Expires", nextUpdate.longValue());
+      }
+      // RFC 5019 6.2: This profile RECOMMENDS that the ETag value be the ASCII
+      // HEX representation of the SHA1 hash of the OCSPResponse structure.
+      resp.addHeader("ETag",
+          StringUtil.concat("\"", HashAlgo.SHA1.hexHash(encodedOcspResp), "\""));
+
+      // Max age must be in seconds in the cache-control header
+      long maxAge;
+      if (responder.getCacheMaxAge() != null) {
+        maxAge = responder.getCacheMaxAge().longValue();
+      } else {
+        maxAge = DFLT_CACHE_MAX_AGE;
+      }
+
+      if (cacheInfo.getNextUpdate() != null) {
+        maxAge = Math.min(maxAge,
+            (nextUpdate.longValue() - cacheInfo.getGeneratedAt()) / 1000);
+      }
+
+      resp.addHeader("Cache-Control",
+          StringUtil.concat("max-age=", Long.toString(maxAge),
+            ",public,no-transform,must-revalidate"));
+    } // end if (ocspRespWithCacheInfo)
+  } // method addCacheHeaders
+
   private static void sendError(HttpServletResponse resp, int status) {
     resp.setStatus(status);
     resp.setContentLength(0);
@@ -21,6 +21,9 @@ import java.io.IOException;
 import java.security.cert.CertificateException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -73,6 +76,8 @@ public class OcspServletFilter implements Filter {
 
   private HttpMgmtServlet mgmtServlet;
 
+  private ThreadPoolExecutor asyncExecutor;
+
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
     XipkiBaseDir.init();
@@ -116,6 +121,14 @@ public class OcspServletFilter implements Filter {
     this.ocspServlet.setServer(this.server);
     this.ocspServlet.setLogReqResp(logReqResp);
 
+    OcspConf.Async async = conf.getAsync();
+    if (async != null && async.isEnabled()) {
+      asyncExecutor = new ThreadPoolExecutor(async.getThreads(), async.getThreads(),
+          60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(async.getQueueSize()));
+      this.ocspServlet.setAsync(asyncExecutor, async.getTimeout());
+      LOG.info("asynchronous processing is enabled with {} threads", async.getThreads());
+    }
+
     RemoteMgmt remoteMgmt = conf.getRemoteMgmt();
     this.remoteMgmtEnabled = remoteMgmt == null ? false : remoteMgmt.isEnabled();
     LOG.info("remote management is {}", remoteMgmtEnabled ? "enabled" : "disabled");
@@ -150,6 +163,16 @@ public class OcspServletFilter implements Filter {
 
   @Override
   public void destroy() {
+    if (asyncExecutor != null) {
+      asyncExecutor.shutdown();
+      try {
+        asyncExecutor.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException ex) {
+        LOG.warn("interrupted while waiting for the termination of asynchronous processing");
+      }
+      asyncExecutor = null;
+    }
+
     if (securities != null) {
       securities.close();
     }
@@ -0,0 +1,264 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.servlet.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.ocsp.api.OcspServer;
+import org.xipki.ocsp.api.Responder;
+import org.xipki.ocsp.api.ResponderAndPath;
+import org.xipki.ocsp.servlet.FallbackServlet;
+import org.xipki.ocsp.servlet.OcspServlet;
+import org.xipki.util.Base64;
+import org.xipki.util.HealthCheckResult;
+import org.xipki.util.HttpConstants;
+import org.xipki.util.IoUtil;
+
+import junit.framework.Assert;
+
+/**
+ * Test for the asynchronous processing of {@link OcspServlet} in a servlet container, with
+ * the same layout as in web.xml: the requests are answered by a filter, and the
+ * {@link FallbackServlet} is mapped to all paths.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class OcspServletAsyncTest {
+
+  private static final String ASYNC_THREAD_PREFIX = "ocsp-async-test-";
+
+  private static final byte[] REQUEST = "dummy OCSP request".getBytes();
+
+  private final AtomicReference<String> answeredBy = new AtomicReference<>();
+
+  private ThreadPoolExecutor executor;
+
+  private Server jetty;
+
+  private int port;
+
+  @Before
+  public void init() {
+    executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(10), r -> {
+          Thread thread = new Thread(r, ASYNC_THREAD_PREFIX + r.hashCode());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  @After
+  public void shutdown() throws Exception {
+    if (jetty != null) {
+      jetty.stop();
+    }
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testAsyncPost() throws Exception {
+    startJetty(true);
+    Assert.assertEquals("response", new String(reverse(REQUEST)), new String(post()));
+    assertAnsweredAsync(true);
+  }
+
+  @Test
+  public void testAsyncGet() throws Exception {
+    startJetty(true);
+    Assert.assertEquals("response", new String(reverse(REQUEST)), new String(get()));
+    assertAnsweredAsync(true);
+  }
+
+  @Test
+  public void testSyncIfAsyncNotSupported() throws Exception {
+    startJetty(false);
+    Assert.assertEquals("response", new String(reverse(REQUEST)), new String(post()));
+    assertAnsweredAsync(false);
+  }
+
+  private void assertAnsweredAsync(boolean async) {
+    String thread = answeredBy.get();
+    Assert.assertNotNull("request not answered", thread);
+    Assert.assertEquals("answered by " + thread, async,
+        thread.startsWith(ASYNC_THREAD_PREFIX));
+  }
+
+  // the request is async-supported only if the filter and the servlet are async-supported
+  private void startJetty(boolean asyncSupported) throws Exception {
+    OcspServlet ocspServlet = new OcspServlet();
+    ocspServlet.setServer(new DummyOcspServer());
+    ocspServlet.setAsync(executor, 10000);
+
+    ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+    FilterHolder filterHolder = new FilterHolder(new DispatchFilter(ocspServlet));
+    filterHolder.setAsyncSupported(asyncSupported);
+    context.addFilter(filterHolder, "/*", EnumSet.of(DispatcherType.REQUEST));
+
+    ServletHolder servletHolder = new ServletHolder(new FallbackServlet());
+    servletHolder.setAsyncSupported(true);
+    context.addServlet(servletHolder, "/*");
+
+    jetty = new Server(0);
+    jetty.setHandler(context);
+    jetty.start();
+    port = ((ServerConnector) jetty.getConnectors()[0]).getLocalPort();
+  }
+
+  private byte[] post() throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/ocsp")
+        .openConnection();
+    conn.setRequestMethod("POST");
+    conn.setDoOutput(true);
+    conn.setRequestProperty("Content-Type", "application/ocsp-request");
+    try (OutputStream out = conn.getOutputStream()) {
+      out.write(REQUEST);
+    }
+    return readResponse(conn);
+  }
+
+  private byte[] get() throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/ocsp/"
+        + Base64.encodeToString(REQUEST)).openConnection();
+    return readResponse(conn);
+  }
+
+  private static byte[] readResponse(HttpURLConnection conn) throws IOException {
+    Assert.assertEquals("HTTP status", HttpServletResponse.SC_OK, conn.getResponseCode());
+    Assert.assertEquals("content type", "application/ocsp-response", conn.getContentType());
+    try (InputStream in = conn.getInputStream()) {
+      return IoUtil.read(in);
+    } finally {
+      conn.disconnect();
+    }
+  }
+
+  private static byte[] reverse(byte[] bytes) {
+    byte[] ret = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      ret[i] = bytes[bytes.length - 1 - i];
+    }
+    return ret;
+  }
+
+  /**
+   * Dispatches the requests to the OCSP servlet like the OcspServletFilter.
+   */
+  private static class DispatchFilter implements Filter {
+
+    private final OcspServlet ocspServlet;
+
+    DispatchFilter(OcspServlet ocspServlet) {
+      this.ocspServlet = ocspServlet;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException {
+      HttpServletRequest req = (HttpServletRequest) request;
+      req.setAttribute(HttpConstants.ATTR_XIPKI_PATH,
+          req.getRequestURI().substring(req.getContextPath().length()));
+      ocspServlet.service(req, response);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+  } // class DispatchFilter
+
+  /**
+   * OCSP server which answers with the reversed request.
+   */
+  private class DummyOcspServer implements OcspServer {
+
+    private final Responder responder = new Responder() {
+
+      @Override
+      public int getMaxRequestSize() {
+        return 4096;
+      }
+
+      @Override
+      public boolean supportsHttpGet() {
+        return true;
+      }
+
+      @Override
+      public Long getCacheMaxAge() {
+        return null;
+      }
+
+    };
+
+    @Override
+    public ResponderAndPath getResponderForPath(String path) {
+      return new ResponderAndPath("/ocsp", responder);
+    }
+
+    @Override
+    public OcspRespWithCacheInfo answer(Responder responder, byte[] request, boolean viaGet) {
+      answeredBy.set(Thread.currentThread().getName());
+      return new OcspRespWithCacheInfo(reverse(request), null);
+    }
+
+    @Override
+    public HealthCheckResult healthCheck(Responder responder) {
+      return new HealthCheckResult();
+    }
+
+    @Override
+    public void close() {
+    }
+
+  } // class DummyOcspServer
+
+}
@@ -101,6 +101,7 @@ public class P11ProxyResponder {
     actions.add(P11ProxyConstants.ACTION_REMOVE_IDENTITY);
     actions.add(P11ProxyConstants.ACTION_REMOVE_OBJECTS);
     actions.add(P11ProxyConstants.ACTION_SIGN);
+    actions.add(P11ProxyConstants.ACTION_SIGN_BATCH);
     actions.add(P11ProxyConstants.ACTION_UPDATE_CERT);
     actions.add(P11ProxyConstants.ACTION_DIGEST_SECRETKEY);
     actions.add(P11ProxyConstants.ACTION_IMPORT_SECRET_KEY);
@@ -405,27 +406,7 @@ public class P11ProxyResponder {
         case P11ProxyConstants.ACTION_SIGN: {
           ProxyMessage.SignTemplate signTemplate = ProxyMessage.SignTemplate.getInstance(content);
           long mechanism = signTemplate.getMechanism().getMechanism();
-          ProxyMessage.P11Params asn1Params = signTemplate.getMechanism().getParams();
-
-          P11Params params = null;
-
-          if (asn1Params != null) {
-            switch (asn1Params.getTagNo()) {
-              case ProxyMessage.P11Params.TAG_RSA_PKCS_PSS:
-                params = ProxyMessage.RSAPkcsPssParams.getInstance(asn1Params).getPkcsPssParams();
-                break;
-              case ProxyMessage.P11Params.TAG_OPAQUE:
-                params = new P11ByteArrayParams(
-                    ASN1OctetString.getInstance(asn1Params).getOctets());
-                break;
-              case ProxyMessage.P11Params.TAG_IV:
-                params = new P11IVParams(ASN1OctetString.getInstance(asn1Params).getOctets());
-                break;
-              default:
-                throw new BadAsn1ObjectException(
-                    "unknown SignTemplate.params: unknown tag " + asn1Params.getTagNo());
-            }
-          }
+          P11Params params = getP11Params(signTemplate.getMechanism().getParams());
 
           byte[] message = signTemplate.getMessage();
           P11Identity identity = p11CryptService.getIdentity(signTemplate.getSlotId().getValue(),
@@ -438,6 +419,22 @@ public class P11ProxyResponder {
           ASN1Object obj = new DEROctetString(signature);
           return getSuccessResp(version, transactionId, action, obj);
         }
+        case P11ProxyConstants.ACTION_SIGN_BATCH: {
+          ProxyMessage.SignBatchTemplate signTemplate =
+              ProxyMessage.SignBatchTemplate.getInstance(content);
+          long mechanism = signTemplate.getMechanism().getMechanism();
+          P11Params params = getP11Params(signTemplate.getMechanism().getParams());
+
+          P11Identity identity = p11CryptService.getIdentity(signTemplate.getSlotId().getValue(),
+              signTemplate.getObjectId().getValue());
+          if (identity == null) {
+            return getResp(version, transactionId, P11ProxyConstants.RC_UNKNOWN_ENTITY, action);
+          }
+
+          byte[][] signatures = identity.sign(mechanism, params, signTemplate.getMessages());
+          return getSuccessResp(version, transactionId, action,
+              new ProxyMessage.Signatures(signatures));
+        }
         case P11ProxyConstants.ACTION_UPDATE_CERT: {
           ProxyMessage.ObjectIdAndCert asn1 = ProxyMessage.ObjectIdAndCert.getInstance(content);
           P11Slot slot = getSlot(p11CryptService, asn1.getSlotId().getValue());
@@ -491,6 +488,25 @@ public class P11ProxyResponder {
     return slot;
   } // method getSlot
 
+  private static P11Params getP11Params(ProxyMessage.P11Params asn1Params)
+      throws BadAsn1ObjectException {
+    if (asn1Params == null) {
+      return null;
+    }
+
+    switch (asn1Params.getTagNo()) {
+      case ProxyMessage.P11Params.TAG_RSA_PKCS_PSS:
+        return ProxyMessage.RSAPkcsPssParams.getInstance(asn1Params).getPkcsPssParams();
+      case ProxyMessage.P11Params.TAG_OPAQUE:
+        return new P11ByteArrayParams(ASN1OctetString.getInstance(asn1Params).getOctets());
+      case ProxyMessage.P11Params.TAG_IV:
+        return new P11IVParams(ASN1OctetString.getInstance(asn1Params).getOctets());
+      default:
+        throw new BadAsn1ObjectException(
+            "unknown SignTemplate.params: unknown tag " + asn1Params.getTagNo());
+    }
+  } // method getP11Params
+
   private static byte[] getResp(short version, byte[] transactionId, short rc, short action) {
     byte[] resp = new byte[14];
     IoUtil.writeShort(version, resp, 0); // version
@@ -1880,6 +1880,157 @@ public abstract class ProxyMessage extends ASN1Object {
     }
   } // class SignTemplate
 
+  /**
+   * Definition of SignBatchTemplate.
+   *
+   * <pre>
+   * SignBatchTemplate ::= SEQUENCE {
+   *     slotId         SlotIdentifier,
+   *     objectId       ObjectIdentifier,
+   *     mechanism      Mechanism,
+   *     messages       SEQUENCE OF OCTET STRING }
+   * </pre>
+   */
+  public static class SignBatchTemplate extends ProxyMessage {
+
+    private final SlotIdentifier slotId;
+
+    private final ObjectIdentifier objectId;
+
+    private final Mechanism mechanism;
+
+    private final byte[][] messages;
+
+    private SignBatchTemplate(ASN1Sequence seq) throws BadAsn1ObjectException {
+      requireRange(seq, 4, 4);
+      int idx = 0;
+      this.slotId = SlotIdentifier.getInstance(seq.getObjectAt(idx++));
+      this.objectId = ObjectIdentifier.getInstance(seq.getObjectAt(idx++));
+      this.mechanism = Mechanism.getInstance(seq.getObjectAt(idx++));
+      this.messages = getOctetStrings(seq.getObjectAt(idx++));
+    }
+
+    public SignBatchTemplate(SlotIdentifier slotId, ObjectIdentifier objectId,
+        long mechanism, P11Params parameter, byte[][] messages) {
+      this.slotId = Args.notNull(slotId, "slotId");
+      this.objectId = Args.notNull(objectId, "objectId");
+      this.messages = Args.notNull(messages, "messages");
+      this.mechanism = new Mechanism(mechanism, parameter);
+    }
+
+    public static SignBatchTemplate getInstance(Object obj) throws BadAsn1ObjectException {
+      if (obj == null || obj instanceof SignBatchTemplate) {
+        return (SignBatchTemplate) obj;
+      }
+
+      try {
+        if (obj instanceof ASN1Sequence) {
+          return new SignBatchTemplate((ASN1Sequence) obj);
+        } else if (obj instanceof byte[]) {
+          return getInstance(ASN1Primitive.fromByteArray((byte[]) obj));
+        } else {
+          throw new BadAsn1ObjectException("unknown object: " + obj.getClass().getName());
+        }
+      } catch (IOException | IllegalArgumentException ex) {
+        throw new BadAsn1ObjectException("unable to parse encoded object: " + ex.getMessage(),
+            ex);
+      }
+    }
+
+    @Override
+    public ASN1Primitive toASN1Primitive() {
+      ASN1EncodableVector vector = new ASN1EncodableVector();
+      vector.add(slotId);
+      vector.add(objectId);
+      vector.add(mechanism);
+      vector.add(toOctetStrings(messages));
+      return new DERSequence(vector);
+    }
+
+    public byte[][] getMessages() {
+      return messages;
+    }
+
+    public SlotIdentifier getSlotId() {
+      return slotId;
+    }
+
+    public ObjectIdentifier getObjectId() {
+      return objectId;
+    }
+
+    public Mechanism getMechanism() {
+      return mechanism;
+    }
+  } // class SignBatchTemplate
+
+  /**
+   * Definition of Signatures.
+   *
+   * <pre>
+   * Signatures ::= SEQUENCE OF OCTET STRING
+   * </pre>
+   */
+  public static class Signatures extends ProxyMessage {
+
+    private final byte[][] signatures;
+
+    public Signatures(byte[][] signatures) {
+      this.signatures = Args.notNull(signatures, "signatures");
+    }
+
+    public static Signatures getInstance(Object obj) throws BadAsn1ObjectException {
+      if (obj == null || obj instanceof Signatures) {
+        return (Signatures) obj;
+      }
+
+      try {
+        if (obj instanceof ASN1Sequence) {
+          return new Signatures(getOctetStrings((ASN1Sequence) obj));
+        } else if (obj instanceof byte[]) {
+          return getInstance(ASN1Primitive.fromByteArray((byte[]) obj));
+        } else {
+          throw new BadAsn1ObjectException("unknown object: " + obj.getClass().getName());
+        }
+      } catch (IOException | IllegalArgumentException ex) {
+        throw new BadAsn1ObjectException("unable to parse encoded object: " + ex.getMessage(),
+            ex);
+      }
+    }
+
+    @Override
+    public ASN1Primitive toASN1Primitive() {
+      return toOctetStrings(signatures);
+    }
+
+    public byte[][] getSignatures() {
+      return signatures;
+    }
+  } // class Signatures
+
+  private static DERSequence toOctetStrings(byte[][] values) {
+    ASN1EncodableVector vector = new ASN1EncodableVector();
+    for (byte[] value : values) {
+      vector.add(new DEROctetString(value));
+    }
+    return new DERSequence(vector);
+  }
+
+  private static byte[][] getOctetStrings(ASN1Encodable object) throws BadAsn1ObjectException {
+    ASN1Sequence seq;
+    try {
+      seq = ASN1Sequence.getInstance(object);
+    } catch (IllegalArgumentException ex) {
+      throw new BadAsn1ObjectException("invalid object Sequence: " + ex.getMessage(), ex);
+    }
+
+    byte[][] values = new byte[seq.size()][];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = getOctetStringBytes(seq.getObjectAt(i));
+    }
+    return values;
+  }
+
   private static void requireRange(ASN1Sequence seq, int minSize, int maxSize)
       throws BadAsn1ObjectException {
     int size = seq.size();
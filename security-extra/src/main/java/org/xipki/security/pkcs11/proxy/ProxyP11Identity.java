@@ -21,6 +21,7 @@ import java.security.PublicKey;
 
 import org.bouncycastle.asn1.ASN1OctetString;
 import org.bouncycastle.asn1.DEROctetString;
+import org.xipki.security.BadAsn1ObjectException;
 import org.xipki.security.X509Cert;
 import org.xipki.security.pkcs11.P11Identity;
 import org.xipki.security.pkcs11.P11IdentityId;
@@ -55,25 +56,9 @@ class ProxyP11Identity extends P11Identity {
   @Override
   protected byte[] sign0(long mechanism, P11Params parameters, byte[] content)
       throws P11TokenException {
-    ProxyMessage.P11Params p11Param = null;
-    if (parameters != null) {
-      if (parameters instanceof P11RSAPkcsPssParams) {
-        p11Param = new ProxyMessage.P11Params(ProxyMessage.P11Params.TAG_RSA_PKCS_PSS,
-            new ProxyMessage.RSAPkcsPssParams((P11RSAPkcsPssParams) parameters));
-      } else if (parameters instanceof P11ByteArrayParams) {
-        byte[] bytes = ((P11ByteArrayParams) parameters).getBytes();
-        p11Param = new ProxyMessage.P11Params(ProxyMessage.P11Params.TAG_OPAQUE,
-            new DEROctetString(bytes));
-      } else if (parameters instanceof P11IVParams) {
-        p11Param = new ProxyMessage.P11Params(ProxyMessage.P11Params.TAG_IV,
-            new DEROctetString(((P11IVParams) parameters).getIV()));
-      } else {
-        throw new IllegalArgumentException("unkown parameter 'parameters'");
-      }
-    }
-
     ProxyMessage.SignTemplate signTemplate = new ProxyMessage.SignTemplate(
-        ((ProxyP11Slot) slot).getAsn1SlotId(), asn1KeyId, mechanism, p11Param, content);
+        ((ProxyP11Slot) slot).getAsn1SlotId(), asn1KeyId, mechanism, toAsn1Params(parameters),
+        content);
     byte[] result = ((ProxyP11Slot) slot).getModule().send(P11ProxyConstants.ACTION_SIGN,
         signTemplate);
 
@@ -87,6 +72,67 @@ class ProxyP11Identity extends P11Identity {
     return (octetString == null) ? null : octetString.getOctets();
   } // method sign0
 
+  @Override
+  protected byte[][] sign0(long mechanism, P11Params parameters, byte[][] contents)
+      throws P11TokenException {
+    ProxyP11Module module = ((ProxyP11Slot) slot).getModule();
+    if (contents.length < 2 || !module.isSignBatchSupported()) {
+      return super.sign0(mechanism, parameters, contents);
+    }
+
+    ProxyMessage.SignBatchTemplate signTemplate = new ProxyMessage.SignBatchTemplate(
+        ((ProxyP11Slot) slot).getAsn1SlotId(), asn1KeyId, mechanism, toAsn1Params(parameters),
+        contents);
+
+    byte[] result;
+    try {
+      result = module.send(P11ProxyConstants.ACTION_SIGN_BATCH, signTemplate);
+    } catch (P11TokenException ex) {
+      if (!module.isSignBatchSupported()) {
+        // server of older version
+        return super.sign0(mechanism, parameters, contents);
+      }
+      throw ex;
+    }
+
+    if (result == null) {
+      throw new P11TokenException("server returned no signatures");
+    }
+
+    byte[][] signatures;
+    try {
+      signatures = ProxyMessage.Signatures.getInstance(result).getSignatures();
+    } catch (BadAsn1ObjectException ex) {
+      throw new P11TokenException("the returned result is not Signatures");
+    }
+
+    if (signatures.length != contents.length) {
+      throw new P11TokenException("number of signatures (" + signatures.length
+          + ") != number of contents (" + contents.length + ")");
+    }
+    return signatures;
+  } // method sign0
+
+  private static ProxyMessage.P11Params toAsn1Params(P11Params parameters) {
+    if (parameters == null) {
+      return null;
+    }
+
+    if (parameters instanceof P11RSAPkcsPssParams) {
+      return new ProxyMessage.P11Params(ProxyMessage.P11Params.TAG_RSA_PKCS_PSS,
+          new ProxyMessage.RSAPkcsPssParams((P11RSAPkcsPssParams) parameters));
+    } else if (parameters instanceof P11ByteArrayParams) {
+      byte[] bytes = ((P11ByteArrayParams) parameters).getBytes();
+      return new ProxyMessage.P11Params(ProxyMessage.P11Params.TAG_OPAQUE,
+          new DEROctetString(bytes));
+    } else if (parameters instanceof P11IVParams) {
+      return new ProxyMessage.P11Params(ProxyMessage.P11Params.TAG_IV,
+          new DEROctetString(((P11IVParams) parameters).getIV()));
+    } else {
+      throw new IllegalArgumentException("unkown parameter 'parameters'");
+    }
+  } // method toAsn1Params
+
   @Override
   protected byte[] digestSecretKey0(long mechanism) throws P11TokenException {
     ProxyMessage.DigestSecretKeyTemplate template =
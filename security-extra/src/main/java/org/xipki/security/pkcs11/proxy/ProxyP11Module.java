@@ -107,6 +107,9 @@ public class ProxyP11Module extends P11Module {
 
   private HostnameVerifier hostnameVerifier;
 
+  // set to false once the server answers ACTION_SIGN_BATCH with RC_UNSUPPORTED_ACTION.
+  private volatile boolean signBatchSupported = true;
+
   private ProxyP11Module(P11ModuleConf moduleConf) throws P11TokenException {
     super(moduleConf);
 
@@ -198,6 +201,10 @@ public class ProxyP11Module extends P11Module {
     return readOnly || super.isReadOnly();
   }
 
+  boolean isSignBatchSupported() {
+    return signBatchSupported;
+  }
+
   public void refresh() throws P11TokenException {
     byte[] resp = send(P11ProxyConstants.ACTION_GET_SERVER_CAPS, null);
 
@@ -431,6 +438,11 @@ public class ProxyP11Module extends P11Module {
     // RC
     short rc = IoUtil.parseShort(response, 10);
     if (rc != 0) {
+      if (rc == P11ProxyConstants.RC_UNSUPPORTED_ACTION
+          && action == P11ProxyConstants.ACTION_SIGN_BATCH) {
+        LOG.info("server does not support ACTION_SIGN_BATCH, fall back to ACTION_SIGN");
+        signBatchSupported = false;
+      }
       throw new P11TokenException("server returned RC " + P11ProxyConstants.getReturnCodeName(rc));
     }
 
@@ -0,0 +1,315 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.crypto.RuntimeCryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+/**
+ * Micro-batching signing service. The messages of concurrent callers are collected for
+ * up to a configured delay or until the maximal batch size is reached, and are then signed
+ * together via {@link ConcurrentContentSigner#sign(byte[][])}. For PKCS#11 signers, all
+ * messages of one batch are signed within one session, or with one round trip to the
+ * PKCS#11 proxy.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class BatchSigner implements AutoCloseable {
+
+  private static class Request {
+
+    private final byte[] data;
+
+    private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+    Request(byte[] data) {
+      this.data = data;
+    }
+
+  } // class Request
+
+  private class BatchContentSigner implements XiContentSigner {
+
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    @Override
+    public AlgorithmIdentifier getAlgorithmIdentifier() {
+      return algorithmIdentifier;
+    }
+
+    @Override
+    public byte[] getEncodedAlgorithmIdentifier() {
+      return encodedAlgorithmIdentifier.clone();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      outputStream.reset();
+      return outputStream;
+    }
+
+    @Override
+    public byte[] getSignature() {
+      try {
+        return BatchSigner.this.sign(outputStream.toByteArray());
+      } catch (NoIdleSignerException | SignatureException ex) {
+        throw new RuntimeCryptoException(ex.getClass().getName() + ": " + ex.getMessage());
+      } finally {
+        outputStream.reset();
+      }
+    }
+
+  } // class BatchContentSigner
+
+  private static final Logger LOG = LoggerFactory.getLogger(BatchSigner.class);
+
+  private static final AtomicInteger INDEX = new AtomicInteger(1);
+
+  private final ConcurrentContentSigner signer;
+
+  private final int maxBatchSize;
+
+  private final long maxDelayNanos;
+
+  private final long timeout;
+
+  private final AlgorithmIdentifier algorithmIdentifier;
+
+  private final byte[] encodedAlgorithmIdentifier;
+
+  private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+  private final ExecutorService executor;
+
+  private final Thread collector;
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param signer
+   *          The underlying signer.
+   * @param parallelism
+   *          Maximal number of batches signed concurrently.
+   * @param maxBatchSize
+   *          Maximal number of messages in one batch.
+   * @param maxDelay
+   *          Maximal time in milliseconds to wait for further messages.
+   * @param timeout
+   *          Maximal time in milliseconds to wait for the signature.
+   * @throws NoIdleSignerException
+   *           If no idle signer is available to determine the algorithm identifier.
+   */
+  public BatchSigner(ConcurrentContentSigner signer, int parallelism, int maxBatchSize,
+      int maxDelay, long timeout) throws NoIdleSignerException {
+    this.signer = Args.notNull(signer, "signer");
+    Args.positive(parallelism, "parallelism");
+    this.maxBatchSize = Args.positive(maxBatchSize, "maxBatchSize");
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Args.notNegative(maxDelay, "maxDelay"));
+    this.timeout = Args.positive(timeout, "timeout");
+
+    ConcurrentBagEntrySigner signer0 = signer.borrowSigner();
+    try {
+      this.algorithmIdentifier = signer0.value().getAlgorithmIdentifier();
+      this.encodedAlgorithmIdentifier = signer0.value().getEncodedAlgorithmIdentifier();
+    } finally {
+      signer.requiteSigner(signer0);
+    }
+
+    String name = "batch-signer-" + INDEX.getAndIncrement();
+    AtomicInteger threadIndex = new AtomicInteger(1);
+    this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread thread = new Thread(r, name + "-" + threadIndex.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+
+    this.collector = new Thread(this::collect, name);
+    this.collector.setDaemon(true);
+    this.collector.start();
+  } // constructor
+
+  public byte[] getEncodedAlgorithmIdentifier() {
+    return encodedAlgorithmIdentifier.clone();
+  }
+
+  /**
+   * Signs the message asynchronously.
+   *
+   * @param data
+   *          The message to be signed.
+   * @return the future of the signature.
+   */
+  public CompletableFuture<byte[]> signAsync(byte[] data) {
+    Args.notNull(data, "data");
+    Request request = new Request(data);
+    if (closed) {
+      request.future.completeExceptionally(new SignatureException("BatchSigner is closed"));
+    } else {
+      queue.add(request);
+    }
+    return request.future;
+  }
+
+  /**
+   * Signs the message and waits for the signature.
+   *
+   * @param data
+   *          The message to be signed.
+   * @return the signature.
+   * @throws NoIdleSignerException
+   *           If the signature could not be computed within the timeout.
+   * @throws SignatureException
+   *           If the message could not be signed.
+   */
+  public byte[] sign(byte[] data) throws NoIdleSignerException, SignatureException {
+    CompletableFuture<byte[]> future = signAsync(data);
+    try {
+      return future.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException ex) {
+      future.cancel(false);
+      throw new NoIdleSignerException("no signature within " + timeout + " ms");
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new SignatureException("interrupted", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof NoIdleSignerException) {
+        throw (NoIdleSignerException) cause;
+      } else if (cause instanceof SignatureException) {
+        throw (SignatureException) cause;
+      } else {
+        throw new SignatureException(cause.getMessage(), cause);
+      }
+    }
+  } // method sign
+
+  /**
+   * Returns a new {@link XiContentSigner}, whose signatures are computed by this
+   * {@link BatchSigner}. The returned signer is not thread-safe.
+   *
+   * @return the new content signer.
+   */
+  public XiContentSigner newContentSigner() {
+    return new BatchContentSigner();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    collector.interrupt();
+    executor.shutdown();
+
+    Request request;
+    while ((request = queue.poll()) != null) {
+      request.future.completeExceptionally(new SignatureException("BatchSigner is closed"));
+    }
+  } // method close
+
+  private void collect() {
+    while (!closed) {
+      List<Request> batch = new ArrayList<>(maxBatchSize);
+      try {
+        batch.add(queue.take());
+
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= maxBatchSize || remaining <= 0) {
+            break;
+          }
+
+          Request request = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (request == null) {
+            break;
+          }
+          batch.add(request);
+        }
+      } catch (InterruptedException ex) {
+        // closed, the collected requests will be processed below.
+      }
+
+      if (!batch.isEmpty()) {
+        try {
+          executor.execute(() -> signBatch(batch));
+        } catch (RuntimeException ex) {
+          // executor has been shutdown
+          fail(batch, new SignatureException("BatchSigner is closed"));
+        }
+      }
+    }
+  } // method collect
+
+  private void signBatch(List<Request> batch) {
+    // requests whose callers have timed out are not signed.
+    batch.removeIf(r -> r.future.isDone());
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    final int n = batch.size();
+    byte[][] data = new byte[n][];
+    for (int i = 0; i < n; i++) {
+      data[i] = batch.get(i).data;
+    }
+
+    byte[][] signatures;
+    try {
+      signatures = signer.sign(data);
+    } catch (Exception ex) {
+      LogUtil.warn(LOG, ex, "could not sign batch of " + n + " messages");
+      fail(batch, ex);
+      return;
+    }
+
+    for (int i = 0; i < n; i++) {
+      batch.get(i).future.complete(signatures[i]);
+    }
+  } // method signBatch
+
+  private static void fail(List<Request> batch, Exception ex) {
+    for (Request request : batch) {
+      request.future.completeExceptionally(ex);
+    }
+  }
+
+}
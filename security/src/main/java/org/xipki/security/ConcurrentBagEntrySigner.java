@@ -28,8 +28,30 @@ import org.xipki.util.concurrent.ConcurrentBagEntry;
 
 public class ConcurrentBagEntrySigner extends ConcurrentBagEntry<XiContentSigner> {
 
+  // System.nanoTime() of the last borrow, accessed only by the borrowing thread.
+  private long borrowTime;
+
+  // System.currentTimeMillis() of the last requite.
+  private volatile long lastAccessTime = System.currentTimeMillis();
+
   public ConcurrentBagEntrySigner(XiContentSigner value) {
     super(value);
   }
 
+  long getBorrowTime() {
+    return borrowTime;
+  }
+
+  void setBorrowTime(long borrowTime) {
+    this.borrowTime = borrowTime;
+  }
+
+  long getLastAccessTime() {
+    return lastAccessTime;
+  }
+
+  void setLastAccessTime(long lastAccessTime) {
+    this.lastAccessTime = lastAccessTime;
+  }
+
 }
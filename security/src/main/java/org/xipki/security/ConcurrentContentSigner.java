@@ -129,6 +129,15 @@ public interface ConcurrentContentSigner extends Closeable {
 
   void requiteSigner(ConcurrentBagEntrySigner signer);
 
+  /**
+   * Returns the micro-batching signing service, which signs the messages of concurrent
+   * callers together.
+   * @return the batch signer, or {@code null} if batch signing is not activated.
+   */
+  default BatchSigner getBatchSigner() {
+    return null;
+  }
+
   boolean isHealthy();
 
 }
@@ -25,6 +25,8 @@ import java.security.PublicKey;
 import java.security.SignatureException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -41,19 +43,51 @@ import org.xipki.util.concurrent.ConcurrentBag;
 /**
  * An implementation of {@link ConcurrentContentSigner}.
  *
+ * <p>The signers are held in a pool, whose usage is recorded in {@link SignerPoolMetrics}.
+ * If {@link #setElastic(SignerFactory, int, long)} is called, the pool grows up to the
+ * given maximal size if a thread has to wait for an idle signer, and shrinks to the
+ * initial size if signers are idle for a while.
+ *
  * @author Lijun Liao
  * @since 2.0.0
  */
 
 public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
 
+  /**
+   * Factory to create further {@link XiContentSigner}s in the elastic mode.
+   */
+  public interface SignerFactory {
+
+    XiContentSigner newSigner() throws XiSecurityException;
+
+  } // interface SignerFactory
+
   private static final Logger LOG = LoggerFactory.getLogger(DfltConcurrentContentSigner.class);
 
   private static final AtomicInteger NAME_INDEX = new AtomicInteger(1);
 
   private static int defaultSignServiceTimeout = 10000; // 10 seconds
 
-  private final ConcurrentBag<ConcurrentBagEntrySigner> signers = new ConcurrentBag<>();
+  private static ScheduledThreadPoolExecutor poolMaintainer;
+
+  private final ConcurrentBag<ConcurrentBagEntrySigner> signers;
+
+  private final SignerPoolMetrics metrics;
+
+  private final int minSigners;
+
+  private final AtomicInteger pendingSigners = new AtomicInteger();
+
+  private volatile SignerFactory signerFactory;
+
+  private volatile int maxSigners;
+
+  private volatile long idleTimeout;
+
+  private ScheduledFuture<?> shrinkTask;
+
+  private volatile BatchSigner batchSigner;
 
   private final String name;
 
@@ -101,6 +135,9 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
     this.algorithmName = AlgorithmUtil.getSigOrMacAlgoName(algorithmIdentifier);
     this.algorithmCode = AlgorithmUtil.getSigOrMacAlgoCode(algorithmIdentifier);
 
+    this.signers = new ConcurrentBag<>(this::addSignerIfRequired);
+    this.metrics = new SignerPoolMetrics(this.signers);
+    this.minSigners = signers.size();
     for (XiContentSigner signer : signers) {
       this.signers.add(new ConcurrentBagEntrySigner(signer));
     }
@@ -109,6 +146,64 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
     this.name = "defaultSigner-" + NAME_INDEX.getAndIncrement();
   }
 
+  /**
+   * Activates the elastic mode.
+   *
+   * @param signerFactory
+   *          Factory to create further signers.
+   * @param maxSigners
+   *          Maximal number of signers, not less than the initial number of signers.
+   * @param idleTimeout
+   *          Time in milliseconds after which idle signers above the initial number of
+   *          signers are removed.
+   */
+  public synchronized void setElastic(SignerFactory signerFactory, int maxSigners,
+      long idleTimeout) {
+    Args.notNull(signerFactory, "signerFactory");
+    this.maxSigners = Args.min(maxSigners, "maxSigners", minSigners);
+    this.idleTimeout = Args.positive(idleTimeout, "idleTimeout");
+
+    if (shrinkTask != null) {
+      shrinkTask.cancel(false);
+    }
+
+    this.signerFactory = signerFactory;
+    if (maxSigners > minSigners) {
+      long period = Math.min(60000, Math.max(1000, idleTimeout / 2));
+      shrinkTask = getPoolMaintainer().scheduleWithFixedDelay(this::removeIdleSigners,
+          period, period, TimeUnit.MILLISECONDS);
+    }
+  } // method setElastic
+
+  /**
+   * Activates the micro-batching signing service.
+   *
+   * @param maxBatchSize
+   *          Maximal number of messages signed together.
+   * @param maxDelay
+   *          Maximal time in milliseconds to wait for further messages.
+   * @throws NoIdleSignerException
+   *           If no idle signer is available.
+   * @see BatchSigner
+   */
+  public synchronized void setBatchSigning(int maxBatchSize, int maxDelay)
+      throws NoIdleSignerException {
+    if (batchSigner != null) {
+      batchSigner.close();
+    }
+    batchSigner = new BatchSigner(this, minSigners, maxBatchSize, maxDelay,
+        defaultSignServiceTimeout == 0 ? Long.MAX_VALUE : defaultSignServiceTimeout);
+  }
+
+  @Override
+  public BatchSigner getBatchSigner() {
+    return batchSigner;
+  }
+
+  public SignerPoolMetrics getMetrics() {
+    return metrics;
+  }
+
   @Override
   public String getName() {
     return name;
@@ -151,24 +246,94 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
    */
   @Override
   public ConcurrentBagEntrySigner borrowSigner(int soTimeout) throws NoIdleSignerException {
+    long start = System.nanoTime();
     ConcurrentBagEntrySigner signer = null;
     try {
       signer = signers.borrow(soTimeout, TimeUnit.MILLISECONDS);
     } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
     }
 
+    long now = System.nanoTime();
+    metrics.recordBorrow(now - start, signer == null);
     if (signer == null) {
-      throw new NoIdleSignerException("no idle signer available");
+      throw new NoIdleSignerException("no idle signer available (" + name + ": size="
+          + metrics.getSize() + ", inUse=" + metrics.getInUse() + ", mean hold time="
+          + metrics.getHoldTime().getMean() + "us)");
     }
 
+    signer.setBorrowTime(now);
     return signer;
-  }
+  } // method borrowSigner
 
   @Override
   public void requiteSigner(ConcurrentBagEntrySigner signer) {
+    metrics.recordHold(System.nanoTime() - signer.getBorrowTime());
+    signer.setLastAccessTime(System.currentTimeMillis());
     signers.requite(signer);
   }
 
+  // called by the ConcurrentBag if a thread has to wait for an idle signer.
+  private void addSignerIfRequired(int waiting) {
+    if (signerFactory == null) {
+      return;
+    }
+
+    while (true) {
+      int pending = pendingSigners.get();
+      if (pending >= waiting || signers.size() + pending >= maxSigners) {
+        return;
+      }
+
+      if (pendingSigners.compareAndSet(pending, pending + 1)) {
+        break;
+      }
+    }
+
+    // The signer must be added asynchronously, since ConcurrentBag.add() spins until
+    // a waiting thread takes it.
+    getPoolMaintainer().execute(() -> {
+      try {
+        signers.add(new ConcurrentBagEntrySigner(signerFactory.newSigner()));
+        metrics.recordGrown();
+        LOG.info("added signer to {}, size={}", name, signers.size());
+      } catch (Exception ex) {
+        LogUtil.error(LOG, ex, "could not add signer to " + name);
+      } finally {
+        pendingSigners.decrementAndGet();
+      }
+    });
+  } // method addSignerIfRequired
+
+  private void removeIdleSigners() {
+    long minLastAccessTime = System.currentTimeMillis() - idleTimeout;
+    for (ConcurrentBagEntrySigner signer
+        : signers.values(ConcurrentBag.IConcurrentBagEntry.STATE_NOT_IN_USE)) {
+      if (signers.size() <= minSigners) {
+        break;
+      }
+
+      if (signer.getLastAccessTime() < minLastAccessTime && signers.reserve(signer)) {
+        if (signers.remove(signer)) {
+          metrics.recordShrunk();
+          LOG.info("removed idle signer from {}, size={}", name, signers.size());
+        }
+      }
+    }
+  } // method removeIdleSigners
+
+  private static synchronized ScheduledThreadPoolExecutor getPoolMaintainer() {
+    if (poolMaintainer == null) {
+      AtomicInteger index = new AtomicInteger(1);
+      poolMaintainer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "signer-pool-maintainer-" + index.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+      poolMaintainer.setRemoveOnCancelPolicy(true);
+    }
+    return poolMaintainer;
+  } // method getPoolMaintainer
+
   @Override
   public void initialize(String conf, PasswordResolver passwordResolver)
       throws XiSecurityException {
@@ -235,7 +400,17 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
   }
 
   @Override
-  public void close() {
+  public synchronized void close() {
+    if (shrinkTask != null) {
+      shrinkTask.cancel(false);
+      shrinkTask = null;
+    }
+    signerFactory = null;
+    if (batchSigner != null) {
+      batchSigner.close();
+      batchSigner = null;
+    }
+    LOG.info("signer pool metrics of {}: {}", name, metrics);
   }
 
   @Override
@@ -257,27 +432,12 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
 
   @Override
   public byte[][] sign(byte[][] data) throws NoIdleSignerException, SignatureException {
-    byte[][] signatures = new byte[data.length][];
     ConcurrentBagEntrySigner signer = borrowSigner();
-
     try {
-      XiContentSigner xiSigner = signer.value();
-
-      for (int i = 0; i < data.length; i++) {
-        OutputStream signatureStream = xiSigner.getOutputStream();
-        try {
-          signatureStream.write(data[i]);
-        } catch (IOException ex) {
-          throw new SignatureException(
-              "could not write data to SignatureStream: " + ex.getMessage(), ex);
-        }
-        signatures[i] = xiSigner.getSignature();
-      }
+      return signer.value().sign(data);
     } finally {
       requiteSigner(signer);
     }
-
-    return signatures;
   } // method sign
 
 }
@@ -0,0 +1,216 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xipki.util.concurrent.ConcurrentBag;
+import org.xipki.util.concurrent.ConcurrentBag.IConcurrentBagEntry;
+
+/**
+ * Metrics of the signer pool of a {@link DfltConcurrentContentSigner}.
+ *
+ * <p>A long borrow wait time together with a short hold time indicates that the pool is
+ * too small, while a long hold time indicates slow signing operations (e.g. in the HSM).
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class SignerPoolMetrics {
+
+  /**
+   * Lock-free histogram of durations. Bucket i counts the durations in
+   * [2<sup>i-1</sup>, 2<sup>i</sup>) micro-seconds, the last bucket counts all longer
+   * durations.
+   */
+  public static class Histogram {
+
+    private static final int NUM_BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    private Histogram() {
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    void record(long nanos) {
+      long micros = Math.max(0, nanos / 1000);
+      int index = Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+      buckets[index].increment();
+      sum.add(micros);
+
+      long oldMax;
+      while (micros > (oldMax = max.get())) {
+        if (max.compareAndSet(oldMax, micros)) {
+          break;
+        }
+      }
+    } // method record
+
+    public long getCount() {
+      long count = 0;
+      for (LongAdder bucket : buckets) {
+        count += bucket.sum();
+      }
+      return count;
+    }
+
+    /**
+     * Returns the mean duration in micro-seconds.
+     * @return the mean duration in micro-seconds, 0 if nothing has been recorded.
+     */
+    public long getMean() {
+      long count = getCount();
+      return count == 0 ? 0 : sum.sum() / count;
+    }
+
+    /**
+     * Returns the maximal duration in micro-seconds.
+     * @return the maximal duration in micro-seconds.
+     */
+    public long getMax() {
+      return max.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile.
+     * @param percentile percentile, between 0 and 100.
+     * @return the upper bound in micro-seconds.
+     */
+    public long getPercentile(double percentile) {
+      long[] counts = new long[NUM_BUCKETS];
+      long count = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        counts[i] = buckets[i].sum();
+        count += counts[i];
+      }
+
+      if (count == 0) {
+        return 0;
+      }
+
+      long threshold = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+      long accumulated = 0;
+      for (int i = 0; i < NUM_BUCKETS - 1; i++) {
+        accumulated += counts[i];
+        if (accumulated >= threshold) {
+          return Math.min(1L << i, getMax());
+        }
+      }
+      return getMax();
+    } // method getPercentile
+
+    @Override
+    public String toString() {
+      return "count=" + getCount() + ", mean=" + getMean() + "us, p50=" + getPercentile(50)
+          + "us, p99=" + getPercentile(99) + "us, max=" + getMax() + "us";
+    }
+
+  } // class Histogram
+
+  private final ConcurrentBag<? extends IConcurrentBagEntry> signers;
+
+  private final Histogram borrowWaitTime = new Histogram();
+
+  private final Histogram holdTime = new Histogram();
+
+  private final LongAdder timeouts = new LongAdder();
+
+  private final LongAdder grown = new LongAdder();
+
+  private final LongAdder shrunk = new LongAdder();
+
+  SignerPoolMetrics(ConcurrentBag<? extends IConcurrentBagEntry> signers) {
+    this.signers = signers;
+  }
+
+  /**
+   * Returns the histogram of the time waiting for an idle signer.
+   * @return the histogram of the borrow wait time.
+   */
+  public Histogram getBorrowWaitTime() {
+    return borrowWaitTime;
+  }
+
+  /**
+   * Returns the histogram of the time between borrowing and returning a signer.
+   * @return the histogram of the hold time.
+   */
+  public Histogram getHoldTime() {
+    return holdTime;
+  }
+
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  public long getGrown() {
+    return grown.sum();
+  }
+
+  public long getShrunk() {
+    return shrunk.sum();
+  }
+
+  public int getSize() {
+    return signers.size();
+  }
+
+  public int getInUse() {
+    return signers.getCount(IConcurrentBagEntry.STATE_IN_USE);
+  }
+
+  public int getWaiting() {
+    return signers.getWaitingThreadCount();
+  }
+
+  void recordBorrow(long waitNanos, boolean timeout) {
+    borrowWaitTime.record(waitNanos);
+    if (timeout) {
+      timeouts.increment();
+    }
+  }
+
+  void recordHold(long holdNanos) {
+    holdTime.record(holdNanos);
+  }
+
+  void recordGrown() {
+    grown.increment();
+  }
+
+  void recordShrunk() {
+    shrunk.increment();
+  }
+
+  @Override
+  public String toString() {
+    return "size=" + getSize() + ", inUse=" + getInUse() + ", waiting=" + getWaiting()
+        + ", timeouts=" + getTimeouts() + ", grown=" + getGrown() + ", shrunk=" + getShrunk()
+        + ", borrowWait={" + borrowWaitTime + "}, hold={" + holdTime + "}";
+  }
+
+}
@@ -17,6 +17,10 @@
 
 package org.xipki.security;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SignatureException;
+
 import org.bouncycastle.operator.ContentSigner;
 
 /**
@@ -34,4 +38,29 @@ public interface XiContentSigner extends ContentSigner {
    */
   byte[] getEncodedAlgorithmIdentifier();
 
+  /**
+   * Signs several messages. Implementations may sign all messages in one operation, e.g.
+   * in one round trip to the HSM.
+   *
+   * @param data
+   *          Messages to be signed.
+   * @return the signatures, in the same order as the messages.
+   * @throws SignatureException
+   *           If the messages could not be signed.
+   */
+  default byte[][] sign(byte[][] data) throws SignatureException {
+    byte[][] signatures = new byte[data.length][];
+    for (int i = 0; i < data.length; i++) {
+      OutputStream signatureStream = getOutputStream();
+      try {
+        signatureStream.write(data[i]);
+      } catch (IOException ex) {
+        throw new SignatureException(
+            "could not write data to SignatureStream: " + ex.getMessage(), ex);
+      }
+      signatures[i] = getSignature();
+    }
+    return signatures;
+  } // method sign
+
 }
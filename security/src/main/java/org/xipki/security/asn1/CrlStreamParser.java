@@ -25,22 +25,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.security.InvalidKeyException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
-import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1Integer;
-import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.BERTags;
 import org.bouncycastle.asn1.DERBitString;
-import org.bouncycastle.asn1.DERGeneralizedTime;
-import org.bouncycastle.asn1.DERUTCTime;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
-import org.bouncycastle.asn1.x509.CRLReason;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.asn1.x509.GeneralNames;
@@ -118,18 +120,12 @@ public class CrlStreamParser extends Asn1StreamParser {
 
     private final X500Name certificateIssuer;
 
-    private RevokedCert(BigInteger serialNumber, Date revocationDate, int reason,
-        Date invalidityDate, X500Name certificateIssuer) {
+    private RevokedCert(BigInteger serialNumber, long revocationDate, int reason,
+        long invalidityDate, X500Name certificateIssuer) {
       this.serialNumber = serialNumber;
-      this.revocationDate = revocationDate.getTime() / 1000;
+      this.revocationDate = revocationDate;
       this.reason = reason;
-      if (invalidityDate == null) {
-        this.invalidityDate = 0;
-      } else {
-        this.invalidityDate =
-            revocationDate.equals(invalidityDate) ? 0 : invalidityDate.getTime() / 1000;
-      }
-
+      this.invalidityDate = (revocationDate == invalidityDate) ? 0 : invalidityDate;
       this.certificateIssuer = certificateIssuer;
     }
 
@@ -155,18 +151,48 @@ public class CrlStreamParser extends Asn1StreamParser {
 
   } // class RevokedCert
 
+  /**
+   * Iterator of the revoked certificates. The entries are decoded directly from the DER bytes,
+   * without building the BouncyCastle object trees, from a memory-mapped view of the CRL file,
+   * or from a stream into one reused buffer.
+   */
   public class RevokedCertsIterator implements Iterator<RevokedCert>, Closeable {
 
+    // null in the memory-mapped mode
     private BufferedInputStream instream;
 
+    // memory-mapped mode: the mapped revokedCertificates, otherwise the current entry.
+    private ByteBuffer buffer;
+
+    // position in the buffer
+    private int pos;
+
+    private final MyInt lenBytesSize = new MyInt();
+
     private RevokedCert next;
 
     private int offset;
 
-    private RevokedCertsIterator() throws IOException {
-      this.instream = new BufferedInputStream(new FileInputStream(crlFile));
-      skip(this.instream, firstRevokedCertificateOffset);
-      this.offset = firstRevokedCertificateOffset;
+    // end index (exclusive)
+    private final int endOffset;
+
+    private RevokedCertsIterator(int fromOffset, int endOffset) throws IOException {
+      this.offset = fromOffset;
+      this.endOffset = endOffset;
+
+      if (memoryMapped) {
+        if (fromOffset < endOffset) {
+          try (FileChannel channel = FileChannel.open(crlFile.toPath(),
+              StandardOpenOption.READ)) {
+            this.buffer = channel.map(MapMode.READ_ONLY, fromOffset, endOffset - fromOffset);
+          }
+        }
+      } else {
+        this.instream = new BufferedInputStream(new FileInputStream(crlFile));
+        skip(this.instream, fromOffset);
+        this.buffer = ByteBuffer.allocate(256);
+      }
+
       next0();
     }
 
@@ -187,69 +213,248 @@ public class CrlStreamParser extends Asn1StreamParser {
     }
 
     private void next0() {
-      if (offset >= revokedCertificatesEndIndex) {
+      if (offset >= endOffset) {
         next = null;
         return;
       }
 
-      byte[] bytes;
-      try {
-        bytes = readBlock(TAG_CONSTRUCTED_SEQUENCE, instream, "revokedCertificate");
-      } catch (IOException ex) {
-        throw new IllegalStateException("error reading next revokedCertificate", ex);
+      // the revokedCertificate is located in [pos, entryEnd) of the buffer
+      int entryEnd;
+      if (instream == null) {
+        int entryStart = pos;
+        assertTag(TAG_CONSTRUCTED_SEQUENCE, decodeTag(), "revokedCertificate");
+        int length = decodeLength(buffer.limit());
+        entryEnd = pos + length;
+        offset += entryEnd - entryStart;
+      } else {
+        try {
+          int tag = instream.read();
+          assertTag(TAG_CONSTRUCTED_SEQUENCE, tag, "revokedCertificate");
+
+          int length = readLength(lenBytesSize, instream);
+          if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, 2 * buffer.capacity()));
+          }
+
+          byte[] array = buffer.array();
+          int read = 0;
+          while (read < length) {
+            int count = instream.read(array, read, length - read);
+            if (count == -1) {
+              throw new IOException("unexpected end of the CRL");
+            }
+            read += count;
+          }
+
+          offset += 1 + lenBytesSize.get() + length;
+          pos = 0;
+          entryEnd = length;
+        } catch (IOException ex) {
+          throw new IllegalStateException("error reading next revokedCertificate", ex);
+        }
       }
-      offset += bytes.length;
 
-      /*
-       * SEQUENCE  {
-       *   userCertificate         CertificateSerialNumber,
-       *   revocationDate          Time,
-       *   crlEntryExtensions      Extensions OPTIONAL
-       *                           -- if present, shall be v2
-       * }
-       */
-      ASN1Sequence revCert = ASN1Sequence.getInstance(bytes);
-      BigInteger serialNumber = ASN1Integer.getInstance(revCert.getObjectAt(0)).getValue();
-      Date revocationDate = readTime(revCert.getObjectAt(1));
-      Date invalidityDate = null;
+      next = decodeRevokedCert(entryEnd);
+    } // method next0
+
+    /*
+     * SEQUENCE  {
+     *   userCertificate         CertificateSerialNumber,
+     *   revocationDate          Time,
+     *   crlEntryExtensions      Extensions OPTIONAL
+     *                           -- if present, shall be v2
+     * }
+     */
+    private RevokedCert decodeRevokedCert(int entryEnd) {
+      // userCertificate
+      assertTag(BERTags.INTEGER, decodeTag(), "userCertificate");
+      int length = decodeLength(entryEnd);
+      byte[] serialBytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        serialBytes[i] = buffer.get(pos++);
+      }
+      BigInteger serialNumber = new BigInteger(serialBytes);
+
+      // revocationDate
+      long revocationDate = readTimeInSeconds(entryEnd, "revocationDate");
+      long invalidityDate = 0;
       int reason = 0;
       X500Name certificateIssuer = null;
 
-      if (revCert.size() > 2) {
-        Extensions extns = Extensions.getInstance(revCert.getObjectAt(2));
-        byte[] coreExtValue = X509Util.getCoreExtValue(extns, Extension.certificateIssuer);
-        if (coreExtValue != null) {
-          certificateIssuer = X500Name.getInstance(
-                                GeneralNames.getInstance(coreExtValue).getNames()[0].getName());
-        }
-
-        coreExtValue = X509Util.getCoreExtValue(extns, Extension.invalidityDate);
-        if (coreExtValue != null) {
-          int tag = coreExtValue[0] & 0xFF;;
-          try {
-            if (tag == BERTags.UTC_TIME) {
-              invalidityDate = DERUTCTime.getInstance(coreExtValue).getDate();
-            } else if (tag == BERTags.GENERALIZED_TIME) {
-              invalidityDate = DERGeneralizedTime.getInstance(coreExtValue).getDate();
-            } else {
-              throw new IllegalArgumentException("invalid tag " + tag);
+      if (pos < entryEnd) {
+        // crlEntryExtensions
+        assertTag(TAG_CONSTRUCTED_SEQUENCE, decodeTag(), "crlEntryExtensions");
+        int extnsLen = decodeLength(entryEnd);
+        int extnsEnd = pos + extnsLen;
+        reason = CrlReason.UNSPECIFIED.getCode();
+
+        while (pos < extnsEnd) {
+          /*
+           * Extension  ::=  SEQUENCE  {
+           *      extnID      OBJECT IDENTIFIER,
+           *      critical    BOOLEAN DEFAULT FALSE,
+           *      extnValue   OCTET STRING }
+           */
+          assertTag(TAG_CONSTRUCTED_SEQUENCE, decodeTag(), "Extension");
+          int extnLen = decodeLength(extnsEnd);
+          int extnEnd = pos + extnLen;
+
+          assertTag(BERTags.OBJECT_IDENTIFIER, decodeTag(), "extnID");
+          int oidLen = decodeLength(extnEnd);
+          int oidPos = pos;
+          pos += oidLen;
+
+          int tag = decodeTag();
+          if (tag == BERTags.BOOLEAN) {
+            int criticalLen = decodeLength(extnEnd);
+            pos += criticalLen;
+            tag = decodeTag();
+          }
+          assertTag(BERTags.OCTET_STRING, tag, "extnValue");
+          int valueLen = decodeLength(extnEnd);
+
+          if (oidLen == 3 && buffer.get(oidPos) == 0x55 && buffer.get(oidPos + 1) == 0x1D) {
+            // id-ce (2.5.29)
+            int ce = buffer.get(oidPos + 2);
+            if (ce == ID_CE_REASON_CODE) {
+              assertTag(BERTags.ENUMERATED, decodeTag(), "reasonCode");
+              int len = decodeLength(extnEnd);
+              reason = 0;
+              for (int i = 0; i < len; i++) {
+                reason = (reason << 8) | (buffer.get(pos++) & 0xFF);
+              }
+            } else if (ce == ID_CE_INVALIDITY_DATE) {
+              invalidityDate = readTimeInSeconds(extnEnd, "invalidityDate");
+            } else if (ce == ID_CE_CERTIFICATE_ISSUER) {
+              GeneralNames names = GeneralNames.getInstance(copyBytes(pos, valueLen));
+              certificateIssuer = X500Name.getInstance(names.getNames()[0].getName());
             }
-          } catch (ParseException ex) {
-            throw new IllegalArgumentException("error parsing time", ex);
           }
+
+          pos = extnEnd;
         }
+      }
 
-        coreExtValue = X509Util.getCoreExtValue(extns, Extension.reasonCode);
-        if (coreExtValue == null) {
-          reason = CrlReason.UNSPECIFIED.getCode();
-        } else {
-          reason = CRLReason.getInstance(coreExtValue).getValue().intValue();
+      pos = entryEnd;
+      return new RevokedCert(serialNumber, revocationDate, reason, invalidityDate,
+          certificateIssuer);
+    } // method decodeRevokedCert
+
+    private int decodeTag() {
+      return buffer.get(pos++) & 0xFF;
+    }
+
+    private int decodeLength() {
+      int b = buffer.get(pos++) & 0xFF;
+      if ((b & 0x80) == 0) {
+        return b;
+      }
+
+      int numBytes = b & 0x7F;
+      if (numBytes > 4) {
+        throw new IllegalArgumentException("length too long");
+      }
+
+      int length = 0;
+      for (int i = 0; i < numBytes; i++) {
+        length = (length << 8) | (buffer.get(pos++) & 0xFF);
+      }
+      return length;
+    } // method decodeLength
+
+    private int decodeLength(int end) {
+      int length = decodeLength();
+      if (length < 0 || pos + length > end) {
+        throw new IllegalArgumentException("invalid length " + length);
+      }
+      return length;
+    }
+
+    private byte[] copyBytes(int from, int length) {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(from + i);
+      }
+      return bytes;
+    }
+
+    /**
+     * Reads the UTCTime or GeneralizedTime. The DER encoded forms YYMMDDHHMMSSZ and
+     * YYYYMMDDHHMMSS[.f*]Z are decoded directly, other forms via BouncyCastle.
+     */
+    private long readTimeInSeconds(int end, String name) {
+      int tagPos = pos;
+      int tag = decodeTag();
+      int length = decodeLength(end);
+      int valuePos = pos;
+      pos += length;
+
+      int year;
+      int idx;
+      if (tag == BERTags.UTC_TIME) {
+        if (length != 13) {
+          return parseTime(tagPos, pos, name);
+        }
+        year = twoDigits(valuePos);
+        if (year == -1) {
+          return parseTime(tagPos, pos, name);
+        }
+        // RFC 5280: YY >= 50 is 19YY, otherwise 20YY
+        year += (year >= 50) ? 1900 : 2000;
+        idx = valuePos + 2;
+      } else if (tag == BERTags.GENERALIZED_TIME) {
+        if (length < 15) {
+          return parseTime(tagPos, pos, name);
         }
+        int century = twoDigits(valuePos);
+        int yy = twoDigits(valuePos + 2);
+        if (century == -1 || yy == -1) {
+          return parseTime(tagPos, pos, name);
+        }
+        year = century * 100 + yy;
+        idx = valuePos + 4;
+      } else {
+        throw new IllegalArgumentException("invalid tag for " + name + ": " + tag);
       }
 
-      next = new RevokedCert(serialNumber, revocationDate, reason, invalidityDate,
-                  certificateIssuer);
-    } // method next0
+      int month = twoDigits(idx);
+      int day = twoDigits(idx + 2);
+      int hour = twoDigits(idx + 4);
+      int minute = twoDigits(idx + 6);
+      int second = twoDigits(idx + 8);
+      idx += 10;
+
+      if (tag == BERTags.GENERALIZED_TIME && idx < pos - 1 && buffer.get(idx) == '.') {
+        // fraction of second, ignored since the result is in seconds
+        idx++;
+        while (idx < pos - 1 && Character.isDigit(buffer.get(idx))) {
+          idx++;
+        }
+      }
+
+      if (month < 1 || month > 12 || day < 1 || day > 31 || hour == -1 || hour > 23
+          || minute == -1 || minute > 59 || second == -1 || second > 59
+          || idx != pos - 1 || buffer.get(idx) != 'Z') {
+        return parseTime(tagPos, pos, name);
+      }
+
+      return epochSeconds(year, month, day, hour, minute, second);
+    } // method readTimeInSeconds
+
+    private int twoDigits(int idx) {
+      int d1 = buffer.get(idx) - '0';
+      int d2 = buffer.get(idx + 1) - '0';
+      return (d1 < 0 || d1 > 9 || d2 < 0 || d2 > 9) ? -1 : d1 * 10 + d2;
+    }
+
+    private long parseTime(int from, int to, String name) {
+      byte[] encoded = copyBytes(from, to - from);
+      try {
+        return readTime(ASN1Primitive.fromByteArray(encoded)).getTime() / 1000;
+      } catch (IOException | IllegalArgumentException ex) {
+        throw new IllegalArgumentException("error parsing " + name, ex);
+      }
+    }
 
     @Override
     public void close() throws IOException {
@@ -257,14 +462,31 @@ public class CrlStreamParser extends Asn1StreamParser {
         instream.close();
       }
       instream = null;
+      // the mapping will be released by the garbage collector
+      buffer = null;
     }
 
   } // class RevokedCertsIterator
 
   private static final Logger LOG = LoggerFactory.getLogger(CrlStreamParser.class);
 
+  // last arc of the extensions id-ce-reasonCode (2.5.29.21), id-ce-invalidityDate (2.5.29.24)
+  // and id-ce-certificateIssuer (2.5.29.29)
+  private static final int ID_CE_REASON_CODE = 21;
+
+  private static final int ID_CE_INVALIDITY_DATE = 24;
+
+  private static final int ID_CE_CERTIFICATE_ISSUER = 29;
+
+  /**
+   * Maximal size in bytes of the CRL file, the offsets within the CRL are of type int.
+   */
+  public static final long MAX_CRL_SIZE = Integer.MAX_VALUE;
+
   private final File crlFile;
 
+  private final boolean memoryMapped;
+
   private final int version;
 
   private final X500Name issuer;
@@ -294,7 +516,30 @@ public class CrlStreamParser extends Asn1StreamParser {
   private final int tbsCertListEndIndex;
 
   public CrlStreamParser(File crlFile) throws IOException {
+    this(crlFile, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param crlFile
+   *          The CRL file, at most {@link #MAX_CRL_SIZE} bytes.
+   * @param memoryMapped
+   *          Whether the revokedCertificates are read from a memory-mapped view of the file,
+   *          instead of a stream.
+   * @throws IOException
+   *           if error occurs while reading the CRL, or the CRL is too large.
+   */
+  public CrlStreamParser(File crlFile, boolean memoryMapped) throws IOException {
     this.crlFile = Args.notNull(crlFile, "crlFile");
+    this.memoryMapped = memoryMapped;
+
+    long crlSize = crlFile.length();
+    if (crlSize > MAX_CRL_SIZE) {
+      throw new IOException("CRL " + crlFile.getPath() + " is too large: " + crlSize
+          + " bytes, maximal " + MAX_CRL_SIZE + " bytes are supported");
+    }
+
     // Round 1
     try (BufferedInputStream instream = new BufferedInputStream(
         new FileInputStream(crlFile))) {
@@ -377,12 +622,11 @@ public class CrlStreamParser extends Asn1StreamParser {
 
       //       revokedCertificates     SEQUENCE OF SEQUENCE  { ... } OPTIONAL
       if (offset < tbsCertListLength && TAG_CONSTRUCTED_SEQUENCE == tag) {
-        int revokedCertificatesOffset = offset;
         int revokedCertificatesLength = readLength(lenBytesSize, instream);
         offset += lenBytesSize.get();
 
-        this.revokedCertificatesEndIndex = revokedCertificatesOffset + revokedCertificatesLength;
         this.firstRevokedCertificateOffset = offset;
+        this.revokedCertificatesEndIndex = offset + revokedCertificatesLength;
 
         // skip the revokedCertificates
         skip(instream, revokedCertificatesLength);
@@ -488,6 +732,10 @@ public class CrlStreamParser extends Asn1StreamParser {
     return crlExtensions;
   }
 
+  public boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
   public boolean verifySignature(SubjectPublicKeyInfo publicKeyInfo) throws IOException {
     PublicKey publicKey;
     try {
@@ -543,6 +791,110 @@ public class CrlStreamParser extends Asn1StreamParser {
   } // method verifySignature
 
   public RevokedCertsIterator revokedCertificates() throws IOException {
-    return new RevokedCertsIterator();
+    return new RevokedCertsIterator(firstRevokedCertificateOffset, revokedCertificatesEndIndex);
+  }
+
+  /**
+   * Returns the iterator of the revoked certificates within the given segment.
+   *
+   * @param segmentOffset
+   *          Offset of the first revoked certificate in the segment, must be one of the offsets
+   *          returned by {@link #getRevokedCertificatesSegments(int)}.
+   * @param segmentEndOffset
+   *          End offset (exclusive) of the segment, must be one of the offsets returned by
+   *          {@link #getRevokedCertificatesSegments(int)}.
+   * @return the iterator of the revoked certificates within the given segment.
+   * @throws IOException
+   *           if error occurs while reading the CRL.
+   */
+  public RevokedCertsIterator revokedCertificates(int segmentOffset, int segmentEndOffset)
+      throws IOException {
+    if (segmentOffset < firstRevokedCertificateOffset
+        || segmentEndOffset > revokedCertificatesEndIndex || segmentOffset > segmentEndOffset) {
+      throw new IllegalArgumentException(String.format(
+          "invalid segment [%d, %d)", segmentOffset, segmentEndOffset));
+    }
+    return new RevokedCertsIterator(segmentOffset, segmentEndOffset);
   }
+
+  /**
+   * Returns the size of the encoded revokedCertificates, without tag and length.
+   *
+   * @return the size in bytes, 0 if the CRL contains no revokedCertificates.
+   */
+  public int getRevokedCertificatesSize() {
+    return revokedCertificatesEndIndex - firstRevokedCertificateOffset;
+  }
+
+  /**
+   * Splits the revokedCertificates into segments of nearly same size, aligned to the borders of
+   * the entries. Only the tag and length of each entry is read, so that the segments can be
+   * parsed in parallel via {@link #revokedCertificates(int, int)}.
+   *
+   * @param numSegments
+   *          Maximal number of segments.
+   * @return the offsets of the segments: segment i is [offsets[i], offsets[i + 1]). Empty if the
+   *         CRL contains no revokedCertificates.
+   * @throws IOException
+   *           if error occurs while reading the CRL.
+   */
+  public int[] getRevokedCertificatesSegments(int numSegments) throws IOException {
+    Args.positive(numSegments, "numSegments");
+    int size = getRevokedCertificatesSize();
+    if (size == 0) {
+      return new int[0];
+    }
+
+    int segmentSize = (int) ((size + (long) numSegments - 1) / numSegments);
+
+    List<Integer> offsets = new ArrayList<>(numSegments + 1);
+    offsets.add(firstRevokedCertificateOffset);
+
+    try (BufferedInputStream instream = new BufferedInputStream(new FileInputStream(crlFile))) {
+      skip(instream, firstRevokedCertificateOffset);
+
+      MyInt lenBytesSize = new MyInt();
+      int segmentOffset = firstRevokedCertificateOffset;
+      int offset = firstRevokedCertificateOffset;
+      while (offset < revokedCertificatesEndIndex) {
+        assertTag(TAG_CONSTRUCTED_SEQUENCE, instream.read(), "revokedCertificate");
+        int length = readLength(lenBytesSize, instream);
+        skip(instream, length);
+        offset += 1 + lenBytesSize.get() + length;
+
+        if (offset - segmentOffset >= segmentSize && offset < revokedCertificatesEndIndex) {
+          offsets.add(offset);
+          segmentOffset = offset;
+        }
+      }
+
+      if (offset != revokedCertificatesEndIndex) {
+        throw new IOException("invalid revokedCertificates");
+      }
+    }
+
+    offsets.add(revokedCertificatesEndIndex);
+
+    int[] ret = new int[offsets.size()];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = offsets.get(i);
+    }
+    return ret;
+  } // method getRevokedCertificatesSegments
+
+  /**
+   * Returns the seconds since 1970-01-01T00:00:00Z of the given UTC time.
+   */
+  private static long epochSeconds(int year, int month, int day, int hour, int minute,
+      int second) {
+    // days since 1970-01-01 in the proleptic Gregorian calendar, with the year starting in March
+    long y = (month <= 2) ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    long days = era * 146097 + dayOfEra - 719468;
+    return days * 86400 + hour * 3600 + minute * 60 + second;
+  } // method epochSeconds
+
 }
@@ -23,6 +23,7 @@ import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.InvalidKeyException;
 import java.security.SecureRandom;
+import java.security.SignatureException;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -96,6 +97,44 @@ abstract class P11ContentSigner implements XiContentSigner {
     return Arrays.copyOf(encodedAlgorithmIdentifier, encodedAlgorithmIdentifier.length);
   }
 
+  /**
+   * Signs the messages with one call to the identity, so that all messages are signed
+   * within one PKCS#11 session, or with one round trip to the PKCS#11 proxy.
+   */
+  protected byte[][] signInBatch(byte[][] data, long mechanism, P11Params parameters)
+      throws SignatureException {
+    try {
+      byte[][] dataToSign = new byte[data.length][];
+      for (int i = 0; i < data.length; i++) {
+        getOutputStream().write(data[i]);
+        dataToSign[i] = takeDataToSign();
+      }
+
+      byte[][] signatures =
+          cryptService.getIdentity(identityId).sign(mechanism, parameters, dataToSign);
+      for (int i = 0; i < signatures.length; i++) {
+        signatures[i] = toSignature(signatures[i]);
+      }
+      return signatures;
+    } catch (IOException | XiSecurityException | P11TokenException ex) {
+      LogUtil.warn(LOG, ex, "could not sign");
+      throw new SignatureException(ex.getMessage(), ex);
+    }
+  } // method signInBatch
+
+  /**
+   * Returns the data to be signed by the token for the content written to the output
+   * stream, and resets the output stream.
+   */
+  protected abstract byte[] takeDataToSign() throws XiSecurityException;
+
+  /**
+   * Converts the signature returned by the token to the signature value.
+   */
+  protected byte[] toSignature(byte[] tokenSignature) throws XiSecurityException {
+    return tokenSignature;
+  }
+
   // CHECKSTYLE:SKIP
   static class DSA extends P11ContentSigner {
 
@@ -172,8 +211,7 @@ abstract class P11ContentSigner implements XiContentSigner {
     @Override
     public byte[] getSignature() {
       try {
-        byte[] plainSignature = getPlainSignature();
-        return plain ? plainSignature : SignerUtil.dsaSigPlainToX962(plainSignature);
+        return toSignature(getPlainSignature());
       } catch (XiSecurityException ex) {
         LogUtil.warn(LOG, ex);
         throw new RuntimeCryptoException("XiSecurityException: " + ex.getMessage());
@@ -184,6 +222,16 @@ abstract class P11ContentSigner implements XiContentSigner {
     }
 
     private byte[] getPlainSignature() throws XiSecurityException, P11TokenException {
+      return cryptService.getIdentity(identityId).sign(mechanism, null, takeDataToSign());
+    }
+
+    @Override
+    public byte[][] sign(byte[][] data) throws SignatureException {
+      return signInBatch(data, mechanism, null);
+    }
+
+    @Override
+    protected byte[] takeDataToSign() {
       byte[] dataToSign;
       if (outputStream instanceof ByteArrayOutputStream) {
         dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
@@ -192,8 +240,12 @@ abstract class P11ContentSigner implements XiContentSigner {
         dataToSign = ((DigestOutputStream) outputStream).digest();
         ((DigestOutputStream) outputStream).reset();
       }
+      return dataToSign;
+    }
 
-      return cryptService.getIdentity(identityId).sign(mechanism, null, dataToSign);
+    @Override
+    protected byte[] toSignature(byte[] tokenSignature) throws XiSecurityException {
+      return plain ? tokenSignature : SignerUtil.dsaSigPlainToX962(tokenSignature);
     }
 
   } // class DSA
@@ -279,8 +331,7 @@ abstract class P11ContentSigner implements XiContentSigner {
     @Override
     public byte[] getSignature() {
       try {
-        byte[] plainSignature = getPlainSignature();
-        return plain ? plainSignature : SignerUtil.dsaSigPlainToX962(plainSignature);
+        return toSignature(getPlainSignature());
       } catch (XiSecurityException ex) {
         LogUtil.warn(LOG, ex);
         throw new RuntimeCryptoException("XiSecurityException: " + ex.getMessage());
@@ -291,6 +342,16 @@ abstract class P11ContentSigner implements XiContentSigner {
     }
 
     private byte[] getPlainSignature() throws XiSecurityException, P11TokenException {
+      return cryptService.getIdentity(identityId).sign(mechanism, null, takeDataToSign());
+    }
+
+    @Override
+    public byte[][] sign(byte[][] data) throws SignatureException {
+      return signInBatch(data, mechanism, null);
+    }
+
+    @Override
+    protected byte[] takeDataToSign() {
       byte[] dataToSign;
       if (outputStream instanceof ByteArrayOutputStream) {
         dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
@@ -299,8 +360,12 @@ abstract class P11ContentSigner implements XiContentSigner {
         dataToSign = ((DigestOutputStream) outputStream).digest();
         ((DigestOutputStream) outputStream).reset();
       }
+      return dataToSign;
+    }
 
-      return cryptService.getIdentity(identityId).sign(mechanism, null, dataToSign);
+    @Override
+    protected byte[] toSignature(byte[] tokenSignature) throws XiSecurityException {
+      return plain ? tokenSignature : SignerUtil.dsaSigPlainToX962(tokenSignature);
     }
   } // method ECDSA
 
@@ -339,16 +404,21 @@ abstract class P11ContentSigner implements XiContentSigner {
 
     @Override
     public byte[] getSignature() {
-      byte[] content = outputStream.toByteArray();
-      outputStream.reset();
       try {
-        return cryptService.getIdentity(identityId).sign(mechanism, null, content);
+        return cryptService.getIdentity(identityId).sign(mechanism, null, takeDataToSign());
       } catch (Throwable th) {
         LogUtil.warn(LOG, th);
         throw new RuntimeCryptoException(th.getClass().getName() + ": " + th.getMessage());
       }
     }
 
+    @Override
+    protected byte[] takeDataToSign() {
+      byte[] content = outputStream.toByteArray();
+      outputStream.reset();
+      return content;
+    }
+
   } // class EdDSA
 
   static class Mac extends P11ContentSigner {
@@ -401,9 +471,7 @@ abstract class P11ContentSigner implements XiContentSigner {
     @Override
     public byte[] getSignature() {
       try {
-        byte[] dataToSign = outputStream.toByteArray();
-        outputStream.reset();
-        return cryptService.getIdentity(identityId).sign(mechanism, null, dataToSign);
+        return cryptService.getIdentity(identityId).sign(mechanism, null, takeDataToSign());
       } catch (P11TokenException ex) {
         LogUtil.warn(LOG, ex);
         throw new RuntimeCryptoException("P11TokenException: " + ex.getMessage());
@@ -413,6 +481,13 @@ abstract class P11ContentSigner implements XiContentSigner {
       }
     }
 
+    @Override
+    protected byte[] takeDataToSign() {
+      byte[] dataToSign = outputStream.toByteArray();
+      outputStream.reset();
+      return dataToSign;
+    }
+
   } // class Mac
 
   // CHECKSTYLE:SKIP
@@ -504,6 +579,21 @@ abstract class P11ContentSigner implements XiContentSigner {
 
     @Override
     public byte[] getSignature() {
+      try {
+        return cryptService.getIdentity(identityId).sign(mechanism, null, takeDataToSign());
+      } catch (XiSecurityException | P11TokenException ex) {
+        LogUtil.error(LOG, ex, "could not sign");
+        throw new RuntimeCryptoException("SignerException: " + ex.getMessage());
+      }
+    } // method getSignature
+
+    @Override
+    public byte[][] sign(byte[][] data) throws SignatureException {
+      return signInBatch(data, mechanism, null);
+    }
+
+    @Override
+    protected byte[] takeDataToSign() throws XiSecurityException {
       byte[] dataToSign;
       if (outputStream instanceof ByteArrayOutputStream) {
         dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
@@ -516,17 +606,11 @@ abstract class P11ContentSigner implements XiContentSigner {
         System.arraycopy(hashValue, 0, dataToSign, digestPkcsPrefix.length, hashValue.length);
       }
 
-      try {
-        if (mechanism == PKCS11Constants.CKM_RSA_X_509) {
-          dataToSign = SignerUtil.EMSA_PKCS1_v1_5_encoding(dataToSign, modulusBitLen);
-        }
-
-        return cryptService.getIdentity(identityId).sign(mechanism, null, dataToSign);
-      } catch (XiSecurityException | P11TokenException ex) {
-        LogUtil.error(LOG, ex, "could not sign");
-        throw new RuntimeCryptoException("SignerException: " + ex.getMessage());
+      if (mechanism == PKCS11Constants.CKM_RSA_X_509) {
+        dataToSign = SignerUtil.EMSA_PKCS1_v1_5_encoding(dataToSign, modulusBitLen);
       }
-    } // method getSignature
+      return dataToSign;
+    } // method takeDataToSign
 
   } // class RSA
 
@@ -671,22 +755,32 @@ abstract class P11ContentSigner implements XiContentSigner {
         }
       }
 
-      byte[] dataToSign;
-      if (outputStream instanceof ByteArrayOutputStream) {
-        dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
-      } else {
-        dataToSign = ((DigestOutputStream) outputStream).digest();
-      }
-
       try {
-        return cryptService.getIdentity(identityId).sign(mechanism, parameters, dataToSign);
-      } catch (P11TokenException ex) {
+        return cryptService.getIdentity(identityId).sign(mechanism, parameters,
+            takeDataToSign());
+      } catch (XiSecurityException | P11TokenException ex) {
         LogUtil.warn(LOG, ex, "could not sign");
         throw new RuntimeCryptoException("SignerException: " + ex.getMessage());
       }
 
     } // method getSignature
 
+    @Override
+    protected byte[] takeDataToSign() throws XiSecurityException {
+      byte[] dataToSign;
+      if (outputStream instanceof ByteArrayOutputStream) {
+        dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
+        ((ByteArrayOutputStream) outputStream).reset();
+      } else if (outputStream instanceof DigestOutputStream) {
+        dataToSign = ((DigestOutputStream) outputStream).digest();
+        ((DigestOutputStream) outputStream).reset();
+      } else {
+        // the PSS encoding is computed by the PSSSigner, which calls the token itself
+        throw new XiSecurityException("mechanism CKM_RSA_X_509 has no data to sign");
+      }
+      return dataToSign;
+    } // method takeDataToSign
+
   } // class RSAPSS
 
   static class SM2 extends P11ContentSigner {
@@ -768,22 +862,27 @@ abstract class P11ContentSigner implements XiContentSigner {
     }
 
     private byte[] getPlainSignature() throws XiSecurityException, P11TokenException {
+      // with CKM_VENDOR_SM2_SM3, the token computes Z with the default ID
+      P11Params.P11ByteArrayParams params = (outputStream instanceof ByteArrayOutputStream)
+          ? new P11Params.P11ByteArrayParams(GMUtil.getDefaultIDA()) : null;
+      return cryptService.getIdentity(identityId).sign(mechanism, params, takeDataToSign());
+    }
+
+    @Override
+    protected byte[] takeDataToSign() {
       byte[] dataToSign;
-      P11Params.P11ByteArrayParams params;
       if (outputStream instanceof ByteArrayOutputStream) {
         // dataToSign is the real message
-        params = new P11Params.P11ByteArrayParams(GMUtil.getDefaultIDA());
         dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
       } else {
         // dataToSign is Hash(Z||Real Message)
-        params = null;
         dataToSign = ((DigestOutputStream) outputStream).digest();
       }
 
       reset();
-
-      return cryptService.getIdentity(identityId).sign(mechanism, params, dataToSign);
+      return dataToSign;
     }
+
   } // class SM2
 
 }
@@ -100,11 +100,40 @@ public abstract class P11Identity implements Comparable<P11Identity> {
 
   public byte[] sign(long mechanism, P11Params parameters, byte[] content)
       throws P11TokenException {
+    Args.notNull(content, "content");
+    assertSignSupported(mechanism, parameters);
+    return sign0(mechanism, parameters, content);
+  }
+
+  /**
+   * Signs several contents with the same mechanism.
+   *
+   * @param mechanism
+   *          mechanism to sign the contents.
+   * @param parameters
+   *          Parameters. Could be {@code null}.
+   * @param contents
+   *          Contents to be signed. Must not be {@code null}.
+   * @return the signatures, in the same order as the contents.
+   * @throws P11TokenException
+   *         if PKCS#11 token error occurs.
+   */
+  public byte[][] sign(long mechanism, P11Params parameters, byte[][] contents)
+      throws P11TokenException {
+    Args.notNull(contents, "contents");
+    for (byte[] content : contents) {
+      Args.notNull(content, "content");
+    }
+    assertSignSupported(mechanism, parameters);
+    return sign0(mechanism, parameters, contents);
+  }
+
+  private void assertSignSupported(long mechanism, P11Params parameters)
+      throws P11TokenException {
     if (publicKey instanceof XDHKey) {
       throw new P11TokenException("this identity is not suitable for sign");
     }
 
-    Args.notNull(content, "content");
     slot.assertMechanismSupported(mechanism);
     if (!supportsMechanism(mechanism, parameters)) {
       throw new P11UnsupportedMechanismException(mechanism, id);
@@ -112,8 +141,7 @@ public abstract class P11Identity implements Comparable<P11Identity> {
     if (LOG.isDebugEnabled()) {
       LOG.debug("sign with mechanism {}", Functions.getMechanismDescription(mechanism));
     }
-    return sign0(mechanism, parameters, content);
-  }
+  } // method assertSignSupported
 
   /**
    * Signs the content.
@@ -131,6 +159,28 @@ public abstract class P11Identity implements Comparable<P11Identity> {
   protected abstract byte[] sign0(long mechanism, P11Params parameters, byte[] content)
       throws P11TokenException;
 
+  /**
+   * Signs several contents. The default implementation signs the contents one by one.
+   *
+   * @param mechanism
+   *          mechanism to sign the contents.
+   * @param parameters
+   *          Parameters. Could be {@code null}.
+   * @param contents
+   *          Contents to be signed. Must not be {@code null}.
+   * @return the signatures.
+   * @throws P11TokenException
+   *         if PKCS#11 token error occurs.
+   */
+  protected byte[][] sign0(long mechanism, P11Params parameters, byte[][] contents)
+      throws P11TokenException {
+    byte[][] signatures = new byte[contents.length][];
+    for (int i = 0; i < contents.length; i++) {
+      signatures[i] = sign0(mechanism, parameters, contents[i]);
+    }
+    return signatures;
+  }
+
   public byte[] digestSecretKey(long mechanism) throws P11TokenException, XiSecurityException {
     slot.assertMechanismSupported(mechanism);
     if (LOG.isDebugEnabled()) {
@@ -305,6 +305,8 @@ public class P11ModuleConf {
 
   private final int maxMessageSize;
 
+  private final int minSessions;
+
   private final long userType;
 
   private final P11NewObjectConf newObjectConf;
@@ -341,6 +343,11 @@ public class P11ModuleConf {
       throw new InvalidConfException("invalid maxMessageSize (< 128): " + maxMessageSize);
     }
 
+    this.minSessions = moduleType.getMinSessions();
+    if (minSessions < 1) {
+      throw new InvalidConfException("invalid minSessions (< 1): " + minSessions);
+    }
+
     // parse mechanismSets
     Map<String, Set<Long>> mechanismSetsMap = new HashMap<>(mechanismSets.size() * 3 / 2);
     for (Pkcs11conf.MechanismSet m : mechanismSets) {
@@ -471,6 +478,10 @@ public class P11ModuleConf {
     return maxMessageSize;
   }
 
+  public int getMinSessions() {
+    return minSessions;
+  }
+
   public boolean isReadOnly() {
     return readOnly;
   }
@@ -28,6 +28,8 @@ import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.security.ConcurrentContentSigner;
+import org.xipki.security.DfltConcurrentContentSigner;
+import org.xipki.security.NoIdleSignerException;
 import org.xipki.security.SecurityFactory;
 import org.xipki.security.SignerConf;
 import org.xipki.security.SignerFactory;
@@ -106,6 +108,60 @@ public class P11SignerFactory implements SignerFactory {
       }
     }
 
+    // elastic signer pool
+    int maxParallelism = parallelism;
+    str = conf.getConfValue("max-parallelism");
+    if (str != null) {
+      try {
+        maxParallelism = Integer.parseInt(str);
+      } catch (NumberFormatException ex) {
+        throw new ObjectCreationException("invalid max-parallelism " + str);
+      }
+
+      if (maxParallelism < parallelism) {
+        throw new ObjectCreationException("invalid max-parallelism " + str);
+      }
+    }
+
+    long idleTimeout = 60000; // 1 minute
+    str = conf.getConfValue("idle-timeout");
+    if (str != null) {
+      try {
+        idleTimeout = Long.parseLong(str);
+      } catch (NumberFormatException ex) {
+        throw new ObjectCreationException("invalid idle-timeout " + str);
+      }
+
+      if (idleTimeout < 1) {
+        throw new ObjectCreationException("invalid idle-timeout " + str);
+      }
+    }
+
+    // micro-batching of signing operations
+    int batchSize = 0;
+    str = conf.getConfValue("batch-size");
+    if (str != null) {
+      try {
+        batchSize = Integer.parseInt(str);
+      } catch (NumberFormatException ex) {
+        throw new ObjectCreationException("invalid batch-size " + str);
+      }
+    }
+
+    int batchDelay = 2; // 2 milliseconds
+    str = conf.getConfValue("batch-delay");
+    if (str != null) {
+      try {
+        batchDelay = Integer.parseInt(str);
+      } catch (NumberFormatException ex) {
+        throw new ObjectCreationException("invalid batch-delay " + str);
+      }
+
+      if (batchDelay < 0) {
+        throw new ObjectCreationException("invalid batch-delay " + str);
+      }
+    }
+
     String moduleName = conf.getConfValue("module");
     str = conf.getConfValue("slot");
     Integer slotIndex = (str == null) ? null : Integer.parseInt(str);
@@ -180,9 +236,15 @@ public class P11SignerFactory implements SignerFactory {
 
         P11ContentSignerBuilder signerBuilder = new P11ContentSignerBuilder(p11Service,
             securityFactory, identityId, certificateChain);
-        return signerBuilder.createSigner(signatureAlgId, parallelism);
+        ConcurrentContentSigner signer = signerBuilder.createSigner(signatureAlgId, parallelism,
+            maxParallelism, idleTimeout);
+        if (batchSize > 1 && signer instanceof DfltConcurrentContentSigner) {
+          ((DfltConcurrentContentSigner) signer).setBatchSigning(batchSize, batchDelay);
+        }
+        return signer;
       }
-    } catch (P11TokenException | NoSuchAlgorithmException | XiSecurityException ex) {
+    } catch (P11TokenException | NoSuchAlgorithmException | XiSecurityException
+        | NoIdleSignerException ex) {
       throw new ObjectCreationException(ex.getMessage(), ex);
     }
   } // method newSigner
@@ -147,6 +147,11 @@ public class Pkcs11conf extends ValidatableConf {
      */
     private Integer maxMessageSize;
 
+    /**
+     * number of sessions of each slot opened at startup. Default to 1.
+     */
+    private Integer minSessions;
+
     private List<PasswordSet> passwordSets;
 
     private List<MechanimFilter> mechanismFilters;
@@ -254,6 +259,14 @@ public class Pkcs11conf extends ValidatableConf {
       return maxMessageSize == null ? 16384 : maxMessageSize.intValue();
     }
 
+    public int getMinSessions() {
+      return minSessions == null ? 1 : minSessions.intValue();
+    }
+
+    public void setMinSessions(Integer minSessions) {
+      this.minSessions = minSessions;
+    }
+
     @Override
     public void validate() throws InvalidConfException {
       notEmpty(name, "name");
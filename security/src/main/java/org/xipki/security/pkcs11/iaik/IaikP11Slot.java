@@ -18,6 +18,7 @@
 package org.xipki.security.pkcs11.iaik;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
@@ -33,6 +34,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.DEROctetString;
@@ -61,7 +63,9 @@ import org.xipki.security.util.X509Util;
 import org.xipki.util.Args;
 import org.xipki.util.CollectionUtil;
 import org.xipki.util.LogUtil;
+import org.xipki.util.StringUtil;
 import org.xipki.util.concurrent.ConcurrentBag;
+import org.xipki.util.concurrent.ConcurrentBag.IConcurrentBagEntry;
 import org.xipki.util.concurrent.ConcurrentBagEntry;
 
 import iaik.pkcs.pkcs11.Mechanism;
@@ -101,15 +105,56 @@ import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
 /**
  * {@link P11Slot} based on the IAIK PKCS#11 wrapper.
  *
+ * <p>The sessions are pooled in a {@link ConcurrentBag}, which returns a session to the thread
+ * that used it last without any lock. The pool grows up to the maximal number of sessions
+ * without a global lock, each session is logged in once when it is opened. Sessions that
+ * became invalid or whose rate of device errors is too high are closed and replaced.
+ *
  * @author Lijun Liao
  * @since 2.0.0
  */
 class IaikP11Slot extends P11Slot {
 
+  /**
+   * Session in the pool, with its usage statistics.
+   */
+  private static final class PooledSession extends ConcurrentBagEntry<Session> {
+
+    // written only by the thread that borrowed the session
+    private long operations;
+
+    private long errors;
+
+    private long deviceErrors;
+
+    // if true, the session will be closed instead of returned to the pool
+    private boolean broken;
+
+    private PooledSession(Session session) {
+      super(session);
+    }
+
+  } // class PooledSession
+
+  /**
+   * Task executed within a session of the pool.
+   */
+  private interface SessionTask<T> {
+
+    T execute(Session session) throws TokenException, P11TokenException;
+
+  } // interface SessionTask
+
   private static final Logger LOG = LoggerFactory.getLogger(IaikP11Slot.class);
 
   private static final long DEFAULT_MAX_COUNT_SESSION = 32;
 
+  // a session is evicted if at least EVICT_MIN_DEVICE_ERRORS of its operations failed with a
+  // device error, and the rate of these failures is above EVICT_MAX_DEVICE_ERROR_PERCENT.
+  private static final int EVICT_MIN_DEVICE_ERRORS = 3;
+
+  private static final int EVICT_MAX_DEVICE_ERROR_PERCENT = 10;
+
   private final int maxMessageSize;
 
   private Slot slot;
@@ -124,19 +169,32 @@ class IaikP11Slot extends P11Slot {
 
   private long timeOutWaitNewSession = 10000; // maximal wait for 10 second
 
+  private int minSessionCount;
+
   private final AtomicLong countSessions = new AtomicLong(0);
 
+  private final AtomicLong openedSessions = new AtomicLong(0);
+
+  private final AtomicLong evictedSessions = new AtomicLong(0);
+
+  private final LongAdder borrows = new LongAdder();
+
+  private final LongAdder borrowTimeouts = new LongAdder();
+
+  private final LongAdder errors = new LongAdder();
+
   private final SecureRandom random = new SecureRandom();
 
   private final P11NewObjectConf newObjectConf;
 
-  private final ConcurrentBag<ConcurrentBagEntry<Session>> sessions = new ConcurrentBag<>();
+  private final ConcurrentBag<PooledSession> sessions = new ConcurrentBag<>();
 
   private final Vendor vendor;
 
   IaikP11Slot(String moduleName, P11SlotIdentifier slotId, Slot slot, boolean readOnly,
-      long userType, List<char[]> password, int maxMessageSize, P11MechanismFilter mechanismFilter,
-      P11NewObjectConf newObjectConf, Vendor vendor) throws P11TokenException {
+      long userType, List<char[]> password, int maxMessageSize, int minSessionCount,
+      P11MechanismFilter mechanismFilter, P11NewObjectConf newObjectConf, Vendor vendor)
+      throws P11TokenException {
     super(moduleName, slotId, readOnly, mechanismFilter);
 
     this.newObjectConf = Args.notNull(newObjectConf, "newObjectConf");
@@ -197,9 +255,20 @@ class IaikP11Slot extends P11Slot {
         maxSessionCount2 = (maxSessionCount2 < 3) ? 1 : maxSessionCount2 - 2;
       }
       this.maxSessionCount = (int) maxSessionCount2;
-      LOG.info("maxSessionCount: {}", this.maxSessionCount);
+      this.minSessionCount = Math.min(Args.positive(minSessionCount, "minSessionCount"),
+          this.maxSessionCount);
+      LOG.info("minSessionCount: {}, maxSessionCount: {}", this.minSessionCount,
+          this.maxSessionCount);
+
+      countSessions.incrementAndGet();
+      openedSessions.incrementAndGet();
+      sessions.add(new PooledSession(session));
+
+      // pre-open the sessions
+      while (countSessions.get() < this.minSessionCount && reserveSession()) {
+        sessions.add(openPooledSession());
+      }
 
-      sessions.add(new ConcurrentBagEntry<Session>(session));
       refresh();
       successful = true;
     } finally {
@@ -229,10 +298,7 @@ class IaikP11Slot extends P11Slot {
       }
     }
 
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
-
-    try {
-      Session session = bagEntry.value();
+    return executeLoggedIn("refresh", session -> {
       // secret keys
       List<SecretKey> secretKeys = getAllSecretKeyObjects(session);
       for (SecretKey secKey : secretKeys) {
@@ -278,9 +344,7 @@ class IaikP11Slot extends P11Slot {
       }
 
       return ret;
-    } finally {
-      sessions.requite(bagEntry);
-    }
+    });
   } // method refresh0
 
   @Override
@@ -289,7 +353,7 @@ class IaikP11Slot extends P11Slot {
       try {
         LOG.info("close all sessions on token: {}", slot.getSlotID());
 
-        for (ConcurrentBagEntry<Session> session : sessions.values()) {
+        for (PooledSession session : sessions.values()) {
           session.value().closeSession();
         }
       } catch (Throwable th) {
@@ -299,11 +363,31 @@ class IaikP11Slot extends P11Slot {
       slot = null;
     }
 
+    LOG.info("session pool metrics of slot {}: {}", slotId, getSessionPoolMetrics());
+
     // clear the session pool
     sessions.close();
     countSessions.lazySet(0);
   } // method close
 
+  @Override
+  public void showDetails(OutputStream stream, boolean verbose) throws IOException {
+    super.showDetails(stream, verbose);
+    stream.write(StringUtil.toUtf8Bytes("\tSession pool: " + getSessionPoolMetrics() + "\n"));
+  }
+
+  /**
+   * Returns the metrics of the session pool.
+   * @return the metrics of the session pool.
+   */
+  String getSessionPoolMetrics() {
+    return String.format("sessions=%d (min=%d, max=%d, idle=%d), opened=%d, evicted=%d, "
+        + "borrows=%d, borrowTimeouts=%d, errors=%d",
+        countSessions.get(), minSessionCount, maxSessionCount,
+        sessions.getCount(IConcurrentBagEntry.STATE_NOT_IN_USE), openedSessions.get(),
+        evictedSessions.get(), borrows.sum(), borrowTimeouts.sum(), errors.sum());
+  }
+
   private void analyseSingleKey(SecretKey secretKey, P11SlotRefreshResult refreshResult) {
     byte[] id = secretKey.getId().getByteArrayValue();
     char[] label = secretKey.getLabel().getCharArrayValue();
@@ -385,7 +469,7 @@ class IaikP11Slot extends P11Slot {
       throw new P11TokenException("unsupported mechnism " + mechanism);
     }
 
-    ConcurrentBagEntry<Session> session0 = borrowSession();
+    PooledSession session0 = borrowSession();
     Mechanism mechanismObj = Mechanism.get(mechanism);
 
     try {
@@ -394,6 +478,7 @@ class IaikP11Slot extends P11Slot {
         return digestKey0(session, digestLen, mechanismObj, (SecretKey) key);
       } catch (PKCS11Exception ex) {
         if (ex.getErrorCode() != PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
+          sessionFailed(session0, ex);
           throw new P11TokenException(ex.getMessage(), ex);
         }
 
@@ -403,13 +488,15 @@ class IaikP11Slot extends P11Slot {
         try {
           return digestKey0(session, digestLen, mechanismObj, (SecretKey) key);
         } catch (TokenException ex2) {
+          sessionFailed(session0, ex2);
           throw new P11TokenException(ex2.getMessage(), ex2);
         }
       } catch (TokenException ex) {
+        sessionFailed(session0, ex);
         throw new P11TokenException(ex.getMessage(), ex);
       }
     } finally {
-      sessions.requite(session0);
+      requiteSession(session0);
     }
   } // method digestKey
 
@@ -425,6 +512,15 @@ class IaikP11Slot extends P11Slot {
   byte[] sign(long mechanism, P11Params parameters, byte[] content, IaikP11Identity identity)
       throws P11TokenException {
     Args.notNull(content, "content");
+    return sign(mechanism, parameters, new byte[][]{content}, identity)[0];
+  }
+
+  /**
+   * Signs several contents within one session.
+   */
+  byte[][] sign(long mechanism, P11Params parameters, byte[][] contents,
+      IaikP11Identity identity) throws P11TokenException {
+    Args.notNull(contents, "contents");
     assertMechanismSupported(mechanism);
 
     int expectedSignatureLen;
@@ -452,24 +548,35 @@ class IaikP11Slot extends P11Slot {
     Mechanism mechanismObj = getMechanism(mechanism, parameters);
     Key signingKey = identity.getSigningKey();
 
-    ConcurrentBagEntry<Session> session0 = borrowSession();
+    PooledSession session0 = borrowSession();
     try {
       Session session = session0.value();
+      byte[][] signatures = new byte[contents.length][];
       try {
-        return sign0(session, expectedSignatureLen, mechanismObj, content, signingKey);
-      } catch (PKCS11Exception ex) {
-        long errorCode = ex.getErrorCode();
-        if (errorCode == PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
-          LOG.info("sign ended with ERROR CKR_USER_NOT_LOGGED_IN, login and then retry it");
-          // force the login
-          forceLogin(session);
-          return sign0(session, expectedSignatureLen, mechanismObj, content, signingKey);
-        } else {
-          throw ex;
+        for (int i = 0; i < contents.length; i++) {
+          try {
+            signatures[i] = sign0(session, expectedSignatureLen, mechanismObj, contents[i],
+                signingKey);
+          } catch (PKCS11Exception ex) {
+            long errorCode = ex.getErrorCode();
+            if (errorCode == PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
+              LOG.info("sign ended with ERROR CKR_USER_NOT_LOGGED_IN, login and then retry it");
+              // force the login
+              forceLogin(session);
+              signatures[i] = sign0(session, expectedSignatureLen, mechanismObj, contents[i],
+                  signingKey);
+            } else {
+              throw ex;
+            }
+          }
         }
+      } catch (TokenException ex) {
+        sessionFailed(session0, ex);
+        throw ex;
       } finally {
-        sessions.requite(session0);
+        requiteSession(session0);
       }
+      return signatures;
     } catch (TokenException ex) {
       throw new P11TokenException(ex.getMessage(), ex);
     }
@@ -538,25 +645,60 @@ class IaikP11Slot extends P11Slot {
     } catch (TokenException ex) {
       throw new P11TokenException(ex.getMessage(), ex);
     }
-    countSessions.incrementAndGet();
     return session;
   } // method openSession
 
-  private ConcurrentBagEntry<Session> borrowSession() throws P11TokenException {
-    ConcurrentBagEntry<Session> session = null;
-    synchronized (sessions) {
-      if (countSessions.get() < maxSessionCount) {
-        try {
-          session = sessions.borrow(1, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
-        }
+  /**
+   * Opens and logs in a new session for the pool. The caller must have reserved it via
+   * {@link #reserveSession()}, the reservation is released if the session cannot be opened.
+   */
+  private PooledSession openPooledSession() throws P11TokenException {
+    Session session = null;
+    try {
+      session = openSession();
+      login(session);
+    } catch (P11TokenException | RuntimeException ex) {
+      countSessions.decrementAndGet();
+      if (session != null) {
+        closeQuietly(session);
+      }
+      throw ex;
+    }
+
+    openedSessions.incrementAndGet();
+    return new PooledSession(session);
+  } // method openPooledSession
+
+  /**
+   * Reserves a place for a new session in the pool.
+   * @return whether a new session may be opened.
+   */
+  private boolean reserveSession() {
+    while (true) {
+      long count = countSessions.get();
+      if (count >= maxSessionCount) {
+        return false;
+      }
 
-        if (session == null) {
-          // create new session
-          sessions.add(new ConcurrentBagEntry<>(openSession()));
-        }
+      if (countSessions.compareAndSet(count, count + 1)) {
+        return true;
       }
     }
+  } // method reserveSession
+
+  private PooledSession borrowSession() throws P11TokenException {
+    PooledSession session = null;
+    try {
+      session = sessions.borrow(1, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
+    }
+
+    if (session == null && reserveSession()) {
+      // create new session, and borrow it directly
+      session = openPooledSession();
+      session.setState(IConcurrentBagEntry.STATE_IN_USE);
+      sessions.add(session);
+    }
 
     if (session == null) {
       try {
@@ -566,13 +708,129 @@ class IaikP11Slot extends P11Slot {
     }
 
     if (session == null) {
+      borrowTimeouts.increment();
       throw new P11TokenException("no idle session");
     }
 
-    login(session.value());
+    borrows.increment();
+    session.operations++;
     return session;
   } // method borrowSession
 
+  private void requiteSession(PooledSession session) {
+    if (!session.broken) {
+      sessions.requite(session);
+      return;
+    }
+
+    // evict the session
+    sessions.remove(session);
+    countSessions.decrementAndGet();
+    evictedSessions.incrementAndGet();
+    LOG.warn("evicted session of slot {} with {} errors ({} device errors) in {} operations",
+        slotId, session.errors, session.deviceErrors, session.operations);
+    closeQuietly(session.value());
+
+    // replace the session
+    if (countSessions.get() < minSessionCount && reserveSession()) {
+      try {
+        sessions.add(openPooledSession());
+      } catch (P11TokenException | RuntimeException ex) {
+        LogUtil.warn(LOG, ex, "could not open new session of slot " + slotId);
+      }
+    }
+  } // method requiteSession
+
+  private void sessionFailed(PooledSession session, TokenException ex) {
+    errors.increment();
+    session.errors++;
+    if (!(ex instanceof PKCS11Exception)) {
+      return;
+    }
+
+    long errorCode = ((PKCS11Exception) ex).getErrorCode();
+    if (isSessionInvalid(errorCode)) {
+      session.broken = true;
+    } else if (isDeviceError(errorCode)) {
+      session.deviceErrors++;
+      if (session.deviceErrors >= EVICT_MIN_DEVICE_ERRORS
+          && session.deviceErrors * 100 > session.operations * EVICT_MAX_DEVICE_ERROR_PERCENT) {
+        session.broken = true;
+      }
+    }
+  } // method sessionFailed
+
+  private static boolean isSessionInvalid(long errorCode) {
+    return errorCode == PKCS11Constants.CKR_DEVICE_REMOVED
+        || errorCode == PKCS11Constants.CKR_SESSION_CLOSED
+        || errorCode == PKCS11Constants.CKR_SESSION_HANDLE_INVALID
+        || errorCode == PKCS11Constants.CKR_TOKEN_NOT_PRESENT;
+  } // method isSessionInvalid
+
+  private static boolean isDeviceError(long errorCode) {
+    return errorCode == PKCS11Constants.CKR_GENERAL_ERROR
+        || errorCode == PKCS11Constants.CKR_DEVICE_ERROR
+        || errorCode == PKCS11Constants.CKR_DEVICE_MEMORY;
+  } // method isDeviceError
+
+  /**
+   * Executes the task within a borrowed session. Unlike the sign operations, the login state of
+   * the session is verified before, since the private objects are invisible to sessions that
+   * are not logged in. If the task failed with CKR_USER_NOT_LOGGED_IN, e.g. after a logout of
+   * the token, the session is logged in again and the task is retried once.
+   *
+   * @param desc Description of the task.
+   * @param task The task.
+   * @return the result of the task.
+   * @throws P11TokenException if the task failed.
+   */
+  private <T> T executeLoggedIn(String desc, SessionTask<T> task) throws P11TokenException {
+    PooledSession bagEntry = borrowSession();
+    try {
+      Session session = bagEntry.value();
+      login(session);
+      try {
+        return execute(task, session);
+      } catch (P11TokenException ex) {
+        if (getErrorCode(ex) != PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
+          throw ex;
+        }
+
+        LOG.info("{} ended with ERROR CKR_USER_NOT_LOGGED_IN, login and then retry it", desc);
+        forceLogin(session);
+        return execute(task, session);
+      }
+    } catch (P11TokenException ex) {
+      if (ex.getCause() instanceof TokenException) {
+        sessionFailed(bagEntry, (TokenException) ex.getCause());
+      }
+      throw ex;
+    } finally {
+      requiteSession(bagEntry);
+    }
+  } // method executeLoggedIn
+
+  private static <T> T execute(SessionTask<T> task, Session session) throws P11TokenException {
+    try {
+      return task.execute(session);
+    } catch (TokenException ex) {
+      throw new P11TokenException(ex.getMessage(), ex);
+    }
+  } // method execute
+
+  private static long getErrorCode(P11TokenException ex) {
+    Throwable cause = ex.getCause();
+    return (cause instanceof PKCS11Exception) ? ((PKCS11Exception) cause).getErrorCode() : -1;
+  } // method getErrorCode
+
+  private static void closeQuietly(Session session) {
+    try {
+      session.closeSession();
+    } catch (Throwable th) {
+      LogUtil.warn(LOG, th, "could not close session");
+    }
+  } // method closeQuietly
+
   private void firstLogin(Session session, List<char[]> password) throws P11TokenException {
     try {
       boolean isProtectedAuthenticationPath =
@@ -950,29 +1208,27 @@ class IaikP11Slot extends P11Slot {
   } // method removeObjects
 
   private int removeObjects(Storage template, String desc) throws P11TokenException {
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
     try {
-      Session session = bagEntry.value();
-      List<Storage> objects = getObjects(session, template);
-      for (Storage obj : objects) {
-        if (vendor == Vendor.YUBIKEY) {
-          if (obj instanceof X509PublicKeyCertificate) {
-            throw new P11TokenException("cannot delete certificates in Yubikey token");
-          } else if (obj instanceof PrivateKey
-              || obj instanceof PublicKey) {
-            // do nothing: In yubikey, the triple (private key, public key, certificate) will be
-            // deleted only by deleting the certificate.
+      return executeLoggedIn("remove " + desc, session -> {
+        List<Storage> objects = getObjects(session, template);
+        for (Storage obj : objects) {
+          if (vendor == Vendor.YUBIKEY) {
+            if (obj instanceof X509PublicKeyCertificate) {
+              throw new P11TokenException("cannot delete certificates in Yubikey token");
+            } else if (obj instanceof PrivateKey
+                || obj instanceof PublicKey) {
+              // do nothing: In yubikey, the triple (private key, public key, certificate) will
+              // be deleted only by deleting the certificate.
+            }
           }
-        }
 
-        session.destroyObject(obj);
-      }
-      return objects.size();
-    } catch (TokenException ex) {
+          session.destroyObject(obj);
+        }
+        return objects.size();
+      });
+    } catch (P11TokenException ex) {
       LogUtil.error(LOG, ex, "could not remove " + desc);
-      throw new P11TokenException(ex.getMessage(), ex);
-    } finally {
-      sessions.requite(bagEntry);
+      throw ex;
     }
   } // method removeObjects
 
@@ -982,43 +1238,32 @@ class IaikP11Slot extends P11Slot {
       throw new P11TokenException("Unsupported operation removeCerts() in yubikey token");
     }
 
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
-    try {
-      Session session = bagEntry.value();
+    executeLoggedIn("removeCerts", session -> {
       X509PublicKeyCertificate[] existingCerts = getCertificateObjects(session, objectId.getId(),
           objectId.getLabelChars());
       if (existingCerts == null || existingCerts.length == 0) {
         LOG.warn("could not find certificates " + objectId);
-        return;
+        return null;
       }
 
       for (X509PublicKeyCertificate cert : existingCerts) {
         session.destroyObject(cert);
       }
-    } catch (TokenException ex) {
-      throw new P11TokenException(ex.getMessage(), ex);
-    } finally {
-      sessions.requite(bagEntry);
-    }
+      return null;
+    });
   } // method removeCerts0
 
   @Override
   protected P11ObjectIdentifier addCert0(X509Cert cert, P11NewObjectControl control)
       throws P11TokenException {
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
-    try {
-      Session session = bagEntry.value();
+    return executeLoggedIn("addCert", session -> {
       X509PublicKeyCertificate newCertTemp = createPkcs11Template(session, cert, control);
       X509PublicKeyCertificate newCert =
           (X509PublicKeyCertificate) session.createObject(newCertTemp);
 
       return new P11ObjectIdentifier(newCert.getId().getByteArrayValue(),
           new String(newCert.getLabel().getCharArrayValue()));
-    } catch (TokenException ex) {
-      throw new P11TokenException(ex.getMessage(), ex);
-    } finally {
-      sessions.requite(bagEntry);
-    }
+    });
   } // method addCert0
 
   @Override
@@ -1097,21 +1342,16 @@ class IaikP11Slot extends P11Slot {
     template.getValueLen().setLongValue((long) (keysize / 8));
 
     Mechanism mechanism = Mechanism.get(mech);
-    SecretKey key;
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
-    try {
-      Session session = bagEntry.value();
+    return executeLoggedIn("generateSecretKey", session -> {
       if (labelChars != null && labelExists(session, labelChars)) {
         throw new IllegalArgumentException(
             "label " + control.getLabel() + " exists, please specify another one");
       }
 
-      if (id == null) {
-        id = generateId(session);
-      }
-
-      template.getId().setByteArrayValue(id);
+      byte[] keyId = (id == null) ? generateId(session) : id;
+      template.getId().setByteArrayValue(keyId);
 
+      SecretKey key;
       try {
         key = (SecretKey) session.generateKey(mechanism, template);
       } catch (TokenException ex) {
@@ -1119,15 +1359,12 @@ class IaikP11Slot extends P11Slot {
             + mechanism.getName(), ex);
       }
 
-      labelChars = key.getLabel().getCharArrayValue();
-
-      P11ObjectIdentifier objId = new P11ObjectIdentifier(id, new String(labelChars));
+      String keyLabel = new String(key.getLabel().getCharArrayValue());
+      P11ObjectIdentifier objId = new P11ObjectIdentifier(keyId, keyLabel);
       P11IdentityId entityId = new P11IdentityId(slotId, objId, null, null);
 
       return new IaikP11Identity(this, entityId, key);
-    } finally {
-      sessions.requite(bagEntry);
-    }
+    });
   } // method generateSecretKey0
 
   @Override
@@ -1176,10 +1413,7 @@ class IaikP11Slot extends P11Slot {
       }
     }
 
-    SecretKey key;
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
-    try {
-      Session session = bagEntry.value();
+    return executeLoggedIn("importSecretKey", session -> {
       if (labelChars != null && labelExists(session, labelChars)) {
         throw new IllegalArgumentException(
             "label " + control.getLabel() + " exists, please specify another one");
@@ -1194,21 +1428,19 @@ class IaikP11Slot extends P11Slot {
         template.getId().setByteArrayValue(id);
       }
 
+      SecretKey key;
       try {
         key = (SecretKey) session.createObject(template);
       } catch (TokenException ex) {
         throw new P11TokenException("could not create secret key", ex);
       }
 
-      labelChars = key.getLabel().getCharArrayValue();
-
-      P11ObjectIdentifier objId = new P11ObjectIdentifier(id, new String(labelChars));
+      String keyLabel = new String(key.getLabel().getCharArrayValue());
+      P11ObjectIdentifier objId = new P11ObjectIdentifier(id, keyLabel);
       P11IdentityId entityId = new P11IdentityId(slotId, objId, null, null);
 
       return new IaikP11Identity(this, entityId, key);
-    } finally {
-      sessions.requite(bagEntry);
-    }
+    });
   } // method importSecretKey0
 
   @Override
@@ -1331,35 +1563,29 @@ class IaikP11Slot extends P11Slot {
 
   private P11Identity generateKeyPair(long mech, byte[] id, PrivateKey privateKeyTemplate,
       PublicKey publicKeyTemplate) throws P11TokenException {
-    char[] labelChars = null;
-    if (privateKeyTemplate.getLabel() != null) {
-      labelChars = privateKeyTemplate.getLabel().getCharArrayValue();
-    }
+    final char[] labelChars = (privateKeyTemplate.getLabel() == null) ? null
+        : privateKeyTemplate.getLabel().getCharArrayValue();
 
     boolean succ = false;
 
     try {
-      KeyPair keypair;
-      ConcurrentBagEntry<Session> bagEntry = borrowSession();
-      try {
-        Session session = bagEntry.value();
+      P11Identity ret = executeLoggedIn("generateKeyPair", session -> {
         if (labelChars != null && labelExists(session, labelChars)) {
           throw new IllegalArgumentException(
               "label " + new String(labelChars) + " exists, please specify another one");
         }
 
-        if (id == null) {
-          id = generateId(session);
-        }
-
-        privateKeyTemplate.getId().setByteArrayValue(id);
-        publicKeyTemplate.getId().setByteArrayValue(id);
+        byte[] keyId = (id == null) ? generateId(session) : id;
+        privateKeyTemplate.getId().setByteArrayValue(keyId);
+        publicKeyTemplate.getId().setByteArrayValue(keyId);
 
+        KeyPair keypair;
+        char[] keyLabelChars;
         try {
           keypair = session.generateKeyPair(Mechanism.get(mech),
               publicKeyTemplate, privateKeyTemplate);
 
-          labelChars = keypair.getPrivateKey().getLabel().getCharArrayValue();
+          keyLabelChars = keypair.getPrivateKey().getLabel().getCharArrayValue();
         } catch (TokenException ex) {
           throw new P11TokenException("could not generate keypair "
               + Functions.mechanismCodeToString(mech), ex);
@@ -1368,7 +1594,7 @@ class IaikP11Slot extends P11Slot {
         // CHECKSTYLE:SKIP
         String publicKeyLabel = new String(keypair.getPublicKey().getLabel().getCharArrayValue());
 
-        P11ObjectIdentifier objId = new P11ObjectIdentifier(id, new String(labelChars));
+        P11ObjectIdentifier objId = new P11ObjectIdentifier(keyId, new String(keyLabelChars));
         java.security.PublicKey jcePublicKey;
         try {
           jcePublicKey = generatePublicKey(keypair.getPublicKey());
@@ -1376,13 +1602,13 @@ class IaikP11Slot extends P11Slot {
           throw new P11TokenException("could not generate public key " + objId, ex);
         }
 
-        PrivateKey privateKey2 = getPrivateKeyObject(session, id, labelChars);
+        PrivateKey privateKey2 = getPrivateKeyObject(session, keyId, keyLabelChars);
         if (privateKey2 == null) {
           throw new P11TokenException("could not read the generated private key");
         }
 
         // certificate: some vendors like yubikey generate also certificate
-        X509PublicKeyCertificate cert2 = getCertificateObject(session, id, null);
+        X509PublicKeyCertificate cert2 = getCertificateObject(session, keyId, null);
         String certLabel = null;
         X509Cert[] certs = null;
         if (cert2 != null) {
@@ -1396,16 +1622,16 @@ class IaikP11Slot extends P11Slot {
         }
 
         P11IdentityId entityId = new P11IdentityId(slotId, objId, publicKeyLabel, certLabel);
-        IaikP11Identity ret = new IaikP11Identity(this, entityId, privateKey2, jcePublicKey, certs);
-        succ = true;
-        return ret;
-      } finally {
-        sessions.requite(bagEntry);
-      }
+        return new IaikP11Identity(this, entityId, privateKey2, jcePublicKey, certs);
+      });
+      succ = true;
+      return ret;
     } finally {
-      if (!succ && (id != null || labelChars != null)) {
+      // the ID is set in the templates before the keypair is generated
+      byte[] keyId = privateKeyTemplate.getId().getByteArrayValue();
+      if (!succ && (keyId != null || labelChars != null)) {
         try {
-          removeObjects(id, labelChars);
+          removeObjects(keyId, labelChars);
         } catch (Throwable th) {
           LogUtil.error(LOG, th, "could not remove objects");
         }
@@ -1544,16 +1770,15 @@ class IaikP11Slot extends P11Slot {
     }
 
     P11NewObjectControl control = new P11NewObjectControl(keyId.getId(), keyId.getLabel());
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
-    try {
-      Session session = bagEntry.value();
+    executeLoggedIn("updateCertificate", session -> {
       X509PublicKeyCertificate newCertTemp = createPkcs11Template(session, newCert, control);
-      session.createObject(newCertTemp);
-    } catch (TokenException ex) {
-      throw new P11TokenException("could not createObject: " + ex.getMessage(), ex);
-    } finally {
-      sessions.requite(bagEntry);
-    }
+      try {
+        session.createObject(newCertTemp);
+      } catch (TokenException ex) {
+        throw new P11TokenException("could not createObject: " + ex.getMessage(), ex);
+      }
+      return null;
+    });
   } // method updateCertificate0
 
   private X509PublicKeyCertificate[] getCertificateObjects(Session session, byte[] keyId,
@@ -1583,9 +1808,7 @@ class IaikP11Slot extends P11Slot {
 
   @Override
   protected void removeIdentity0(P11IdentityId identityId) throws P11TokenException {
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
-    try {
-      Session session = bagEntry.value();
+    executeLoggedIn("removeIdentity", session -> {
       P11ObjectIdentifier keyId = identityId.getKeyId();
       byte[] id = keyId.getId();
       char[] label = keyId.getLabelChars();
@@ -1596,7 +1819,7 @@ class IaikP11Slot extends P11Slot {
         } catch (TokenException ex) {
           String msg = "could not delete secret key " + keyId;
           LogUtil.error(LOG, ex, msg);
-          throw new P11TokenException(msg);
+          throw new P11TokenException(msg, ex);
         }
       }
 
@@ -1609,7 +1832,7 @@ class IaikP11Slot extends P11Slot {
           } catch (TokenException ex) {
             String msg = "could not delete private key " + keyId;
             LogUtil.error(LOG, ex, msg);
-            throw new P11TokenException(msg);
+            throw new P11TokenException(msg, ex);
           }
         }
 
@@ -1623,7 +1846,7 @@ class IaikP11Slot extends P11Slot {
             } catch (TokenException ex) {
               String msg = "could not delete public key " + pubKeyId;
               LogUtil.error(LOG, ex, msg);
-              throw new P11TokenException(msg);
+              throw new P11TokenException(msg, ex);
             }
           }
         }
@@ -1640,14 +1863,13 @@ class IaikP11Slot extends P11Slot {
             } catch (TokenException ex) {
               String msg = "could not delete certificate " + certId;
               LogUtil.error(LOG, ex, msg);
-              throw new P11TokenException(msg);
+              throw new P11TokenException(msg, ex);
             }
           }
         }
       }
-    } finally {
-      sessions.requite(bagEntry);
-    }
+      return null;
+    });
   } // method removeIdentity0
 
   private byte[] generateId(Session session) throws P11TokenException {
@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security.test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.security.BatchSigner;
+import org.xipki.security.DfltConcurrentContentSigner;
+import org.xipki.security.SignatureSigner;
+import org.xipki.security.XiContentSigner;
+
+/**
+ * Test of {@link BatchSigner}.
+ *
+ * @author Lijun Liao
+ */
+public class BatchSignerTest {
+
+  @Test
+  public void signInBatches() throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(256);
+    KeyPair keypair = kpGen.generateKeyPair();
+
+    AtomicInteger numBatches = new AtomicInteger();
+    AlgorithmIdentifier algId = new AlgorithmIdentifier(X9ObjectIdentifiers.ecdsa_with_SHA256);
+    XiContentSigner xiSigner = new SignatureSigner(algId,
+        Signature.getInstance("SHA256withECDSA"), keypair.getPrivate()) {
+      @Override
+      public byte[][] sign(byte[][] data) throws SignatureException {
+        numBatches.incrementAndGet();
+        return super.sign(data);
+      }
+    };
+
+    DfltConcurrentContentSigner signer = new DfltConcurrentContentSigner(false,
+        Arrays.asList(xiSigner), keypair.getPrivate());
+    signer.setBatchSigning(16, 50);
+    BatchSigner batchSigner = signer.getBatchSigner();
+
+    final int n = 32;
+    List<CompletableFuture<byte[]>> futures = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      futures.add(batchSigner.signAsync(new byte[]{(byte) i}));
+    }
+
+    Signature verifier = Signature.getInstance("SHA256withECDSA");
+    for (int i = 0; i < n; i++) {
+      verifier.initVerify(keypair.getPublic());
+      verifier.update(new byte[]{(byte) i});
+      Assert.assertTrue("signature " + i, verifier.verify(futures.get(i).get()));
+    }
+
+    Assert.assertTrue("messages are not signed in batches: " + numBatches.get(),
+        numBatches.get() < n);
+
+    // sign via the content signer
+    XiContentSigner contentSigner = batchSigner.newContentSigner();
+    contentSigner.getOutputStream().write(new byte[]{1, 2, 3});
+    byte[] signature = contentSigner.getSignature();
+    verifier.initVerify(keypair.getPublic());
+    verifier.update(new byte[]{1, 2, 3});
+    Assert.assertTrue("signature of content signer", verifier.verify(signature));
+
+    signer.close();
+  } // method signInBatches
+
+}
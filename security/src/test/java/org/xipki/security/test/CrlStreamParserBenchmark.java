@@ -0,0 +1,306 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERGeneralizedTime;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.DERUTCTime;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.xipki.security.asn1.CrlStreamParser;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCertsIterator;
+import org.xipki.security.util.X509Util;
+import org.xipki.util.BenchmarkExecutor;
+
+/**
+ * Benchmark of the {@link CrlStreamParser} in the stream and memory-mapped modes, against the
+ * former parsing of each entry via BouncyCastle objects, on a synthetic CRL.
+ *
+ * <p>Usage: {@code CrlStreamParserBenchmark [entries [duration]]}, the default is 1000000
+ * entries and 30 seconds. Each thread parses the CRL again and again.
+ *
+ * @author Lijun Liao
+ * @since 5.3.9
+ */
+
+public class CrlStreamParserBenchmark extends BenchmarkExecutor {
+
+  private enum Mode {
+    BOUNCYCASTLE,
+    STREAM,
+    MEMORY_MAPPED
+  }
+
+  private class Testor implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        while (!stop()) {
+          if (mode == Mode.BOUNCYCASTLE) {
+            parseWithBouncyCastle();
+          } else {
+            parse();
+          }
+        }
+      } catch (IOException | RuntimeException ex) {
+        account(1, 1);
+        ex.printStackTrace();
+      }
+    }
+
+    private void parse() throws IOException {
+      CrlStreamParser parser = new CrlStreamParser(crlFile, mode == Mode.MEMORY_MAPPED);
+      int num = 0;
+      try (RevokedCertsIterator iterator = parser.revokedCertificates()) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          // account in blocks to keep the counter out of the measurement
+          if (++num == BLOCK_SIZE) {
+            account(num, 0);
+            num = 0;
+            if (stop()) {
+              return;
+            }
+          }
+        }
+      }
+      account(num, 0);
+    } // method parse
+
+    // parses each entry as the former implementation of RevokedCertsIterator.
+    private void parseWithBouncyCastle() throws IOException {
+      int num = 0;
+      try (InputStream in = new BufferedInputStream(new FileInputStream(crlFile))) {
+        long remaining = revokedCertsOffset;
+        while (remaining > 0) {
+          remaining -= in.skip(remaining);
+        }
+
+        ASN1InputStream asn1In = new ASN1InputStream(in);
+        for (int i = 0; i < entries; i++) {
+          ASN1Sequence revCert = ASN1Sequence.getInstance(asn1In.readObject());
+          ASN1Integer.getInstance(revCert.getObjectAt(0)).getValue();
+          Time.getInstance(revCert.getObjectAt(1)).getDate();
+
+          if (revCert.size() > 2) {
+            Extensions extns = Extensions.getInstance(revCert.getObjectAt(2));
+            byte[] coreExtValue = X509Util.getCoreExtValue(extns, Extension.invalidityDate);
+            if (coreExtValue != null) {
+              try {
+                DERGeneralizedTime.getInstance(coreExtValue).getDate();
+              } catch (ParseException ex) {
+                throw new IllegalArgumentException("error parsing time", ex);
+              }
+            }
+
+            coreExtValue = X509Util.getCoreExtValue(extns, Extension.reasonCode);
+            if (coreExtValue != null) {
+              CRLReason.getInstance(coreExtValue).getValue().intValue();
+            }
+          }
+
+          if (++num == BLOCK_SIZE) {
+            account(num, 0);
+            num = 0;
+            if (stop()) {
+              return;
+            }
+          }
+        }
+      }
+      account(num, 0);
+    } // method parseWithBouncyCastle
+
+  } // class Testor
+
+  private static final int BLOCK_SIZE = 1000;
+
+  private final File crlFile;
+
+  private final int entries;
+
+  private final int revokedCertsOffset;
+
+  private final Mode mode;
+
+  private CrlStreamParserBenchmark(String description, File crlFile, int entries,
+      Mode mode) throws IOException {
+    super(description);
+    this.crlFile = crlFile;
+    this.entries = entries;
+    this.mode = mode;
+    this.revokedCertsOffset = new CrlStreamParser(crlFile).getRevokedCertificatesSegments(1)[0];
+  }
+
+  @Override
+  protected Runnable getTestor() throws Exception {
+    return new Testor();
+  }
+
+  /**
+   * Writes a CRL with the given number of entries. Each entry has a serial number of 16 bytes
+   * and the extension reasonCode, each 10th entry has also the extension invalidityDate. The
+   * signature is not valid.
+   */
+  private static void generateCrl(File crlFile, int entries) throws IOException {
+    File entriesFile = new File(crlFile.getPath() + ".entries");
+    Random random = new Random(1);
+    long now = System.currentTimeMillis();
+
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(entriesFile))) {
+      for (int i = 0; i < entries; i++) {
+        Date revocationDate = new Date(now - random.nextInt(Integer.MAX_VALUE) * 1000L);
+
+        ExtensionsGenerator extnGen = new ExtensionsGenerator();
+        extnGen.addExtension(Extension.reasonCode, false,
+            CRLReason.lookup(1 + random.nextInt(5)));
+        if (i % 10 == 0) {
+          extnGen.addExtension(Extension.invalidityDate, false,
+              new DERGeneralizedTime(new Date(revocationDate.getTime() - 86400000L)));
+        }
+
+        ASN1EncodableVector vec = new ASN1EncodableVector();
+        vec.add(new ASN1Integer(new BigInteger(127, random)));
+        vec.add(new Time(revocationDate));
+        vec.add(extnGen.generate());
+        out.write(new DERSequence(vec).getEncoded(ASN1Encoding.DER));
+      }
+    }
+
+    AlgorithmIdentifier sigAlgId = new AlgorithmIdentifier(X9ObjectIdentifiers.ecdsa_with_SHA256);
+
+    ExtensionsGenerator extnGen = new ExtensionsGenerator();
+    extnGen.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.ONE));
+
+    byte[] tbsPrefix = concat(new ASN1Integer(1).getEncoded(), sigAlgId.getEncoded(),
+        new X500Name("CN=benchmark").getEncoded(), new DERUTCTime(new Date(now)).getEncoded(),
+        new ASN1GeneralizedTime(new Date(now + 86400000L)).getEncoded());
+    byte[] revokedCertsHeader = header(0x30, entriesFile.length());
+    byte[] tbsSuffix = new DERTaggedObject(true, 0, extnGen.generate()).getEncoded();
+
+    long tbsLen = tbsPrefix.length + revokedCertsHeader.length + entriesFile.length()
+        + tbsSuffix.length;
+    byte[] tbsHeader = header(0x30, tbsLen);
+    byte[] crlSuffix = concat(sigAlgId.getEncoded(), new DERBitString(new byte[64]).getEncoded());
+
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(crlFile))) {
+      out.write(header(0x30, tbsHeader.length + tbsLen + crlSuffix.length));
+      out.write(tbsHeader);
+      out.write(tbsPrefix);
+      out.write(revokedCertsHeader);
+      Files.copy(entriesFile.toPath(), out);
+      out.write(tbsSuffix);
+      out.write(crlSuffix);
+    } finally {
+      entriesFile.delete();
+    }
+  } // method generateCrl
+
+  private static byte[] header(int tag, long length) {
+    if (length < 0x80) {
+      return new byte[]{(byte) tag, (byte) length};
+    }
+
+    int numBytes = (64 - Long.numberOfLeadingZeros(length) + 7) / 8;
+    byte[] ret = new byte[2 + numBytes];
+    ret[0] = (byte) tag;
+    ret[1] = (byte) (0x80 | numBytes);
+    for (int i = 0; i < numBytes; i++) {
+      ret[2 + i] = (byte) (length >> (8 * (numBytes - 1 - i)));
+    }
+    return ret;
+  } // method header
+
+  private static byte[] concat(byte[]... arrays) {
+    int len = 0;
+    for (byte[] m : arrays) {
+      len += m.length;
+    }
+
+    byte[] ret = new byte[len];
+    int offset = 0;
+    for (byte[] m : arrays) {
+      System.arraycopy(m, 0, ret, offset, m.length);
+      offset += m.length;
+    }
+    return ret;
+  } // method concat
+
+  public static void main(String[] args) throws IOException {
+    int entries = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+    String duration = (args.length > 1) ? args[1] : "30s";
+
+    File crlFile = File.createTempFile("benchmark-", ".crl");
+    crlFile.deleteOnExit();
+
+    System.out.println("generating CRL with " + entries + " entries");
+    generateCrl(crlFile, entries);
+    System.out.println("generated CRL " + crlFile.getPath() + " of " + crlFile.length()
+        + " bytes");
+
+    BenchmarkExecutor[] benchmarks = {
+      new CrlStreamParserBenchmark("BouncyCastle objects per entry", crlFile, entries,
+          Mode.BOUNCYCASTLE),
+      new CrlStreamParserBenchmark("direct DER decoding, stream", crlFile, entries,
+          Mode.STREAM),
+      new CrlStreamParserBenchmark("direct DER decoding, memory-mapped", crlFile, entries,
+          Mode.MEMORY_MAPPED)};
+
+    try {
+      for (BenchmarkExecutor benchmark : benchmarks) {
+        benchmark.setThreads(1);
+        benchmark.setDuration(duration);
+        benchmark.setUnit("entries");
+        benchmark.execute();
+      }
+    } finally {
+      crlFile.delete();
+    }
+  } // method main
+
+}
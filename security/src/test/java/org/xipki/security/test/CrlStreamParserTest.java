@@ -19,18 +19,28 @@ package org.xipki.security.test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.security.cert.CertificateEncodingException;
 
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.x509.CRLReason;
 import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.asn1.x509.CertificateList;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.TBSCertList;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.xipki.security.asn1.CrlStreamParser;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCert;
 import org.xipki.security.asn1.CrlStreamParser.RevokedCertsIterator;
 import org.xipki.security.util.X509Util;
 
@@ -189,6 +199,118 @@ public class CrlStreamParserTest {
     Assert.assertEquals("#revokedCertificates", 0, numRevokedCerts);
   }
 
+  @Test
+  public void parseCrlInSegments() throws Exception {
+    File crlFile = new File("src/test/resources/crls/crl-2/ca1-crl.crl");
+    CrlStreamParser parser = new CrlStreamParser(crlFile);
+
+    List<BigInteger> serials = new ArrayList<>();
+    try (RevokedCertsIterator iterator = parser.revokedCertificates()) {
+      while (iterator.hasNext()) {
+        serials.add(iterator.next().getSerialNumber());
+      }
+    }
+
+    for (int numSegments = 1; numSegments <= 8; numSegments++) {
+      int[] offsets = parser.getRevokedCertificatesSegments(numSegments);
+      Assert.assertTrue("#segments", offsets.length >= 2 && offsets.length <= numSegments + 1);
+
+      List<BigInteger> segmentSerials = new ArrayList<>();
+      for (int i = 0; i < offsets.length - 1; i++) {
+        try (RevokedCertsIterator iterator =
+            parser.revokedCertificates(offsets[i], offsets[i + 1])) {
+          while (iterator.hasNext()) {
+            segmentSerials.add(iterator.next().getSerialNumber());
+          }
+        }
+      }
+
+      Assert.assertEquals("revokedCertificates in " + numSegments + " segments",
+          serials, segmentSerials);
+    }
+  }
+
+  @Test
+  public void parseCrlWithNoRevokedCertsInSegments() throws Exception {
+    File crlFile = new File("src/test/resources/crls/crl-4/no-revoked-certs.crl");
+    CrlStreamParser parser = new CrlStreamParser(crlFile);
+    Assert.assertEquals("#segments", 0, parser.getRevokedCertificatesSegments(4).length);
+  }
+
+  @Test
+  public void rejectTooLargeCrl() throws Exception {
+    File crlFile = File.createTempFile("too-large", ".crl");
+    try {
+      // sparse file, no disk space is allocated
+      try (RandomAccessFile raf = new RandomAccessFile(crlFile, "rw")) {
+        raf.setLength(CrlStreamParser.MAX_CRL_SIZE + 1);
+      }
+
+      for (boolean memoryMapped : new boolean[]{false, true}) {
+        try {
+          new CrlStreamParser(crlFile, memoryMapped);
+          Assert.fail("CRL larger than " + CrlStreamParser.MAX_CRL_SIZE + " bytes accepted");
+        } catch (IOException ex) {
+          Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("too large"));
+        }
+      }
+    } finally {
+      crlFile.delete();
+    }
+  }
+
+  @Test
+  public void compareWithBouncyCastle() throws Exception {
+    String[] crlFiles = {"src/test/resources/crls/crl-1/subcawithcrl1.crl",
+      "src/test/resources/crls/crl-2/ca1-crl.crl",
+      "src/test/resources/crls/crl-3/subcawithcrl1.crl"};
+
+    for (String crlFile : crlFiles) {
+      CertificateList bcCrl = CertificateList.getInstance(
+          X509Util.toDerEncoded(Files.readAllBytes(Paths.get(crlFile))));
+      TBSCertList.CRLEntry[] bcEntries = bcCrl.getRevokedCertificates();
+
+      for (boolean memoryMapped : new boolean[]{false, true}) {
+        String desc = crlFile + (memoryMapped ? " (memory-mapped)" : " (stream)");
+        CrlStreamParser parser = new CrlStreamParser(new File(crlFile), memoryMapped);
+
+        int idx = 0;
+        try (RevokedCertsIterator iterator = parser.revokedCertificates()) {
+          while (iterator.hasNext()) {
+            RevokedCert entry = iterator.next();
+            TBSCertList.CRLEntry bcEntry = bcEntries[idx++];
+
+            Assert.assertEquals("serialNumber " + desc,
+                bcEntry.getUserCertificate().getValue(), entry.getSerialNumber());
+            Assert.assertEquals("revocationDate " + desc,
+                bcEntry.getRevocationDate().getDate().getTime() / 1000,
+                entry.getRevocationDate());
+
+            Extensions extns = bcEntry.getExtensions();
+            Extension extn = (extns == null) ? null : extns.getExtension(Extension.reasonCode);
+            int reason = (extn == null) ? 0
+                : CRLReason.getInstance(extn.getParsedValue()).getValue().intValue();
+            Assert.assertEquals("reason " + desc, reason, entry.getReason());
+
+            extn = (extns == null) ? null : extns.getExtension(Extension.invalidityDate);
+            long invalidityDate = 0;
+            if (extn != null) {
+              invalidityDate = ASN1GeneralizedTime.getInstance(extn.getParsedValue())
+                  .getDate().getTime() / 1000;
+              if (invalidityDate == entry.getRevocationDate()) {
+                invalidityDate = 0;
+              }
+            }
+            Assert.assertEquals("invalidityDate " + desc, invalidityDate,
+                entry.getInvalidityDate());
+          }
+        }
+
+        Assert.assertEquals("#revokedCertificates " + desc, bcEntries.length, idx);
+      }
+    }
+  }
+
   private static Certificate parseCert(String fileName)
       throws IOException, CertificateEncodingException {
     try {
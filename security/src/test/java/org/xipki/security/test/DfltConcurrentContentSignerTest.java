@@ -0,0 +1,128 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security.test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Arrays;
+
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.security.ConcurrentBagEntrySigner;
+import org.xipki.security.DfltConcurrentContentSigner;
+import org.xipki.security.NoIdleSignerException;
+import org.xipki.security.SignatureSigner;
+import org.xipki.security.SignerPoolMetrics;
+import org.xipki.security.XiContentSigner;
+import org.xipki.security.XiSecurityException;
+
+/**
+ * Test of the signer pool of {@link DfltConcurrentContentSigner}.
+ *
+ * @author Lijun Liao
+ */
+public class DfltConcurrentContentSignerTest {
+
+  private static final AlgorithmIdentifier ALGID =
+      new AlgorithmIdentifier(X9ObjectIdentifiers.ecdsa_with_SHA256);
+
+  private final KeyPair keypair;
+
+  public DfltConcurrentContentSignerTest() throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(256);
+    keypair = kpGen.generateKeyPair();
+  }
+
+  @Test
+  public void metrics() throws Exception {
+    DfltConcurrentContentSigner signer = newSigner();
+    signer.sign(new byte[]{1, 2, 3});
+    signer.sign(new byte[]{4, 5, 6});
+
+    ConcurrentBagEntrySigner entry = signer.borrowSigner();
+    try {
+      signer.borrowSigner(10);
+      Assert.fail("NoIdleSignerException expected");
+    } catch (NoIdleSignerException ex) {
+      // expected
+    } finally {
+      signer.requiteSigner(entry);
+    }
+
+    SignerPoolMetrics metrics = signer.getMetrics();
+    Assert.assertEquals("borrows", 4, metrics.getBorrowWaitTime().getCount());
+    Assert.assertEquals("returns", 3, metrics.getHoldTime().getCount());
+    Assert.assertEquals("timeouts", 1, metrics.getTimeouts());
+    Assert.assertEquals("inUse", 0, metrics.getInUse());
+    signer.close();
+  } // method metrics
+
+  @Test
+  public void elasticPool() throws Exception {
+    DfltConcurrentContentSigner signer = newSigner();
+    signer.setElastic(this::newXiSigner, 2, 1000);
+    SignerPoolMetrics metrics = signer.getMetrics();
+
+    ConcurrentBagEntrySigner entry1 = signer.borrowSigner();
+    // the pool grows instead of waiting for entry1
+    ConcurrentBagEntrySigner entry2 = signer.borrowSigner(5000);
+    Assert.assertEquals("size", 2, metrics.getSize());
+    Assert.assertEquals("inUse", 2, metrics.getInUse());
+
+    // the pool does not grow above the maximal size
+    try {
+      signer.borrowSigner(100);
+      Assert.fail("NoIdleSignerException expected");
+    } catch (NoIdleSignerException ex) {
+      // expected
+    }
+    Assert.assertEquals("size", 2, metrics.getSize());
+
+    signer.requiteSigner(entry1);
+    signer.requiteSigner(entry2);
+
+    // the pool shrinks to the initial size once the signers are idle
+    long deadline = System.currentTimeMillis() + 10000;
+    while (metrics.getSize() > 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100);
+    }
+    Assert.assertEquals("size", 1, metrics.getSize());
+    Assert.assertEquals("grown", 1, metrics.getGrown());
+    Assert.assertEquals("shrunk", 1, metrics.getShrunk());
+    signer.close();
+  } // method elasticPool
+
+  private DfltConcurrentContentSigner newSigner() throws Exception {
+    return new DfltConcurrentContentSigner(false, Arrays.asList(newXiSigner()),
+        keypair.getPrivate());
+  }
+
+  private XiContentSigner newXiSigner() throws XiSecurityException {
+    try {
+      return new SignatureSigner(ALGID, Signature.getInstance("SHA256withECDSA"),
+          keypair.getPrivate());
+    } catch (Exception ex) {
+      throw new XiSecurityException(ex.getMessage(), ex);
+    }
+  }
+
+}